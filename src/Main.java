@@ -1,12 +1,22 @@
 import display.DisplayController;
+import display.RenderBackend;
+import display.RenderMode;
 import mainloop.ThreadedFixedTimeLoop;
 import resource.ResourceSystem;
+import midi.IShortMessageObserver;
+import midi.IShortMessageSubject;
+import midi.MidiConstants;
 import midi.MidiController;
+import midi.MidiDevicePool;
 import util.file.FileUtil;
+import util.observer.IObserver;
+import window.PresentationMode;
 import window.WindowController;
 
 import java.io.File;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The MidiPianist program creates a GUI representing the 16 MIDI channels and
@@ -17,18 +27,41 @@ final class Main {
 
     private static final String DEFAULT_SYNTH_NAME = "Microsoft MIDI Mapper";
     private static final String RESOURCE_FOLDER = "res";
+    //built from the resource folder by ResourceArchivePacker; loaded instead of the folder if present
+    private static final String RESOURCE_ARCHIVE = "res.pak";
 
     private static final int WIDTH = 750;
     private static final int HEIGHT = 480;
     private static final String TITLE = "MidiPianist";
 
+    //set to ACCELERATED to present frames through a buffer strategy instead of a Swing panel
+    private static final String PRESENTATION_MODE_PROPERTY = "midipianist.presentation";
+    //set above 1 to draw the channel strips in parallel
+    private static final String RENDER_THREADS_PROPERTY = "midipianist.renderThreads";
+    //set to true to let the window be resized, with the keys redrawn to fill it
+    private static final String RESIZABLE_PROPERTY = "midipianist.resizable";
+
+    //set to the path of an SF2 or DLS file to play the built-in synth's instruments from it
+    private static final String SOUNDBANK_PROPERTY = "midipianist.soundbank";
+    //set to true to play tracks on the system sequencer instead of the precision sequencer
+    private static final String SYSTEM_SEQUENCER_PROPERTY = "midipianist.systemSequencer";
+    //set to how many milliseconds ahead of time to hand notes to a synth which schedules them, or 0 to not
+    private static final String LOOK_AHEAD_PROPERTY = "midipianist.lookAheadMillis";
+    //set to true to print frame, resource and startup statistics
+    private static final String STATISTICS_PROPERTY = "midipianist.statistics";
+
     private static final int FRAMES_PER_SECOND = 60;
 
     private static String synthName;
     private static Thread setupThread;
 
     private static ResourceSystem resourceSystem;
+    private static StartupTimeline timeline;
+    private static CompletableFuture<?> resourceLoad;
+    //resources loaded from the folder rather than the archive are reloaded whenever their files change
+    private static boolean watchResourceFolder;
     private static WindowController windowController;
+    private static MidiDevicePool midiDevicePool;
     private static MidiController midiController;
     private static DisplayController displayController;
 
@@ -59,36 +92,56 @@ final class Main {
 
     /**
      * Sets up and coordinates the various high-level parts of the program and starts the main loop.
+     * <p>
+     * Loading the resources, creating the window, and opening the MIDI devices do not depend on each other, so they
+     * run concurrently; each later phase waits only for the phases it needs. Every phase is recorded in the startup
+     * timeline, which is printed once the first frame has been drawn and again once the first note is played if the
+     * {@value #STATISTICS_PROPERTY} system property is true.
      */
     private static void setup() {
         try {
             System.setProperty("sun.java2d.d3d", "true");
+            timeline = new StartupTimeline();
 
-            makeResourceController();
+            timeline.time("midi devices started", Main::makeMidiDevicePool);
+            timeline.time("resources started", Main::makeResourceController);
+            CompletableFuture<Void> windowReady = startPhase("window", Main::makeWindowController);
+            CompletableFuture<Void> midiReady = startPhase("midi", Main::makeMidiController);
             if (Thread.interrupted()) {
                 cleanUp();
                 return;
             }
 
-            makeWindowController();
+            CompletableFuture.allOf(windowReady, midiReady).join();
+            timeline.time("connect", Main::connectWindowToMidi);
             if (Thread.interrupted()) {
                 cleanUp();
                 return;
             }
 
-            makeMidiController();
+            //the display is the first part which needs the resources
+            awaitResources();
             if (Thread.interrupted()) {
                 cleanUp();
                 return;
             }
 
-            makeDisplayController();
+            timeline.time("display", Main::makeDisplayController);
+            if (Boolean.getBoolean(STATISTICS_PROPERTY)) {
+                recordMilestones();
+            }
+            timeline.time("watch", Main::watchResources);
+            //images are loaded lazily, so by now the display has loaded every image it uses
+            if (Boolean.getBoolean(STATISTICS_PROPERTY)) {
+                System.out.println(ResourceTypes.IMAGE.getLoadStatistics());
+                System.out.println(resourceSystem.getCacheStatistics());
+            }
             if (Thread.interrupted()) {
                 cleanUp();
                 return;
             }
 
-            makeAndRunGameLoop();
+            timeline.time("main loop", Main::makeAndRunGameLoop);
         }
         catch(Exception e){
             System.err.println(e.getMessage());
@@ -97,43 +150,186 @@ final class Main {
     }
 
     /**
-     * Creates the {@link ResourceSystem} and loads all the files in the resource folder.
+     * Runs the given startup phase on a new thread, recording it in the startup timeline.
+     *
+     * @param name the name of the phase, which also names the thread.
+     * @param phase the phase to run.
+     * @return a future which completes once the phase has run, or exceptionally if it throws.
+     */
+    private static CompletableFuture<Void> startPhase(String name, Runnable phase) {
+        CompletableFuture<Void> phaseDone = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                timeline.time(name, phase);
+                phaseDone.complete(null);
+            } catch (RuntimeException | Error e) {
+                phaseDone.completeExceptionally(e);
+            }
+        }, "Setup " + name).start();
+        return phaseDone;
+    }
+
+    /**
+     * Creates the {@link ResourceSystem} and starts loading all the files in the resource archive, or in the resource
+     * folder if there is no archive, in the background, so that the window and MIDI devices can be set up while they
+     * load.
      */
     private static void makeResourceController() {
-        resourceSystem = new ResourceSystem(ResourceTypes.values());
-        resourceSystem.loadFile(RESOURCE_FOLDER);
+        long begin = System.nanoTime();
+        resourceSystem = new ResourceSystem(ResourceTypes.values(), Runtime.getRuntime().availableProcessors());
+        File resourceArchive = new File(RESOURCE_ARCHIVE);
+        if (resourceArchive.isFile()) {
+            resourceLoad = resourceSystem.loadArchiveAsync(resourceArchive);
+        } else {
+            resourceLoad = resourceSystem.loadFileAsync(RESOURCE_FOLDER);
+            watchResourceFolder = true;
+        }
+        resourceLoad.whenComplete((resources, e) -> timeline.record("resources", begin, System.nanoTime()));
+    }
+
+    /**
+     * Waits for the resource files to finish loading.
+     */
+    private static void awaitResources() {
+        resourceLoad.join();
     }
 
     /**
-     * Creates the {@link WindowController}. Attaches the window clean up broadcaster to {@link #cleanUp()}.
+     * Creates the {@link WindowController} with the presentation mode named by the {@value #PRESENTATION_MODE_PROPERTY}
+     * system property, resizable if the {@value #RESIZABLE_PROPERTY} system property is true. Attaches the window
+     * clean up broadcaster to {@link #cleanUp()}.
      */
     private static void makeWindowController() {
-        windowController = new WindowController(WIDTH, HEIGHT, TITLE);
+        PresentationMode presentationMode = PresentationMode.valueOf(
+                System.getProperty(PRESENTATION_MODE_PROPERTY, PresentationMode.PANEL.name()).toUpperCase()
+        );
+        windowController = new WindowController(
+                WIDTH,
+                HEIGHT,
+                TITLE,
+                presentationMode,
+                Boolean.getBoolean(RESIZABLE_PROPERTY)
+        );
         windowController.getWindowCloseBroadcaster().attach(data -> cleanUp());
     }
 
     /**
-     * Creates the {@link MidiController}. Attaches the window file drop broadcaster to the track start receiver.
+     * Creates the {@link MidiDevicePool}, which discovers the MIDI devices and opens the synth and a sequencer, and
+     * parses the soundbank named by the {@value #SOUNDBANK_PROPERTY} system property if set, in the background, so
+     * that they are ready by the time the {@link MidiController} asks for them. The sequencer is the system sequencer
+     * if the {@value #SYSTEM_SEQUENCER_PROPERTY} system property is true, and otherwise sends notes ahead of time by
+     * the window given by the {@value #LOOK_AHEAD_PROPERTY} system property.
+     */
+    private static void makeMidiDevicePool() {
+        long begin = System.nanoTime();
+        midiDevicePool = new MidiDevicePool(
+                Boolean.getBoolean(SYSTEM_SEQUENCER_PROPERTY),
+                Integer.getInteger(LOOK_AHEAD_PROPERTY, MidiDevicePool.DEFAULT_LOOK_AHEAD_MILLIS)
+        );
+        midiDevicePool.warmUp(synthName)
+                .whenComplete((ignored, e) -> timeline.record("midi devices", begin, System.nanoTime()));
+        String soundbankPath = System.getProperty(SOUNDBANK_PROPERTY);
+        if (soundbankPath != null) {
+            midiDevicePool.warmUpSoundbank(new File(soundbankPath))
+                    .whenComplete((ignored, e) -> timeline.record("soundbank", begin, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Creates the {@link MidiController} with devices from the {@link MidiDevicePool}, taking instruments from the
+     * soundbank named by the {@value #SOUNDBANK_PROPERTY} system property if set.
      */
     private static void makeMidiController() {
-        midiController = new MidiController(synthName);
+        String soundbankPath = System.getProperty(SOUNDBANK_PROPERTY);
+        midiController = new MidiController(
+                synthName,
+                midiDevicePool,
+                soundbankPath == null ? null : new File(soundbankPath)
+        );
+    }
+
+    /**
+     * Attaches the window file drop broadcaster to the track start receiver, which loads the dropped file in the
+     * background, and shows the progress of each load in the window title.
+     */
+    private static void connectWindowToMidi() {
         windowController.getFileDropBroadcaster().attach(fileList -> {
             for(File file : fileList){
                 if(Objects.equals(FileUtil.getFileExtension(file), "mid")){
-                    midiController.getTrackStartReceiver().update(FileUtil.makeInputStream(file));
+                    timeline.reach("first track");
+                    midiController.getTrackStartReceiver().update(file);
                     break;
                 }
             }
         });
+        IObserver<String> statusReceiver = windowController.getStatusReceiver();
+        midiController.getTrackLoadProgressBroadcaster().attach(progress -> statusReceiver.update(progress.toString()));
     }
 
     /**
-     * Creates the {@link DisplayController} and attaches it to the window and music controllers.
+     * Creates the {@link DisplayController}, drawing with the number of threads given by the
+     * {@value #RENDER_THREADS_PROPERTY} system property, and attaches it to the window and music controllers.
      */
     private static void makeDisplayController(){
-        displayController = new DisplayController(WIDTH, HEIGHT, resourceSystem.getResourceManager(ResourceTypes.IMAGE));
+        displayController = new DisplayController(
+                WIDTH,
+                HEIGHT,
+                resourceSystem.getResourceManager(ResourceTypes.IMAGE),
+                RenderMode.INCREMENTAL,
+                RenderBackend.RASTER,
+                Integer.getInteger(RENDER_THREADS_PROPERTY, 1)
+        );
         displayController.getImageBroadcaster().attach(windowController.getImageReceiver());
-        midiController.getMidiMessageBroadcaster().attach(displayController.getMidiMessageReceiver());
+        displayController.getDamageBroadcaster().attach(windowController.getDamageReceiver());
+        windowController.getRedrawRequestBroadcaster().attach(displayController.getRedrawRequestReceiver());
+        windowController.getResizeBroadcaster().attach(displayController.getResizeReceiver());
+        //the window was shown before the display controller existed, so its first size was never received
+        displayController.getResizeReceiver().update(windowController.getDrawingAreaSize());
+        midiController.getShortMessageBroadcaster().attach(displayController.getMidiMessageReceiver());
+    }
+
+    /**
+     * Records the first frame drawn by the display controller and the first note played by the MIDI controller in the
+     * startup timeline, printing the timeline when each is reached.
+     */
+    private static void recordMilestones() {
+        StartupTimeline startupTimeline = timeline;
+        AtomicBoolean frameDrawn = new AtomicBoolean();
+        displayController.getImageBroadcaster().attach(image -> {
+            if (!frameDrawn.get() && frameDrawn.compareAndSet(false, true) && startupTimeline.reach("first frame")) {
+                System.out.println(startupTimeline);
+            }
+        });
+        IShortMessageSubject shortMessageBroadcaster = midiController.getShortMessageBroadcaster();
+        shortMessageBroadcaster.attach(new IShortMessageObserver() {
+            @Override
+            public void onShortMessage(int status, int data1, int data2, long timeStamp) {
+                if ((status & MidiConstants.COMMAND_MASK) == MidiConstants.NOTE_ON && data2 > 0) {
+                    shortMessageBroadcaster.detach(this);
+                    if (startupTimeline.reach("first note")) {
+                        System.out.println(startupTimeline);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts reloading the files in the resource folder whenever they change, if resources were loaded from the
+     * folder, and attaches the reloaded images to the display controller so that edited sprites show up without a
+     * restart.
+     */
+    private static void watchResources() {
+        if (!watchResourceFolder) {
+            return;
+        }
+        IObserver<Void> spriteReloadReceiver = displayController.getSpriteReloadReceiver();
+        resourceSystem.getReloadBroadcaster().attach(resource -> {
+            if (resource.getType() == ResourceTypes.IMAGE) {
+                spriteReloadReceiver.update(null);
+            }
+        });
+        resourceSystem.watchDirectory(new File(RESOURCE_FOLDER));
     }
 
     /**
@@ -146,23 +342,38 @@ final class Main {
     }
 
     /**
-     * Cleans up program resources and ends the program.
+     * Cleans up program resources and ends the program, printing the frame statistics if the
+     * {@value #STATISTICS_PROPERTY} system property is true.
      */
     private static void cleanUp() {
         if (setupThread != null) {
             setupThread.interrupt();
         }
 
-        windowController = null;
+        if (windowController != null) {
+            if (Boolean.getBoolean(STATISTICS_PROPERTY)) {
+                System.out.println(windowController.getFrameStatistics());
+            }
+            windowController = null;
+        }
 
+        //ending the loop waits for the update in progress, which the display controller must outlive
         if (mainLoop != null) {
             mainLoop.end();
             mainLoop = null;
         }
+        if (displayController != null) {
+            displayController.cleanUp();
+            displayController = null;
+        }
         if (midiController != null) {
             midiController.cleanUp();
             midiController = null;
         }
+        if (midiDevicePool != null) {
+            midiDevicePool.cleanUp();
+            midiDevicePool = null;
+        }
         if (resourceSystem != null) {
             resourceSystem.cleanUp();
             resourceSystem = null;
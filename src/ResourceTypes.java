@@ -1,13 +1,18 @@
 import resource.IResourceType;
 import resource.Resource;
 import resource.ResourceLoader;
+import util.file.ByteBufferInputStream;
 import util.file.DirectoryConsumer;
 import util.file.FileUtil;
+import util.image.ImageUtil;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The {@code ResourceTypes} class defines the types of file resources which this program can utilize.
@@ -26,8 +31,8 @@ public final class ResourceTypes {
             new String[]{FileUtil.DIRECTORY_EXTENSION}
     ) {
         /**
-         * Given a directory file and a reference to the {@link ResourceLoader}, load all child files and create
-         * a list of references to all child resources.
+         * Given a directory file and a reference to the {@link ResourceLoader}, load all child files concurrently and
+         * create a list of references to all child resources.
          *
          * @param file the directory to load.
          * @param loader the {@code ResourceLoader} which will be used to load all child files.
@@ -35,29 +40,80 @@ public final class ResourceTypes {
          */
         @Override
         public List<Resource<?>> makeDataFromFile(File file, ResourceLoader loader) {
-            List<Resource<?>> childList = new ArrayList<>();
+            List<CompletableFuture<Resource<?>>> childLoads = new ArrayList<>();
             DirectoryConsumer directoryConsumer = new DirectoryConsumer(
-                    file1 -> {
-                        Resource<?> child = loader.loadFile(file1);
-                        if (child != null) {
-                            childList.add(child);
-                        }
-                    }
+                    file1 -> childLoads.add(loader.loadFileAsync(file1))
             );
             directoryConsumer.accept(file);
+
+            List<Resource<?>> childList = new ArrayList<>();
+            for (CompletableFuture<Resource<?>> childLoad : childLoads) {
+                Resource<?> child = childLoad.join();
+                if (child != null) {
+                    childList.add(child);
+                }
+            }
             return childList;
         }
     };
 
     /**
-     * The {@code IMAGE} resource type represents 2d images.
+     * The {@code IMAGE} resource type represents 2d images, converted at load time to the format which draws fastest
+     * onto the screen.
      */
-    public static final ResourceTypeTemplate<BufferedImage> IMAGE = new ResourceTypeTemplate<>(
-            new String[]{"png"}
-    ) {
+    public static final ImageResourceType IMAGE = new ImageResourceType();
+
+    /**
+     * Returns an array representing the set of resource types.
+     * @return an array representing the set of resource types.
+     */
+    public static IResourceType<?>[] values() {
+        return resourceTypesList.toArray(new IResourceType<?>[0]);
+    }
+
+    /**
+     * An {@code ImageResourceType} loads 2d images and converts each one with
+     * {@link ImageUtil#toCompatibleImage(BufferedImage)}, keeping track of the time spent doing so.
+     * <p>
+     * If the {@value #BLIT_TIMINGS_PROPERTY} system property is true, the time taken to draw each image onto an
+     * {@code INT_RGB} image is also measured, both before and after conversion.
+     * <p>
+     * Images are loaded when first used, and are kept within the memory budget given in bytes by the
+     * {@value #MEMORY_BUDGET_PROPERTY} system property, {@value #DEFAULT_MEMORY_BUDGET} bytes by default.
+     */
+    public static final class ImageResourceType extends ResourceTypeTemplate<BufferedImage> {
+        private static final String BLIT_TIMINGS_PROPERTY = "midipianist.imageTimings";
+        private static final int BLIT_ITERATIONS = 1000;
+
+        private static final String MEMORY_BUDGET_PROPERTY = "midipianist.imageBudget";
+        private static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+        private final boolean timeBlits;
+        private final long memoryBudget;
+
+        private final AtomicLong imagesLoaded;
+        private final AtomicLong decodeNanos;
+        private final AtomicLong convertNanos;
+        private final AtomicLong decodedBlitNanos;
+        private final AtomicLong convertedBlitNanos;
+
+        /**
+         * Constructs an {@code ImageResourceType} which accepts png files.
+         */
+        private ImageResourceType() {
+            super(new String[]{"png"});
+            timeBlits = Boolean.getBoolean(BLIT_TIMINGS_PROPERTY);
+            memoryBudget = Long.getLong(MEMORY_BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET);
+            imagesLoaded = new AtomicLong();
+            decodeNanos = new AtomicLong();
+            convertNanos = new AtomicLong();
+            decodedBlitNanos = new AtomicLong();
+            convertedBlitNanos = new AtomicLong();
+        }
 
         /**
-         * Given an image file, return a {@code BufferedImage} holding the contents of that file.
+         * Given an image file, return a {@code BufferedImage} holding the contents of that file in the format which
+         * draws fastest onto the screen.
          *
          * @param file the image file to load.
          * @param loader unused.
@@ -65,16 +121,109 @@ public final class ResourceTypes {
          */
         @Override
         public BufferedImage makeDataFromFile(File file, ResourceLoader loader) {
-            return FileUtil.parseImage(file);
+            long start = System.nanoTime();
+            return prepareImage(FileUtil.parseImage(file), start);
         }
-    };
 
-    /**
-     * Returns an array representing the set of resource types.
-     * @return an array representing the set of resource types.
-     */
-    public static IResourceType<?>[] values() {
-        return resourceTypesList.toArray(new IResourceType<?>[0]);
+        /**
+         * Given the bytes of an image file, such as an entry of a resource archive, return a {@code BufferedImage}
+         * holding the decoded image in the format which draws fastest onto the screen.
+         *
+         * @param buffer the bytes of the image file.
+         * @param loader unused.
+         * @return a {@code BufferedImage} holding the decoded image.
+         */
+        @Override
+        public BufferedImage makeDataFromBuffer(ByteBuffer buffer, ResourceLoader loader) {
+            long start = System.nanoTime();
+            return prepareImage(FileUtil.parseImage(new ByteBufferInputStream(buffer)), start);
+        }
+
+        /**
+         * Converts a freshly decoded image to the format which draws fastest onto the screen, recording how long
+         * decoding and converting took.
+         *
+         * @param decodedImage the decoded image.
+         * @param start the value of {@link System#nanoTime()} when decoding started.
+         * @return the converted image.
+         *
+         * @throws RuntimeException if the image could not be decoded, such as when its file is incomplete.
+         */
+        private BufferedImage prepareImage(BufferedImage decodedImage, long start) {
+            if (decodedImage == null) {
+                throw new RuntimeException("Not a readable image");
+            }
+            long decoded = System.nanoTime();
+            BufferedImage image = ImageUtil.toCompatibleImage(decodedImage);
+            long converted = System.nanoTime();
+
+            imagesLoaded.incrementAndGet();
+            decodeNanos.addAndGet(decoded - start);
+            convertNanos.addAndGet(converted - decoded);
+            if (timeBlits) {
+                BufferedImage target = new BufferedImage(
+                        image.getWidth(),
+                        image.getHeight(),
+                        BufferedImage.TYPE_INT_RGB
+                );
+                decodedBlitNanos.addAndGet(ImageUtil.timeBlitNanos(decodedImage, target, BLIT_ITERATIONS));
+                convertedBlitNanos.addAndGet(ImageUtil.timeBlitNanos(image, target, BLIT_ITERATIONS));
+            }
+            return image;
+        }
+
+        /**
+         * Returns the number of bytes which all loaded images may occupy.
+         * @return the number of bytes which all loaded images may occupy.
+         */
+        @Override
+        public long getMemoryBudget() {
+            return memoryBudget;
+        }
+
+        /**
+         * Returns the number of bytes occupied by the pixels of the given image.
+         *
+         * @param data the image to measure.
+         * @return the number of bytes occupied by the pixels of the given image.
+         */
+        @Override
+        public long estimateSize(BufferedImage data) {
+            return (long) data.getWidth() * data.getHeight() * data.getColorModel().getPixelSize() / Byte.SIZE;
+        }
+
+        /**
+         * Releases any accelerated copies of the given image.
+         *
+         * @param data the image to clean up.
+         */
+        @Override
+        public void cleanUpData(BufferedImage data) {
+            data.flush();
+        }
+
+        @Override
+        public String toString() {
+            return "IMAGE";
+        }
+
+        /**
+         * Returns a summary of how many images were loaded, how long decoding and converting them took, and, if
+         * measured, how long drawing each image took on average before and after conversion.
+         *
+         * @return a summary of the time spent loading images.
+         */
+        public String getLoadStatistics() {
+            long count = imagesLoaded.get();
+            String statistics = "images loaded: " + count
+                    + ", decode: " + decodeNanos.get() / 1000 + " us"
+                    + ", convert: " + convertNanos.get() / 1000 + " us";
+            if (timeBlits && count > 0) {
+                statistics += ", blit before conversion: " + decodedBlitNanos.get() / count + " ns"
+                        + ", after: " + convertedBlitNanos.get() / count + " ns";
+            }
+            return statistics;
+        }
     }
 
     /**
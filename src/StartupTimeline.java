@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A {@code StartupTimeline} records when each phase of starting the program began and ended, and on which thread, as
+ * well as when one-off milestones such as the first frame were reached, all relative to when the timeline was
+ * created. Phases may run concurrently and be recorded from any thread.
+ */
+final class StartupTimeline {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final long startNanos;
+    //only accessed while holding the lock on this timeline
+    private final List<Entry> entries;
+
+    /**
+     * Constructs a {@code StartupTimeline} which starts now.
+     */
+    StartupTimeline() {
+        startNanos = System.nanoTime();
+        entries = new ArrayList<>();
+    }
+
+    /**
+     * Runs the given phase on the calling thread and records how long it took.
+     *
+     * @param name the name of the phase.
+     * @param phase the phase to run.
+     */
+    void time(String name, Runnable phase) {
+        time(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given phase on the calling thread, records how long it took, and returns its result. A phase which
+     * throws is recorded as failed.
+     *
+     * @param name the name of the phase.
+     * @param phase the phase to run.
+     * @param <T> the type of result of the phase.
+     * @return the result of the phase.
+     */
+    <T> T time(String name, Supplier<T> phase) {
+        long begin = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = phase.get();
+            failed = false;
+            return result;
+        } finally {
+            record(name + (failed ? " (failed)" : ""), begin, System.nanoTime());
+        }
+    }
+
+    /**
+     * Records a phase which ran between the given times, such as one which completed asynchronously.
+     *
+     * @param name the name of the phase.
+     * @param beginNanos the value of {@link System#nanoTime()} when the phase began.
+     * @param endNanos the value of {@link System#nanoTime()} when the phase ended.
+     */
+    void record(String name, long beginNanos, long endNanos) {
+        add(new Entry(name, Thread.currentThread().getName(), beginNanos - startNanos, endNanos - startNanos));
+    }
+
+    /**
+     * Records that the named milestone has been reached now, unless it has been reached before.
+     *
+     * @param name the name of the milestone.
+     * @return true if the milestone had not been reached before, false otherwise.
+     */
+    boolean reach(String name) {
+        long now = System.nanoTime() - startNanos;
+        synchronized (this) {
+            for (Entry entry : entries) {
+                if (entry.name().equals(name)) {
+                    return false;
+                }
+            }
+            entries.add(new Entry(name, Thread.currentThread().getName(), now, now));
+            return true;
+        }
+    }
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when this timeline started.
+     * @return the value of {@link System#nanoTime()} when this timeline started.
+     */
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Adds the given entry to this timeline.
+     *
+     * @param entry the entry to add.
+     */
+    private synchronized void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * Returns the phases and milestones recorded so far, one per line in the order they began, with their start and
+     * end times in milliseconds.
+     *
+     * @return the phases and milestones recorded so far.
+     */
+    @Override
+    public synchronized String toString() {
+        List<Entry> sortedEntries = new ArrayList<>(entries);
+        sortedEntries.sort(Comparator.comparingLong(Entry::beginNanos));
+        StringBuilder timeline = new StringBuilder("startup timeline:");
+        for (Entry entry : sortedEntries) {
+            timeline.append(System.lineSeparator());
+            if (entry.beginNanos() == entry.endNanos()) {
+                timeline.append(String.format(
+                        "  %8.1f ms            %s",
+                        entry.beginNanos() / NANOS_PER_MILLI,
+                        entry.name()
+                ));
+            } else {
+                timeline.append(String.format(
+                        "  %8.1f - %8.1f ms %s [%s]",
+                        entry.beginNanos() / NANOS_PER_MILLI,
+                        entry.endNanos() / NANOS_PER_MILLI,
+                        entry.name(),
+                        entry.threadName()
+                ));
+            }
+        }
+        return timeline.toString();
+    }
+
+    /**
+     * A phase or, if it begins and ends at the same time, a milestone.
+     *
+     * @param name the name of the phase or milestone.
+     * @param threadName the name of the thread which recorded it.
+     * @param beginNanos when it began, relative to the start of the timeline.
+     * @param endNanos when it ended, relative to the start of the timeline.
+     */
+    private record Entry(String name, String threadName, long beginNanos, long endNanos) {}
+}
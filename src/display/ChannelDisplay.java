@@ -1,6 +1,7 @@
 package display;
 
 import resource.IResourceManager;
+import resource.ImageAtlas;
 import util.DoublePoint;
 
 import java.awt.*;
@@ -18,8 +19,11 @@ public class ChannelDisplay {
     private static final int X_HALF_SHIFT = 5;
     private static final int X_OCTAVE_SHIFT = 70;
 
+    //75 white notes at scale 1
+    static final int UNSCALED_WIDTH = 750;
+
     //notes start from C, go up to G 10 octaves
-    private static final int NUM_PITCH_CLASSES = 12;
+    static final int NUM_PITCH_CLASSES = 12;
 
     private static final int PITCH_CLASS_C = 0;
     private static final int PITCH_CLASS_C_SHARP = 1;
@@ -34,19 +38,39 @@ public class ChannelDisplay {
     private static final int PITCH_CLASS_A_SHARP = 10;
     private static final int PITCH_CLASS_B = 11;
 
+    //how many notes to either side of a note can overlap it
+    private static final int OVERLAP_RANGE = 2;
+
     private final int channel;
     private final NoteDisplay[] noteDisplays;
 
+    private final Rectangle redrawBounds;
+
     /**
      * Constructs a {@code display.ChannelDisplay} for the specified channel at the given position.
      *
      * @param channel the channel this {@code display.ChannelDisplay} is to represent.
      * @param pos the position of the top-left corner.
+     * @param imageManager the image manager used to resolve the sprites of the notes to handles.
      */
-    public ChannelDisplay(int channel, DoublePoint pos){
+    public ChannelDisplay(int channel, DoublePoint pos, IResourceManager<BufferedImage> imageManager){
+        this(channel, pos, 1.0, imageManager);
+    }
+
+    /**
+     * Constructs a {@code display.ChannelDisplay} for the specified channel at the given position, with the notes
+     * spaced out horizontally by the given scale.
+     *
+     * @param channel the channel this {@code display.ChannelDisplay} is to represent.
+     * @param pos the position of the top-left corner.
+     * @param scaleX the horizontal scale of the layout, where 1 lays the notes out 10 pixels apart.
+     * @param imageManager the image manager used to resolve the sprites of the notes to handles.
+     */
+    public ChannelDisplay(int channel, DoublePoint pos, double scaleX, IResourceManager<BufferedImage> imageManager){
         throwIfInvalidChannel(channel);
         this.channel = channel;
-        noteDisplays = makeNoteDisplays(pos);
+        noteDisplays = makeNoteDisplays(pos, scaleX, imageManager);
+        redrawBounds = new Rectangle();
     }
 
     /**
@@ -66,10 +90,22 @@ public class ChannelDisplay {
      * Creates a {@code display.NoteDisplay} array representing the display information of all notes.
      *
      * @param pos the position of the top-left corner to be fed into the individual {@code display.NoteDisplay} objects.
+     * @param scaleX the horizontal scale of the layout.
+     * @param imageManager the image manager used to resolve the sprites of the notes to handles.
      *
      * @return a {@code display.NoteDisplay} array representing the display information of all notes.
      */
-    private static NoteDisplay[] makeNoteDisplays(DoublePoint pos){
+    private static NoteDisplay[] makeNoteDisplays(
+            DoublePoint pos,
+            double scaleX,
+            IResourceManager<BufferedImage> imageManager
+    ){
+        int whiteUp = imageManager.getHandle("white_up");
+        int whiteDown = imageManager.getHandle("white_down");
+        int blackUp = imageManager.getHandle("black_up");
+        int blackDown = imageManager.getHandle("black_down");
+        double halfShift = X_HALF_SHIFT * scaleX;
+        double octaveShift = X_OCTAVE_SHIFT * scaleX;
         NoteDisplay[] noteDisplay = new NoteDisplay[NUM_NOTES];
         double startingX = pos.x();
         for(int pitchClass = 0; pitchClass < NUM_PITCH_CLASSES; ++pitchClass){
@@ -79,16 +115,16 @@ public class ChannelDisplay {
             for(int note = pitchClass; note < NUM_NOTES; note += NUM_PITCH_CLASSES){
                 noteDisplay[note] = new NoteDisplay(
                         new DoublePoint(x, pos.y()),
-                        isWhiteNote ? "white_up" : "black_up",
-                        isWhiteNote ? "white_down" : "black_down"
+                        isWhiteNote ? whiteUp : blackUp,
+                        isWhiteNote ? whiteDown : blackDown
                 );
-                x += X_OCTAVE_SHIFT;
+                x += octaveShift;
             }
 
-            startingX += X_HALF_SHIFT;
+            startingX += halfShift;
             //if the note is E, move onto F (we do not need a case for B to C)
             if(pitchClass == PITCH_CLASS_E){
-                startingX += X_HALF_SHIFT;
+                startingX += halfShift;
             }
         }
         return noteDisplay;
@@ -104,7 +140,7 @@ public class ChannelDisplay {
      * @throws RuntimeException if the specified integer is not a valid pitch class.
      */
     @SuppressWarnings("EnhancedSwitchMigration")
-    private static boolean isWhiteNote(int pitchClass){
+    static boolean isWhiteNote(int pitchClass){
         if(pitchClass < 0 || pitchClass >= NUM_PITCH_CLASSES){
             throw new RuntimeException("invalid pitch class : " + pitchClass);
         }
@@ -142,41 +178,44 @@ public class ChannelDisplay {
     }
 
     /**
-     * Updates the graphical representation of the channel represented by this {@code display.ChannelDisplay} according to the
-     * specified {@code display.TotalNoteData}.
+     * Returns the {@code display.NoteDisplay} of the specified note.
+     *
+     * @param note the note.
+     *
+     * @return the {@code display.NoteDisplay} of the specified note.
+     */
+    public NoteDisplay getNoteDisplay(int note){
+        return noteDisplays[note];
+    }
+
+    /**
+     * Presses or releases the graphical representation of the specified note.
      *
-     * @param totalNoteData the {@code display.TotalNoteData} to read from.
+     * @param note the note to update.
+     * @param pressed true to press the note, false to release it.
      */
-    public void readNoteData(TotalNoteData totalNoteData){
-        for(int note = 0; note < 128; ++note){
-            if(totalNoteData.hasBeenPressed(channel, note)){
-                noteDisplays[note].press();
-            }
-            else{
-                noteDisplays[note].release();
-            }
+    public void setNotePressed(int note, boolean pressed){
+        if(pressed){
+            noteDisplays[note].press();
+        }
+        else{
+            noteDisplays[note].release();
         }
     }
 
     /**
      * Draws a graphical representation of the channel represented by this {@code display.ChannelDisplay} with the given
-     * {@code Graphics2D} and image manager.
+     * {@code Graphics2D} and image atlas.
      *
      * @param g2d the {@code Graphics2D} to draw with.
-     * @param imageManager the image manager which holds the required {@code BufferedImage} sprites.
+     * @param imageAtlas the image atlas which holds the required sprites.
      */
-    public void drawOn(Graphics2D g2d, IResourceManager<BufferedImage> imageManager){
+    public void drawOn(Graphics2D g2d, ImageAtlas imageAtlas){
         //draw all the white notes
         for(int pitchClass = 0; pitchClass < NUM_PITCH_CLASSES; ++pitchClass){
             if(isWhiteNote(pitchClass)) {
                 for (int note = pitchClass; note < 128; note += NUM_PITCH_CLASSES) {
-                    NoteDisplay noteDisplay = this.noteDisplays[note];
-                    g2d.drawImage(
-                            imageManager.getResource(noteDisplay.getSimage()).getData(),
-                            (int) noteDisplay.getPos().x(),
-                            (int) noteDisplay.getPos().y(),
-                            null
-                    );
+                    drawNote(g2d, imageAtlas, this.noteDisplays[note]);
                 }
             }
         }
@@ -184,15 +223,81 @@ public class ChannelDisplay {
         for(int pitchClass = 0; pitchClass < NUM_PITCH_CLASSES; ++pitchClass){
             if(isBlackNote(pitchClass)) {
                 for (int note = pitchClass; note < 128; note += NUM_PITCH_CLASSES) {
-                    NoteDisplay noteDisplay = this.noteDisplays[note];
-                    g2d.drawImage(
-                            imageManager.getResource(noteDisplay.getSimage()).getData(),
-                            (int) noteDisplay.getPos().x(),
-                            (int) noteDisplay.getPos().y(),
-                            null
-                    );
+                    drawNote(g2d, imageAtlas, this.noteDisplays[note]);
                 }
             }
         }
     }
+
+    /**
+     * Redraws the specified note, which has been pressed or released since it was last drawn, with the given
+     * {@code Graphics2D} and image atlas. Drawing is clipped to the area covered by either sprite of the note, and
+     * any neighbouring notes within that area are redrawn in the same order as {@link #drawOn} so that black notes
+     * stay on top of the white notes they overlap.
+     *
+     * @param g2d the {@code Graphics2D} to draw with.
+     * @param imageAtlas the image atlas which holds the required sprites.
+     * @param note the note to redraw.
+     * @param damage the rectangle to which the redrawn area is added.
+     */
+    public void redrawNote(Graphics2D g2d, ImageAtlas imageAtlas, int note, Rectangle damage){
+        calcBounds(noteDisplays[note], imageAtlas, redrawBounds);
+        if(damage.isEmpty()){
+            damage.setBounds(redrawBounds);
+        }
+        else{
+            damage.add(redrawBounds);
+        }
+
+        g2d.setClip(redrawBounds.x, redrawBounds.y, redrawBounds.width, redrawBounds.height);
+        int lowestNote = Math.max(0, note - OVERLAP_RANGE);
+        int highestNote = Math.min(NUM_NOTES - 1, note + OVERLAP_RANGE);
+        //draw the white notes, then the black notes on top
+        for(int neighbour = lowestNote; neighbour <= highestNote; ++neighbour){
+            if(isWhiteNote(neighbour % NUM_PITCH_CLASSES)){
+                drawNote(g2d, imageAtlas, noteDisplays[neighbour]);
+            }
+        }
+        for(int neighbour = lowestNote; neighbour <= highestNote; ++neighbour){
+            if(isBlackNote(neighbour % NUM_PITCH_CLASSES)){
+                drawNote(g2d, imageAtlas, noteDisplays[neighbour]);
+            }
+        }
+        g2d.setClip(null);
+    }
+
+    /**
+     * Draws the current sprite of the specified {@code display.NoteDisplay}.
+     *
+     * @param g2d the {@code Graphics2D} to draw with.
+     * @param imageAtlas the image atlas which holds the required sprites.
+     * @param noteDisplay the {@code display.NoteDisplay} to draw.
+     */
+    private static void drawNote(Graphics2D g2d, ImageAtlas imageAtlas, NoteDisplay noteDisplay){
+        imageAtlas.draw(
+                g2d,
+                noteDisplay.getSprite(),
+                (int) noteDisplay.getPos().x(),
+                (int) noteDisplay.getPos().y()
+        );
+    }
+
+    /**
+     * Sets the given rectangle to the area covered by either the up or down sprite of the specified
+     * {@code display.NoteDisplay}.
+     *
+     * @param noteDisplay the {@code display.NoteDisplay} to find the area of.
+     * @param imageAtlas the image atlas which holds the required sprites.
+     * @param bounds the rectangle to set.
+     */
+    private static void calcBounds(NoteDisplay noteDisplay, ImageAtlas imageAtlas, Rectangle bounds){
+        int upSprite = noteDisplay.getUpSprite();
+        int downSprite = noteDisplay.getDownSprite();
+        bounds.setBounds(
+                (int) noteDisplay.getPos().x(),
+                (int) noteDisplay.getPos().y(),
+                Math.max(imageAtlas.getWidth(upSprite), imageAtlas.getWidth(downSprite)),
+                Math.max(imageAtlas.getHeight(upSprite), imageAtlas.getHeight(downSprite))
+        );
+    }
 }
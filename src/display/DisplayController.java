@@ -1,58 +1,349 @@
 package display;
 
+import midi.IShortMessageObserver;
+import midi.MidiEventRing;
 import resource.IResourceManager;
-import util.Tuple2;
 import util.observer.IObserver;
 import util.observer.ISubject;
 import util.observer.Subject;
 
-import javax.sound.midi.MidiMessage;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static midi.MidiConstants.NUM_CHANNELS;
 
 public class DisplayController {
 
-    private final IResourceManager<BufferedImage> imageManager;
+    //enough room for several frames' worth of dense playback
+    private static final int MIDI_EVENT_RING_CAPACITY = 1 << 16;
 
     private final IObserver<Void> updateReceiver;
+    private final IObserver<Void> redrawRequestReceiver;
+    private final IObserver<Dimension> resizeReceiver;
+    private final IObserver<Void> spriteReloadReceiver;
     private final Subject<BufferedImage> imageBroadcaster;
-    private final IObserver<Tuple2<MidiMessage, Long>> midiMessageReceiver;
+    private final Subject<Rectangle> damageBroadcaster;
+
+    //replaced on the update thread whenever the display is resized
+    private BufferedImage toDraw;
+    private TotalDisplay totalDisplay;
+    private IKeyCompositor keyCompositor;
 
-    private final BufferedImage toDraw;
     private final TotalNoteData totalNoteData;
-    private final TotalDisplay totalDisplay;
+    private final ScaledSpriteCache spriteCache;
+
+    private final RenderMode renderMode;
+    private final RenderBackend renderBackend;
+    //null when drawing on the update thread alone; kept across resizes, which only replace the compositor
+    private final ForkJoinPool renderPool;
+    private final Rectangle[] damages;
+    private final AtomicBoolean needsFullRedraw;
+    private final AtomicReference<Dimension> pendingSize;
+    private final AtomicBoolean spritesReloaded;
+
+    private final MidiEventRing midiEventRing;
+    private final NoteDataUpdater noteDataUpdater;
 
     public DisplayController(int width, int height, IResourceManager<BufferedImage> imageManager){
-        this.imageManager = imageManager;
+        this(width, height, imageManager, RenderMode.FULL);
+    }
+
+    public DisplayController(
+            int width,
+            int height,
+            IResourceManager<BufferedImage> imageManager,
+            RenderMode renderMode
+    ){
+        this(width, height, imageManager, renderMode, RenderBackend.GRAPHICS2D);
+    }
+
+    public DisplayController(
+            int width,
+            int height,
+            IResourceManager<BufferedImage> imageManager,
+            RenderMode renderMode,
+            RenderBackend renderBackend
+    ){
+        this(width, height, imageManager, renderMode, renderBackend, 1);
+    }
+
+    /**
+     * Constructs a {@code DisplayController}.
+     *
+     * @param width the width of the drawn image.
+     * @param height the height of the drawn image.
+     * @param imageManager the image manager which holds the required {@code BufferedImage} sprites.
+     * @param renderMode how much of each frame to redraw.
+     * @param renderBackend how to draw key sprites.
+     * @param renderParallelism the number of threads to draw with; values above 1 split each frame into one tile
+     *                          per channel, drawn on a {@code ForkJoinPool}, and require the raster backend.
+     *
+     * @throws IllegalArgumentException if the render parallelism is not positive, or is above 1 without the raster
+     * backend.
+     */
+    public DisplayController(
+            int width,
+            int height,
+            IResourceManager<BufferedImage> imageManager,
+            RenderMode renderMode,
+            RenderBackend renderBackend,
+            int renderParallelism
+    ){
+        this.renderMode = renderMode;
+        this.renderBackend = renderBackend;
+        renderPool = makeRenderPool(renderBackend, renderParallelism);
+        damages = makeDamages();
+        needsFullRedraw = new AtomicBoolean(true);
+        pendingSize = new AtomicReference<>();
+        spritesReloaded = new AtomicBoolean(false);
         toDraw = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         totalNoteData = new TotalNoteData();
-        totalDisplay = new TotalDisplay();
+        totalDisplay = new TotalDisplay(imageManager);
+        spriteCache = new ScaledSpriteCache(imageManager);
+        keyCompositor = makeKeyCompositor(renderBackend, renderPool, totalDisplay, imageManager);
+        midiEventRing = new MidiEventRing(MIDI_EVENT_RING_CAPACITY);
+        noteDataUpdater = new NoteDataUpdater(totalNoteData);
         updateReceiver = makeUpdateReceiver();
+        redrawRequestReceiver = (Void) -> needsFullRedraw.set(true);
+        resizeReceiver = (size) -> pendingSize.set(new Dimension(size));
+        spriteReloadReceiver = (Void) -> spritesReloaded.set(true);
         imageBroadcaster = new Subject<>();
-        midiMessageReceiver = new NoteDataUpdater(totalNoteData);
+        damageBroadcaster = new Subject<>();
+    }
+
+    /**
+     * Creates an array holding one empty rectangle per channel.
+     * @return an array holding one empty rectangle per channel.
+     */
+    private static Rectangle[] makeDamages(){
+        Rectangle[] damages = new Rectangle[NUM_CHANNELS];
+        for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+            damages[channel] = new Rectangle();
+        }
+        return damages;
+    }
+
+    /**
+     * Creates the pool to draw on for the given render backend and parallelism, if drawing is parallel.
+     *
+     * @param renderBackend the render backend.
+     * @param renderParallelism the number of threads to draw with.
+     * @return a pool with the given parallelism, or null if the parallelism is 1.
+     *
+     * @throws IllegalArgumentException if the render parallelism is not positive, or is above 1 without the raster
+     * backend.
+     */
+    private static ForkJoinPool makeRenderPool(RenderBackend renderBackend, int renderParallelism){
+        if(renderParallelism < 1){
+            throw new IllegalArgumentException("render parallelism must be positive: " + renderParallelism);
+        }
+        if(renderParallelism > 1 && renderBackend != RenderBackend.RASTER){
+            throw new IllegalArgumentException("parallel rendering requires the raster backend: " + renderBackend);
+        }
+        return renderParallelism > 1 ? new ForkJoinPool(renderParallelism) : null;
+    }
+
+    /**
+     * Creates the {@link IKeyCompositor} for the given render backend, drawing on the given pool if there is one.
+     *
+     * @param renderBackend the render backend.
+     * @param renderPool the pool to draw on, or null to draw on the calling thread.
+     * @param totalDisplay the {@code TotalDisplay} to draw.
+     * @param imageManager the image manager which holds the required {@code BufferedImage} sprites.
+     * @return the {@code IKeyCompositor} for the given render backend and pool.
+     */
+    private static IKeyCompositor makeKeyCompositor(
+            RenderBackend renderBackend,
+            ForkJoinPool renderPool,
+            TotalDisplay totalDisplay,
+            IResourceManager<BufferedImage> imageManager
+    ){
+        return switch(renderBackend){
+            case GRAPHICS2D -> new Graphics2DKeyCompositor(totalDisplay, imageManager);
+            case RASTER -> {
+                RasterKeyCompositor rasterKeyCompositor = new RasterKeyCompositor(totalDisplay, imageManager);
+                yield renderPool != null
+                        ? new ParallelKeyCompositor(rasterKeyCompositor, renderPool)
+                        : rasterKeyCompositor;
+            }
+        };
     }
 
+    /**
+     * Creates the update receiver, which drains all MIDI events received since the previous update into the note
+     * data before drawing and broadcasting the next frame. Runs on the update thread.
+     *
+     * @return the update receiver.
+     */
     private IObserver<Void> makeUpdateReceiver(){
         return (Void) -> {
-            totalDisplay.readAndUpdateNoteData(totalNoteData);
+            Dimension size = pendingSize.getAndSet(null);
+            if(size != null){
+                resize(size.width, size.height);
+            }
+            if(spritesReloaded.getAndSet(false)){
+                reloadSprites();
+            }
+            midiEventRing.drain(noteDataUpdater);
+            boolean changed = totalDisplay.readAndUpdateNoteData(totalNoteData);
 
-            Graphics2D g2d = toDraw.createGraphics();
-            totalDisplay.drawOn(g2d, imageManager);
-            g2d.dispose();
-
-            imageBroadcaster.broadcast(toDraw);
+            if(needsFullRedraw.getAndSet(false) || renderMode == RenderMode.FULL){
+                drawFullFrame();
+            }
+            else if(changed){
+                drawChangedRegions();
+            }
         };
     }
 
+    /**
+     * Lays the keys out again to fill an image of the given size and schedules a full redraw into it. The keys are
+     * stretched to fill the image, apart from at most a few rows at the bottom, and their sprites are scaled once per
+     * scale rather than on every frame. Does nothing if the image already has the given size.
+     *
+     * @param width the new width of the drawn image.
+     * @param height the new height of the drawn image.
+     */
+    private void resize(int width, int height){
+        //too short to give every channel a row of at least one pixel
+        if(width <= 0 || height < NUM_CHANNELS || (width == toDraw.getWidth() && height == toDraw.getHeight())){
+            return;
+        }
+        toDraw = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        layOut();
+    }
+
+    /**
+     * Discards every scaled sprite and lays the keys out again, so that sprites replaced in the image manager since
+     * the keys were laid out are drawn from the next frame on.
+     */
+    private void reloadSprites(){
+        spriteCache.cleanUp();
+        layOut();
+    }
+
+    /**
+     * Lays the keys out to fill the drawn image, with sprites scaled to match, and schedules a full redraw.
+     */
+    private void layOut(){
+        int width = toDraw.getWidth();
+        int height = toDraw.getHeight();
+        //channels are stacked, so rows must be a whole number of pixels tall to neither overlap nor leave gaps
+        int rowHeight = height / NUM_CHANNELS;
+        double scaleX = (double) width / TotalDisplay.UNSCALED_WIDTH;
+        double scaleY = (double) (rowHeight * NUM_CHANNELS) / TotalDisplay.UNSCALED_HEIGHT;
+
+        IResourceManager<BufferedImage> scaledImageManager = spriteCache.getImageManager(scaleX, scaleY);
+        keyCompositor.cleanUp();
+        totalDisplay = new TotalDisplay(scaleX, scaleY, scaledImageManager);
+        keyCompositor = makeKeyCompositor(renderBackend, renderPool, totalDisplay, scaledImageManager);
+        needsFullRedraw.set(true);
+    }
+
+    /**
+     * Redraws every key and broadcasts the whole image.
+     */
+    private void drawFullFrame(){
+        keyCompositor.drawAll(toDraw);
+
+        imageBroadcaster.broadcast(toDraw);
+    }
+
+    /**
+     * Redraws the keys which changed since the previous update, broadcasts the regions which were redrawn, and then
+     * broadcasts the image.
+     */
+    private void drawChangedRegions(){
+        keyCompositor.drawChanged(toDraw, damages);
+
+        for(Rectangle damage : damages){
+            if(!damage.isEmpty()){
+                damageBroadcaster.broadcast(damage);
+            }
+        }
+        imageBroadcaster.broadcast(toDraw);
+    }
+
     public IObserver<Void> getUpdateReceiver() {
         return updateReceiver;
     }
 
+    /**
+     * Returns the redraw request receiver, which causes the next update to redraw and broadcast the whole image. May
+     * be called from any thread.
+     *
+     * @return the redraw request receiver.
+     */
+    public IObserver<Void> getRedrawRequestReceiver() {
+        return redrawRequestReceiver;
+    }
+
+    /**
+     * Returns the resize receiver, which causes the next update to lay the keys out for, and draw into, an image of
+     * the received size in pixels. May be called from any thread.
+     *
+     * @return the resize receiver.
+     */
+    public IObserver<Dimension> getResizeReceiver() {
+        return resizeReceiver;
+    }
+
+    /**
+     * Returns the sprite reload receiver, which causes the next update to redraw every key from the sprites currently
+     * held by the image manager, rescaling them if necessary. Must be sent whenever a sprite is replaced in the image
+     * manager. May be called from any thread.
+     *
+     * @return the sprite reload receiver.
+     */
+    public IObserver<Void> getSpriteReloadReceiver() {
+        return spriteReloadReceiver;
+    }
+
     public ISubject<BufferedImage> getImageBroadcaster() {
         return imageBroadcaster;
     }
 
-    public IObserver<Tuple2<MidiMessage, Long>> getMidiMessageReceiver() {
-        return midiMessageReceiver;
+    /**
+     * Returns the subject through which the regions redrawn since the previous image are broadcast, just before the
+     * next image is broadcast. Only used by {@link RenderMode#INCREMENTAL}. The broadcast rectangles are reused
+     * between updates and must not be kept.
+     *
+     * @return the subject through which redrawn regions are broadcast.
+     */
+    public ISubject<Rectangle> getDamageBroadcaster() {
+        return damageBroadcaster;
+    }
+
+    /**
+     * Returns the MIDI message receiver, which publishes MIDI short messages to the event ring without touching the
+     * note data. It runs on the thread sending the messages, never blocks it, and never allocates.
+     *
+     * @return the MIDI message receiver.
+     */
+    public IShortMessageObserver getMidiMessageReceiver() {
+        return midiEventRing;
+    }
+
+    /**
+     * Returns the number of MIDI events dropped because the display fell too far behind to keep up.
+     * @return the number of MIDI events dropped because the display fell too far behind to keep up.
+     */
+    public long getDroppedMidiEventCount() {
+        return midiEventRing.getOverflowCount();
+    }
+
+    /**
+     * Releases the threads and scaled sprites held by this controller. Must be called after the update loop has
+     * stopped.
+     */
+    public void cleanUp() {
+        keyCompositor.cleanUp();
+        if(renderPool != null){
+            renderPool.shutdown();
+        }
+        spriteCache.cleanUp();
     }
 }
@@ -0,0 +1,63 @@
+package display;
+
+import resource.IResourceManager;
+import resource.ImageAtlas;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * A {@code Graphics2DKeyCompositor} implements {@link IKeyCompositor} by drawing each key sprite with
+ * {@code Graphics2D}. Every sprite is drawn from the same {@link ImageAtlas}, packed once at construction.
+ */
+class Graphics2DKeyCompositor implements IKeyCompositor {
+    private final TotalDisplay totalDisplay;
+    private final ImageAtlas imageAtlas;
+
+    /**
+     * Constructs a {@code Graphics2DKeyCompositor} which draws the given {@link TotalDisplay} with the sprites held by
+     * the given image manager.
+     *
+     * @param totalDisplay the {@code TotalDisplay} to draw.
+     * @param imageManager the image manager which holds the required {@code BufferedImage} sprites.
+     */
+    public Graphics2DKeyCompositor(TotalDisplay totalDisplay, IResourceManager<BufferedImage> imageManager){
+        this.totalDisplay = totalDisplay;
+        imageAtlas = new ImageAtlas(imageManager);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param target the image to draw into.
+     */
+    @Override
+    public void drawAll(BufferedImage target){
+        Graphics2D g2d = target.createGraphics();
+        totalDisplay.drawOn(g2d, imageAtlas);
+        g2d.dispose();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param target the image to draw into, which must hold the previously drawn keys.
+     * @param damages an array holding one rectangle per channel, each of which is set to the area redrawn on that
+     *                channel, or to an empty rectangle if nothing was redrawn.
+     */
+    @Override
+    public void drawChanged(BufferedImage target, Rectangle[] damages){
+        Graphics2D g2d = target.createGraphics();
+        totalDisplay.drawChangedOn(g2d, imageAtlas, damages);
+        g2d.dispose();
+    }
+
+    /**
+     * Flushes the image atlas.
+     */
+    @Override
+    public void cleanUp(){
+        imageAtlas.cleanUp();
+    }
+}
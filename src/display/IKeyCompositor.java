@@ -0,0 +1,32 @@
+package display;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * An {@code IKeyCompositor} draws the keys of a {@link TotalDisplay} into an image.
+ */
+interface IKeyCompositor {
+
+    /**
+     * Draws every key into the given image.
+     *
+     * @param target the image to draw into.
+     */
+    void drawAll(BufferedImage target);
+
+    /**
+     * Redraws only the keys which were pressed or released in the last call to
+     * {@link TotalDisplay#readAndUpdateNoteData}, together with the parts of neighbouring keys they overlap.
+     *
+     * @param target the image to draw into, which must hold the previously drawn keys.
+     * @param damages an array holding one rectangle per channel, each of which is set to the area redrawn on that
+     *                channel, or to an empty rectangle if nothing was redrawn.
+     */
+    void drawChanged(BufferedImage target, Rectangle[] damages);
+
+    /**
+     * Releases any threads or other resources held by this compositor. The compositor must not be used afterwards.
+     */
+    default void cleanUp(){}
+}
@@ -1,18 +1,16 @@
 package display;
 
+import midi.IShortMessageObserver;
 import midi.MidiConstants;
-import util.Tuple2;
-import util.observer.IObserver;
 
-import javax.sound.midi.MidiMessage;
 import javax.sound.midi.ShortMessage;
 
 /**
- * A {@code display.NoteDataUpdater} receives MIDI messages and correspondingly updates a {@link TotalNoteData} object
- * passed at construction.
+ * A {@code display.NoteDataUpdater} receives MIDI short messages and correspondingly updates a {@link TotalNoteData}
+ * object passed at construction.
  */
 @SuppressWarnings("ClassCanBeRecord")
-public class NoteDataUpdater implements IObserver<Tuple2<MidiMessage, Long>> {
+public class NoteDataUpdater implements IShortMessageObserver {
 
     private final TotalNoteData totalNoteData;
 
@@ -25,41 +23,43 @@ public class NoteDataUpdater implements IObserver<Tuple2<MidiMessage, Long>> {
     }
 
     /**
-     * Receives a MIDI message, and updates the {@link TotalNoteData} passed at construction if the message is
+     * Receives a MIDI short message, and updates the {@link TotalNoteData} passed at construction if the message is
      * a note on, note off, all notes off, or all sound off message.
      *
-     * @param messageTimeStampTuple a tuple containing the midi message and a time-stamp (unused).
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
+     * @param timeStamp the time-stamp of the message (unused).
      */
     @Override
-    public void update(Tuple2<MidiMessage, Long> messageTimeStampTuple) {
-        MidiMessage message = messageTimeStampTuple.a();
-        if(message instanceof ShortMessage shortMessage){
-            handleShortMessage(shortMessage);
-        }
+    public void onShortMessage(int status, int data1, int data2, long timeStamp) {
+        handleShortMessage(status, data1, data2);
     }
 
     /**
-     * Handles MIDI short messages, updating the {@link TotalNoteData} passed at construction if the message is
-     * a note on, note off, all notes off, or all sound off message.
+     * Handles a MIDI short message given as its status and data bytes, updating the {@link TotalNoteData} passed at
+     * construction if the message is a note on, note off, all notes off, or all sound off message.
      *
-     * @param shortMessage the MIDI short message to handle.
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
      */
-    private void handleShortMessage(ShortMessage shortMessage) {
-        switch(shortMessage.getCommand()){
+    private void handleShortMessage(int status, int data1, int data2) {
+        int channel = status & MidiConstants.CHANNEL_MASK;
+        switch(status & MidiConstants.COMMAND_MASK){
             case ShortMessage.NOTE_ON -> {
-                int velocity = shortMessage.getData2();
-                if(velocity > 0) {
-                    totalNoteData.pressNote(shortMessage.getChannel(), shortMessage.getData1());
-                }
                 //a note on event with velocity 0 is equivalent to a note off event
+                if(data2 > 0) {
+                    totalNoteData.pressNote(channel, data1);
+                }
                 else{
-                    totalNoteData.releaseNote(shortMessage.getChannel(), shortMessage.getData1());
+                    totalNoteData.releaseNote(channel, data1);
                 }
             }
             case ShortMessage.NOTE_OFF ->
-                totalNoteData.releaseNote(shortMessage.getChannel(), shortMessage.getData1());
+                totalNoteData.releaseNote(channel, data1);
             case ShortMessage.CONTROL_CHANGE ->
-                handleControlChange(shortMessage);
+                handleControlChange(data1);
         }
     }
 
@@ -67,10 +67,10 @@ public class NoteDataUpdater implements IObserver<Tuple2<MidiMessage, Long>> {
      * Handles MIDI control change messages, updating the {@link TotalNoteData} passed at construction if the
      * message is an all notes off or an all sound off.
      *
-     * @param controlChangeMessage the MIDI control change message to handle.
+     * @param controller the controller number of the control change message.
      */
-    private void handleControlChange(ShortMessage controlChangeMessage){
-        switch(controlChangeMessage.getData1()){
+    private void handleControlChange(int controller){
+        switch(controller){
             case MidiConstants.ALL_SOUND_OFF, MidiConstants.ALL_NOTES_OFF -> totalNoteData.reset();
         }
     }
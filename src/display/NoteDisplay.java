@@ -7,22 +7,22 @@ import util.DoublePoint;
  */
 public class NoteDisplay {
     private final DoublePoint pos;
-    private final String upSimage;
-    private final String downSimage;
+    private final int upSprite;
+    private final int downSprite;
     private boolean pressed;
 
     /**
-     * Constructs a {@code display.NoteDisplay} at the specified position with the given string images for its up and down
-     * sprites.
+     * Constructs a {@code display.NoteDisplay} at the specified position with the given image handles for its up and
+     * down sprites.
      *
      * @param pos the position of the top-left corner.
-     * @param upSimage the string image for the note-up sprite.
-     * @param downSimage the string image for the note-down sprite.
+     * @param upSprite the image handle of the note-up sprite.
+     * @param downSprite the image handle of the note-down sprite.
      */
-    public NoteDisplay(DoublePoint pos, String upSimage, String downSimage) {
+    public NoteDisplay(DoublePoint pos, int upSprite, int downSprite) {
         this.pos = pos;
-        this.upSimage = upSimage;
-        this.downSimage = downSimage;
+        this.upSprite = upSprite;
+        this.downSprite = downSprite;
         pressed = false;
     }
 
@@ -35,22 +35,38 @@ public class NoteDisplay {
     }
 
     /**
-     * Returns either the up or down string image depending on if this {@code display.NoteDisplay} has been pressed or not.
-     * @return either the up or down string image depending on if this {@code display.NoteDisplay} has been pressed or not.
+     * Returns either the up or down image handle depending on if this {@code display.NoteDisplay} has been pressed or not.
+     * @return either the up or down image handle depending on if this {@code display.NoteDisplay} has been pressed or not.
      */
-    public String getSimage() {
-        return pressed ? downSimage : upSimage;
+    public int getSprite() {
+        return pressed ? downSprite : upSprite;
     }
 
     /**
-     * Presses down this {@code display.NoteDisplay}, setting the string image to the down state.
+     * Returns the image handle of the note-up sprite.
+     * @return the image handle of the note-up sprite.
+     */
+    public int getUpSprite() {
+        return upSprite;
+    }
+
+    /**
+     * Returns the image handle of the note-down sprite.
+     * @return the image handle of the note-down sprite.
+     */
+    public int getDownSprite() {
+        return downSprite;
+    }
+
+    /**
+     * Presses down this {@code display.NoteDisplay}, setting the sprite to the down state.
      */
     public void press(){
         pressed = true;
     }
 
     /**
-     * Releases this {@code display.NoteDisplay}, setting the string image to the up state.
+     * Releases this {@code display.NoteDisplay}, setting the sprite to the up state.
      */
     public void release(){
         pressed = false;
@@ -0,0 +1,133 @@
+package display;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static midi.MidiConstants.NUM_CHANNELS;
+
+/**
+ * A {@code ParallelKeyCompositor} implements {@link IKeyCompositor} by splitting each frame into horizontal tiles,
+ * one per channel band, and drawing the tiles concurrently on a {@code ForkJoinPool} with a
+ * {@link RasterKeyCompositor}.
+ * <p>
+ * The tasks are created once and reinitialized for every frame, so drawing a frame does not allocate. The pool is
+ * given to the compositor rather than owned by it, so that it outlives the compositor when the display is resized.
+ */
+class ParallelKeyCompositor implements IKeyCompositor {
+    private final RasterKeyCompositor rasterKeyCompositor;
+    private final ForkJoinPool pool;
+
+    private final TileTask[] tileTasks;
+    private final FrameTask frameTask;
+
+    //the arguments of the frame being drawn; written before the frame task is invoked, which publishes them
+    private BufferedImage target;
+    private Rectangle[] damages;
+    private boolean changedOnly;
+
+    /**
+     * Constructs a {@code ParallelKeyCompositor} which draws with the given {@link RasterKeyCompositor} on the given
+     * pool.
+     *
+     * @param rasterKeyCompositor the compositor used to draw each tile.
+     * @param pool the pool to draw on, which the caller shuts down once no compositor uses it.
+     */
+    public ParallelKeyCompositor(RasterKeyCompositor rasterKeyCompositor, ForkJoinPool pool){
+        this.rasterKeyCompositor = rasterKeyCompositor;
+        this.pool = pool;
+        tileTasks = new TileTask[NUM_CHANNELS];
+        for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+            tileTasks[channel] = new TileTask(channel);
+        }
+        frameTask = new FrameTask();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param target the image to draw into.
+     */
+    @Override
+    public void drawAll(BufferedImage target){
+        drawFrame(target, null, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param target the image to draw into, which must hold the previously drawn keys.
+     * @param damages an array holding one rectangle per channel, each of which is set to the area redrawn on that
+     *                channel, or to an empty rectangle if nothing was redrawn.
+     */
+    @Override
+    public void drawChanged(BufferedImage target, Rectangle[] damages){
+        drawFrame(target, damages, true);
+    }
+
+    /**
+     * Releases whatever the tile compositor holds, leaving the pool running.
+     */
+    @Override
+    public void cleanUp(){
+        rasterKeyCompositor.cleanUp();
+    }
+
+    /**
+     * Draws every tile on the pool and waits for all of them to finish.
+     *
+     * @param target the image to draw into.
+     * @param damages the damage rectangles to fill in, or null if every key is drawn.
+     * @param changedOnly true to only redraw changed keys, false to draw every key.
+     */
+    private void drawFrame(BufferedImage target, Rectangle[] damages, boolean changedOnly){
+        this.target = target;
+        this.damages = damages;
+        this.changedOnly = changedOnly;
+        for(TileTask tileTask : tileTasks){
+            tileTask.reinitialize();
+        }
+        frameTask.reinitialize();
+        pool.invoke(frameTask);
+        this.target = null;
+        this.damages = null;
+    }
+
+    /**
+     * A {@code FrameTask} forks every tile task and joins them.
+     */
+    @SuppressWarnings("serial")
+    private final class FrameTask extends RecursiveAction {
+        @Override
+        protected void compute(){
+            invokeAll(tileTasks);
+        }
+    }
+
+    /**
+     * A {@code TileTask} draws the band of a single channel.
+     */
+    @SuppressWarnings("serial")
+    private final class TileTask extends RecursiveAction {
+        private final int channel;
+
+        /**
+         * Constructs a {@code TileTask} which draws the band of the given channel.
+         * @param channel the channel to draw.
+         */
+        TileTask(int channel){
+            this.channel = channel;
+        }
+
+        @Override
+        protected void compute(){
+            if(changedOnly){
+                rasterKeyCompositor.drawChangedChannel(target, channel, damages[channel]);
+            }
+            else{
+                rasterKeyCompositor.drawChannel(target, channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package display;
+
+import resource.IResourceManager;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import static midi.MidiConstants.NUM_CHANNELS;
+import static midi.MidiConstants.NUM_NOTES;
+
+/**
+ * A {@code RasterKeyCompositor} implements {@link IKeyCompositor} by copying key sprites directly into the
+ * {@code DataBufferInt} of the target image.
+ * <p>
+ * The key layout of the {@link TotalDisplay} is read once at construction into parallel {@code int} arrays indexed by
+ * key, where the key of a note on a channel is {@code channel * 128 + note}, the same as its bit index in
+ * {@link TotalNoteData}. Each sprite is converted into runs of opaque pixels, which are copied with
+ * {@code System.arraycopy}, and a list of translucent pixels, which are blended one at a time.
+ * <p>
+ * Each channel is drawn only within its own band, the rows covered by its keys, so channels may be drawn concurrently
+ * as long as their bands do not overlap.
+ */
+class RasterKeyCompositor implements IKeyCompositor {
+    private static final int NUM_KEYS = NUM_CHANNELS * NUM_NOTES;
+
+    //how many notes to either side of a note can overlap it
+    private static final int OVERLAP_RANGE = 2;
+
+    private static final int WORDS_PER_CHANNEL = NUM_NOTES / Long.SIZE;
+
+    private final TotalDisplay totalDisplay;
+
+    //key layout; one entry per key
+    private final int[] keyX;
+    private final int[] keyY;
+    private final int[] keyUpSprite;
+    private final int[] keyDownSprite;
+    private final boolean[] keyIsWhite;
+    //the union of the up and down sprites of each key
+    private final int[] keyWidth;
+    private final int[] keyHeight;
+
+    //the vertical extent of the keys of each channel; one entry per channel
+    private final int[] bandY1;
+    private final int[] bandY2;
+
+    //indexed by image handle; only the handles used by keys are converted
+    private final RasterSprite[] sprites;
+
+    /**
+     * Constructs a {@code RasterKeyCompositor} which draws the given {@link TotalDisplay} with the sprites held by the
+     * given image manager. The layout and sprites are read once, at construction.
+     *
+     * @param totalDisplay the {@code TotalDisplay} to draw.
+     * @param imageManager the image manager which holds the required {@code BufferedImage} sprites.
+     */
+    public RasterKeyCompositor(TotalDisplay totalDisplay, IResourceManager<BufferedImage> imageManager){
+        this.totalDisplay = totalDisplay;
+        keyX = new int[NUM_KEYS];
+        keyY = new int[NUM_KEYS];
+        keyUpSprite = new int[NUM_KEYS];
+        keyDownSprite = new int[NUM_KEYS];
+        keyIsWhite = new boolean[NUM_KEYS];
+        keyWidth = new int[NUM_KEYS];
+        keyHeight = new int[NUM_KEYS];
+        bandY1 = new int[NUM_CHANNELS];
+        bandY2 = new int[NUM_CHANNELS];
+
+        sprites = new RasterSprite[imageManager.getHandleCount()];
+        for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+            ChannelDisplay channelDisplay = totalDisplay.getChannelDisplay(channel);
+            bandY1[channel] = Integer.MAX_VALUE;
+            bandY2[channel] = Integer.MIN_VALUE;
+            for(int note = 0; note < NUM_NOTES; ++note){
+                NoteDisplay noteDisplay = channelDisplay.getNoteDisplay(note);
+                int key = channel * NUM_NOTES + note;
+                keyX[key] = (int) noteDisplay.getPos().x();
+                keyY[key] = (int) noteDisplay.getPos().y();
+                keyUpSprite[key] = noteDisplay.getUpSprite();
+                keyDownSprite[key] = noteDisplay.getDownSprite();
+                keyIsWhite[key] = ChannelDisplay.isWhiteNote(note % ChannelDisplay.NUM_PITCH_CLASSES);
+                RasterSprite upSprite = getSprite(keyUpSprite[key], imageManager);
+                RasterSprite downSprite = getSprite(keyDownSprite[key], imageManager);
+                keyWidth[key] = Math.max(upSprite.width, downSprite.width);
+                keyHeight[key] = Math.max(upSprite.height, downSprite.height);
+                bandY1[channel] = Math.min(bandY1[channel], keyY[key]);
+                bandY2[channel] = Math.max(bandY2[channel], keyY[key] + keyHeight[key]);
+            }
+        }
+    }
+
+    /**
+     * Returns the sprite with the given image handle, converting the sprite if it has not been converted before.
+     *
+     * @param handle the image handle of the sprite.
+     * @param imageManager the image manager which holds the sprite.
+     *
+     * @return the sprite with the given image handle.
+     */
+    private RasterSprite getSprite(int handle, IResourceManager<BufferedImage> imageManager){
+        if(sprites[handle] == null){
+            sprites[handle] = new RasterSprite(imageManager.getResource(handle).getData());
+        }
+        return sprites[handle];
+    }
+
+    /**
+     * Returns the pixel array of the given image.
+     *
+     * @param target the image.
+     *
+     * @return the pixel array of the given image.
+     *
+     * @throws IllegalArgumentException if the image is not backed by a {@code DataBufferInt}.
+     */
+    private static int[] getPixels(BufferedImage target){
+        if(!(target.getRaster().getDataBuffer() instanceof DataBufferInt dataBuffer)){
+            throw new IllegalArgumentException("raster compositing requires an int backed image: " + target);
+        }
+        return dataBuffer.getData();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param target the image to draw into.
+     */
+    @Override
+    public void drawAll(BufferedImage target){
+        for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+            drawChannel(target, channel);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param target the image to draw into, which must hold the previously drawn keys.
+     * @param damages an array holding one rectangle per channel, each of which is set to the area redrawn on that
+     *                channel, or to an empty rectangle if nothing was redrawn.
+     */
+    @Override
+    public void drawChanged(BufferedImage target, Rectangle[] damages){
+        for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+            drawChangedChannel(target, channel, damages[channel]);
+        }
+    }
+
+    /**
+     * Draws every key of the specified channel into the given image, without drawing outside the band of that
+     * channel. Calls for different channels may run concurrently.
+     *
+     * @param target the image to draw into.
+     * @param channel the channel to draw.
+     */
+    void drawChannel(BufferedImage target, int channel){
+        int[] pixels = getPixels(target);
+        int width = target.getWidth();
+        int clipY1 = Math.max(0, bandY1[channel]);
+        int clipY2 = Math.min(target.getHeight(), bandY2[channel]);
+        long[] noteWords = totalDisplay.getNoteWords();
+        int firstKey = channel * NUM_NOTES;
+        int endKey = firstKey + NUM_NOTES;
+        //draw all the white notes, then all the black notes on top
+        for(int key = firstKey; key < endKey; ++key){
+            if(keyIsWhite[key]){
+                drawKey(pixels, width, noteWords, key, 0, clipY1, width, clipY2);
+            }
+        }
+        for(int key = firstKey; key < endKey; ++key){
+            if(!keyIsWhite[key]){
+                drawKey(pixels, width, noteWords, key, 0, clipY1, width, clipY2);
+            }
+        }
+    }
+
+    /**
+     * Redraws only the keys of the specified channel which were pressed or released in the last call to
+     * {@link TotalDisplay#readAndUpdateNoteData}, without drawing outside the band of that channel. Calls for different
+     * channels may run concurrently.
+     *
+     * @param target the image to draw into, which must hold the previously drawn keys.
+     * @param channel the channel to draw.
+     * @param damage the rectangle to set to the area redrawn, or to an empty rectangle if nothing was redrawn.
+     */
+    void drawChangedChannel(BufferedImage target, int channel, Rectangle damage){
+        int[] pixels = getPixels(target);
+        int width = target.getWidth();
+        int clipY1 = Math.max(0, bandY1[channel]);
+        int clipY2 = Math.min(target.getHeight(), bandY2[channel]);
+        long[] noteWords = totalDisplay.getNoteWords();
+        long[] changedNoteWords = totalDisplay.getChangedNoteWords();
+        damage.setBounds(0, 0, 0, 0);
+        int firstWord = channel * WORDS_PER_CHANNEL;
+        for(int wordIndex = firstWord; wordIndex < firstWord + WORDS_PER_CHANNEL; ++wordIndex){
+            long changedBits = changedNoteWords[wordIndex];
+            while(changedBits != 0){
+                int key = wordIndex * Long.SIZE + Long.numberOfTrailingZeros(changedBits);
+                changedBits &= changedBits - 1;
+                redrawKey(pixels, width, clipY1, clipY2, noteWords, key, damage);
+            }
+        }
+    }
+
+    /**
+     * Redraws the given key clipped to the area covered by either of its sprites, together with any neighbouring keys
+     * within that area, and adds that area to the given damage.
+     *
+     * @param pixels the pixel array to draw into.
+     * @param width the width of the image.
+     * @param bandTop the top edge of the band of the key's channel, inclusive.
+     * @param bandBottom the bottom edge of the band of the key's channel, exclusive.
+     * @param noteWords the note words holding which keys are pressed.
+     * @param key the key to redraw.
+     * @param damage the rectangle to which the redrawn area is added.
+     */
+    private void redrawKey(
+            int[] pixels,
+            int width,
+            int bandTop,
+            int bandBottom,
+            long[] noteWords,
+            int key,
+            Rectangle damage
+    ){
+        int x = keyX[key];
+        int y = keyY[key];
+        addDamage(damage, x, y, keyWidth[key], keyHeight[key]);
+        int clipX1 = Math.max(0, x);
+        int clipY1 = Math.max(bandTop, y);
+        int clipX2 = Math.min(width, x + keyWidth[key]);
+        int clipY2 = Math.min(bandBottom, y + keyHeight[key]);
+
+        int channelStart = key - key % NUM_NOTES;
+        int lowestKey = Math.max(channelStart, key - OVERLAP_RANGE);
+        int highestKey = Math.min(channelStart + NUM_NOTES - 1, key + OVERLAP_RANGE);
+        for(int neighbour = lowestKey; neighbour <= highestKey; ++neighbour){
+            if(keyIsWhite[neighbour]){
+                drawKey(pixels, width, noteWords, neighbour, clipX1, clipY1, clipX2, clipY2);
+            }
+        }
+        for(int neighbour = lowestKey; neighbour <= highestKey; ++neighbour){
+            if(!keyIsWhite[neighbour]){
+                drawKey(pixels, width, noteWords, neighbour, clipX1, clipY1, clipX2, clipY2);
+            }
+        }
+    }
+
+    /**
+     * Adds the given area to the given damage without allocating.
+     *
+     * @param damage the rectangle to add to.
+     * @param x the x coordinate of the area.
+     * @param y the y coordinate of the area.
+     * @param width the width of the area.
+     * @param height the height of the area.
+     */
+    private static void addDamage(Rectangle damage, int x, int y, int width, int height){
+        if(damage.isEmpty()){
+            damage.setBounds(x, y, width, height);
+        }
+        else{
+            int x1 = Math.min(damage.x, x);
+            int y1 = Math.min(damage.y, y);
+            int x2 = Math.max(damage.x + damage.width, x + width);
+            int y2 = Math.max(damage.y + damage.height, y + height);
+            damage.setBounds(x1, y1, x2 - x1, y2 - y1);
+        }
+    }
+
+    /**
+     * Draws the current sprite of the given key clipped to the given rectangle.
+     *
+     * @param pixels the pixel array to draw into.
+     * @param stride the width of the image.
+     * @param noteWords the note words holding which keys are pressed.
+     * @param key the key to draw.
+     * @param clipX1 the left edge of the clip, inclusive.
+     * @param clipY1 the top edge of the clip, inclusive.
+     * @param clipX2 the right edge of the clip, exclusive.
+     * @param clipY2 the bottom edge of the clip, exclusive.
+     */
+    private void drawKey(
+            int[] pixels,
+            int stride,
+            long[] noteWords,
+            int key,
+            int clipX1,
+            int clipY1,
+            int clipX2,
+            int clipY2
+    ){
+        boolean pressed = (noteWords[key / Long.SIZE] & (1L << key)) != 0;
+        RasterSprite sprite = sprites[pressed ? keyDownSprite[key] : keyUpSprite[key]];
+        sprite.drawOn(pixels, stride, keyX[key], keyY[key], clipX1, clipY1, clipX2, clipY2);
+    }
+
+    /**
+     * A {@code RasterSprite} holds the pixels of a sprite split into runs of opaque pixels and a list of translucent
+     * pixels. Fully transparent pixels are dropped.
+     */
+    private static final class RasterSprite {
+        private static final int ALPHA_SHIFT = 24;
+        private static final int OPAQUE = 0xFF;
+
+        private final int width;
+        private final int height;
+        private final int[] argb;
+
+        //runs of opaque pixels; one entry per run
+        private final int[] runY;
+        private final int[] runX;
+        private final int[] runLength;
+
+        //translucent pixels; one entry per pixel
+        private final int[] blendY;
+        private final int[] blendX;
+
+        /**
+         * Constructs a {@code RasterSprite} from the given image.
+         *
+         * @param image the image to convert.
+         */
+        RasterSprite(BufferedImage image){
+            width = image.getWidth();
+            height = image.getHeight();
+            argb = image.getRGB(0, 0, width, height, null, 0, width);
+
+            int numRuns = 0;
+            int numBlends = 0;
+            int[] runYs = new int[argb.length];
+            int[] runXs = new int[argb.length];
+            int[] runLengths = new int[argb.length];
+            int[] blendYs = new int[argb.length];
+            int[] blendXs = new int[argb.length];
+            for(int y = 0; y < height; ++y){
+                int x = 0;
+                while(x < width){
+                    int alpha = argb[y * width + x] >>> ALPHA_SHIFT;
+                    if(alpha == OPAQUE){
+                        int start = x;
+                        while(x < width && argb[y * width + x] >>> ALPHA_SHIFT == OPAQUE){
+                            ++x;
+                        }
+                        runYs[numRuns] = y;
+                        runXs[numRuns] = start;
+                        runLengths[numRuns] = x - start;
+                        ++numRuns;
+                    }
+                    else{
+                        if(alpha != 0){
+                            blendYs[numBlends] = y;
+                            blendXs[numBlends] = x;
+                            ++numBlends;
+                        }
+                        ++x;
+                    }
+                }
+            }
+            runY = Arrays.copyOf(runYs, numRuns);
+            runX = Arrays.copyOf(runXs, numRuns);
+            runLength = Arrays.copyOf(runLengths, numRuns);
+            blendY = Arrays.copyOf(blendYs, numBlends);
+            blendX = Arrays.copyOf(blendXs, numBlends);
+        }
+
+        /**
+         * Draws this sprite into the given pixel array at the given position, clipped to the given rectangle.
+         *
+         * @param pixels the pixel array to draw into.
+         * @param stride the width of the image.
+         * @param x the x coordinate of the top-left corner of the sprite.
+         * @param y the y coordinate of the top-left corner of the sprite.
+         * @param clipX1 the left edge of the clip, inclusive.
+         * @param clipY1 the top edge of the clip, inclusive.
+         * @param clipX2 the right edge of the clip, exclusive.
+         * @param clipY2 the bottom edge of the clip, exclusive.
+         */
+        void drawOn(int[] pixels, int stride, int x, int y, int clipX1, int clipY1, int clipX2, int clipY2){
+            for(int run = 0; run < runY.length; ++run){
+                int destY = y + runY[run];
+                if(destY < clipY1 || destY >= clipY2){
+                    continue;
+                }
+                int destX = x + runX[run];
+                int start = Math.max(destX, clipX1);
+                int end = Math.min(destX + runLength[run], clipX2);
+                if(start < end){
+                    System.arraycopy(
+                            argb,
+                            runY[run] * width + runX[run] + (start - destX),
+                            pixels,
+                            destY * stride + start,
+                            end - start
+                    );
+                }
+            }
+            for(int blend = 0; blend < blendY.length; ++blend){
+                int destY = y + blendY[blend];
+                int destX = x + blendX[blend];
+                if(destY >= clipY1 && destY < clipY2 && destX >= clipX1 && destX < clipX2){
+                    int index = destY * stride + destX;
+                    pixels[index] = blendPixel(pixels[index], argb[blendY[blend] * width + blendX[blend]]);
+                }
+            }
+        }
+
+        /**
+         * Returns the result of drawing the given translucent source pixel over the given destination pixel.
+         *
+         * @param dest the destination pixel, whose alpha is ignored.
+         * @param source the source pixel.
+         *
+         * @return the blended pixel.
+         */
+        private static int blendPixel(int dest, int source){
+            int alpha = source >>> ALPHA_SHIFT;
+            int inverseAlpha = OPAQUE - alpha;
+            int red = (((source >> 16) & 0xFF) * alpha + ((dest >> 16) & 0xFF) * inverseAlpha) / OPAQUE;
+            int green = (((source >> 8) & 0xFF) * alpha + ((dest >> 8) & 0xFF) * inverseAlpha) / OPAQUE;
+            int blue = ((source & 0xFF) * alpha + (dest & 0xFF) * inverseAlpha) / OPAQUE;
+            return red << 16 | green << 8 | blue;
+        }
+    }
+}
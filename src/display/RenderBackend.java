@@ -0,0 +1,19 @@
+package display;
+
+/**
+ * A {@code RenderBackend} determines how a {@link DisplayController} draws key sprites.
+ *
+ * @see #GRAPHICS2D
+ * @see #RASTER
+ */
+public enum RenderBackend {
+    /**
+     * Each key sprite is drawn with {@code Graphics2D.drawImage}.
+     */
+    GRAPHICS2D,
+    /**
+     * Key sprites are copied row by row directly into the pixel array of the image. Requires an image backed by a
+     * {@code DataBufferInt}.
+     */
+    RASTER
+}
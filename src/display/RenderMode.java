@@ -0,0 +1,20 @@
+package display;
+
+/**
+ * A {@code RenderMode} determines how much of each frame a {@link DisplayController} redraws.
+ *
+ * @see #FULL
+ * @see #INCREMENTAL
+ */
+public enum RenderMode {
+    /**
+     * Every key is redrawn on every update, and the whole image is broadcast.
+     */
+    FULL,
+    /**
+     * Only keys which were pressed or released since the previous update are redrawn, together with the parts of
+     * neighbouring keys they overlap. The redrawn regions are broadcast ahead of the image, and updates in which no
+     * key changed are skipped entirely.
+     */
+    INCREMENTAL
+}
@@ -0,0 +1,212 @@
+package display;
+
+import resource.IResourceManager;
+import resource.Resource;
+import util.image.ImageUtil;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@code ScaledSpriteCache} provides views of an image manager in which every sprite is scaled by a given factor.
+ * Each sprite is scaled once, the first time it is requested at a given scale, and kept until its scale is evicted.
+ * Only the most recently used scales are kept, so resizing a window back and forth does not rescale every sprite
+ * and does not grow the cache without bound.
+ * <p>
+ * This class is not thread-safe; it is used only from the update thread.
+ */
+class ScaledSpriteCache {
+    //enough to cover a window being resized back and forth, or moved between screens
+    private static final int MAX_CACHED_SCALES = 4;
+    //keeps sizes which are whole numbers of pixels, give or take rounding error, from being rounded up
+    private static final double SIZE_EPSILON = 1e-6;
+
+    private final IResourceManager<BufferedImage> imageManager;
+    private final Map<Scale, ScaledImageManager> scaledImageManagers;
+
+    /**
+     * Constructs a {@code ScaledSpriteCache} which scales the sprites of the given image manager.
+     *
+     * @param imageManager the image manager which holds the unscaled sprites.
+     */
+    public ScaledSpriteCache(IResourceManager<BufferedImage> imageManager){
+        this.imageManager = imageManager;
+        scaledImageManagers = new LinkedHashMap<>(MAX_CACHED_SCALES, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Scale, ScaledImageManager> eldest){
+                if(size() > MAX_CACHED_SCALES){
+                    eldest.getValue().cleanUp();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns an image manager holding the sprites scaled by the given factors. Scale 1 returns the unscaled image
+     * manager.
+     *
+     * @param scaleX the horizontal scale.
+     * @param scaleY the vertical scale.
+     * @return an image manager holding the sprites scaled by the given factors.
+     */
+    public IResourceManager<BufferedImage> getImageManager(double scaleX, double scaleY){
+        if(scaleX == 1.0 && scaleY == 1.0){
+            return imageManager;
+        }
+        return scaledImageManagers.computeIfAbsent(new Scale(scaleX, scaleY), ScaledImageManager::new);
+    }
+
+    /**
+     * Evicts every scaled sprite.
+     */
+    public void cleanUp(){
+        for(ScaledImageManager scaledImageManager : scaledImageManagers.values()){
+            scaledImageManager.cleanUp();
+        }
+        scaledImageManagers.clear();
+    }
+
+    /**
+     * Returns a copy of the given image scaled by the given factors, in a format compatible with the screen. The
+     * scaled size is rounded up, so sprites laid out edge to edge at the same scale never leave gaps between each
+     * other.
+     *
+     * @param image the image to scale.
+     * @param scale the scale.
+     * @return a copy of the given image scaled by the given factors.
+     */
+    private static BufferedImage scaleImage(BufferedImage image, Scale scale){
+        int width = Math.max(1, (int) Math.ceil(image.getWidth() * scale.x() - SIZE_EPSILON));
+        int height = Math.max(1, (int) Math.ceil(image.getHeight() * scale.y() - SIZE_EPSILON));
+        BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaledImage.createGraphics();
+        try{
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.drawImage(image, 0, 0, width, height, null);
+        }
+        finally{
+            g2d.dispose();
+        }
+        return ImageUtil.toCompatibleImage(scaledImage);
+    }
+
+    /**
+     * A pair of scale factors.
+     *
+     * @param x the horizontal scale.
+     * @param y the vertical scale.
+     */
+    private record Scale(double x, double y){}
+
+    /**
+     * A read-only view of the unscaled image manager in which every sprite is scaled on first use. Handles are those
+     * of the unscaled image manager.
+     */
+    private class ScaledImageManager implements IResourceManager<BufferedImage> {
+        private final Scale scale;
+        //indexed by handle
+        private final List<Resource<BufferedImage>> scaledResources;
+
+        /**
+         * Constructs a {@code ScaledImageManager} for the given scale.
+         *
+         * @param scale the scale.
+         */
+        private ScaledImageManager(Scale scale){
+            this.scale = scale;
+            scaledResources = new ArrayList<>();
+        }
+
+        /**
+         * Returns the resource associated with the given string id, with its image scaled.
+         *
+         * @param id the string id for which it is required to find the associated resource.
+         * @return the resource associated with the given string id, with its image scaled.
+         */
+        @Override
+        public Resource<BufferedImage> getResource(String id){
+            return getResource(getHandle(id));
+        }
+
+        /**
+         * Returns the handle of the given string id in the unscaled image manager.
+         *
+         * @param id the string id to resolve.
+         * @return the handle of the given string id.
+         */
+        @Override
+        public int getHandle(String id){
+            return imageManager.getHandle(id);
+        }
+
+        /**
+         * Returns the resource associated with the given handle, with its image scaled.
+         *
+         * @param handle the handle, as returned by {@link #getHandle}.
+         * @return the resource associated with the given handle, with its image scaled, or null if no resource has
+         * been loaded for it yet.
+         */
+        @Override
+        public Resource<BufferedImage> getResource(int handle){
+            while(scaledResources.size() <= handle){
+                scaledResources.add(null);
+            }
+            Resource<BufferedImage> scaledResource = scaledResources.get(handle);
+            if(scaledResource == null){
+                Resource<BufferedImage> resource = imageManager.getResource(handle);
+                if(resource == null){
+                    return null;
+                }
+                scaledResource = new Resource<>(
+                        resource.getId(),
+                        resource.getFileOrigin(),
+                        scaleImage(resource.getData(), scale),
+                        resource.getType()
+                );
+                scaledResources.set(handle, scaledResource);
+            }
+            return scaledResource;
+        }
+
+        /**
+         * Returns the number of handles assigned by the unscaled image manager.
+         * @return the number of handles assigned by the unscaled image manager.
+         */
+        @Override
+        public int getHandleCount(){
+            return imageManager.getHandleCount();
+        }
+
+        /**
+         * Throws an exception; scaled views cannot be loaded into.
+         *
+         * @param resource the resource to add to this manager.
+         *
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public void loadResource(Resource<BufferedImage> resource){
+            throw new UnsupportedOperationException("cannot load into a scaled view: " + resource.getId());
+        }
+
+        /**
+         * Flushes and discards every scaled sprite.
+         */
+        @Override
+        public void cleanUp(){
+            for(Resource<BufferedImage> scaledResource : scaledResources){
+                if(scaledResource != null){
+                    scaledResource.getData().flush();
+                }
+            }
+            scaledResources.clear();
+        }
+    }
+}
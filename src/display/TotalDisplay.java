@@ -1,6 +1,7 @@
 package display;
 
 import resource.IResourceManager;
+import resource.ImageAtlas;
 import util.DoublePoint;
 
 import java.awt.*;
@@ -16,54 +17,172 @@ public class TotalDisplay {
     //notes are 30 pixels tall
     private static final int Y_SHIFT = 30;
 
+    static final int UNSCALED_WIDTH = ChannelDisplay.UNSCALED_WIDTH;
+    static final int UNSCALED_HEIGHT = Y_SHIFT * NUM_CHANNELS;
+
     private final ChannelDisplay[] channelDisplays;
 
+    //note bitsets as read from the display.TotalNoteData; see display.TotalNoteData#snapshot
+    private long[] previousNoteWords;
+    private long[] currentNoteWords;
+    private final long[] changedNoteWords;
+
     /**
      * Constructs a {@code display.TotalDisplay} with the upper-left corner at (0, 0).
+     *
+     * @param imageManager the image manager used to resolve the sprites of the notes to handles.
      */
-    public TotalDisplay(){
-        channelDisplays = makeChannelDisplays(new DoublePoint());
+    public TotalDisplay(IResourceManager<BufferedImage> imageManager){
+        this(1.0, 1.0, imageManager);
+    }
+
+    /**
+     * Constructs a {@code display.TotalDisplay} with the upper-left corner at (0, 0), laid out at the given scale.
+     * At scale 1 the display is {@value #UNSCALED_WIDTH} by {@value #UNSCALED_HEIGHT} pixels.
+     *
+     * @param scaleX the horizontal scale of the layout.
+     * @param scaleY the vertical scale of the layout.
+     * @param imageManager the image manager used to resolve the sprites of the notes to handles.
+     */
+    public TotalDisplay(double scaleX, double scaleY, IResourceManager<BufferedImage> imageManager){
+        channelDisplays = makeChannelDisplays(new DoublePoint(), scaleX, scaleY, imageManager);
+        previousNoteWords = new long[TotalNoteData.NUM_WORDS];
+        currentNoteWords = new long[TotalNoteData.NUM_WORDS];
+        changedNoteWords = new long[TotalNoteData.NUM_WORDS];
     }
 
     /**
      * Creates a {@code display.ChannelDisplay} array representing the display information of all channels.
      *
      * @param pos the position of the top-left corner to be fed into the individual {@code display.ChannelDisplay} objects.
+     * @param scaleX the horizontal scale of the layout.
+     * @param scaleY the vertical scale of the layout.
+     * @param imageManager the image manager used to resolve the sprites of the notes to handles.
      *
      * @return a {@code display.ChannelDisplay} array representing the display information of all channels.
      */
-    private static ChannelDisplay[] makeChannelDisplays(DoublePoint pos){
+    private static ChannelDisplay[] makeChannelDisplays(
+            DoublePoint pos,
+            double scaleX,
+            double scaleY,
+            IResourceManager<BufferedImage> imageManager
+    ){
         ChannelDisplay[] channelDisplays = new ChannelDisplay[NUM_CHANNELS];
         double y = pos.y();
+        double yShift = Y_SHIFT * scaleY;
         for(int channel = 0; channel < NUM_CHANNELS; ++channel){
-            channelDisplays[channel] = new ChannelDisplay(channel, new DoublePoint(pos.x(), y));
-            y += Y_SHIFT;
+            //rows are whole pixels apart, so rounding error must not move a row up by a pixel
+            channelDisplays[channel] = new ChannelDisplay(
+                    channel,
+                    new DoublePoint(pos.x(), Math.rint(y)),
+                    scaleX,
+                    imageManager
+            );
+            y += yShift;
         }
         return channelDisplays;
     }
 
+    /**
+     * Returns the {@code display.ChannelDisplay} of the specified channel.
+     *
+     * @param channel the channel.
+     *
+     * @return the {@code display.ChannelDisplay} of the specified channel.
+     */
+    public ChannelDisplay getChannelDisplay(int channel){
+        return channelDisplays[channel];
+    }
+
+    /**
+     * Returns the note words read by the last call to {@link #readAndUpdateNoteData}, laid out as in
+     * {@link TotalNoteData}. The returned array is reused between calls and must not be modified.
+     *
+     * @return the note words read by the last call to {@code readAndUpdateNoteData}.
+     */
+    long[] getNoteWords(){
+        return previousNoteWords;
+    }
+
+    /**
+     * Returns the words of the notes which changed in the last call to {@link #readAndUpdateNoteData}, laid out as
+     * in {@link TotalNoteData}. The returned array is reused between calls and must not be modified.
+     *
+     * @return the words of the notes which changed in the last call to {@code readAndUpdateNoteData}.
+     */
+    long[] getChangedNoteWords(){
+        return changedNoteWords;
+    }
+
     /**
      * Updates the graphical representation of all channels according to the specified {@code display.TotalNoteData}. Updates
-     * the specified {@code display.TotalNoteData} afterwards.
+     * the specified {@code display.TotalNoteData} afterwards. Only notes which changed since the previous call are
+     * visited.
      *
      * @param totalNoteData the {@code display.TotalNoteData} to read from and to update.
+     *
+     * @return true if any note was pressed or released since the previous call, false otherwise.
      */
-    public void readAndUpdateNoteData(TotalNoteData totalNoteData){
+    public boolean readAndUpdateNoteData(TotalNoteData totalNoteData){
+        totalNoteData.snapshotAndUpdate(currentNoteWords);
+        boolean changed = TotalNoteData.diff(previousNoteWords, currentNoteWords, changedNoteWords);
+        if(changed) {
+            for (int wordIndex = 0; wordIndex < TotalNoteData.NUM_WORDS; ++wordIndex) {
+                long changedBits = changedNoteWords[wordIndex];
+                while (changedBits != 0) {
+                    int bitIndex = Long.numberOfTrailingZeros(changedBits);
+                    changedBits &= changedBits - 1;
+                    channelDisplays[TotalNoteData.getChannelOfWord(wordIndex)].setNotePressed(
+                            TotalNoteData.getNoteOfBit(wordIndex, bitIndex),
+                            (currentNoteWords[wordIndex] & (1L << bitIndex)) != 0
+                    );
+                }
+            }
+        }
+        long[] swap = previousNoteWords;
+        previousNoteWords = currentNoteWords;
+        currentNoteWords = swap;
+        return changed;
+    }
+
+    /**
+     * Draws a graphical representation of all channels with the given {@code Graphics2D} and image atlas.
+     *
+     * @param g2d the {@code Graphics2D} to draw with.
+     * @param imageAtlas the image atlas which holds the required sprites.
+     */
+    public void drawOn(Graphics2D g2d, ImageAtlas imageAtlas){
         for(int channel = 0; channel < NUM_CHANNELS; ++channel){
-            channelDisplays[channel].readNoteData(totalNoteData);
+            channelDisplays[channel].drawOn(g2d, imageAtlas);
         }
-        totalNoteData.updateNotes();
     }
 
     /**
-     * Draws a graphical representation of all channels with the given {@code Graphics2D} and image manager.
+     * Redraws only the notes which were pressed or released in the last call to {@link #readAndUpdateNoteData}
+     * with the given {@code Graphics2D} and image atlas.
      *
      * @param g2d the {@code Graphics2D} to draw with.
-     * @param imageManager the image manager which holds the required {@code BufferedImage} sprites.
+     * @param imageAtlas the image atlas which holds the required sprites.
+     * @param damages an array holding one rectangle per channel, each of which is set to the area redrawn on that
+     *                channel, or to an empty rectangle if nothing was redrawn.
      */
-    public void drawOn(Graphics2D g2d, IResourceManager<BufferedImage> imageManager){
+    public void drawChangedOn(Graphics2D g2d, ImageAtlas imageAtlas, Rectangle[] damages){
         for(int channel = 0; channel < NUM_CHANNELS; ++channel){
-            channelDisplays[channel].drawOn(g2d, imageManager);
+            damages[channel].setBounds(0, 0, 0, 0);
+        }
+        for(int wordIndex = 0; wordIndex < TotalNoteData.NUM_WORDS; ++wordIndex){
+            long changedBits = changedNoteWords[wordIndex];
+            int channel = TotalNoteData.getChannelOfWord(wordIndex);
+            while(changedBits != 0){
+                int bitIndex = Long.numberOfTrailingZeros(changedBits);
+                changedBits &= changedBits - 1;
+                channelDisplays[channel].redrawNote(
+                        g2d,
+                        imageAtlas,
+                        TotalNoteData.getNoteOfBit(wordIndex, bitIndex),
+                        damages[channel]
+                );
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -1,20 +1,88 @@
 package display;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import static midi.MidiConstants.NUM_CHANNELS;
+import static midi.MidiConstants.NUM_NOTES;
+
 /**
  * A {@code display.TotalNoteData} represents the graphical state of all notes (0-128) on all channels (1-16).
+ * <p>
+ * The state of every note is packed into {@code long} words, {@value #NUM_WORDS} words per bitset, with the note
+ * {@code note} on channel {@code channel} stored at bit index {@code channel * 128 + note}. Two bitsets are kept: one
+ * of the notes which are currently pressed, and a latch of the notes which have been pressed since the last update.
+ * All words are updated atomically, so notes may be pressed and released from a different thread than the one
+ * reading and updating the data.
  */
 public class TotalNoteData {
 
-    private final ChannelNoteData[] channelNoteData;
+    /**
+     * The number of {@code long} words needed to hold one bit for every note on every channel.
+     */
+    public static final int NUM_WORDS = NUM_CHANNELS * NUM_NOTES / Long.SIZE;
+
+    private static final int WORDS_PER_CHANNEL = NUM_NOTES / Long.SIZE;
+    private static final int BIT_INDEX_MASK = Long.SIZE - 1;
+    private static final int WORD_INDEX_SHIFT = 6;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] pressedWords;
+    private final long[] latchWords;
 
     /**
      * Constructs a new {@code display.TotalNoteData} with all notes off.
      */
     public TotalNoteData(){
-        channelNoteData = new ChannelNoteData[16];
-        for(int i = 0; i < 16; ++i){
-            channelNoteData[i] = new ChannelNoteData();
-        }
+        pressedWords = new long[NUM_WORDS];
+        latchWords = new long[NUM_WORDS];
+    }
+
+    /**
+     * Returns the index of the word holding the specified note on the specified channel.
+     *
+     * @param channel the channel of the note.
+     * @param note the note.
+     *
+     * @return the index of the word holding the specified note on the specified channel.
+     */
+    private static int wordIndex(int channel, int note){
+        return (channel * NUM_NOTES + note) >>> WORD_INDEX_SHIFT;
+    }
+
+    /**
+     * Returns the mask of the bit representing the specified note within its word.
+     *
+     * @param note the note.
+     *
+     * @return the mask of the bit representing the specified note within its word.
+     */
+    private static long bitMask(int note){
+        return 1L << (note & BIT_INDEX_MASK);
+    }
+
+    /**
+     * Returns the channel represented by the word at the specified index.
+     *
+     * @param wordIndex the index of the word.
+     *
+     * @return the channel represented by the word at the specified index.
+     */
+    public static int getChannelOfWord(int wordIndex){
+        return wordIndex / WORDS_PER_CHANNEL;
+    }
+
+    /**
+     * Returns the note represented by the specified bit of the word at the specified index.
+     *
+     * @param wordIndex the index of the word.
+     * @param bitIndex the index of the bit within the word, from 0 to 63.
+     *
+     * @return the note represented by the specified bit of the word at the specified index.
+     */
+    public static int getNoteOfBit(int wordIndex, int bitIndex){
+        return (wordIndex % WORDS_PER_CHANNEL) * Long.SIZE + bitIndex;
     }
 
     /**
@@ -28,7 +96,9 @@ public class TotalNoteData {
      * false otherwise.
      */
     public boolean hasBeenPressed(int channel, int note){
-        return channelNoteData[channel].getNote(note);
+        int wordIndex = wordIndex(channel, note);
+        long word = (long)WORDS.getVolatile(pressedWords, wordIndex) | (long)WORDS.getVolatile(latchWords, wordIndex);
+        return (word & bitMask(note)) != 0;
     }
 
     /**
@@ -38,7 +108,10 @@ public class TotalNoteData {
      * @param note the specified note.
      */
     public void pressNote(int channel, int note){
-        channelNoteData[channel].pressNote(note);
+        int wordIndex = wordIndex(channel, note);
+        long mask = bitMask(note);
+        WORDS.getAndBitwiseOr(pressedWords, wordIndex, mask);
+        WORDS.getAndBitwiseOr(latchWords, wordIndex, mask);
     }
 
     /**
@@ -49,24 +122,68 @@ public class TotalNoteData {
      * @param note the specified note.
      */
     public void releaseNote(int channel, int note){
-        channelNoteData[channel].releaseNote(note);
+        WORDS.getAndBitwiseAnd(pressedWords, wordIndex(channel, note), ~bitMask(note));
     }
 
     /**
      * Completely releases all notes which were pressed and then released since the previous update.
      */
     public void updateNotes(){
-        for(int i = 0; i < 16; ++i){
-            channelNoteData[i].updateNotes();
+        for(int i = 0; i < NUM_WORDS; ++i){
+            WORDS.getAndSet(latchWords, i, 0L);
+        }
+    }
+
+    /**
+     * Copies the set of notes which have been pressed since the last update into the given words, without updating.
+     *
+     * @param dest the array of at least {@value #NUM_WORDS} words to copy into.
+     */
+    public void snapshot(long[] dest){
+        for(int i = 0; i < NUM_WORDS; ++i){
+            dest[i] = (long)WORDS.getVolatile(pressedWords, i) | (long)WORDS.getVolatile(latchWords, i);
+        }
+    }
+
+    /**
+     * Copies the set of notes which have been pressed since the last update into the given words, then updates as
+     * with {@link #updateNotes()}. Each word of the latch is read and cleared atomically, so a note pressed and
+     * released concurrently with this call is never lost; it is reported by either this call or the next one.
+     *
+     * @param dest the array of at least {@value #NUM_WORDS} words to copy into.
+     */
+    public void snapshotAndUpdate(long[] dest){
+        for(int i = 0; i < NUM_WORDS; ++i){
+            long latchWord = (long)WORDS.getAndSet(latchWords, i, 0L);
+            dest[i] = latchWord | (long)WORDS.getVolatile(pressedWords, i);
+        }
+    }
+
+    /**
+     * Computes which notes differ between two snapshots by XOR-ing them word by word.
+     *
+     * @param previous the earlier snapshot.
+     * @param current the later snapshot.
+     * @param changed the array of at least {@value #NUM_WORDS} words to hold the notes which differ.
+     *
+     * @return true if any note differs, false otherwise.
+     */
+    public static boolean diff(long[] previous, long[] current, long[] changed){
+        long anyChanged = 0;
+        for(int i = 0; i < NUM_WORDS; ++i){
+            changed[i] = previous[i] ^ current[i];
+            anyChanged |= changed[i];
         }
+        return anyChanged != 0;
     }
 
     /**
      * Sets all notes as released.
      */
     public void reset(){
-        for(int i = 0; i < 16; ++i){
-            channelNoteData[i].reset();
+        for(int i = 0; i < NUM_WORDS; ++i){
+            WORDS.setVolatile(pressedWords, i, 0L);
+            WORDS.setVolatile(latchWords, i, 0L);
         }
     }
 }
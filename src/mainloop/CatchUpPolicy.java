@@ -0,0 +1,27 @@
+package mainloop;
+
+/**
+ * A {@code CatchUpPolicy} determines how a {@link ThreadedFixedTimeLoop} behaves when it falls behind schedule,
+ * that is, when one or more updates were due while the previous update was still running.
+ *
+ * @see #DROP
+ * @see #COALESCE
+ * @see #BURST
+ */
+public enum CatchUpPolicy {
+    /**
+     * Missed updates are skipped. The next update runs on the next slot of the original schedule, so updates stay
+     * aligned to the same phase.
+     */
+    DROP,
+    /**
+     * Missed updates are merged into a single update which runs immediately. The schedule then restarts from the
+     * time of that update.
+     */
+    COALESCE,
+    /**
+     * Missed updates are run back to back until the loop has caught up, up to a bounded number of updates, after
+     * which the remaining missed updates are dropped.
+     */
+    BURST
+}
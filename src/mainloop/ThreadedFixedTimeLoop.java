@@ -4,43 +4,74 @@ import util.observer.ISubject;
 import util.observer.Subject;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A {@code ThreadedFixedTimeLoop} encapsulates the creation of a loop on a new thread and
  * broadcasts updates through a void subject.
+ * <p>
+ * Updates are scheduled against {@link System#nanoTime()}. While waiting for the next update, the loop thread parks
+ * for most of the interval and only spins for the final half millisecond, so that an idle loop does
+ * not occupy a whole core while still waking up on time.
  */
 public class ThreadedFixedTimeLoop {
 
     private static final String THREAD_NAME = "ThreadedFixedTimeLoop";
 
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    //parking is only accurate to within a few hundred microseconds, so the end of each wait is spent spinning
+    private static final long SPIN_NANOS = 500_000L;
+
+    //the maximum number of back to back updates run by the BURST policy before it drops the rest
+    private static final int MAX_BURST_UPDATES = 5;
+
+    //how long end() waits for an update in progress to finish
+    private static final long END_TIMEOUT_MILLIS = 1_000L;
+
     private final Subject<Void> fixedTimeBroadcaster;
 
-    private final int millisBetweenUpdates;
+    private final long nanosBetweenUpdates;
+    private final CatchUpPolicy catchUpPolicy;
     private final AtomicBoolean running;
 
-    private Thread thread;
+    private volatile Thread thread;
 
     /**
-     * Constructs a new {@code ThreadedFixedTimeLoop} with the given updates per second.
+     * Constructs a new {@code ThreadedFixedTimeLoop} with the given updates per second which coalesces missed
+     * updates.
      *
      * @param updatesPerSecond - how many times per second this loop will run.
      */
     public ThreadedFixedTimeLoop(int updatesPerSecond) {
+        this(updatesPerSecond, CatchUpPolicy.COALESCE);
+    }
+
+    /**
+     * Constructs a new {@code ThreadedFixedTimeLoop} with the given updates per second and catch-up policy.
+     *
+     * @param updatesPerSecond - how many times per second this loop will run.
+     * @param catchUpPolicy - how this loop behaves when it falls behind schedule.
+     */
+    public ThreadedFixedTimeLoop(int updatesPerSecond, CatchUpPolicy catchUpPolicy) {
+        if(updatesPerSecond <= 0){
+            throw new IllegalArgumentException("updates per second must be positive: " + updatesPerSecond);
+        }
         fixedTimeBroadcaster = new Subject<>();
-        millisBetweenUpdates = calcMillisBetweenUpdates(updatesPerSecond);
+        nanosBetweenUpdates = calcNanosBetweenUpdates(updatesPerSecond);
+        this.catchUpPolicy = catchUpPolicy;
         running = new AtomicBoolean(false);
     }
 
     /**
-     * Calculates the number of milliseconds between each update for the given updates per second.
+     * Calculates the number of nanoseconds between each update for the given updates per second.
      *
      * @param updatesPerSecond how many times per second a loop will run.
      *
-     * @return the number of milliseconds between each update for the given updates per second.
+     * @return the number of nanoseconds between each update for the given updates per second.
      */
-    private static int calcMillisBetweenUpdates(int updatesPerSecond){
-        double millisPerSecond = 1000d;
-        return (int)(millisPerSecond/updatesPerSecond);
+    private static long calcNanosBetweenUpdates(int updatesPerSecond){
+        return NANOS_PER_SECOND / updatesPerSecond;
     }
 
     /**
@@ -48,7 +79,7 @@ public class ThreadedFixedTimeLoop {
      */
     public final void begin() {
         if(thread != null) {
-            running.set(false);
+            end();
             boolean hasThreadEnded = false;
             while(!hasThreadEnded){
                 try {
@@ -74,21 +105,84 @@ public class ThreadedFixedTimeLoop {
      * Continuously runs this loop until {@code end()} is called.
      */
     private void runLoop() {
-        long nextUpdateMillis = System.currentTimeMillis();
+        long nextUpdateNanos = System.nanoTime();
+        int burstUpdates = 0;
 
         while(running.get()) {
-            if (System.currentTimeMillis() >= nextUpdateMillis) {
-                fixedTimeBroadcaster.broadcast(null);
-                nextUpdateMillis += millisBetweenUpdates;
+            waitUntil(nextUpdateNanos);
+            if(!running.get()){
+                break;
+            }
+            fixedTimeBroadcaster.broadcast(null);
+            nextUpdateNanos += nanosBetweenUpdates;
+
+            long behindNanos = System.nanoTime() - nextUpdateNanos;
+            if(behindNanos < 0){
+                burstUpdates = 0;
+                continue;
+            }
+            switch(catchUpPolicy){
+                case DROP -> nextUpdateNanos = skipMissedUpdates(nextUpdateNanos, behindNanos);
+                case COALESCE -> nextUpdateNanos += behindNanos;
+                case BURST -> {
+                    if(++burstUpdates >= MAX_BURST_UPDATES){
+                        nextUpdateNanos = skipMissedUpdates(nextUpdateNanos, behindNanos);
+                        burstUpdates = 0;
+                    }
+                }
             }
         }
     }
 
     /**
-     * Ends this loop.
+     * Returns the first update time on the original schedule which lies after the current time.
+     *
+     * @param nextUpdateNanos the time of the earliest missed update.
+     * @param behindNanos how far the current time is past {@code nextUpdateNanos}.
+     *
+     * @return the first update time on the original schedule which lies after the current time.
+     */
+    private long skipMissedUpdates(long nextUpdateNanos, long behindNanos){
+        long missedUpdates = behindNanos / nanosBetweenUpdates + 1;
+        return nextUpdateNanos + missedUpdates * nanosBetweenUpdates;
+    }
+
+    /**
+     * Blocks the loop thread until the given {@link System#nanoTime()} deadline or until {@code end()} is called,
+     * parking for most of the wait and spinning for the remainder.
+     *
+     * @param deadlineNanos the time to wait until.
+     */
+    private void waitUntil(long deadlineNanos){
+        long remainingNanos;
+        while((remainingNanos = deadlineNanos - System.nanoTime()) > SPIN_NANOS && running.get()){
+            LockSupport.parkNanos(this, remainingNanos - SPIN_NANOS);
+        }
+        while(deadlineNanos - System.nanoTime() > 0 && running.get()){
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Ends this loop, and waits up to {@value #END_TIMEOUT_MILLIS} milliseconds for an update in progress to finish,
+     * so that whatever the updates use can be released afterwards. Does not wait if called from an update.
      */
     public void end(){
         running.set(false);
+        Thread thread = this.thread;
+        if(thread == null){
+            return;
+        }
+        LockSupport.unpark(thread);
+        if(thread == Thread.currentThread()){
+            return;
+        }
+        try {
+            thread.join(END_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -99,4 +193,4 @@ public class ThreadedFixedTimeLoop {
     public ISubject<Void> getFixedTimeBroadcaster() {
         return fixedTimeBroadcaster;
     }
-}
\ No newline at end of file
+}
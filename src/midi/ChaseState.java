@@ -0,0 +1,107 @@
+package midi;
+
+import java.util.Arrays;
+
+import static midi.MidiConstants.ALL_SOUND_OFF;
+import static midi.MidiConstants.CHANNEL_MASK;
+import static midi.MidiConstants.COMMAND_MASK;
+import static midi.MidiConstants.CONTROL_CHANGE;
+import static midi.MidiConstants.NUM_CHANNELS;
+import static midi.MidiConstants.PITCH_BEND_CHANGE;
+import static midi.MidiConstants.PROGRAM_CHANGE;
+
+/**
+ * A {@code ChaseState} collects the last controller, program, and pitch bend values set on each channel by the short
+ * messages applied to it, so that playback started from the middle of a sequence can first restore them.
+ */
+final class ChaseState {
+    private static final int NUM_CONTROLLERS = 128;
+
+    //-1 where no value has been set
+    private final int[] controllerValues;
+    private final int[] programs;
+    private final int[] pitchBends;
+
+    /**
+     * Constructs a {@code ChaseState} with no values set.
+     */
+    ChaseState(){
+        controllerValues = new int[NUM_CHANNELS * NUM_CONTROLLERS];
+        programs = new int[NUM_CHANNELS];
+        pitchBends = new int[NUM_CHANNELS];
+        clear();
+    }
+
+    /**
+     * Unsets every value.
+     */
+    void clear(){
+        Arrays.fill(controllerValues, -1);
+        Arrays.fill(programs, -1);
+        Arrays.fill(pitchBends, -1);
+    }
+
+    /**
+     * Sets every value to that of the given state.
+     *
+     * @param other the state to copy.
+     */
+    void copyFrom(ChaseState other){
+        System.arraycopy(other.controllerValues, 0, controllerValues, 0, controllerValues.length);
+        System.arraycopy(other.programs, 0, programs, 0, programs.length);
+        System.arraycopy(other.pitchBends, 0, pitchBends, 0, pitchBends.length);
+    }
+
+    /**
+     * Sets the value the given short message sets, if any. Channel mode messages are not state to restore, so are
+     * ignored.
+     *
+     * @param message the short message, packed by {@link MidiEventStore#packShortMessage}.
+     */
+    void apply(int message){
+        int status = MidiEventStore.getStatus(message);
+        int channel = status & CHANNEL_MASK;
+        switch(status & COMMAND_MASK){
+            case CONTROL_CHANGE -> {
+                int controller = MidiEventStore.getData1(message);
+                if(controller < ALL_SOUND_OFF){
+                    controllerValues[channel * NUM_CONTROLLERS + controller] = MidiEventStore.getData2(message);
+                }
+            }
+            case PROGRAM_CHANGE -> programs[channel] = MidiEventStore.getData1(message);
+            case PITCH_BEND_CHANGE -> pitchBends[channel] = message >>> 8 & 0xFFFF;
+            default -> {}
+        }
+    }
+
+    /**
+     * Returns the last value set on the given controller of the given channel.
+     *
+     * @param channel the channel.
+     * @param controller the controller.
+     * @return the last value set on the controller, or -1 if none has been set.
+     */
+    int getControllerValue(int channel, int controller){
+        return controllerValues[channel * NUM_CONTROLLERS + controller];
+    }
+
+    /**
+     * Returns the last program set on the given channel.
+     *
+     * @param channel the channel.
+     * @return the last program set on the channel, or -1 if none has been set.
+     */
+    int getProgram(int channel){
+        return programs[channel];
+    }
+
+    /**
+     * Returns the last pitch bend set on the given channel, as its two data bytes packed as {@code data1 | data2 << 8}.
+     *
+     * @param channel the channel.
+     * @return the last pitch bend set on the channel, or -1 if none has been set.
+     */
+    int getPitchBend(int channel){
+        return pitchBends[channel];
+    }
+}
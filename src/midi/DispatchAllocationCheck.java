@@ -0,0 +1,224 @@
+package midi;
+
+import com.sun.management.ThreadMXBean;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static midi.MidiConstants.CONTROL_CHANGE;
+import static midi.MidiConstants.NOTE_OFF;
+import static midi.MidiConstants.NOTE_ON;
+
+/**
+ * The class {@code DispatchAllocationCheck} checks that steady playback allocates nothing per event. It plays a dense
+ * sequence through a {@link PrecisionSequencer} into a {@link MidiMessageInterceptor} with a {@link MidiEventRing} and
+ * a receiver which takes {@code ShortMessage} objects attached, as a synthesizer would be, and sends the same
+ * sequence to a receiver on a look-ahead transmitter, as {@link LookAheadDelivery} would be. The ring is drained by a
+ * consumer thread throughout, as the display would drain it, and is large enough to hold every event, so that every
+ * event takes the normal publish path rather than the overflow path. Once warmed up, the bytes the dispatch thread
+ * allocates over a run of events are read with {@link ThreadMXBean} from inside the receiver.
+ * <p>
+ * Run with no arguments; exits with status 1 if the ring overflowed, or if the dispatch thread allocated more than a
+ * few one-off bytes, which even a single object per event would exceed many times over.
+ */
+final class DispatchAllocationCheck {
+    private static final int WARM_UP_EVENTS = 400_000;
+    private static final int MEASURED_EVENTS = 1_000_000;
+    //events left after the measured run, so that the end of playback falls outside it
+    private static final int TRAILING_EVENTS = 1_000;
+    private static final int TOTAL_EVENTS = WARM_UP_EVENTS + MEASURED_EVENTS + TRAILING_EVENTS;
+    private static final int RESOLUTION = 480;
+    private static final int CONTROLLER_INTERVAL = 16;
+    private static final int NUM_NOTES_USED = 88;
+    private static final int LOWEST_NOTE = 21;
+    private static final int VELOCITY = 100;
+    private static final float TEMPO_FACTOR = 2_000f;
+    private static final long TIMEOUT_SECONDS = 120;
+    //one-off allocations, such as when the JVM replaces compiled code, are allowed; one object per event is not
+    private static final long ALLOWED_BYTES = 4_096;
+
+    private DispatchAllocationCheck(){}
+
+    /**
+     * Runs the check.
+     *
+     * @param args ignored.
+     * @throws Exception if the sequence cannot be built or played.
+     */
+    public static void main(String[] args) throws Exception{
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threadBean.isThreadAllocatedMemorySupported()){
+            System.err.println("thread allocation measurement is not supported by this JVM");
+            System.exit(1);
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        MeasuringReceiver synthReceiver = new MeasuringReceiver(threadBean);
+        CountingReceiver lookAheadReceiver = new CountingReceiver();
+        MidiEventRing ring = new MidiEventRing(TOTAL_EVENTS);
+        RingConsumer ringConsumer = new RingConsumer(ring);
+        MidiMessageInterceptor interceptor = new MidiMessageInterceptor();
+        interceptor.getShortMessageBroadcaster().attach(ring);
+        interceptor.setReceiver(synthReceiver);
+
+        PrecisionSequencer sequencer = new PrecisionSequencer();
+        sequencer.open();
+        ringConsumer.start();
+        try{
+            sequencer.getTransmitter().setReceiver(interceptor);
+            sequencer.getLookAheadTransmitter().setReceiver(lookAheadReceiver);
+            sequencer.setEvents(MidiEventStore.fromSequence(makeSequence()));
+            sequencer.setTempoFactor(TEMPO_FACTOR);
+            sequencer.start();
+            if(!synthReceiver.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)){
+                System.err.println("playback did not reach the end of the measured run");
+                System.exit(1);
+            }
+        }
+        finally{
+            sequencer.close();
+            ringConsumer.finish();
+        }
+
+        long bytes = synthReceiver.endBytes - synthReceiver.startBytes;
+        System.out.printf(
+                "dispatch thread allocated %d bytes over %d events (%.3f bytes per event), %d events drained from "
+                        + "the ring, %d ring overflows, %d look-ahead messages%n",
+                bytes,
+                MEASURED_EVENTS,
+                (double) bytes / MEASURED_EVENTS,
+                ringConsumer.count,
+                ring.getOverflowCount(),
+                lookAheadReceiver.count
+        );
+        if(ring.getOverflowCount() > 0 || bytes > ALLOWED_BYTES){
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Makes a sequence of one track alternating note ons and note offs a tick apart, with a controller change every
+     * few events, totalling enough events to warm up, measure, and finish.
+     *
+     * @return the sequence.
+     * @throws InvalidMidiDataException if a message is invalid.
+     */
+    private static Sequence makeSequence() throws InvalidMidiDataException{
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        Track track = sequence.createTrack();
+        for(int i = 0; i < TOTAL_EVENTS; ++i){
+            ShortMessage message;
+            if(i % CONTROLLER_INTERVAL == 0){
+                message = new ShortMessage(CONTROL_CHANGE, 0, 1, i & 0x7F);
+            }
+            else{
+                int note = LOWEST_NOTE + i / 2 % NUM_NOTES_USED;
+                message = new ShortMessage(i % 2 == 0 ? NOTE_ON : NOTE_OFF, 0, note, VELOCITY);
+            }
+            track.add(new MidiEvent(message, i));
+        }
+        return sequence;
+    }
+
+    /**
+     * A {@code RingConsumer} drains a ring on its own thread until finished, counting the events it drains.
+     */
+    private static final class RingConsumer extends Thread implements IShortMessageObserver {
+        private final MidiEventRing ring;
+        private final AtomicBoolean finished;
+        //only accessed on the consumer thread until it has been joined
+        private long count;
+
+        /**
+         * Constructs a {@code RingConsumer} which has drained nothing.
+         * @param ring the ring to drain.
+         */
+        RingConsumer(MidiEventRing ring){
+            super("Ring Consumer");
+            this.ring = ring;
+            finished = new AtomicBoolean();
+        }
+
+        @Override
+        public void run(){
+            while(!finished.get()){
+                if(ring.drain(this) == 0){
+                    Thread.onSpinWait();
+                }
+            }
+            ring.drain(this);
+        }
+
+        @Override
+        public void onShortMessage(int status, int data1, int data2, long timeStamp){
+            ++count;
+        }
+
+        /**
+         * Stops draining once the events already published have been drained, and waits for that to happen.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        void finish() throws InterruptedException{
+            finished.set(true);
+            join();
+        }
+    }
+
+    /**
+     * A {@code CountingReceiver} counts the messages it is sent.
+     */
+    private static class CountingReceiver implements Receiver {
+        //only accessed on the dispatch thread until playback is done
+        int count;
+
+        @Override
+        public void send(MidiMessage message, long timeStamp){
+            ++count;
+        }
+
+        @Override
+        public void close(){}
+    }
+
+    /**
+     * A {@code MeasuringReceiver} reads the bytes allocated by the thread sending to it once warm up is over, and
+     * again once the measured run is over.
+     */
+    private static final class MeasuringReceiver extends CountingReceiver {
+        private final ThreadMXBean threadBean;
+        private final CountDownLatch done;
+        private long startBytes;
+        private long endBytes;
+
+        /**
+         * Constructs a {@code MeasuringReceiver} which has been sent nothing.
+         * @param threadBean the bean to read allocated bytes from.
+         */
+        MeasuringReceiver(ThreadMXBean threadBean){
+            this.threadBean = threadBean;
+            done = new CountDownLatch(1);
+        }
+
+        @Override
+        public void send(MidiMessage message, long timeStamp){
+            super.send(message, timeStamp);
+            //the first reading on a thread may allocate, so is taken well before the measured run
+            if(count == 1 || count == WARM_UP_EVENTS){
+                startBytes = threadBean.getCurrentThreadAllocatedBytes();
+            }
+            else if(count == WARM_UP_EVENTS + MEASURED_EVENTS){
+                endBytes = threadBean.getCurrentThreadAllocatedBytes();
+                done.countDown();
+            }
+        }
+    }
+}
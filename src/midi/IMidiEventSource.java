@@ -0,0 +1,122 @@
+package midi;
+
+import javax.sound.midi.MidiMessage;
+import java.util.function.IntPredicate;
+
+/**
+ * An {@code IMidiEventSource} gives a {@link PrecisionSequencer} the events of a sequence merged into one timeline,
+ * sorted by tick, by index. Messages are packed as by {@link MidiEventStore}.
+ * <p>
+ * A source need not hold every event at once: the sequencer reads events at increasing indices, and tells the source
+ * once it no longer needs the events before an index. An event may only be read if it has not been discarded, or
+ * once {@link #findIndex(long)} has returned an index no later than it.
+ *
+ * @see MidiEventStore
+ * @see MidiEventStream
+ */
+interface IMidiEventSource {
+    /**
+     * Returns whether there is an event at the given index, decoding up to it if necessary.
+     *
+     * @param index the index of the event.
+     * @return true if there is an event at the given index, false if the sequence ends before it.
+     */
+    boolean hasEvent(int index);
+
+    /**
+     * Returns the tick of the given event.
+     *
+     * @param index the index of the event.
+     * @return the tick of the given event.
+     */
+    long getTick(int index);
+
+    /**
+     * Returns the packed message of the given event.
+     *
+     * @param index the index of the event.
+     * @return the packed message of the given event.
+     */
+    int getMessage(int index);
+
+    /**
+     * Returns the track of the given event.
+     *
+     * @param index the index of the event.
+     * @return the index of the track of the given event.
+     */
+    int getTrack(int index);
+
+    /**
+     * Returns the meta or system exclusive message the given packed message of an event not yet discarded refers to.
+     *
+     * @param message the packed message.
+     * @return the message the given packed message refers to.
+     */
+    MidiMessage getLongMessage(int message);
+
+    /**
+     * Returns the index of the first event at or after the given tick, from which events may be read again.
+     *
+     * @param tick the tick.
+     * @return the index of the first event at or after the given tick, or the number of events if there is none.
+     */
+    int findIndex(long tick);
+
+    /**
+     * Tells this source that the events before the given index will not be read again, unless found again by
+     * {@link #findIndex(long)}.
+     *
+     * @param index the index of the first event which may still be read.
+     */
+    void discardBefore(int index);
+
+    /**
+     * Sets the given state to the controller, program, and pitch bend values set by the events before the given
+     * event, ignoring the tracks the given predicate accepts.
+     *
+     * @param endIndex the index of an event which may be read.
+     * @param isTrackSilenced accepts the index of each track whose events are to be ignored.
+     * @param state the state to set.
+     */
+    void chase(int endIndex, IntPredicate isTrackSilenced, ChaseState state);
+
+    /**
+     * Returns the number of tracks.
+     * @return the number of tracks.
+     */
+    int getTrackCount();
+
+    /**
+     * Returns the timing resolution of the sequence.
+     * @return the timing resolution of the sequence.
+     */
+    int getResolution();
+
+    /**
+     * Returns the length of the sequence in ticks, which is the tick of its last event, or no more than it while the
+     * length is not yet known.
+     *
+     * @return the length of the sequence in ticks, as far as is known.
+     */
+    long getTickLength();
+
+    /**
+     * Returns whether the length of the sequence is known. It is always known once an index has been found to have no
+     * event.
+     *
+     * @return true if {@link #getTickLength()} is the length of the sequence, false if it may be longer.
+     */
+    boolean isTickLengthKnown();
+
+    /**
+     * Returns the tempo map of the sequence.
+     * @return the tempo map of the sequence.
+     */
+    TempoMap getTempoMap();
+
+    /**
+     * Releases whatever this source holds open. Events may not be read afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,20 @@
+package midi;
+
+/**
+ * An {@code IShortMessageObserver} receives MIDI short messages as primitive status and data bytes, so that messages
+ * can be passed on without allocating.
+ *
+ * @see IShortMessageSubject
+ */
+@FunctionalInterface
+public interface IShortMessageObserver {
+    /**
+     * Pushes the given MIDI short message to this observer.
+     *
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
+     * @param timeStamp the time-stamp of the message in microseconds, or -1 if there is none.
+     */
+    void onShortMessage(int status, int data1, int data2, long timeStamp);
+}
@@ -0,0 +1,22 @@
+package midi;
+
+/**
+ * An {@code IShortMessageSubject} broadcasts MIDI short messages to {@link IShortMessageObserver}s.
+ *
+ * @see IShortMessageObserver
+ */
+public interface IShortMessageSubject {
+    /**
+     * Adds the specified observer to this subject's broadcast list.
+     *
+     * @param observer the observer to attach to this subject.
+     */
+    void attach(IShortMessageObserver observer);
+
+    /**
+     * Removes the specified observer from this subject's broadcast list.
+     *
+     * @param observer the observer to remove from this subject.
+     */
+    void detach(IShortMessageObserver observer);
+}
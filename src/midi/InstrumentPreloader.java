@@ -0,0 +1,213 @@
+package midi;
+
+import javax.sound.midi.Instrument;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
+import javax.sound.midi.Track;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static midi.MidiConstants.CHANNEL_MASK;
+import static midi.MidiConstants.COMMAND_MASK;
+import static midi.MidiConstants.CONTROL_CHANGE;
+import static midi.MidiConstants.NOTE_ON;
+import static midi.MidiConstants.NUM_CHANNELS;
+import static midi.MidiConstants.PROGRAM_CHANGE;
+
+/**
+ * The class {@code InstrumentPreloader} loads the instruments a sequence uses into a synthesizer before the sequence
+ * starts, so that the synthesizer does not load them on first use in the middle of playback.
+ */
+final class InstrumentPreloader {
+    private static final int BANK_SELECT_MSB = 0;
+    private static final int BANK_SELECT_LSB = 32;
+    private static final int BANK_BITS = 7;
+    private static final int PROGRAM_BITS = 7;
+
+    private InstrumentPreloader(){}
+
+    /**
+     * Loads every instrument of the given soundbank which the given sequence selects into the given synthesizer.
+     * Instruments are matched by bank and program; the melodic and percussion instruments sharing a bank and program
+     * are both loaded, since the channel a program is played on does not decide which the synthesizer picks.
+     *
+     * @param synth the synthesizer to load into.
+     * @param soundbank the soundbank holding the instruments.
+     * @param sequence the sequence about to be played.
+     * @return the number of instruments loaded.
+     */
+    static int preload(Synthesizer synth, Soundbank soundbank, Sequence sequence){
+        return load(synth, soundbank, findPatches(sequence));
+    }
+
+    /**
+     * Loads every instrument of the given soundbank which the first events of the given source select into the given
+     * synthesizer, as {@link #preload(Synthesizer, Soundbank, Sequence)} does for a sequence. The events scanned are
+     * kept, so that playback can start from the first without going back.
+     *
+     * @param synth the synthesizer to load into.
+     * @param soundbank the soundbank holding the instruments.
+     * @param events the events about to be played.
+     * @param maxEvents the number of events to scan at most.
+     * @return the number of instruments loaded.
+     */
+    static int preload(Synthesizer synth, Soundbank soundbank, IMidiEventSource events, int maxEvents){
+        return load(synth, soundbank, findPatches(events, maxEvents));
+    }
+
+    /**
+     * Loads every instrument of the given soundbank with one of the given patches into the given synthesizer.
+     *
+     * @param synth the synthesizer to load into.
+     * @param soundbank the soundbank holding the instruments.
+     * @param patches the patches to load, packed by {@link #packPatch}.
+     * @return the number of instruments loaded.
+     */
+    private static int load(Synthesizer synth, Soundbank soundbank, Set<Integer> patches){
+        int loaded = 0;
+        for(Instrument instrument : soundbank.getInstruments()){
+            if(patches.contains(packPatch(instrument.getPatch().getBank(), instrument.getPatch().getProgram()))
+                    && synth.loadInstrument(instrument)){
+                ++loaded;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the bank and program of every program change in the given sequence, packed by {@link #packPatch}, as
+     * well as the default program of every channel which plays notes without a program change.
+     *
+     * @param sequence the sequence to scan.
+     * @return the packed bank and program of every patch the given sequence plays.
+     */
+    private static Set<Integer> findPatches(Sequence sequence){
+        PatchScanner scanner = new PatchScanner();
+        for(Track track : sequence.getTracks()){
+            //bank selects apply to the program changes after them, which are conventionally on the same track
+            scanner.resetBanks();
+            for(int i = 0; i < track.size(); ++i){
+                MidiEvent event = track.get(i);
+                MidiMessage message = event.getMessage();
+                if(message instanceof ShortMessage shortMessage){
+                    scanner.scan(shortMessage.getStatus(), shortMessage.getData1(), shortMessage.getData2());
+                }
+            }
+        }
+        return scanner.getPatches();
+    }
+
+    /**
+     * Returns the bank and program of every program change among the first given events, packed by
+     * {@link #packPatch}, as well as the default program of every channel which plays notes without a program change.
+     * Bank selects apply to the program changes after them in time on the same channel, whichever track they are on.
+     *
+     * @param events the events to scan.
+     * @param maxEvents the number of events to scan at most.
+     * @return the packed bank and program of every patch the given events play.
+     */
+    private static Set<Integer> findPatches(IMidiEventSource events, int maxEvents){
+        PatchScanner scanner = new PatchScanner();
+        for(int i = 0; i < maxEvents && events.hasEvent(i); ++i){
+            int message = events.getMessage(i);
+            if(!MidiEventStore.isLongMessage(message)){
+                scanner.scan(
+                        MidiEventStore.getStatus(message),
+                        MidiEventStore.getData1(message),
+                        MidiEventStore.getData2(message)
+                );
+            }
+        }
+        return scanner.getPatches();
+    }
+
+    /**
+     * Packs the given bank and program into a single integer.
+     *
+     * @param bank the bank, up to 14 bits.
+     * @param program the program, up to 7 bits.
+     * @return the packed bank and program.
+     */
+    private static int packPatch(int bank, int program){
+        return (bank << PROGRAM_BITS) | program;
+    }
+
+    /**
+     * A {@code PatchScanner} collects the patches selected by the short messages it is shown, following bank selects.
+     */
+    private static final class PatchScanner {
+        private final Set<Integer> patches;
+        private final boolean[] channelHasProgram;
+        private final boolean[] channelHasNotes;
+        private final int[] bankMsb;
+        private final int[] bankLsb;
+
+        /**
+         * Constructs a {@code PatchScanner} which has seen no messages.
+         */
+        private PatchScanner(){
+            patches = new HashSet<>();
+            channelHasProgram = new boolean[NUM_CHANNELS];
+            channelHasNotes = new boolean[NUM_CHANNELS];
+            bankMsb = new int[NUM_CHANNELS];
+            bankLsb = new int[NUM_CHANNELS];
+        }
+
+        /**
+         * Sets the bank of every channel back to 0.
+         */
+        private void resetBanks(){
+            Arrays.fill(bankMsb, 0);
+            Arrays.fill(bankLsb, 0);
+        }
+
+        /**
+         * Takes note of the patch selected by the given short message, if any.
+         *
+         * @param status the status byte.
+         * @param data1 the first data byte.
+         * @param data2 the second data byte.
+         */
+        private void scan(int status, int data1, int data2){
+            int channel = status & CHANNEL_MASK;
+            switch(status & COMMAND_MASK){
+                case PROGRAM_CHANGE -> {
+                    int bank = (bankMsb[channel] << BANK_BITS) | bankLsb[channel];
+                    patches.add(packPatch(bank, data1));
+                    channelHasProgram[channel] = true;
+                }
+                case CONTROL_CHANGE -> {
+                    if(data1 == BANK_SELECT_MSB){
+                        bankMsb[channel] = data2;
+                    }
+                    else if(data1 == BANK_SELECT_LSB){
+                        bankLsb[channel] = data2;
+                    }
+                }
+                case NOTE_ON -> channelHasNotes[channel] = true;
+                default -> {}
+            }
+        }
+
+        /**
+         * Returns the patches selected by the messages seen, as well as the default program of every channel which
+         * plays notes without a program change.
+         *
+         * @return the packed bank and program of every patch selected.
+         */
+        private Set<Integer> getPatches(){
+            Set<Integer> allPatches = new HashSet<>(patches);
+            for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+                if(channelHasNotes[channel] && !channelHasProgram[channel]){
+                    allPatches.add(packPatch(0, 0));
+                }
+            }
+            return allPatches;
+        }
+    }
+}
@@ -5,32 +5,103 @@ import util.observer.ISubject;
 
 import javax.sound.midi.MidiDevice;
 import javax.sound.midi.MidiMessage;
-import javax.sound.midi.MidiSystem;
 import javax.sound.midi.MidiUnavailableException;
 import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
 import javax.sound.midi.Sequencer;
+import javax.sound.midi.Soundbank;
+import javax.sound.midi.Synthesizer;
 import javax.sound.midi.Transmitter;
 
 /**
  * An {@code InterceptingMidiDeviceCoordinator} coordinates a sequencer and a synthesizer while also offering a MIDI
  * message broadcaster which rebroadcasts all messages output by the sequencer.
+ * <p>
+ * The devices are acquired from a {@link MidiDevicePool}, which keeps them open, and are given back to it when this
+ * coordinator is cleaned up.
+ * <p>
+ * If the sequencer is a {@link PrecisionSequencer} with a look-ahead window and the synthesizer schedules messages by
+ * time-stamp, the synthesizer is fed through a {@link LookAheadDelivery} from a look-ahead transmitter instead of by
+ * the interceptor, so that audio is scheduled a window ahead and survives stalls of the dispatch thread, while the
+ * interceptor still broadcasts each message at the time it is due.
+ * <p>
+ * Otherwise the interceptor sends to the synthesizer directly, at the time each message is due, with a time-stamp of
+ * -1. The time-stamps of the sequencer are on its own clock, which a synthesizer scheduling by time-stamp would read
+ * as times on its clock instead, playing every note early or late by the difference between the two.
  */
 class InterceptingMidiDeviceCoordinator {
-    private final String synthName;
+    private final MidiDevicePool devicePool;
 
-    private static Sequencer sequencer;
-    private static MidiMessageInterceptor interceptor;
-    private static MidiDevice synth;
+    private final Sequencer sequencer;
+    private final Transmitter sequencerTransmitter;
+    private final MidiMessageInterceptor interceptor;
+    //null if the sequencer cannot send ahead of time
+    private final Transmitter lookAheadTransmitter;
+    private final LookAheadDelivery lookAheadDelivery;
+    private MidiDevice synth;
+    private Receiver synthReceiver;
 
     /**
      * Constructs an {@code InterceptingMidiDeviceCoordinator}, initiating the sequencer-interceptor-synthesizer
-     * system.
+     * system with devices acquired from the given pool.
      *
      * @param synthName the name of the synth.
+     * @param devicePool the pool from which to acquire the sequencer and synthesizer.
+     *
+     * @throws RuntimeException if either device is unavailable.
+     */
+    public InterceptingMidiDeviceCoordinator(String synthName, MidiDevicePool devicePool){
+        this.devicePool = devicePool;
+        sequencer = devicePool.acquireSequencer();
+        try{
+            synth = devicePool.acquireSynth(synthName);
+            synthReceiver = getReceiverOfSynth(synth);
+            sequencerTransmitter = getTransmitterOfSequencer(sequencer);
+        }
+        catch(RuntimeException e){
+            if(synthReceiver != null){
+                synthReceiver.close();
+            }
+            if(synth != null){
+                devicePool.releaseSynth(synth);
+            }
+            devicePool.releaseSequencer(sequencer);
+            throw e;
+        }
+
+        interceptor = new MidiMessageInterceptor();
+        sequencerTransmitter.setReceiver(interceptor);
+        if(sequencer instanceof PrecisionSequencer precisionSequencer
+                && precisionSequencer.getLookAheadMicroseconds() > 0){
+            lookAheadDelivery = new LookAheadDelivery(precisionSequencer);
+            lookAheadTransmitter = precisionSequencer.getLookAheadTransmitter();
+            lookAheadTransmitter.setReceiver(lookAheadDelivery);
+        }
+        else{
+            lookAheadDelivery = null;
+            lookAheadTransmitter = null;
+        }
+        connectSynth(synth, synthReceiver);
+    }
+
+    /**
+     * Routes messages to the given synthesizer, through the look-ahead delivery if the synthesizer can schedule them,
+     * and through the interceptor without time-stamps otherwise.
+     *
+     * @param newSynth the synthesizer.
+     * @param newSynthReceiver the receiver of the synthesizer.
      */
-    public InterceptingMidiDeviceCoordinator(String synthName){
-        this.synthName = synthName;
-        init(synthName);
+    private void connectSynth(MidiDevice newSynth, Receiver newSynthReceiver){
+        if(lookAheadDelivery != null && LookAheadDelivery.canSchedule(newSynth)){
+            interceptor.setReceiver(null);
+            lookAheadDelivery.setTarget(newSynth, newSynthReceiver);
+        }
+        else{
+            if(lookAheadDelivery != null){
+                lookAheadDelivery.setTarget(null, null);
+            }
+            interceptor.setReceiver(new ImmediateReceiver(newSynthReceiver));
+        }
     }
 
     /**
@@ -38,9 +109,6 @@ class InterceptingMidiDeviceCoordinator {
      * @return the sequencer this object is using.
      */
     public Sequencer getSequencer() {
-        if(sequencer == null){
-            init(synthName);
-        }
         return sequencer;
     }
 
@@ -48,105 +116,99 @@ class InterceptingMidiDeviceCoordinator {
      * Returns the synthesizer this object is using.
      * @return the synthesizer this object is using.
      */
-    public MidiDevice getSynth() {
-        if(synth == null){
-            init(synthName);
-        }
+    public synchronized MidiDevice getSynth() {
         return synth;
     }
 
     /**
-     * Returns the subject used for broadcasting {@code Tuple2<MidiMessage, Long>} messages intercepted from the
-     * sequencer.
+     * Routes the intercepted messages to the synthesizer with the given name instead of the current one, without
+     * stopping playback. The synthesizer is taken from the device pool, so it is only opened if it has never been
+     * used before.
      *
-     * @return the subject used for broadcasting {@code Tuple2<MidiMessage, Long>} messages intercepted from the
-     * sequencer.
+     * @param synthName the name of the synthesizer to switch to.
+     *
+     * @throws RuntimeException if the specified synthesizer is unavailable, in which case the current one is kept.
      */
-    public ISubject<Tuple2<MidiMessage, Long>> getMidiMessageBroadcaster() {
-        if(interceptor == null){
-            init(synthName);
+    public synchronized void switchSynth(String synthName){
+        MidiDevice newSynth = devicePool.acquireSynth(synthName);
+        if(newSynth == synth){
+            devicePool.releaseSynth(newSynth);
+            return;
         }
-        return interceptor.getMidiMessageBroadcaster();
+        Receiver newSynthReceiver;
+        try{
+            newSynthReceiver = getReceiverOfSynth(newSynth);
+        }
+        catch(RuntimeException e){
+            devicePool.releaseSynth(newSynth);
+            throw e;
+        }
+        connectSynth(newSynth, newSynthReceiver);
+        synthReceiver.close();
+        devicePool.releaseSynth(synth);
+        synth = newSynth;
+        synthReceiver = newSynthReceiver;
     }
 
     /**
-     * Initiates the sequencer-interceptor-synthesizer system.
+     * Loads the instruments which the given sequence selects into the synthesizer, if it is a {@code Synthesizer}, so
+     * that it does not load them in the middle of playback.
      *
-     * @param synthName the name of the synth.
+     * @param sequence the sequence about to be played.
+     * @param soundbank the soundbank holding the instruments, or null for the default soundbank of the synthesizer.
+     * @return the number of instruments loaded.
      */
-    private static void init(String synthName){
-        sequencer = getMidiSystemSequencer();
-        clearSequencer(sequencer);
-
-        synth = getMidiSystemSynth(synthName);
-
-        Receiver synthReceiver = getReceiverOfSynth(synth);
-
-        Transmitter sequencerTransmitter = getTransmitterOfSequencer(sequencer);
-        clearTransmitter(sequencerTransmitter);
-
-        interceptor = new MidiMessageInterceptor();
-
-        sequencerTransmitter.setReceiver(interceptor);
-        interceptor.setReceiver(synthReceiver);
-
-        openSynth(synth);
-        openSequencer(sequencer);
+    public synchronized int preloadInstruments(Sequence sequence, Soundbank soundbank){
+        if(!(synth instanceof Synthesizer synthesizer)){
+            return 0;
+        }
+        Soundbank instruments = soundbank != null ? soundbank : synthesizer.getDefaultSoundbank();
+        if(instruments == null){
+            return 0;
+        }
+        return InstrumentPreloader.preload(synthesizer, instruments, sequence);
     }
 
     /**
-     * Returns the default sequencer as given by {@code MidiSystem}.
+     * Loads the instruments which the first given events select into the synthesizer, if it is a
+     * {@code Synthesizer}, so that it does not load them in the middle of playback.
      *
-     * @return the default sequencer as given by {@code MidiSystem}.
-     *
-     * @throws RuntimeException if the default synthesizer is unavailable.
+     * @param events the events about to be played.
+     * @param maxEvents the number of events to scan at most.
+     * @param soundbank the soundbank holding the instruments, or null for the default soundbank of the synthesizer.
+     * @return the number of instruments loaded.
      */
-    private static Sequencer getMidiSystemSequencer(){
-        try {
-            return MidiSystem.getSequencer();
-        }catch(MidiUnavailableException mue){
-            throw new RuntimeException("Unable to get sequencer", mue);
+    synchronized int preloadInstruments(IMidiEventSource events, int maxEvents, Soundbank soundbank){
+        if(!(synth instanceof Synthesizer synthesizer)){
+            return 0;
         }
+        Soundbank instruments = soundbank != null ? soundbank : synthesizer.getDefaultSoundbank();
+        if(instruments == null){
+            return 0;
+        }
+        return InstrumentPreloader.preload(synthesizer, instruments, events, maxEvents);
     }
 
     /**
-     * Closes all receivers and transmitters attached to the given {@code Sequencer}.
+     * Returns the subject used for broadcasting {@code Tuple2<MidiMessage, Long>} messages intercepted from the
+     * sequencer.
      *
-     * @param sequencer the {@code Sequencer} to clear.
+     * @return the subject used for broadcasting {@code Tuple2<MidiMessage, Long>} messages intercepted from the
+     * sequencer.
      */
-    private static void clearSequencer(Sequencer sequencer){
-        for(Receiver r : sequencer.getReceivers()){
-            r.close();
-        }
-        for(Transmitter t : sequencer.getTransmitters()){
-            t.close();
-        }
+    public ISubject<Tuple2<MidiMessage, Long>> getMidiMessageBroadcaster() {
+        return interceptor.getMidiMessageBroadcaster();
     }
 
     /**
-     * Returns the synthesizer associated with the given synthesizer name as given by {@code MidiSystem}.
-     *
-     * @param synthName the name of the synthesizer to retrieve.
+     * Returns the subject used for broadcasting MIDI short messages intercepted from the sequencer without
+     * allocating.
      *
-     * @return the synthesizer associated with the given synthesizer name as given by {@code MidiSystem}.
-     *
-     * @throws RuntimeException if the specified synthesizer cannot be found or is otherwise unavailable.
+     * @return the subject used for broadcasting MIDI short messages intercepted from the sequencer without
+     * allocating.
      */
-    private static MidiDevice getMidiSystemSynth(String synthName){
-        StringBuilder listOfMidiDevices = new StringBuilder();
-        try {
-            for (MidiDevice.Info info : MidiSystem.getMidiDeviceInfo()) {
-                String name = info.getName();
-                if (name.equals(synthName)) {
-                    return MidiSystem.getMidiDevice(info);
-                }
-                listOfMidiDevices.append('\n').append(name);
-            }
-        }
-        catch(MidiUnavailableException mue){
-            throw new RuntimeException("Unable to open synth: \"" + synthName + '"', mue);
-        }
-        throw new RuntimeException("Unable to find synth: " + synthName + "\nlist of midi devices:" + listOfMidiDevices);
+    public IShortMessageSubject getShortMessageBroadcaster() {
+        return interceptor.getShortMessageBroadcaster();
     }
 
     /**
@@ -184,53 +246,35 @@ class InterceptingMidiDeviceCoordinator {
     }
 
     /**
-     * Closes all receivers attached to the given {@code Transmitter}.
-     *
-     * @param transmitter the {@code Transmitter} to clear.
+     * Stops the sequencer, closes the sequencer-interceptor-synthesizer connections, and gives the devices back to
+     * the device pool, which keeps them open.
      */
-    private static void clearTransmitter(Transmitter transmitter){
-        if(transmitter.getReceiver() != null) {
-            transmitter.getReceiver().close();
-        }
-    }
-
-    /**
-     * Calls open() on the given synthesizer.
-     *
-     * @param synth the synthesizer to open.
-     *
-     * @throws RuntimeException if the call to open() fails.
-     */
-    private static void openSynth(MidiDevice synth){
-        try{
-            synth.open();
-        }catch(MidiUnavailableException mue){
-            throw new RuntimeException("Unable to open synth", mue);
+    public synchronized void cleanUp(){
+        sequencer.stop();
+        sequencerTransmitter.close();
+        if(lookAheadTransmitter != null){
+            lookAheadTransmitter.close();
+            lookAheadDelivery.close();
         }
+        interceptor.close();
+        synthReceiver.close();
+        devicePool.releaseSequencer(sequencer);
+        devicePool.releaseSynth(synth);
     }
 
     /**
-     * Calls open() on the given sequencer.
-     *
-     * @param sequencer the sequencer to open.
+     * An {@code ImmediateReceiver} passes messages on to the receiver of a synthesizer with a time-stamp of -1, so
+     * that the synthesizer plays them as soon as they arrive. Closing it leaves the receiver of the synthesizer open.
      *
-     * @throws RuntimeException if the call to open() fails.
+     * @param receiver the receiver of the synthesizer.
      */
-    private static void openSequencer(Sequencer sequencer){
-        try{
-            sequencer.open();
-        }catch(MidiUnavailableException mue){
-            throw new RuntimeException("Unable to open sequencer", mue);
+    private record ImmediateReceiver(Receiver receiver) implements Receiver {
+        @Override
+        public void send(MidiMessage message, long timeStamp){
+            receiver.send(message, -1);
         }
-    }
 
-    /**
-     * Stops the sequencer and closes the sequencer-interceptor-sequencer system.
-     */
-    public void cleanUp(){
-        sequencer.stop();
-        synth.close();
-        interceptor.close();
-        sequencer.close();
+        @Override
+        public void close(){}
     }
 }
@@ -0,0 +1,121 @@
+package midi;
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+
+/**
+ * A {@code LookAheadDelivery} passes the messages a {@link PrecisionSequencer} sends ahead of time on to the receiver
+ * of a synthesizer, translating each time-stamp from the clock of the sequencer to the clock of the synthesizer, so
+ * that the synthesizer plays each message when it is due rather than when it arrives.
+ * <p>
+ * The offset between the two clocks is sampled at most every {@value #RESAMPLE_MICROS} microseconds. Synthesizers
+ * such as the built-in one advance their clock a block of audio at a time, so a sample can only fall short of the true
+ * offset; the estimate follows rises at once but falls by at most one microsecond every {@value #DRIFT_DIVISOR}, so
+ * that it rides the top of the samples while still following the clocks if they drift apart.
+ */
+class LookAheadDelivery implements Receiver {
+    private static final long RESAMPLE_MICROS = 1_000L;
+    private static final long DRIFT_DIVISOR = 2_000L;
+
+    private final PrecisionSequencer sequencer;
+    //replaced from other threads when switching synthesizers while the sequencer sends
+    private volatile Target target;
+
+    //only accessed on the dispatch thread of the sequencer
+    private Target sampledTarget;
+    private long offsetMicros;
+    private long lastSampleMicros;
+
+    /**
+     * Constructs a {@code LookAheadDelivery} for messages from the given sequencer, delivering to nothing.
+     *
+     * @param sequencer the sequencer whose clock the time-stamps of received messages are on.
+     */
+    LookAheadDelivery(PrecisionSequencer sequencer){
+        this.sequencer = sequencer;
+        target = null;
+        sampledTarget = null;
+    }
+
+    /**
+     * Returns whether the given synthesizer schedules messages by time-stamp, which is what makes delivering them
+     * early worthwhile.
+     *
+     * @param synth the synthesizer.
+     * @return true if the given synthesizer has a clock to schedule against, false otherwise.
+     */
+    static boolean canSchedule(MidiDevice synth){
+        return synth.getMicrosecondPosition() >= 0;
+    }
+
+    /**
+     * Delivers to the given receiver of the given synthesizer from now on, or to nothing.
+     *
+     * @param synth the synthesizer whose clock to translate time-stamps to, or null.
+     * @param receiver the receiver of the synthesizer, or null.
+     */
+    void setTarget(MidiDevice synth, Receiver receiver){
+        target = synth == null ? null : new Target(synth, receiver);
+    }
+
+    /**
+     * Passes the given message on to the receiver of the synthesizer, with its time-stamp on the clock of the
+     * synthesizer.
+     *
+     * @param message the MIDI message to send.
+     * @param timeStamp the time-stamp for the message on the clock of the sequencer, or -1.
+     */
+    @Override
+    public void send(MidiMessage message, long timeStamp){
+        Target currentTarget = target;
+        if(currentTarget == null){
+            return;
+        }
+        if(timeStamp < 0){
+            currentTarget.receiver().send(message, -1);
+            return;
+        }
+        if(currentTarget != sampledTarget
+                || sequencer.getClockMicroseconds() - lastSampleMicros >= RESAMPLE_MICROS){
+            sampleOffset(currentTarget);
+        }
+        currentTarget.receiver().send(message, timeStamp + offsetMicros);
+    }
+
+    /**
+     * Samples the offset from the clock of the sequencer to the clock of the given target's synthesizer.
+     *
+     * @param currentTarget the target.
+     */
+    private void sampleOffset(Target currentTarget){
+        //the synthesizer is read first, so that a delay between the two reads can only make the sample fall short
+        long synthMicros = currentTarget.synth().getMicrosecondPosition();
+        long nowMicros = sequencer.getClockMicroseconds();
+        long sample = synthMicros - nowMicros;
+        if(currentTarget != sampledTarget){
+            offsetMicros = sample;
+            sampledTarget = currentTarget;
+        }
+        else{
+            offsetMicros = Math.max(sample, offsetMicros - (nowMicros - lastSampleMicros) / DRIFT_DIVISOR);
+        }
+        lastSampleMicros = nowMicros;
+    }
+
+    /**
+     * Stops delivering.
+     */
+    @Override
+    public void close(){
+        target = null;
+    }
+
+    /**
+     * A synthesizer and its receiver, replaced together.
+     *
+     * @param synth the synthesizer.
+     * @param receiver the receiver of the synthesizer.
+     */
+    private record Target(MidiDevice synth, Receiver receiver) {}
+}
@@ -11,6 +11,10 @@ public class MidiConstants{
     public static final int NUM_NOTES = 128;
     public static final int NUM_CHANNELS = 16;
 
+    //status byte masks; first 4 bits are the command, last 4 bits are channel #
+    public static final int COMMAND_MASK =                          0b11110000;
+    public static final int CHANNEL_MASK =                          0b00001111;
+
     //midi events; last 4 bits are channel #
     public static final int NOTE_OFF =						    0b10000000;
     public static final int NOTE_ON =						    0b10010000;
@@ -4,65 +4,107 @@ import util.Tuple2;
 import util.observer.IObserver;
 import util.observer.ISubject;
 
-import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiMessage;
-import javax.sound.midi.Sequencer;
-import java.io.IOException;
-import java.io.InputStream;
+import javax.sound.midi.Soundbank;
+import java.io.File;
 
 /**
  * A {@code MidiController} provides the interface for accessing MIDI playback capabilities.
  */
 public class MidiController {
 
+    private final MidiDevicePool devicePool;
+    private final boolean ownsDevicePool;
+    private final File soundbankFile;
     private final InterceptingMidiDeviceCoordinator midiDeviceCoordinator;
-    private final IObserver<InputStream> trackStartReceiver;
+    private final TrackLoader trackLoader;
+    private final IObserver<File> trackStartReceiver;
     private final IObserver<Void> sequencerResetReceiver;
+    private final IObserver<String> synthSwitchReceiver;
 
     /**
-     * Constructs a {@code MidiController} and initiates the underlying MIDI system given the name of the synth.
+     * Constructs a {@code MidiController} and initiates the underlying MIDI system given the name of the synth, with
+     * a device pool of its own.
      *
      * @param synthName the name of the synth.
      */
     public MidiController(String synthName){
-        this.midiDeviceCoordinator = new InterceptingMidiDeviceCoordinator(synthName);
-        trackStartReceiver = makeTrackStartReceiver();
-        sequencerResetReceiver = makeSequencerResetReceiver();
+        this(synthName, new MidiDevicePool(), true);
     }
 
     /**
-     * Begins playback of the specified MIDI sequence.
+     * Constructs a {@code MidiController} and initiates the underlying MIDI system given the name of the synth, with
+     * devices taken from the given pool. The pool is not cleaned up with this controller.
      *
-     * @param sequence the MIDI sequence to play.
+     * @param synthName the name of the synth.
+     * @param devicePool the pool from which to take MIDI devices.
      */
-    private void startTrack(InputStream sequence){
-        Sequencer sequencer = midiDeviceCoordinator.getSequencer();
-        resetSequencer(sequencer);
-        try {
-            sequencer.setSequence(sequence);
-            sequencer.start();
-        }
-        catch (InvalidMidiDataException | IOException ignored) {}
-        catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    public MidiController(String synthName, MidiDevicePool devicePool){
+        this(synthName, devicePool, null);
+    }
+
+    /**
+     * Constructs a {@code MidiController} and initiates the underlying MIDI system given the name of the synth, with
+     * devices taken from the given pool. If the synth is a {@code Synthesizer}, the instruments each track uses are
+     * loaded from the given soundbank before the track starts. The pool is not cleaned up with this controller.
+     *
+     * @param synthName the name of the synth.
+     * @param devicePool the pool from which to take MIDI devices and soundbanks.
+     * @param soundbankFile the SF2 or DLS file to take instruments from, or null for the synth's default soundbank.
+     */
+    public MidiController(String synthName, MidiDevicePool devicePool, File soundbankFile){
+        this(synthName, devicePool, false, soundbankFile);
     }
 
     /**
-     * Stops playback on the specified sequencer.
+     * Constructs a {@code MidiController} with the synth's default soundbank.
      *
-     * @param sequencer the sequencer to stop.
+     * @param synthName the name of the synth.
+     * @param devicePool the pool from which to take MIDI devices.
+     * @param ownsDevicePool true if the pool is to be cleaned up with this controller, false otherwise.
+     */
+    private MidiController(String synthName, MidiDevicePool devicePool, boolean ownsDevicePool){
+        this(synthName, devicePool, ownsDevicePool, null);
+    }
+
+    /**
+     * Constructs a {@code MidiController}.
+     *
+     * @param synthName the name of the synth.
+     * @param devicePool the pool from which to take MIDI devices and soundbanks.
+     * @param ownsDevicePool true if the pool is to be cleaned up with this controller, false otherwise.
+     * @param soundbankFile the SF2 or DLS file to take instruments from, or null for the synth's default soundbank.
+     */
+    private MidiController(
+            String synthName,
+            MidiDevicePool devicePool,
+            boolean ownsDevicePool,
+            File soundbankFile
+    ){
+        this.devicePool = devicePool;
+        this.ownsDevicePool = ownsDevicePool;
+        this.soundbankFile = soundbankFile;
+        this.midiDeviceCoordinator = new InterceptingMidiDeviceCoordinator(synthName, devicePool);
+        trackLoader = new TrackLoader(midiDeviceCoordinator, this::getSoundbank);
+        trackStartReceiver = makeTrackStartReceiver();
+        sequencerResetReceiver = makeSequencerResetReceiver();
+        synthSwitchReceiver = midiDeviceCoordinator::switchSynth;
+    }
+
+    /**
+     * Returns the soundbank to load instruments from, or null for the synth's default soundbank.
+     * @return the soundbank to load instruments from, or null for the synth's default soundbank.
      */
-    private void resetSequencer(Sequencer sequencer){
-        sequencer.stop();
+    private Soundbank getSoundbank(){
+        return soundbankFile == null ? null : devicePool.getSoundbankCache().getSoundbank(soundbankFile);
     }
 
     /**
      * Creates an observer used for receiving track start messages.
      * @return an observer used for receiving track start messages.
      */
-    private IObserver<InputStream> makeTrackStartReceiver(){
-        return this::startTrack;
+    private IObserver<File> makeTrackStartReceiver(){
+        return trackLoader::load;
     }
 
     /**
@@ -70,16 +112,30 @@ public class MidiController {
      * @return an observer used for receiving sequencer reset messages.
      */
     private IObserver<Void> makeSequencerResetReceiver(){
-        return (Void) -> resetSequencer(midiDeviceCoordinator.getSequencer());
+        return (Void) -> trackLoader.stop();
     }
 
     /**
-     * Returns the observer used for receiving track start messages.
+     * Returns the observer used for receiving track start messages. Each received MIDI file is loaded in the
+     * background and replaces the current track once ready, cancelling any file still loading; the observer returns
+     * immediately.
+     *
      * @return the observer used for receiving track start messages.
      */
-    public IObserver<InputStream> getTrackStartReceiver(){
+    public IObserver<File> getTrackStartReceiver(){
         return trackStartReceiver;
     }
+
+    /**
+     * Returns the subject through which the progress of loading each received MIDI file is broadcast, on the track
+     * loading thread.
+     *
+     * @return the subject through which track load progress is broadcast.
+     */
+    public ISubject<TrackLoadProgress> getTrackLoadProgressBroadcaster(){
+        return trackLoader.getProgressBroadcaster();
+    }
+
     /**
      * Returns the observer used for receiving sequencer reset messages.
      * @return the observer used for receiving sequencer reset messages.
@@ -87,6 +143,17 @@ public class MidiController {
     public IObserver<Void> getSequencerResetReceiver(){
         return sequencerResetReceiver;
     }
+
+    /**
+     * Returns the observer used for receiving the names of synths to switch playback to. Switching does not stop
+     * playback, and only opens the synth if it has not been used before.
+     *
+     * @return the observer used for receiving the names of synths to switch playback to.
+     */
+    public IObserver<String> getSynthSwitchReceiver(){
+        return synthSwitchReceiver;
+    }
+
     /**
      * Returns the subject used for broadcasting intercepted MIDI messages.
      * @return the subject used for broadcasting intercepted MIDI messages.
@@ -95,10 +162,22 @@ public class MidiController {
         return midiDeviceCoordinator.getMidiMessageBroadcaster();
     }
 
+    /**
+     * Returns the subject used for broadcasting intercepted MIDI short messages without allocating.
+     * @return the subject used for broadcasting intercepted MIDI short messages without allocating.
+     */
+    public IShortMessageSubject getShortMessageBroadcaster() {
+        return midiDeviceCoordinator.getShortMessageBroadcaster();
+    }
+
     /**
      * Cleans up the MIDI playback environment.
      */
     public void cleanUp(){
+        trackLoader.cleanUp();
         midiDeviceCoordinator.cleanUp();
+        if(ownsDevicePool){
+            devicePool.cleanUp();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package midi;
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Sequencer;
+import javax.sound.midi.Transmitter;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A {@code MidiDevicePool} discovers the MIDI devices of the system once, in the background, and keeps the devices it
+ * opens open, so that starting, restarting, or switching devices is a lookup rather than a full open and close.
+ * <p>
+ * Synthesizers are shared: every holder of a synthesizer takes its own receiver from it, and the synthesizer stays
+ * open after the last holder releases it. Sequencers play one sequence at a time, so each is lent to one holder at a
+ * time and kept open for the next holder once released. Sequencers are {@link PrecisionSequencer}s, which send to
+ * look-ahead transmitters a configurable window ahead of time, unless the pool is asked for the system sequencer,
+ * which is obtained with {@code MidiSystem.getSequencer(false)} so that it is never connected to the default
+ * synthesizer only to be disconnected again.
+ * <p>
+ * A {@code MidiDevicePool} is safe for concurrent use.
+ */
+public class MidiDevicePool {
+    public static final int DEFAULT_LOOK_AHEAD_MILLIS = 30;
+
+    private static final String THREAD_NAME = "MIDI Device Pool";
+    private static final long MICROS_PER_MILLI = 1_000L;
+
+    private final ExecutorService executor;
+    private final CompletableFuture<Map<String, MidiDevice.Info>> discovery;
+    private final SoundbankCache soundbankCache;
+    private final boolean useSystemSequencer;
+    private final int lookAheadMillis;
+
+    //only accessed while holding the lock on this pool
+    private final Map<String, MidiDevice> openSynths;
+    private final Map<MidiDevice, Integer> synthHolderCounts;
+    private final Deque<Sequencer> idleSequencers;
+    private final Set<Sequencer> lentSequencers;
+    private boolean cleanedUp;
+
+    /**
+     * Constructs a {@code MidiDevicePool} which lends {@link PrecisionSequencer}s with the default look-ahead window,
+     * and starts discovering the MIDI devices of the system in the background.
+     */
+    public MidiDevicePool(){
+        this(false, DEFAULT_LOOK_AHEAD_MILLIS);
+    }
+
+    /**
+     * Constructs a {@code MidiDevicePool} and starts discovering the MIDI devices of the system in the background.
+     *
+     * @param useSystemSequencer true to lend the system sequencer, false to lend {@link PrecisionSequencer}s.
+     * @param lookAheadMillis how far ahead of time {@link PrecisionSequencer}s send to look-ahead transmitters, in
+     * milliseconds, or 0 to send nothing ahead of time.
+     *
+     * @throws IllegalArgumentException if the look-ahead window is negative.
+     */
+    public MidiDevicePool(boolean useSystemSequencer, int lookAheadMillis){
+        if(lookAheadMillis < 0){
+            throw new IllegalArgumentException("negative look-ahead: " + lookAheadMillis);
+        }
+        this.useSystemSequencer = useSystemSequencer;
+        this.lookAheadMillis = lookAheadMillis;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        discovery = CompletableFuture.supplyAsync(MidiDevicePool::discoverDevices, executor);
+        soundbankCache = new SoundbankCache();
+        openSynths = new HashMap<>();
+        synthHolderCounts = new HashMap<>();
+        idleSequencers = new ArrayDeque<>();
+        lentSequencers = new HashSet<>();
+        cleanedUp = false;
+    }
+
+    /**
+     * Returns the info of every MIDI device of the system, keyed by name. Where several devices share a name, the
+     * first is kept.
+     *
+     * @return the info of every MIDI device of the system, keyed by name.
+     */
+    private static Map<String, MidiDevice.Info> discoverDevices(){
+        Map<String, MidiDevice.Info> deviceInfos = new LinkedHashMap<>();
+        for(MidiDevice.Info info : MidiSystem.getMidiDeviceInfo()){
+            deviceInfos.putIfAbsent(info.getName(), info);
+        }
+        return deviceInfos;
+    }
+
+    /**
+     * Starts opening the synthesizer with the given name and a sequencer in the background, so that they are warm by
+     * the time they are first acquired.
+     *
+     * @param synthName the name of the synthesizer.
+     * @return a future which completes once the devices are open, or exceptionally if they cannot be opened.
+     */
+    public CompletableFuture<Void> warmUp(String synthName){
+        return CompletableFuture.runAsync(() -> {
+            releaseSynth(acquireSynth(synthName));
+            releaseSequencer(acquireSequencer());
+        }, executor);
+    }
+
+    /**
+     * Starts parsing the given soundbank file into the soundbank cache in the background.
+     *
+     * @param soundbankFile the SF2 or DLS file.
+     * @return a future which completes once the soundbank is cached, or exceptionally if it cannot be read.
+     */
+    public CompletableFuture<Void> warmUpSoundbank(File soundbankFile){
+        return CompletableFuture.runAsync(() -> soundbankCache.getSoundbank(soundbankFile), executor);
+    }
+
+    /**
+     * Returns the cache of soundbanks shared by every user of this pool, which outlives any one synthesizer.
+     * @return the cache of soundbanks shared by every user of this pool.
+     */
+    public SoundbankCache getSoundbankCache(){
+        return soundbankCache;
+    }
+
+    /**
+     * Returns the names of every MIDI device of the system, waiting for discovery to finish if necessary.
+     * @return the names of every MIDI device of the system.
+     */
+    public Iterable<String> getDeviceNames(){
+        return discovery.join().keySet();
+    }
+
+    /**
+     * Returns the open synthesizer with the given name, opening it if it is not open. The synthesizer must be given
+     * back with {@link #releaseSynth(MidiDevice)}.
+     *
+     * @param synthName the name of the synthesizer.
+     * @return the open synthesizer with the given name.
+     *
+     * @throws RuntimeException if the specified synthesizer cannot be found or is otherwise unavailable.
+     * @throws IllegalStateException if this pool has been cleaned up.
+     */
+    public synchronized MidiDevice acquireSynth(String synthName){
+        checkNotCleanedUp();
+        MidiDevice synth = openSynths.get(synthName);
+        if(synth == null){
+            synth = openSynth(synthName);
+            openSynths.put(synthName, synth);
+        }
+        synthHolderCounts.merge(synth, 1, Integer::sum);
+        return synth;
+    }
+
+    /**
+     * Gives back a synthesizer acquired from this pool. The synthesizer stays open for its next holder.
+     *
+     * @param synth the synthesizer to give back.
+     *
+     * @throws IllegalArgumentException if the synthesizer is not held.
+     */
+    public synchronized void releaseSynth(MidiDevice synth){
+        Integer holderCount = synthHolderCounts.get(synth);
+        if(holderCount == null){
+            throw new IllegalArgumentException("synth not acquired from this pool: " + synth.getDeviceInfo());
+        }
+        if(holderCount == 1){
+            synthHolderCounts.remove(synth);
+        }
+        else{
+            synthHolderCounts.put(synth, holderCount - 1);
+        }
+    }
+
+    /**
+     * Returns an open sequencer which is not lent to anyone else, opening a new one if none is idle. The sequencer is
+     * connected to nothing, and must be given back with {@link #releaseSequencer(Sequencer)}.
+     *
+     * @return an open sequencer connected to nothing.
+     *
+     * @throws RuntimeException if no sequencer is available.
+     * @throws IllegalStateException if this pool has been cleaned up.
+     */
+    public synchronized Sequencer acquireSequencer(){
+        checkNotCleanedUp();
+        Sequencer sequencer = idleSequencers.poll();
+        if(sequencer == null){
+            sequencer = openSequencer();
+        }
+        lentSequencers.add(sequencer);
+        return sequencer;
+    }
+
+    /**
+     * Gives back a sequencer acquired from this pool. The sequencer is stopped, disconnected, and kept open for its
+     * next holder.
+     *
+     * @param sequencer the sequencer to give back.
+     *
+     * @throws IllegalArgumentException if the sequencer is not lent.
+     */
+    public synchronized void releaseSequencer(Sequencer sequencer){
+        if(!lentSequencers.remove(sequencer)){
+            throw new IllegalArgumentException("sequencer not acquired from this pool: " + sequencer.getDeviceInfo());
+        }
+        sequencer.stop();
+        for(Transmitter transmitter : sequencer.getTransmitters()){
+            transmitter.close();
+        }
+        if(cleanedUp){
+            sequencer.close();
+        }
+        else{
+            idleSequencers.push(sequencer);
+        }
+    }
+
+    /**
+     * Opens the synthesizer with the given name.
+     *
+     * @param synthName the name of the synthesizer to open.
+     * @return the opened synthesizer.
+     *
+     * @throws RuntimeException if the specified synthesizer cannot be found or is otherwise unavailable.
+     */
+    private MidiDevice openSynth(String synthName){
+        Map<String, MidiDevice.Info> deviceInfos = discovery.join();
+        MidiDevice.Info info = deviceInfos.get(synthName);
+        if(info == null){
+            StringBuilder listOfMidiDevices = new StringBuilder();
+            for(String name : deviceInfos.keySet()){
+                listOfMidiDevices.append('\n').append(name);
+            }
+            throw new RuntimeException(
+                    "Unable to find synth: " + synthName + "\nlist of midi devices:" + listOfMidiDevices
+            );
+        }
+        try{
+            MidiDevice synth = MidiSystem.getMidiDevice(info);
+            synth.open();
+            return synth;
+        }
+        catch(MidiUnavailableException mue){
+            throw new RuntimeException("Unable to open synth: \"" + synthName + '"', mue);
+        }
+    }
+
+    /**
+     * Opens a new sequencer which is not connected to the default synthesizer.
+     *
+     * @return the opened sequencer.
+     *
+     * @throws RuntimeException if no sequencer is available.
+     */
+    private Sequencer openSequencer(){
+        try{
+            if(useSystemSequencer){
+                Sequencer sequencer = MidiSystem.getSequencer(false);
+                sequencer.open();
+                return sequencer;
+            }
+            PrecisionSequencer sequencer = new PrecisionSequencer();
+            sequencer.setLookAheadMicroseconds(lookAheadMillis * MICROS_PER_MILLI);
+            sequencer.open();
+            return sequencer;
+        }
+        catch(MidiUnavailableException mue){
+            throw new RuntimeException("Unable to open sequencer", mue);
+        }
+    }
+
+    /**
+     * Throws if this pool has been cleaned up.
+     *
+     * @throws IllegalStateException if this pool has been cleaned up.
+     */
+    private void checkNotCleanedUp(){
+        if(cleanedUp){
+            throw new IllegalStateException("MidiDevicePool has been cleaned up");
+        }
+    }
+
+    /**
+     * Closes every device in this pool which is not lent out; lent sequencers are closed once released. Stops the
+     * background thread.
+     */
+    public synchronized void cleanUp(){
+        cleanedUp = true;
+        executor.shutdownNow();
+        for(MidiDevice synth : openSynths.values()){
+            synth.close();
+        }
+        openSynths.clear();
+        synthHolderCounts.clear();
+        for(Sequencer sequencer : idleSequencers){
+            sequencer.close();
+        }
+        idleSequencers.clear();
+    }
+}
@@ -0,0 +1,155 @@
+package midi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code MidiEventRing} is a bounded, preallocated, lock-free queue of MIDI short message events which passes events
+ * from exactly one producer thread to exactly one consumer thread.
+ * <p>
+ * Each event is packed into primitive arrays, so publishing and draining never allocate. The producer never blocks:
+ * if the ring is full, the event is dropped and counted as an overflow. A {@code MidiEventRing} is itself an
+ * {@link IShortMessageObserver}, so it can be attached directly to the producer's {@link IShortMessageSubject}.
+ */
+public class MidiEventRing implements IShortMessageObserver {
+
+    private static final int DATA1_SHIFT = 8;
+    private static final int DATA2_SHIFT = 16;
+    private static final int BYTE_MASK = 0xFF;
+
+    private final int mask;
+    private final int[] messages;
+    private final long[] timeStamps;
+
+    //the sequence of the next slot to write; only written by the producer
+    private final AtomicLong writeSequence;
+    //the sequence of the next slot to read; only written by the consumer
+    private final AtomicLong readSequence;
+
+    private final AtomicLong overflowCount;
+    private final AtomicLong highWaterMark;
+
+    //the producer's last known value of readSequence
+    private long cachedReadSequence;
+
+    /**
+     * Constructs an empty {@code MidiEventRing} able to hold at least the given number of events.
+     *
+     * @param capacity the minimum number of events this ring can hold; rounded up to a power of two.
+     *
+     * @throws IllegalArgumentException if the capacity is not positive or is too large.
+     */
+    public MidiEventRing(int capacity){
+        if(capacity <= 0 || capacity > (1 << 30)){
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+        int roundedCapacity = Integer.highestOneBit(capacity);
+        if(roundedCapacity < capacity){
+            roundedCapacity <<= 1;
+        }
+        mask = roundedCapacity - 1;
+        messages = new int[roundedCapacity];
+        timeStamps = new long[roundedCapacity];
+        writeSequence = new AtomicLong();
+        readSequence = new AtomicLong();
+        overflowCount = new AtomicLong();
+        highWaterMark = new AtomicLong();
+        cachedReadSequence = 0;
+    }
+
+    /**
+     * Publishes an event to this ring. Must only be called from the producer thread.
+     *
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
+     * @param timeStamp the time-stamp of the message in microseconds, or -1 if there is none.
+     *
+     * @return true if the event was published, false if it was dropped because the ring was full.
+     */
+    public boolean offer(int status, int data1, int data2, long timeStamp){
+        long sequence = writeSequence.get();
+        if(sequence - cachedReadSequence > mask){
+            cachedReadSequence = readSequence.get();
+            if(sequence - cachedReadSequence > mask){
+                overflowCount.incrementAndGet();
+                return false;
+            }
+        }
+        int index = (int)sequence & mask;
+        messages[index] = (status & BYTE_MASK)
+                | (data1 & BYTE_MASK) << DATA1_SHIFT
+                | (data2 & BYTE_MASK) << DATA2_SHIFT;
+        timeStamps[index] = timeStamp;
+        //the release store makes the slot contents visible before the new sequence
+        writeSequence.lazySet(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Publishes the given message to this ring, dropping it if the ring is full. Must only be called from the
+     * producer thread.
+     *
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
+     * @param timeStamp the time-stamp of the message in microseconds, or -1 if there is none.
+     */
+    @Override
+    public void onShortMessage(int status, int data1, int data2, long timeStamp){
+        offer(status, data1, data2, timeStamp);
+    }
+
+    /**
+     * Removes all currently published events from this ring and passes them, in order, to the given consumer.
+     * Must only be called from the consumer thread.
+     *
+     * @param consumer the consumer to pass the events to.
+     *
+     * @return the number of events drained.
+     */
+    public int drain(IShortMessageObserver consumer){
+        long sequence = readSequence.get();
+        long limit = writeSequence.get();
+        int count = (int)(limit - sequence);
+        if(count > highWaterMark.get()){
+            highWaterMark.lazySet(count);
+        }
+        for(; sequence < limit; ++sequence){
+            int index = (int)sequence & mask;
+            int message = messages[index];
+            consumer.onShortMessage(
+                    message & BYTE_MASK,
+                    (message >>> DATA1_SHIFT) & BYTE_MASK,
+                    (message >>> DATA2_SHIFT) & BYTE_MASK,
+                    timeStamps[index]
+            );
+        }
+        //the release store hands the slots back to the producer only after they have been read
+        readSequence.lazySet(limit);
+        return count;
+    }
+
+    /**
+     * Returns the number of events this ring can hold.
+     * @return the number of events this ring can hold.
+     */
+    public int getCapacity(){
+        return mask + 1;
+    }
+
+    /**
+     * Returns the total number of events dropped because this ring was full.
+     * @return the total number of events dropped because this ring was full.
+     */
+    public long getOverflowCount(){
+        return overflowCount.get();
+    }
+
+    /**
+     * Returns the largest number of events drained at once.
+     * @return the largest number of events drained at once.
+     */
+    public long getHighWaterMark(){
+        return highWaterMark.get();
+    }
+}
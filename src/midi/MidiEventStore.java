@@ -0,0 +1,736 @@
+package midi;
+
+import util.observer.IObserver;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+
+/**
+ * A {@code MidiEventStore} holds every event of a sequence merged into one timeline, sorted by tick, in parallel
+ * primitive arrays: the tick, the packed message, and the track of each event. That is 14 bytes per event, against
+ * well over 100 for the {@code MidiEvent}, {@code ShortMessage}, and byte array of a {@link Sequence}; a store can be
+ * decoded straight from the bytes of a Standard MIDI File, so that no {@code Sequence} is ever built.
+ * <p>
+ * Short messages are packed into an int as {@code status | data1 << 8 | data2 << 16}. Meta and system exclusive
+ * messages are kept as objects in a side table, and packed as their index in the table shifted left by 8 over a
+ * status byte of {@value #LONG_MESSAGE_STATUS}, which no short message has. Events at the same tick are in track
+ * order, and keep their order within each track.
+ * <p>
+ * A {@code MidiEventStore} holds every event at once, so never discards any, and is immutable.
+ */
+final class MidiEventStore implements IMidiEventSource {
+    static final int LONG_MESSAGE_STATUS = 0;
+    static final int TEMPO_META_TYPE = 0x51;
+    static final int END_OF_TRACK_META_TYPE = 0x2F;
+    private static final int MAX_LONG_MESSAGES = 1 << 24;
+    private static final int MAX_TRACKS = 1 << 16;
+    private static final int MAX_EVENTS = Integer.MAX_VALUE - 8;
+    private static final int PROGRESS_INTERVAL_MASK = (1 << 14) - 1;
+    //the share of the work of decoding a file spent counting its events, for progress
+    private static final double COUNTING_SHARE = 0.3;
+    //the share of the work of decoding a file in parallel spent decoding its tracks, before merging them, for progress
+    private static final double DECODING_SHARE = 0.6;
+    private static final int PERCENT = 100;
+
+    private final float divisionType;
+    private final int resolution;
+    private final int trackCount;
+    private final long tickLength;
+
+    private final long[] ticks;
+    private final int[] messages;
+    //unsigned
+    private final short[] tracks;
+    private final MidiMessage[] longMessages;
+    private final TempoMap tempoMap;
+
+    /**
+     * Constructs a {@code MidiEventStore} from merged event arrays, which it takes ownership of.
+     *
+     * @param divisionType the timing division type of the sequence.
+     * @param resolution the timing resolution of the sequence.
+     * @param trackCount the number of tracks in the sequence.
+     * @param tickLength the length of the sequence in ticks.
+     * @param ticks the tick of each event.
+     * @param messages the packed message of each event.
+     * @param tracks the track of each event.
+     * @param longMessages the meta and system exclusive messages.
+     */
+    private MidiEventStore(
+            float divisionType,
+            int resolution,
+            int trackCount,
+            long tickLength,
+            long[] ticks,
+            int[] messages,
+            short[] tracks,
+            MidiMessage[] longMessages
+    ){
+        this.divisionType = divisionType;
+        this.resolution = resolution;
+        this.trackCount = trackCount;
+        this.tickLength = tickLength;
+        this.ticks = ticks;
+        this.messages = messages;
+        this.tracks = tracks;
+        this.longMessages = longMessages;
+        tempoMap = makeTempoMap();
+    }
+
+    /**
+     * Merges every track of the given sequence into a new {@code MidiEventStore}.
+     *
+     * @param sequence the sequence to merge.
+     * @return the merged events of the sequence.
+     *
+     * @throws IllegalArgumentException if the sequence has too many tracks, events, or meta and system exclusive
+     * messages.
+     */
+    static MidiEventStore fromSequence(Sequence sequence){
+        Track[] sequenceTracks = sequence.getTracks();
+        List<TrackColumns> trackColumns = new ArrayList<>(sequenceTracks.length);
+        for(Track track : sequenceTracks){
+            TrackColumns columns = new TrackColumns(track.size());
+            for(int i = 0; i < track.size(); ++i){
+                MidiEvent event = track.get(i);
+                if(event.getMessage() instanceof ShortMessage shortMessage){
+                    columns.addShortMessage(
+                            event.getTick(),
+                            shortMessage.getStatus(),
+                            shortMessage.getData1(),
+                            shortMessage.getData2()
+                    );
+                }
+                else{
+                    columns.addLongMessage(event.getTick(), event.getMessage());
+                }
+            }
+            trackColumns.add(columns);
+        }
+        return merge(sequence.getDivisionType(), sequence.getResolution(), trackColumns);
+    }
+
+    /**
+     * Decodes every track of the given Standard MIDI File into a new {@code MidiEventStore}, without building a
+     * {@link Sequence}. If the pool has more than one thread and the file more than one track, the tracks are decoded
+     * concurrently by a {@link ParallelTrackDecoder} and then merged, which briefly takes about twice the memory of
+     * the store; otherwise they are decoded as by {@link #fromMidiFile(StandardMidiFile, IObserver)}.
+     *
+     * @param midiFile the file to decode.
+     * @param pool the pool to decode on.
+     * @param progressObserver given the fraction of the work done at each whole percent, on the calling thread, or
+     * null; an exception it throws, such as to cancel, abandons the decoding and is passed on.
+     * @return the merged events of the file.
+     *
+     * @throws InvalidMidiDataException if a track is malformed, or the file has too many tracks, events, or meta and
+     * system exclusive messages.
+     * @throws java.util.concurrent.CancellationException if the calling thread is interrupted while waiting for the
+     * pool.
+     */
+    static MidiEventStore fromMidiFile(StandardMidiFile midiFile, ForkJoinPool pool, IObserver<Double> progressObserver)
+            throws InvalidMidiDataException{
+        if(pool.getParallelism() <= 1 || midiFile.getTrackCount() <= 1){
+            return fromMidiFile(midiFile, progressObserver);
+        }
+        if(midiFile.getTrackCount() > MAX_TRACKS){
+            throw new InvalidMidiDataException("too many tracks: " + midiFile.getTrackCount());
+        }
+        ProgressReporter progress = new ProgressReporter(progressObserver);
+        List<TrackColumns> trackColumns = ParallelTrackDecoder.decode(
+                midiFile,
+                pool,
+                fraction -> progress.report(DECODING_SHARE * fraction)
+        );
+        try{
+            return merge(midiFile.getDivisionType(), midiFile.getResolution(), trackColumns, progress, DECODING_SHARE);
+        }
+        catch(IllegalArgumentException e){
+            throw (InvalidMidiDataException) new InvalidMidiDataException(e.getMessage()).initCause(e);
+        }
+    }
+
+    /**
+     * Decodes every track of the given Standard MIDI File straight into a new {@code MidiEventStore}, without building
+     * a {@link Sequence}. The tracks are decoded twice: once to count their events, so that the arrays are allocated
+     * at their final size, and once to merge them, each track decoded only as far as the merge has reached. Besides
+     * the bytes of the file, the only memory taken is that of the store itself.
+     *
+     * @param midiFile the file to decode.
+     * @param progressObserver given the fraction of the work done at each whole percent, on the calling thread, or
+     * null; an exception it throws, such as to cancel, abandons the decoding and is passed on.
+     * @return the merged events of the file.
+     *
+     * @throws InvalidMidiDataException if a track is malformed, or the file has too many tracks, events, or meta and
+     * system exclusive messages.
+     */
+    static MidiEventStore fromMidiFile(StandardMidiFile midiFile, IObserver<Double> progressObserver)
+            throws InvalidMidiDataException{
+        int trackCount = midiFile.getTrackCount();
+        if(trackCount > MAX_TRACKS){
+            throw new InvalidMidiDataException("too many tracks: " + trackCount);
+        }
+        ProgressReporter progress = new ProgressReporter(progressObserver);
+        long trackBytes = 0;
+        for(int track = 0; track < trackCount; ++track){
+            trackBytes += midiFile.getTrackLength(track);
+        }
+
+        long size = 0;
+        int longMessageCount = 0;
+        long bytesCounted = 0;
+        for(int track = 0; track < trackCount; ++track){
+            MidiTrackCursor cursor = midiFile.openTrack(track);
+            while(cursor.next()){
+                if(cursor.isLongMessage() && ++longMessageCount > MAX_LONG_MESSAGES){
+                    throw new InvalidMidiDataException("too many meta and system exclusive messages");
+                }
+                if((++size & PROGRESS_INTERVAL_MASK) == 0){
+                    progress.report(COUNTING_SHARE * (bytesCounted + cursor.getBytesRead()) / trackBytes);
+                }
+            }
+            bytesCounted += midiFile.getTrackLength(track);
+        }
+        if(size > MAX_EVENTS){
+            throw new InvalidMidiDataException("too many events: " + size);
+        }
+
+        long[] ticks = new long[(int) size];
+        int[] messages = new int[(int) size];
+        short[] tracks = new short[(int) size];
+        MidiMessage[] longMessages = new MidiMessage[longMessageCount];
+        MidiTrackCursor[] cursors = new MidiTrackCursor[trackCount];
+        TrackMerger merger = new TrackMerger(trackCount);
+        for(int track = 0; track < trackCount; ++track){
+            cursors[track] = midiFile.openTrack(track);
+            if(cursors[track].next()){
+                merger.add(track, cursors[track].getTick());
+            }
+        }
+        int longMessageIndex = 0;
+        for(int i = 0; i < ticks.length; ++i){
+            int track = merger.peek();
+            MidiTrackCursor cursor = cursors[track];
+            ticks[i] = cursor.getTick();
+            if(cursor.isLongMessage()){
+                longMessages[longMessageIndex] = cursor.makeLongMessage();
+                messages[i] = packLongMessage(longMessageIndex++);
+            }
+            else{
+                messages[i] = cursor.getMessage();
+            }
+            tracks[i] = (short) track;
+            if(cursor.next()){
+                merger.advance(cursor.getTick());
+            }
+            else{
+                merger.remove();
+            }
+            if((i & PROGRESS_INTERVAL_MASK) == 0){
+                progress.report(COUNTING_SHARE + (1 - COUNTING_SHARE) * i / ticks.length);
+            }
+        }
+        return new MidiEventStore(
+                midiFile.getDivisionType(),
+                midiFile.getResolution(),
+                trackCount,
+                ticks.length > 0 ? ticks[ticks.length - 1] : 0,
+                ticks,
+                messages,
+                tracks,
+                longMessages
+        );
+    }
+
+    /**
+     * Merges the given tracks into a new {@code MidiEventStore}.
+     *
+     * @param divisionType the timing division type of the sequence.
+     * @param resolution the timing resolution of the sequence.
+     * @param trackColumns the events of each track, each sorted by tick.
+     * @return the merged events of the tracks.
+     *
+     * @throws IllegalArgumentException if there are too many tracks, events, or meta and system exclusive messages.
+     */
+    static MidiEventStore merge(float divisionType, int resolution, List<TrackColumns> trackColumns){
+        return merge(divisionType, resolution, trackColumns, new ProgressReporter(null), 0);
+    }
+
+    /**
+     * Merges the given tracks into a new {@code MidiEventStore}, reporting progress as it goes.
+     *
+     * @param divisionType the timing division type of the sequence.
+     * @param resolution the timing resolution of the sequence.
+     * @param trackColumns the events of each track, each sorted by tick.
+     * @param progress the reporter to report progress to.
+     * @param startFraction the fraction of the work done before merging.
+     * @return the merged events of the tracks.
+     *
+     * @throws IllegalArgumentException if there are too many tracks, events, or meta and system exclusive messages.
+     */
+    private static MidiEventStore merge(
+            float divisionType,
+            int resolution,
+            List<TrackColumns> trackColumns,
+            ProgressReporter progress,
+            double startFraction
+    ){
+        if(trackColumns.size() > MAX_TRACKS){
+            throw new IllegalArgumentException("too many tracks: " + trackColumns.size());
+        }
+        int size = 0;
+        int longMessageCount = 0;
+        long tickLength = 0;
+        for(TrackColumns columns : trackColumns){
+            if(columns.size > MAX_EVENTS - size){
+                throw new IllegalArgumentException("too many events");
+            }
+            size += columns.size;
+            longMessageCount += columns.longMessages.size();
+            if(columns.size > 0){
+                tickLength = Math.max(tickLength, columns.ticks[columns.size - 1]);
+            }
+        }
+        if(longMessageCount > MAX_LONG_MESSAGES){
+            throw new IllegalArgumentException("too many meta and system exclusive messages: " + longMessageCount);
+        }
+
+        long[] ticks = new long[size];
+        int[] messages = new int[size];
+        short[] tracks = new short[size];
+        MidiMessage[] longMessages = new MidiMessage[longMessageCount];
+        int[] longMessageOffsets = new int[trackColumns.size()];
+        for(int track = 0, offset = 0; track < trackColumns.size(); ++track){
+            List<MidiMessage> trackLongMessages = trackColumns.get(track).longMessages;
+            longMessageOffsets[track] = offset;
+            for(int i = 0; i < trackLongMessages.size(); ++i){
+                longMessages[offset++] = trackLongMessages.get(i);
+            }
+        }
+
+        TrackMerger merger = new TrackMerger(trackColumns.size());
+        int[] positions = new int[trackColumns.size()];
+        for(int track = 0; track < trackColumns.size(); ++track){
+            if(trackColumns.get(track).size > 0){
+                merger.add(track, trackColumns.get(track).ticks[0]);
+            }
+        }
+        for(int i = 0; i < size; ++i){
+            int track = merger.peek();
+            TrackColumns columns = trackColumns.get(track);
+            int position = positions[track]++;
+            int message = columns.messages[position];
+            if(isLongMessage(message)){
+                message = packLongMessage(getLongMessageIndex(message) + longMessageOffsets[track]);
+            }
+            ticks[i] = columns.ticks[position];
+            messages[i] = message;
+            tracks[i] = (short) track;
+            if((i & PROGRESS_INTERVAL_MASK) == 0){
+                progress.report(startFraction + (1 - startFraction) * i / size);
+            }
+            if(position + 1 < columns.size){
+                merger.advance(columns.ticks[position + 1]);
+            }
+            else{
+                merger.remove();
+            }
+        }
+        return new MidiEventStore(
+                divisionType,
+                resolution,
+                trackColumns.size(),
+                tickLength,
+                ticks,
+                messages,
+                tracks,
+                longMessages
+        );
+    }
+
+    /**
+     * Builds the tempo map from the tempo changes among the events.
+     * @return the tempo map of the events.
+     */
+    private TempoMap makeTempoMap(){
+        long[] changeTicks = new long[longMessages.length];
+        int[] changeMpqs = new int[longMessages.length];
+        int changeCount = 0;
+        for(int i = 0; i < ticks.length; ++i){
+            if(isLongMessage(messages[i])){
+                int mpq = getTempoMpq(longMessages[getLongMessageIndex(messages[i])]);
+                if(mpq > 0){
+                    changeTicks[changeCount] = ticks[i];
+                    changeMpqs[changeCount++] = mpq;
+                }
+            }
+        }
+        return new TempoMap(divisionType, resolution, changeTicks, changeMpqs, changeCount);
+    }
+
+    /**
+     * Returns the tempo set by the given message, if it is a tempo change.
+     *
+     * @param message the message.
+     * @return the tempo set by the given message in microseconds per quarter note, or -1 if it is not a tempo change.
+     */
+    static int getTempoMpq(MidiMessage message){
+        if(message instanceof MetaMessage metaMessage && metaMessage.getType() == TEMPO_META_TYPE){
+            byte[] data = metaMessage.getData();
+            if(data.length >= 3){
+                return (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Packs a short message into an int.
+     *
+     * @param status the status byte.
+     * @param data1 the first data byte.
+     * @param data2 the second data byte.
+     * @return the packed message.
+     */
+    static int packShortMessage(int status, int data1, int data2){
+        return status | data1 << 8 | data2 << 16;
+    }
+
+    /**
+     * Packs a reference to a meta or system exclusive message into an int.
+     *
+     * @param index the index of the message in the table of meta and system exclusive messages.
+     * @return the packed message.
+     */
+    static int packLongMessage(int index){
+        return index << 8 | LONG_MESSAGE_STATUS;
+    }
+
+    /**
+     * Returns whether the given packed message refers to a meta or system exclusive message.
+     *
+     * @param message the packed message.
+     * @return true if the given packed message refers to a meta or system exclusive message, false otherwise.
+     */
+    static boolean isLongMessage(int message){
+        return (message & 0xFF) == LONG_MESSAGE_STATUS;
+    }
+
+    /**
+     * Returns the index of the meta or system exclusive message the given packed message refers to.
+     *
+     * @param message the packed message.
+     * @return the index of the message in the table of meta and system exclusive messages.
+     */
+    static int getLongMessageIndex(int message){
+        return message >>> 8;
+    }
+
+    /**
+     * Returns the status byte of the given packed short message.
+     *
+     * @param message the packed short message.
+     * @return the status byte of the message.
+     */
+    static int getStatus(int message){
+        return message & 0xFF;
+    }
+
+    /**
+     * Returns the first data byte of the given packed short message.
+     *
+     * @param message the packed short message.
+     * @return the first data byte of the message.
+     */
+    static int getData1(int message){
+        return message >>> 8 & 0xFF;
+    }
+
+    /**
+     * Returns the second data byte of the given packed short message.
+     *
+     * @param message the packed short message.
+     * @return the second data byte of the message.
+     */
+    static int getData2(int message){
+        return message >>> 16 & 0xFF;
+    }
+
+    /**
+     * Returns the number of events.
+     * @return the number of events.
+     */
+    int size(){
+        return ticks.length;
+    }
+
+    /**
+     * Returns the tick of the given event.
+     *
+     * @param index the index of the event.
+     * @return the tick of the given event.
+     */
+    @Override
+    public long getTick(int index){
+        return ticks[index];
+    }
+
+    /**
+     * Returns the packed message of the given event.
+     *
+     * @param index the index of the event.
+     * @return the packed message of the given event.
+     */
+    @Override
+    public int getMessage(int index){
+        return messages[index];
+    }
+
+    /**
+     * Returns the track of the given event.
+     *
+     * @param index the index of the event.
+     * @return the index of the track of the given event.
+     */
+    @Override
+    public int getTrack(int index){
+        return Short.toUnsignedInt(tracks[index]);
+    }
+
+    /**
+     * Returns the meta or system exclusive message the given packed message refers to.
+     *
+     * @param message the packed message.
+     * @return the message the given packed message refers to.
+     */
+    @Override
+    public MidiMessage getLongMessage(int message){
+        return longMessages[getLongMessageIndex(message)];
+    }
+
+    @Override
+    public boolean hasEvent(int index){
+        return index < ticks.length;
+    }
+
+    /**
+     * Returns the index of the first event at or after the given tick.
+     *
+     * @param tick the tick.
+     * @return the index of the first event at or after the given tick, or the number of events if there is none.
+     */
+    @Override
+    public int findIndex(long tick){
+        int low = 0;
+        int high = ticks.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(ticks[middle] < tick){
+                low = middle + 1;
+            }
+            else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Does nothing, since every event is kept.
+     *
+     * @param index the index of the first event which may still be read.
+     */
+    @Override
+    public void discardBefore(int index){}
+
+    @Override
+    public void chase(int endIndex, IntPredicate isTrackSilenced, ChaseState state){
+        state.clear();
+        for(int i = 0; i < endIndex; ++i){
+            if(!isLongMessage(messages[i]) && !isTrackSilenced.test(getTrack(i))){
+                state.apply(messages[i]);
+            }
+        }
+    }
+
+    /**
+     * Does nothing, since a store holds nothing open.
+     */
+    @Override
+    public void close(){}
+
+    /**
+     * Returns the timing division type of the sequence.
+     * @return the timing division type of the sequence, as defined by {@link Sequence}.
+     */
+    float getDivisionType(){
+        return divisionType;
+    }
+
+    /**
+     * Returns the timing resolution of the sequence.
+     * @return the timing resolution of the sequence.
+     */
+    @Override
+    public int getResolution(){
+        return resolution;
+    }
+
+    /**
+     * Returns the number of tracks.
+     * @return the number of tracks.
+     */
+    @Override
+    public int getTrackCount(){
+        return trackCount;
+    }
+
+    /**
+     * Returns the length of the sequence in ticks, which is the tick of its last event.
+     * @return the length of the sequence in ticks.
+     */
+    @Override
+    public long getTickLength(){
+        return tickLength;
+    }
+
+    @Override
+    public boolean isTickLengthKnown(){
+        return true;
+    }
+
+    /**
+     * Returns the tempo map of the sequence.
+     * @return the tempo map of the sequence.
+     */
+    @Override
+    public TempoMap getTempoMap(){
+        return tempoMap;
+    }
+
+    /**
+     * The events of one track, sorted by tick, in growable primitive arrays.
+     */
+    static final class TrackColumns {
+        private static final int MIN_CAPACITY = 16;
+
+        private long[] ticks;
+        private int[] messages;
+        private int size;
+        private final List<MidiMessage> longMessages;
+
+        /**
+         * Constructs an empty {@code TrackColumns} with room for the given number of events.
+         *
+         * @param capacity the number of events to make room for.
+         */
+        TrackColumns(int capacity){
+            ticks = new long[Math.max(capacity, MIN_CAPACITY)];
+            messages = new int[ticks.length];
+            size = 0;
+            longMessages = new ArrayList<>();
+        }
+
+        /**
+         * Appends a short message.
+         *
+         * @param tick the tick of the message, no earlier than the last.
+         * @param status the status byte.
+         * @param data1 the first data byte.
+         * @param data2 the second data byte.
+         */
+        void addShortMessage(long tick, int status, int data1, int data2){
+            add(tick, packShortMessage(status, data1, data2));
+        }
+
+        /**
+         * Appends a packed short message.
+         *
+         * @param tick the tick of the message, no earlier than the last.
+         * @param message the message, packed by {@link #packShortMessage}.
+         */
+        void addShortMessage(long tick, int message){
+            add(tick, message);
+        }
+
+        /**
+         * Appends a meta or system exclusive message.
+         *
+         * @param tick the tick of the message, no earlier than the last.
+         * @param message the message.
+         *
+         * @throws IllegalArgumentException if the track holds too many meta and system exclusive messages.
+         */
+        void addLongMessage(long tick, MidiMessage message){
+            if(longMessages.size() == MAX_LONG_MESSAGES){
+                throw new IllegalArgumentException("too many meta and system exclusive messages");
+            }
+            add(tick, packLongMessage(longMessages.size()));
+            longMessages.add(message);
+        }
+
+        /**
+         * Appends a packed message, growing the arrays if they are full.
+         *
+         * @param tick the tick of the message.
+         * @param message the packed message.
+         */
+        private void add(long tick, int message){
+            if(size == ticks.length){
+                int capacity = Math.addExact(size, size >> 1);
+                ticks = Arrays.copyOf(ticks, capacity);
+                messages = Arrays.copyOf(messages, capacity);
+            }
+            ticks[size] = tick;
+            messages[size++] = message;
+        }
+
+        /**
+         * Returns the number of events.
+         * @return the number of events.
+         */
+        int size(){
+            return size;
+        }
+    }
+
+    /**
+     * A {@code ProgressReporter} passes progress on to an observer at each whole percent.
+     */
+    private static final class ProgressReporter {
+        private final IObserver<Double> observer;
+        private int percentReported;
+
+        /**
+         * Constructs a {@code ProgressReporter} which has reported nothing.
+         *
+         * @param observer the observer to report to, or null.
+         */
+        private ProgressReporter(IObserver<Double> observer){
+            this.observer = observer;
+            percentReported = 0;
+        }
+
+        /**
+         * Reports the given progress if another whole percent has been done since the last report.
+         *
+         * @param fraction the fraction of the work done.
+         */
+        private void report(double fraction){
+            int percent = (int) (fraction * PERCENT);
+            if(observer != null && percent > percentReported){
+                percentReported = percent;
+                observer.update(fraction);
+            }
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntPredicate;
+
+/**
+ * A {@code MidiEventStream} is an {@link IMidiEventSource} which decodes the events of a {@link StandardMidiFile} only
+ * as they are needed, so that a file of any size plays in bounded memory and starts playing at once.
+ * <p>
+ * Every track is read by its own {@link MidiTrackCursor}, and the cursors are merged lazily through a
+ * {@link TrackMerger} keyed on the tick of their next event. Decoded events are held in a ring which covers only the
+ * events between the earliest still needed and the latest asked for, and grows only if that span outgrows it. Events
+ * discarded from the front of the ring are folded into a {@link ChaseState}, so that playback can be restarted from
+ * anywhere in the ring without going back.
+ * <p>
+ * As decoding first passes every so many events, it keeps a checkpoint there: a copy of every cursor, and the values
+ * set by the events before. Finding an event the ring no longer holds, or one further on than the ring which has been
+ * decoded before, starts again from the last checkpoint before it, so that jumping anywhere, such as back to the start
+ * of a loop, decodes no more than the events between two checkpoints. Once there are too many checkpoints, every
+ * other one is dropped and they are kept twice as far apart, so that they take bounded memory however long the file.
+ * <p>
+ * The length and tempo map of the file are found by scanning the whole file in the background. Until the scan is
+ * done, they are as far as decoding has reached, which is exact up to the latest event decoded, and the length is
+ * known once decoding reaches the end of the file. Since the events
+ * discarded are folded in whatever track they are on, muting or soloing tracks does not change the values restored
+ * for events before the ring. A track found malformed after the first of its events ends where it breaks.
+ * <p>
+ * A {@code MidiEventStream} is not safe for concurrent use, apart from its background scan.
+ */
+final class MidiEventStream implements IMidiEventSource {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    //the index of a meta or system exclusive message in the ring is packed into 24 bits
+    private static final int MAX_CAPACITY = 1 << 24;
+    private static final int CLOSED_CHECK_MASK = (1 << 14) - 1;
+    private static final int INITIAL_CHECKPOINT_INTERVAL = 1 << 16;
+    private static final int MAX_CHECKPOINTS = 512;
+
+    private final StandardMidiFile midiFile;
+    //null for each track which has ended
+    private final MidiTrackCursor[] cursors;
+    private TrackMerger merger;
+    //whether decoding has ever reached the end of every track
+    private boolean decodedAll;
+    private volatile boolean closed;
+    private final CompletableFuture<FileScan> scan;
+    private FileScan fileScan;
+
+    //the ring holds the events from windowStart up to windowEnd, each at its index modulo the capacity
+    private long[] ticks;
+    private int[] messages;
+    //unsigned
+    private short[] tracks;
+    private MidiMessage[] longMessages;
+    private int windowStart;
+    private int windowEnd;
+    //the tick of the last event discarded, or -1 if none has been
+    private long discardedTick;
+    private final ChaseState discardedState;
+
+    //the tempo changes among the first decodedCount events, which is the furthest decoding has ever reached
+    private int decodedCount;
+    private long decodedTick;
+    private long[] changeTicks;
+    private int[] changeMpqs;
+    private int changeCount;
+    private TempoMap decodedTempoMap;
+
+    //sorted by index, every checkpointInterval events from the start
+    private final List<Checkpoint> checkpoints;
+    private int checkpointInterval;
+    private int nextCheckpointIndex;
+
+    /**
+     * Constructs a {@code MidiEventStream} at the start of the given file, and starts scanning the whole file for its
+     * length and tempo map in the background.
+     *
+     * @param midiFile the file to stream.
+     * @param scanExecutor the executor to scan the file on.
+     *
+     * @throws InvalidMidiDataException if the first event of a track is malformed.
+     */
+    MidiEventStream(StandardMidiFile midiFile, Executor scanExecutor) throws InvalidMidiDataException{
+        this.midiFile = midiFile;
+        cursors = new MidiTrackCursor[midiFile.getTrackCount()];
+        closed = false;
+        ticks = new long[INITIAL_CAPACITY];
+        messages = new int[INITIAL_CAPACITY];
+        tracks = new short[INITIAL_CAPACITY];
+        longMessages = new MidiMessage[INITIAL_CAPACITY];
+        discardedState = new ChaseState();
+        decodedCount = 0;
+        decodedTick = 0;
+        decodedAll = false;
+        changeTicks = new long[1];
+        changeMpqs = new int[1];
+        changeCount = 0;
+        decodedTempoMap = null;
+        checkpoints = new ArrayList<>();
+        checkpointInterval = INITIAL_CHECKPOINT_INTERVAL;
+        nextCheckpointIndex = 0;
+        //a file broken from the start of a track fails now, rather than playing without the track
+        for(int track = 0; track < cursors.length; ++track){
+            midiFile.openTrack(track).next();
+        }
+        openTracks();
+        addCheckpoint();
+        fileScan = null;
+        scan = CompletableFuture.supplyAsync(this::scanFile, scanExecutor);
+    }
+
+    @Override
+    public boolean hasEvent(int index){
+        while(windowEnd <= index){
+            if(!decodeNext()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getTick(int index){
+        return ticks[getSlot(index)];
+    }
+
+    @Override
+    public int getMessage(int index){
+        return messages[getSlot(index)];
+    }
+
+    @Override
+    public int getTrack(int index){
+        return Short.toUnsignedInt(tracks[getSlot(index)]);
+    }
+
+    @Override
+    public MidiMessage getLongMessage(int message){
+        return longMessages[MidiEventStore.getLongMessageIndex(message)];
+    }
+
+    /**
+     * Returns the index of the first event at or after the given tick. If the event may have been discarded, or a
+     * checkpoint lies between the ring and the event, starts again from the last checkpoint before it. Events before
+     * the given tick are discarded as the ring fills on the way.
+     *
+     * @param tick the tick.
+     * @return the index of the first event at or after the given tick, or the number of events if there is none.
+     */
+    @Override
+    public int findIndex(long tick){
+        Checkpoint checkpoint = findCheckpoint(tick);
+        if(tick <= discardedTick || checkpoint.index() > windowEnd){
+            restore(checkpoint);
+        }
+        while(windowEnd == windowStart || ticks[getSlot(windowEnd - 1)] < tick){
+            while(windowEnd - windowStart == ticks.length && ticks[getSlot(windowStart)] < tick){
+                discardFirst();
+            }
+            if(!decodeNext()){
+                return windowEnd;
+            }
+        }
+        int low = windowStart;
+        int high = windowEnd;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(ticks[getSlot(middle)] < tick){
+                low = middle + 1;
+            }
+            else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public void discardBefore(int index){
+        while(windowStart < Math.min(index, windowEnd)){
+            discardFirst();
+        }
+    }
+
+    /**
+     * {@inheritDoc} The events already discarded are not ignored, whatever their track.
+     *
+     * @param endIndex the index of an event which may be read.
+     * @param isTrackSilenced accepts the index of each track whose events are to be ignored.
+     * @param state the state to set.
+     */
+    @Override
+    public void chase(int endIndex, IntPredicate isTrackSilenced, ChaseState state){
+        state.copyFrom(discardedState);
+        for(int i = windowStart; i < endIndex && hasEvent(i); ++i){
+            int message = getMessage(i);
+            if(!MidiEventStore.isLongMessage(message) && !isTrackSilenced.test(getTrack(i))){
+                state.apply(message);
+            }
+        }
+    }
+
+    @Override
+    public int getTrackCount(){
+        return cursors.length;
+    }
+
+    @Override
+    public int getResolution(){
+        return midiFile.getResolution();
+    }
+
+    /**
+     * Returns the length of the sequence in ticks, or the tick of the latest event decoded if the background scan is
+     * not done.
+     *
+     * @return the length of the sequence in ticks, as far as is known.
+     */
+    @Override
+    public long getTickLength(){
+        return isScanned() ? fileScan.tickLength() : decodedTick;
+    }
+
+    @Override
+    public boolean isTickLengthKnown(){
+        return decodedAll || isScanned();
+    }
+
+    /**
+     * Returns the tempo map of the sequence, or of the events decoded so far if the background scan is not done.
+     * @return the tempo map of the sequence, as far as is known.
+     */
+    @Override
+    public TempoMap getTempoMap(){
+        if(isScanned()){
+            return fileScan.tempoMap();
+        }
+        if(decodedTempoMap == null){
+            decodedTempoMap = new TempoMap(
+                    midiFile.getDivisionType(),
+                    midiFile.getResolution(),
+                    changeTicks,
+                    changeMpqs,
+                    changeCount
+            );
+        }
+        return decodedTempoMap;
+    }
+
+    /**
+     * Stops the background scan at its next check. The mapping of the file is released once this stream is garbage
+     * collected.
+     */
+    @Override
+    public void close(){
+        closed = true;
+    }
+
+    /**
+     * Returns whether the background scan is done, keeping its result if so.
+     * @return true if the length and tempo map of the whole file are known, false otherwise.
+     */
+    private boolean isScanned(){
+        if(fileScan == null && scan.isDone() && !scan.isCompletedExceptionally()){
+            fileScan = scan.join();
+        }
+        return fileScan != null;
+    }
+
+    /**
+     * Returns the position in the ring of the given event.
+     *
+     * @param index the index of the event.
+     * @return the position in the ring of the given event.
+     */
+    private int getSlot(int index){
+        return index & (ticks.length - 1);
+    }
+
+    /**
+     * Opens a cursor at the start of every track, with the ring empty.
+     */
+    private void openTracks(){
+        merger = new TrackMerger(cursors.length);
+        for(int track = 0; track < cursors.length; ++track){
+            cursors[track] = midiFile.openTrack(track);
+            advance(track, true);
+        }
+        Arrays.fill(longMessages, null);
+        windowStart = 0;
+        windowEnd = 0;
+        discardedTick = -1;
+        discardedState.clear();
+    }
+
+    /**
+     * Decodes the next event into the ring, growing the ring if it is full.
+     *
+     * @return true if there was another event, false if every track has ended.
+     */
+    private boolean decodeNext(){
+        if(windowEnd == nextCheckpointIndex && !merger.isEmpty()){
+            addCheckpoint();
+        }
+        while(!merger.isEmpty()){
+            int track = merger.peek();
+            MidiTrackCursor cursor = cursors[track];
+            MidiMessage longMessage = null;
+            if(cursor.isLongMessage()){
+                try{
+                    longMessage = cursor.makeLongMessage();
+                }
+                catch(InvalidMidiDataException e){
+                    merger.remove();
+                    cursors[track] = null;
+                    continue;
+                }
+            }
+            if(windowEnd - windowStart == ticks.length){
+                grow();
+            }
+            int slot = getSlot(windowEnd);
+            ticks[slot] = cursor.getTick();
+            tracks[slot] = (short) track;
+            if(longMessage != null){
+                messages[slot] = MidiEventStore.packLongMessage(slot);
+                longMessages[slot] = longMessage;
+            }
+            else{
+                messages[slot] = cursor.getMessage();
+            }
+            if(windowEnd++ == decodedCount){
+                ++decodedCount;
+                decodedTick = cursor.getTick();
+                recordTempoChange(cursor.getTick(), longMessage);
+            }
+            advance(track, false);
+            return true;
+        }
+        decodedAll = true;
+        return false;
+    }
+
+    /**
+     * Moves the cursor of the given track on to its next event, and puts the track in the merge, or takes it out and
+     * drops its cursor if it has ended.
+     *
+     * @param track the index of the track.
+     * @param first true if the cursor is at the start of the track, and the track is not yet in the merge.
+     */
+    private void advance(int track, boolean first){
+        MidiTrackCursor cursor = cursors[track];
+        boolean hasNext;
+        try{
+            hasNext = cursor.next();
+        }
+        catch(InvalidMidiDataException e){
+            hasNext = false;
+        }
+        if(first){
+            if(hasNext){
+                merger.add(track, cursor.getTick());
+            }
+        }
+        else if(hasNext){
+            merger.advance(cursor.getTick());
+        }
+        else{
+            merger.remove();
+        }
+        if(!hasNext){
+            cursors[track] = null;
+        }
+    }
+
+    /**
+     * Keeps a checkpoint at the end of the ring, which decoding has reached for the first time, dropping every other
+     * checkpoint first if there are too many.
+     */
+    private void addCheckpoint(){
+        if(checkpoints.size() == MAX_CHECKPOINTS){
+            for(int i = 0; i < MAX_CHECKPOINTS / 2; ++i){
+                checkpoints.set(i, checkpoints.get(2 * i));
+            }
+            checkpoints.subList(MAX_CHECKPOINTS / 2, MAX_CHECKPOINTS).clear();
+            checkpointInterval *= 2;
+        }
+        ChaseState state = new ChaseState();
+        state.copyFrom(discardedState);
+        for(int i = windowStart; i < windowEnd; ++i){
+            if(!MidiEventStore.isLongMessage(getMessage(i))){
+                state.apply(getMessage(i));
+            }
+        }
+        MidiTrackCursor[] checkpointCursors = new MidiTrackCursor[cursors.length];
+        for(int track = 0; track < cursors.length; ++track){
+            if(cursors[track] != null){
+                checkpointCursors[track] = new MidiTrackCursor(cursors[track]);
+            }
+        }
+        long tick = windowEnd > windowStart ? getTick(windowEnd - 1) : discardedTick;
+        checkpoints.add(new Checkpoint(windowEnd, tick, state, checkpointCursors));
+        nextCheckpointIndex = windowEnd + checkpointInterval;
+    }
+
+    /**
+     * Returns the last checkpoint before the first event at or after the given tick.
+     *
+     * @param tick the tick.
+     * @return the last checkpoint whose previous event is before the given tick, or the first checkpoint if none is.
+     */
+    private Checkpoint findCheckpoint(long tick){
+        int low = 1;
+        int high = checkpoints.size();
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(checkpoints.get(middle).previousTick() < tick){
+                low = middle + 1;
+            }
+            else{
+                high = middle;
+            }
+        }
+        return checkpoints.get(low - 1);
+    }
+
+    /**
+     * Moves every cursor back to where it was at the given checkpoint, and empties the ring there.
+     *
+     * @param checkpoint the checkpoint.
+     */
+    private void restore(Checkpoint checkpoint){
+        merger = new TrackMerger(cursors.length);
+        for(int track = 0; track < cursors.length; ++track){
+            MidiTrackCursor cursor = checkpoint.cursors()[track];
+            cursors[track] = cursor == null ? null : new MidiTrackCursor(cursor);
+            if(cursor != null){
+                merger.add(track, cursor.getTick());
+            }
+        }
+        Arrays.fill(longMessages, null);
+        windowStart = checkpoint.index();
+        windowEnd = checkpoint.index();
+        discardedTick = checkpoint.previousTick();
+        discardedState.copyFrom(checkpoint.state());
+    }
+
+    /**
+     * Discards the first event in the ring, folding the values it sets into the discarded state.
+     */
+    private void discardFirst(){
+        int slot = getSlot(windowStart++);
+        if(!MidiEventStore.isLongMessage(messages[slot])){
+            discardedState.apply(messages[slot]);
+        }
+        discardedTick = ticks[slot];
+        longMessages[slot] = null;
+    }
+
+    /**
+     * Doubles the capacity of the ring, which must be full, keeping every event at its index modulo the new capacity.
+     *
+     * @throws IllegalStateException if the ring cannot grow any further.
+     */
+    private void grow(){
+        if(ticks.length == MAX_CAPACITY){
+            throw new IllegalStateException("too many events between the earliest needed and the latest asked for");
+        }
+        int capacity = ticks.length * 2;
+        long[] newTicks = new long[capacity];
+        int[] newMessages = new int[capacity];
+        short[] newTracks = new short[capacity];
+        MidiMessage[] newLongMessages = new MidiMessage[capacity];
+        for(int i = windowStart; i < windowEnd; ++i){
+            int slot = getSlot(i);
+            int newSlot = i & (capacity - 1);
+            newTicks[newSlot] = ticks[slot];
+            newTracks[newSlot] = tracks[slot];
+            newLongMessages[newSlot] = longMessages[slot];
+            newMessages[newSlot] = longMessages[slot] != null
+                    ? MidiEventStore.packLongMessage(newSlot)
+                    : messages[slot];
+        }
+        ticks = newTicks;
+        messages = newMessages;
+        tracks = newTracks;
+        longMessages = newLongMessages;
+    }
+
+    /**
+     * Records the given message of a newly decoded event if it is a tempo change.
+     *
+     * @param tick the tick of the event.
+     * @param message the meta or system exclusive message of the event, or null if it is a short message.
+     */
+    private void recordTempoChange(long tick, MidiMessage message){
+        int mpq = message != null ? MidiEventStore.getTempoMpq(message) : -1;
+        if(mpq <= 0){
+            return;
+        }
+        if(changeCount == changeTicks.length){
+            changeTicks = Arrays.copyOf(changeTicks, changeCount * 2);
+            changeMpqs = Arrays.copyOf(changeMpqs, changeCount * 2);
+        }
+        changeTicks[changeCount] = tick;
+        changeMpqs[changeCount++] = mpq;
+        decodedTempoMap = null;
+    }
+
+    /**
+     * Scans every track of the file for its last tick and tempo changes, with cursors of its own. Runs in the
+     * background.
+     *
+     * @return the length and tempo map of the file.
+     *
+     * @throws CancellationException if this stream is closed first.
+     */
+    private FileScan scanFile(){
+        List<TempoChange> tempoChanges = new ArrayList<>();
+        long tickLength = 0;
+        for(int track = 0; track < cursors.length; ++track){
+            MidiTrackCursor cursor = midiFile.openTrack(track);
+            try{
+                for(int i = 1; cursor.next(); ++i){
+                    if((i & CLOSED_CHECK_MASK) == 0 && closed){
+                        throw new CancellationException("stream closed");
+                    }
+                    tickLength = Math.max(tickLength, cursor.getTick());
+                    if(cursor.isLongMessage()){
+                        int mpq = MidiEventStore.getTempoMpq(cursor.makeLongMessage());
+                        if(mpq > 0){
+                            tempoChanges.add(new TempoChange(cursor.getTick(), mpq));
+                        }
+                    }
+                }
+            }
+            catch(InvalidMidiDataException e){
+                //the track ends where it breaks, as it does when played
+            }
+        }
+        //the sort is stable, so changes at the same tick stay in track order, as they are merged
+        tempoChanges.sort(Comparator.comparingLong(TempoChange::tick));
+        long[] scanTicks = new long[tempoChanges.size()];
+        int[] scanMpqs = new int[tempoChanges.size()];
+        for(int i = 0; i < tempoChanges.size(); ++i){
+            scanTicks[i] = tempoChanges.get(i).tick();
+            scanMpqs[i] = tempoChanges.get(i).mpq();
+        }
+        TempoMap tempoMap = new TempoMap(
+                midiFile.getDivisionType(),
+                midiFile.getResolution(),
+                scanTicks,
+                scanMpqs,
+                scanMpqs.length
+        );
+        return new FileScan(tickLength, tempoMap);
+    }
+
+    /**
+     * The state of decoding before an event.
+     *
+     * @param index the index of the event.
+     * @param previousTick the tick of the event before, or -1 if there is none.
+     * @param state the values set by the events before.
+     * @param cursors a copy of the cursor of each track, on its next event to merge, or null if it has ended.
+     */
+    private record Checkpoint(int index, long previousTick, ChaseState state, MidiTrackCursor[] cursors) {}
+
+    private record TempoChange(long tick, int mpq) {}
+
+    private record FileScan(long tickLength, TempoMap tempoMap) {}
+}
@@ -4,19 +4,28 @@ import util.Tuple2;
 import util.observer.ISubject;
 import util.observer.Subject;
 
+import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiMessage;
 import javax.sound.midi.Receiver;
+import javax.sound.midi.ShortMessage;
 import javax.sound.midi.Transmitter;
 
 /**
- * A {@code MidiMessageInterceptor} intercepts and rebroadcasts messages.
+ * A {@code MidiMessageInterceptor} intercepts and rebroadcasts messages. Short messages pushed to it as primitives by
+ * {@link #onShortMessage} are only made into {@code ShortMessage} objects if something needs the object: the receiver
+ * is given one reused message, which it must not keep past {@code send}, while observers of
+ * {@link #getMidiMessageBroadcaster()} are given a new message each, since they may keep it.
  */
-class MidiMessageInterceptor implements Transmitter, Receiver {
+class MidiMessageInterceptor implements Transmitter, Receiver, IShortMessageObserver {
 
     private final Subject<Tuple2<MidiMessage, Long>> midiMessageBroadcaster;
+    private final ShortMessageSubject shortMessageBroadcaster;
+    //only used by onShortMessage, which the sequencer calls with one message at a time
+    private final ShortMessage reusedMessage;
 
     private boolean closed;
-    private Receiver receiver;
+    //replaced from other threads when switching synthesizers while the sequencer sends
+    private volatile Receiver receiver;
 
     /**
      * Constructs a new {@code MidiMessageInterceptor} with no receiver.
@@ -24,13 +33,29 @@ class MidiMessageInterceptor implements Transmitter, Receiver {
     public MidiMessageInterceptor(){
         closed = false;
         midiMessageBroadcaster = new Subject<>();
+        shortMessageBroadcaster = new ShortMessageSubject();
+        reusedMessage = new ShortMessage();
         receiver = null;
     }
 
+    /**
+     * Returns the subject used for broadcasting all intercepted messages. A tuple is allocated for every message
+     * while this subject has observers.
+     *
+     * @return the subject used for broadcasting all intercepted messages.
+     */
     public ISubject<Tuple2<MidiMessage, Long>> getMidiMessageBroadcaster() {
         return midiMessageBroadcaster;
     }
 
+    /**
+     * Returns the subject used for broadcasting intercepted short messages without allocating.
+     * @return the subject used for broadcasting intercepted short messages without allocating.
+     */
+    public IShortMessageSubject getShortMessageBroadcaster() {
+        return shortMessageBroadcaster;
+    }
+
     /**
      * Sends a MIDI message and time-stamp to this receiver. If time-stamping is
      * not supported by this receiver, the time-stamp value should be -1.
@@ -44,12 +69,52 @@ class MidiMessageInterceptor implements Transmitter, Receiver {
         if(closed){
             throw new IllegalStateException("This MidiEventInterceptor is closed");
         }
-        midiMessageBroadcaster.broadcast(new Tuple2<>(message, timeStamp));
+        if(message instanceof ShortMessage shortMessage){
+            shortMessageBroadcaster.broadcast(
+                    shortMessage.getStatus(),
+                    shortMessage.getData1(),
+                    shortMessage.getData2(),
+                    timeStamp
+            );
+        }
+        if(midiMessageBroadcaster.hasObservers()) {
+            midiMessageBroadcaster.broadcast(new Tuple2<>(message, timeStamp));
+        }
         if(receiver != null) {
             receiver.send(message, timeStamp);
         }
     }
 
+    /**
+     * Sends a MIDI short message and time-stamp to this receiver, given as primitives.
+     *
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
+     * @param timeStamp the time-stamp of the message in microseconds, or -1 if there is none.
+     * @throws IllegalStateException if the receiver is closed, or the bytes are not a valid short message.
+     */
+    @Override
+    public void onShortMessage(int status, int data1, int data2, long timeStamp){
+        if(closed){
+            throw new IllegalStateException("This MidiEventInterceptor is closed");
+        }
+        shortMessageBroadcaster.broadcast(status, data1, data2, timeStamp);
+        try{
+            if(midiMessageBroadcaster.hasObservers()) {
+                midiMessageBroadcaster.broadcast(new Tuple2<>(new ShortMessage(status, data1, data2), timeStamp));
+            }
+            Receiver receiver = this.receiver;
+            if(receiver != null) {
+                reusedMessage.setMessage(status, data1, data2);
+                receiver.send(reusedMessage, timeStamp);
+            }
+        }
+        catch(InvalidMidiDataException e){
+            throw new IllegalStateException("Invalid short message", e);
+        }
+    }
+
     /**
      * Sets the receiver to which this transmitter will deliver MIDI messages.
      * If a receiver is currently set, it is replaced with this one.
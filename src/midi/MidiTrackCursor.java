@@ -0,0 +1,247 @@
+package midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.SysexMessage;
+import java.nio.ByteBuffer;
+
+import static midi.MidiConstants.CHANNEL_PRESSURE;
+import static midi.MidiConstants.COMMAND_MASK;
+import static midi.MidiConstants.PROGRAM_CHANGE;
+
+/**
+ * A {@code MidiTrackCursor} decodes the events of one {@code MTrk} chunk of a Standard MIDI File, one at a time,
+ * straight from its bytes. Delta times and lengths are decoded as variable-length quantities and running status is
+ * followed, without allocating; meta and system exclusive messages are only made into objects when asked for.
+ * <p>
+ * Meta and system exclusive events do not cancel running status, so that files which carry it across them still
+ * decode. The track ends at its end of track meta event or at the end of its chunk, whichever comes first.
+ */
+final class MidiTrackCursor {
+    private static final int STATUS_BIT = 0x80;
+    private static final int SYSTEM_EXCLUSIVE = 0xF0;
+    private static final int SYSTEM_EXCLUSIVE_ESCAPE = 0xF7;
+    private static final int META = 0xFF;
+    private static final int MAX_QUANTITY_BYTES = 4;
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+
+    private int position;
+    private int runningStatus;
+    private boolean finished;
+
+    //the event last decoded by next()
+    private long tick;
+    private int message;
+    private int longStatus;
+    private int metaType;
+    private int dataOffset;
+    private int dataLength;
+
+    /**
+     * Constructs a {@code MidiTrackCursor} before the first event of the given track data. The buffer is read with
+     * absolute gets only, so may be shared with other cursors.
+     *
+     * @param buffer the bytes of the file.
+     * @param start the offset of the first byte of the track data, after the chunk header.
+     * @param end the offset after the last byte of the track data.
+     */
+    MidiTrackCursor(ByteBuffer buffer, int start, int end){
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        position = start;
+        runningStatus = 0;
+        tick = 0;
+        finished = false;
+    }
+
+    /**
+     * Constructs a {@code MidiTrackCursor} at the same place in the same track as the given cursor, including the event
+     * it last decoded, which moves on independently of it.
+     *
+     * @param other the cursor to copy.
+     */
+    MidiTrackCursor(MidiTrackCursor other){
+        buffer = other.buffer;
+        start = other.start;
+        end = other.end;
+        position = other.position;
+        runningStatus = other.runningStatus;
+        finished = other.finished;
+        tick = other.tick;
+        message = other.message;
+        longStatus = other.longStatus;
+        metaType = other.metaType;
+        dataOffset = other.dataOffset;
+        dataLength = other.dataLength;
+    }
+
+    /**
+     * Decodes the next event of the track.
+     *
+     * @return true if there was another event, false if the track has ended.
+     *
+     * @throws InvalidMidiDataException if the track data is malformed.
+     */
+    boolean next() throws InvalidMidiDataException{
+        if(finished || position >= end){
+            finished = true;
+            return false;
+        }
+        tick += readQuantity();
+        int status = readByte();
+        if(status < STATUS_BIT){
+            if(runningStatus == 0){
+                throw new InvalidMidiDataException("data byte without running status at offset " + (position - 1));
+            }
+            //the byte read is the first data byte
+            --position;
+            status = runningStatus;
+        }
+        switch(status){
+            case SYSTEM_EXCLUSIVE, SYSTEM_EXCLUSIVE_ESCAPE -> readLongMessage(status, 0);
+            case META -> {
+                int type = readByte();
+                if(type >= STATUS_BIT){
+                    throw new InvalidMidiDataException("invalid meta type " + type + " at offset " + (position - 1));
+                }
+                readLongMessage(status, type);
+                if(type == MidiEventStore.END_OF_TRACK_META_TYPE){
+                    finished = true;
+                }
+            }
+            default -> {
+                if(status > SYSTEM_EXCLUSIVE){
+                    throw new InvalidMidiDataException("invalid status " + status + " at offset " + (position - 1));
+                }
+                runningStatus = status;
+                int command = status & COMMAND_MASK;
+                int data1 = readDataByte();
+                int data2 = command == PROGRAM_CHANGE || command == CHANNEL_PRESSURE ? 0 : readDataByte();
+                message = MidiEventStore.packShortMessage(status, data1, data2);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tick of the event last decoded.
+     * @return the tick of the event last decoded.
+     */
+    long getTick(){
+        return tick;
+    }
+
+    /**
+     * Returns whether the event last decoded is a meta or system exclusive message.
+     * @return true if the event last decoded is a meta or system exclusive message, false if it is a short message.
+     */
+    boolean isLongMessage(){
+        return MidiEventStore.isLongMessage(message);
+    }
+
+    /**
+     * Returns the event last decoded, if it is a short message, packed by {@link MidiEventStore#packShortMessage}.
+     * @return the packed short message last decoded.
+     */
+    int getMessage(){
+        return message;
+    }
+
+    /**
+     * Makes the event last decoded, if it is a meta or system exclusive message, into a message object.
+     *
+     * @return the meta or system exclusive message last decoded.
+     *
+     * @throws InvalidMidiDataException if the message is malformed.
+     */
+    MidiMessage makeLongMessage() throws InvalidMidiDataException{
+        byte[] data = new byte[dataLength];
+        buffer.get(dataOffset, data);
+        if(longStatus == META){
+            return new MetaMessage(metaType, data, dataLength);
+        }
+        return new SysexMessage(longStatus, data, dataLength);
+    }
+
+    /**
+     * Returns how much of the track data has been decoded.
+     * @return the number of bytes of the track data decoded so far.
+     */
+    int getBytesRead(){
+        return position - start;
+    }
+
+    /**
+     * Reads the length of a meta or system exclusive message and skips its data, remembering where it lies.
+     *
+     * @param status the status byte of the message.
+     * @param type the type of the message, if it is a meta message.
+     *
+     * @throws InvalidMidiDataException if the message runs past the end of the track.
+     */
+    private void readLongMessage(int status, int type) throws InvalidMidiDataException{
+        int length = readQuantity();
+        if(length > end - position){
+            throw new InvalidMidiDataException("message of length " + length + " runs past the end of the track");
+        }
+        message = MidiEventStore.LONG_MESSAGE_STATUS;
+        longStatus = status;
+        metaType = type;
+        dataOffset = position;
+        dataLength = length;
+        position += length;
+    }
+
+    /**
+     * Reads a variable-length quantity of up to four bytes.
+     *
+     * @return the quantity.
+     *
+     * @throws InvalidMidiDataException if the quantity is longer than four bytes or runs past the end of the track.
+     */
+    private int readQuantity() throws InvalidMidiDataException{
+        int quantity = 0;
+        for(int i = 0; i < MAX_QUANTITY_BYTES; ++i){
+            int b = readByte();
+            quantity = quantity << 7 | b & 0x7F;
+            if(b < STATUS_BIT){
+                return quantity;
+            }
+        }
+        throw new InvalidMidiDataException("variable-length quantity too long at offset " + position);
+    }
+
+    /**
+     * Reads a data byte.
+     *
+     * @return the data byte.
+     *
+     * @throws InvalidMidiDataException if the byte is a status byte or past the end of the track.
+     */
+    private int readDataByte() throws InvalidMidiDataException{
+        int b = readByte();
+        if(b >= STATUS_BIT){
+            throw new InvalidMidiDataException("missing data byte at offset " + (position - 1));
+        }
+        return b;
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return the byte, unsigned.
+     *
+     * @throws InvalidMidiDataException if the track has ended.
+     */
+    private int readByte() throws InvalidMidiDataException{
+        if(position >= end){
+            throw new InvalidMidiDataException("track truncated at offset " + position);
+        }
+        return buffer.get(position++) & 0xFF;
+    }
+}
@@ -0,0 +1,220 @@
+package midi;
+
+import util.observer.IObserver;
+
+import javax.sound.midi.InvalidMidiDataException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code ParallelTrackDecoder} decodes every track of a {@link StandardMidiFile} into its own
+ * {@link MidiEventStore.TrackColumns} concurrently on a {@code ForkJoinPool}, one task per track. Each task decodes
+ * its track twice, once to count its events and once to fill columns of exactly that size.
+ * <p>
+ * The calling thread waits for the tasks, passing on progress as it goes, so that progress is always reported on the
+ * thread which asked for the decoding. If reporting progress throws, the tasks are abandoned at their next check.
+ */
+final class ParallelTrackDecoder {
+    private static final long POLL_MILLIS = 10;
+    private static final int PROGRESS_INTERVAL_MASK = (1 << 14) - 1;
+
+    private final StandardMidiFile midiFile;
+    private final MidiEventStore.TrackColumns[] trackColumns;
+    //each track is decoded twice, so the total is twice the number of bytes of track data
+    private final AtomicLong bytesDecoded;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructs a {@code ParallelTrackDecoder} which has decoded nothing.
+     *
+     * @param midiFile the file to decode.
+     */
+    private ParallelTrackDecoder(StandardMidiFile midiFile){
+        this.midiFile = midiFile;
+        trackColumns = new MidiEventStore.TrackColumns[midiFile.getTrackCount()];
+        bytesDecoded = new AtomicLong();
+        cancelled = false;
+    }
+
+    /**
+     * Decodes every track of the given file on the given pool, and waits for all of them.
+     *
+     * @param midiFile the file to decode.
+     * @param pool the pool to decode on.
+     * @param progressObserver given the fraction of the file decoded every few milliseconds, on the calling thread;
+     * an exception it throws, such as to cancel, abandons the decoding and is passed on.
+     * @return the events of each track.
+     *
+     * @throws InvalidMidiDataException if a track is malformed, or has too many meta and system exclusive messages.
+     * @throws CancellationException if the calling thread is interrupted while waiting.
+     */
+    static List<MidiEventStore.TrackColumns> decode(
+            StandardMidiFile midiFile,
+            ForkJoinPool pool,
+            IObserver<Double> progressObserver
+    ) throws InvalidMidiDataException{
+        ParallelTrackDecoder decoder = new ParallelTrackDecoder(midiFile);
+        long totalBytes = 0;
+        for(int track = 0; track < midiFile.getTrackCount(); ++track){
+            totalBytes += 2L * midiFile.getTrackLength(track);
+        }
+        ForkJoinTask<Void> fileTask = pool.submit(decoder.new FileTask());
+        try{
+            while(true){
+                try{
+                    fileTask.get(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                }
+                catch(TimeoutException e){
+                    progressObserver.update((double) decoder.bytesDecoded.get() / totalBytes);
+                }
+            }
+        }
+        catch(InterruptedException e){
+            decoder.cancelled = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while decoding");
+        }
+        catch(ExecutionException e){
+            throw unwrap(e);
+        }
+        catch(RuntimeException | Error e){
+            decoder.cancelled = true;
+            throw e;
+        }
+        return new ArrayList<>(Arrays.asList(decoder.trackColumns));
+    }
+
+    /**
+     * Finds the exception thrown by a decoding task behind the given exception. The pool may wrap the exception of
+     * the task in a copy made for the waiting thread, so the whole chain of causes is searched.
+     *
+     * @param e the exception thrown while waiting for the tasks.
+     * @return the malformed data exception behind the given exception.
+     *
+     * @throws RuntimeException if the task failed with anything but malformed data.
+     * @throws Error if the task failed with an error.
+     */
+    private static InvalidMidiDataException unwrap(ExecutionException e){
+        for(Throwable cause = e.getCause(); cause != null; cause = cause.getCause()){
+            if(cause instanceof InvalidMidiDataException invalidMidiDataException){
+                return invalidMidiDataException;
+            }
+            if(cause instanceof IllegalArgumentException illegalArgumentException){
+                return (InvalidMidiDataException) new InvalidMidiDataException(illegalArgumentException.getMessage())
+                        .initCause(illegalArgumentException);
+            }
+        }
+        if(e.getCause() instanceof Error error){
+            throw error;
+        }
+        throw new RuntimeException("Unable to decode MIDI file", e.getCause());
+    }
+
+    /**
+     * Decodes the given track into columns of exactly its size.
+     *
+     * @param track the index of the track.
+     * @return the events of the track.
+     *
+     * @throws InvalidMidiDataException if the track is malformed.
+     * @throws IllegalArgumentException if the track has too many meta and system exclusive messages.
+     * @throws CancellationException if the decoding has been abandoned.
+     */
+    private MidiEventStore.TrackColumns decodeTrack(int track) throws InvalidMidiDataException{
+        MidiTrackCursor cursor = midiFile.openTrack(track);
+        int count = 0;
+        int bytesReported = 0;
+        while(cursor.next()){
+            if((++count & PROGRESS_INTERVAL_MASK) == 0){
+                bytesReported = reportProgress(cursor, bytesReported);
+            }
+        }
+        bytesDecoded.addAndGet(cursor.getBytesRead() - bytesReported);
+
+        MidiEventStore.TrackColumns columns = new MidiEventStore.TrackColumns(count);
+        cursor = midiFile.openTrack(track);
+        bytesReported = 0;
+        for(int i = 1; cursor.next(); ++i){
+            if(cursor.isLongMessage()){
+                columns.addLongMessage(cursor.getTick(), cursor.makeLongMessage());
+            }
+            else{
+                columns.addShortMessage(cursor.getTick(), cursor.getMessage());
+            }
+            if((i & PROGRESS_INTERVAL_MASK) == 0){
+                bytesReported = reportProgress(cursor, bytesReported);
+            }
+        }
+        bytesDecoded.addAndGet(cursor.getBytesRead() - bytesReported);
+        return columns;
+    }
+
+    /**
+     * Adds the bytes the given cursor has decoded since the last report to the progress, and checks whether the
+     * decoding has been abandoned.
+     *
+     * @param cursor the cursor decoding a track.
+     * @param bytesReported the number of bytes of the track already added to the progress.
+     * @return the number of bytes of the track added to the progress, including those just added.
+     *
+     * @throws CancellationException if the decoding has been abandoned.
+     */
+    private int reportProgress(MidiTrackCursor cursor, int bytesReported){
+        if(cancelled){
+            throw new CancellationException("decoding abandoned");
+        }
+        bytesDecoded.addAndGet(cursor.getBytesRead() - bytesReported);
+        return cursor.getBytesRead();
+    }
+
+    /**
+     * A {@code FileTask} decodes every track, each in its own task.
+     */
+    @SuppressWarnings("serial")
+    private final class FileTask extends RecursiveAction {
+        @Override
+        protected void compute(){
+            List<TrackTask> trackTasks = new ArrayList<>(trackColumns.length);
+            for(int track = 0; track < trackColumns.length; ++track){
+                trackTasks.add(new TrackTask(track));
+            }
+            invokeAll(trackTasks);
+        }
+    }
+
+    /**
+     * A {@code TrackTask} decodes a single track.
+     */
+    @SuppressWarnings("serial")
+    private final class TrackTask extends RecursiveAction {
+        private final int track;
+
+        /**
+         * Constructs a {@code TrackTask} which decodes the given track.
+         * @param track the index of the track to decode.
+         */
+        TrackTask(int track){
+            this.track = track;
+        }
+
+        @Override
+        protected void compute(){
+            try{
+                trackColumns[track] = decodeTrack(track);
+            }
+            catch(InvalidMidiDataException e){
+                throw new RuntimeException("Invalid track " + track, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,1508 @@
+package midi;
+
+import javax.sound.midi.ControllerEventListener;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaEventListener;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiUnavailableException;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Sequencer;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import javax.sound.midi.Transmitter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import static midi.MidiConstants.CHANNEL_MASK;
+import static midi.MidiConstants.COMMAND_MASK;
+import static midi.MidiConstants.CONTROL_CHANGE;
+import static midi.MidiConstants.NOTE_OFF;
+import static midi.MidiConstants.NOTE_ON;
+import static midi.MidiConstants.NUM_CHANNELS;
+import static midi.MidiConstants.NUM_NOTES;
+import static midi.MidiConstants.PITCH_BEND_CHANGE;
+import static midi.MidiConstants.PROGRAM_CHANGE;
+import static midi.MidiConstants.SUSTAIN_SWITCH;
+
+/**
+ * A {@code PrecisionSequencer} is a {@link Sequencer} which merges every track of its sequence into one
+ * {@link MidiEventStore} up front, and plays it from a dedicated thread against {@link System#nanoTime()} deadlines.
+ * Files set through {@link #setSequence(InputStream)} are decoded straight into the store, so that even files whose
+ * {@link Sequence} would not fit in memory can be played; files too large for even the store can be streamed from a
+ * {@link MidiEventStream}, which holds only the events between the playheads.
+ * While waiting for the next event, the dispatch thread parks until shortly before the event is due and spins for
+ * the remainder, so events go out within microseconds of their time rather than within milliseconds.
+ * <p>
+ * Every message sent carries as its time-stamp the time it was due, in microseconds on the clock of this sequencer
+ * (see {@link #getClockMicroseconds()}), rather than the time it happened to be sent, so receivers which honour
+ * time-stamps can schedule it exactly. Receivers which are also {@link IShortMessageObserver}s are given short
+ * messages as primitives; other receivers are given one {@code ShortMessage} reused for every short message, which
+ * they must not keep past {@code send}, so that steady playback does not allocate either way.
+ * <p>
+ * Transmitters obtained from {@link #getLookAheadTransmitter()} are instead sent each message up to the look-ahead
+ * window before it is due, in batches of about half a window, still time-stamped with the time it is due, so that a
+ * receiver which schedules by time-stamp plays it on time even if the dispatch thread is held up by less than the
+ * window. Messages sent ahead cannot be taken back: after stopping, jumping, or changing tempo, what was already sent
+ * still plays, and notes are turned off after it.
+ * <p>
+ * As with the default sequencer, meta messages are given only to meta event listeners, and end of track is given
+ * once, when playback reaches the end of the sequence; stopping or jumping turns off the notes left sounding. Meta
+ * and controller event listeners are notified on the dispatch thread, so should return quickly. Recording and
+ * synchronization with other devices are not supported: this sequencer has no receivers, and
+ * {@link #startRecording()} only starts playback.
+ * <p>
+ * A {@code PrecisionSequencer} is safe for concurrent use.
+ */
+public class PrecisionSequencer implements Sequencer {
+    private static final String THREAD_NAME = "Precision Sequencer";
+    private static final PrecisionSequencerInfo INFO = new PrecisionSequencerInfo();
+
+    //parking is only accurate to within a few hundred microseconds, so the end of each wait is spent spinning
+    private static final long SPIN_NANOS = 500_000L;
+    private static final double NANOS_PER_MICRO = 1_000.0;
+    private static final double MICROS_PER_MINUTE = 60_000_000.0;
+    private static final int NUM_CONTROLLERS = 128;
+
+    private final long clockOriginNanos;
+    private final PlaybackTransmitterList transmitters;
+    private final PlaybackTransmitterList lookAheadTransmitters;
+    private final List<MetaEventListener> metaEventListeners;
+    private final List<List<ControllerEventListener>> controllerEventListeners;
+    //only accessed on the dispatch thread
+    private final List<MidiMessage> pendingNotifications;
+
+    //only accessed while holding the lock on this sequencer
+    private final Playhead playhead;
+    //runs ahead of the playhead by up to the look-ahead window, for the look-ahead transmitters
+    private final Playhead lookAheadPlayhead;
+    private final BitSet mutedTracks;
+    private final BitSet soloTracks;
+    private final ChaseState chaseState;
+    private Thread thread;
+    private boolean open;
+    private boolean running;
+    private Sequence sequence;
+    private IMidiEventSource events;
+    private long positionTick;
+    private double positionMpq;
+    private float tempoFactor;
+    private long loopStartTick;
+    private long loopEndTick;
+    private int loopCount;
+    private long lookAheadNanos;
+
+    //incremented whenever the timing of playback changes, so that the dispatch thread abandons its wait
+    private volatile int changeCount;
+
+    /**
+     * Constructs a closed {@code PrecisionSequencer} with no sequence.
+     */
+    public PrecisionSequencer(){
+        clockOriginNanos = System.nanoTime();
+        transmitters = new PlaybackTransmitterList();
+        lookAheadTransmitters = new PlaybackTransmitterList();
+        metaEventListeners = new CopyOnWriteArrayList<>();
+        controllerEventListeners = new ArrayList<>(NUM_CONTROLLERS);
+        for(int i = 0; i < NUM_CONTROLLERS; ++i){
+            controllerEventListeners.add(new CopyOnWriteArrayList<>());
+        }
+        pendingNotifications = new ArrayList<>();
+        playhead = new Playhead(transmitters, false);
+        lookAheadPlayhead = new Playhead(lookAheadTransmitters, true);
+        mutedTracks = new BitSet();
+        soloTracks = new BitSet();
+        chaseState = new ChaseState();
+        open = false;
+        running = false;
+        positionTick = 0;
+        positionMpq = TempoMap.DEFAULT_MPQ;
+        tempoFactor = 1;
+        loopStartTick = 0;
+        loopEndTick = -1;
+        loopCount = 0;
+        lookAheadNanos = 0;
+    }
+
+    /**
+     * Returns the current time on the clock of this sequencer, against which the time-stamps of the messages it sends
+     * are given. The clock counts microseconds since this sequencer was constructed, and never jumps.
+     *
+     * @return the current time on the clock of this sequencer, in microseconds.
+     */
+    public long getClockMicroseconds(){
+        return toClockMicros(System.nanoTime());
+    }
+
+    /**
+     * Sets how far ahead of time messages are sent to the look-ahead transmitters. Messages already sent keep their
+     * time-stamps.
+     *
+     * @param microseconds the look-ahead window in microseconds.
+     *
+     * @throws IllegalArgumentException if the window is negative.
+     */
+    public synchronized void setLookAheadMicroseconds(long microseconds){
+        if(microseconds < 0){
+            throw new IllegalArgumentException("negative look-ahead: " + microseconds);
+        }
+        lookAheadNanos = microseconds * (long) NANOS_PER_MICRO;
+        signalChange();
+    }
+
+    /**
+     * Returns how far ahead of time messages are sent to the look-ahead transmitters.
+     * @return the look-ahead window in microseconds.
+     */
+    public synchronized long getLookAheadMicroseconds(){
+        return lookAheadNanos / (long) NANOS_PER_MICRO;
+    }
+
+    /**
+     * Returns a new transmitter whose receiver is sent each message up to the look-ahead window before it is due,
+     * time-stamped with the time it is due on the clock of this sequencer.
+     *
+     * @return a new look-ahead transmitter.
+     */
+    public synchronized Transmitter getLookAheadTransmitter(){
+        PlaybackTransmitter transmitter = new PlaybackTransmitter(lookAheadTransmitters);
+        if(lookAheadTransmitters.isEmpty() && running){
+            lookAheadPlayhead.follow(playhead);
+        }
+        lookAheadTransmitters.add(transmitter);
+        signalChange();
+        return transmitter;
+    }
+
+    /**
+     * Converts a {@link System#nanoTime()} value to a time on the clock of this sequencer.
+     *
+     * @param nanos the value of {@link System#nanoTime()}.
+     * @return the time on the clock of this sequencer, in microseconds.
+     */
+    private long toClockMicros(long nanos){
+        return (long) ((nanos - clockOriginNanos) / NANOS_PER_MICRO);
+    }
+
+    @Override
+    public Info getDeviceInfo(){
+        return INFO;
+    }
+
+    /**
+     * Opens this sequencer and starts its dispatch thread.
+     */
+    @Override
+    public synchronized void open(){
+        if(open){
+            return;
+        }
+        open = true;
+        thread = new Thread(this::run, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops playback, closes every transmitter of this sequencer, and ends its dispatch thread.
+     */
+    @Override
+    public synchronized void close(){
+        if(!open){
+            return;
+        }
+        stop();
+        open = false;
+        for(Transmitter transmitter : getTransmitters()){
+            transmitter.close();
+        }
+        signalChange();
+        thread = null;
+    }
+
+    @Override
+    public synchronized boolean isOpen(){
+        return open;
+    }
+
+    /**
+     * Returns 0, since this sequencer does not record.
+     * @return 0.
+     */
+    @Override
+    public int getMaxReceivers(){
+        return 0;
+    }
+
+    /**
+     * Returns -1, since this sequencer supports any number of transmitters.
+     * @return -1.
+     */
+    @Override
+    public int getMaxTransmitters(){
+        return -1;
+    }
+
+    /**
+     * Throws, since this sequencer does not record.
+     *
+     * @return nothing.
+     *
+     * @throws MidiUnavailableException always.
+     */
+    @Override
+    public Receiver getReceiver() throws MidiUnavailableException{
+        throw new MidiUnavailableException("PrecisionSequencer does not record");
+    }
+
+    @Override
+    public List<Receiver> getReceivers(){
+        return List.of();
+    }
+
+    @Override
+    public Transmitter getTransmitter(){
+        PlaybackTransmitter transmitter = new PlaybackTransmitter(transmitters);
+        transmitters.add(transmitter);
+        return transmitter;
+    }
+
+    /**
+     * Returns every open transmitter of this sequencer, including look-ahead transmitters.
+     * @return every open transmitter of this sequencer.
+     */
+    @Override
+    public List<Transmitter> getTransmitters(){
+        List<Transmitter> allTransmitters = new ArrayList<>(Arrays.asList(transmitters.get()));
+        allTransmitters.addAll(Arrays.asList(lookAheadTransmitters.get()));
+        return allTransmitters;
+    }
+
+    /**
+     * Sets the sequence to play, merging its tracks into an event store before taking the lock on this sequencer, and
+     * moves to its start. Playback continues from the start of the new sequence if running.
+     *
+     * @param sequence the sequence to play, or null for none.
+     *
+     * @throws InvalidMidiDataException if the sequence has no valid timing, or too many tracks or meta and system
+     * exclusive messages.
+     */
+    @Override
+    public void setSequence(Sequence sequence) throws InvalidMidiDataException{
+        MidiEventStore newEvents = null;
+        if(sequence != null){
+            try{
+                newEvents = MidiEventStore.fromSequence(sequence);
+            }
+            catch(IllegalArgumentException e){
+                throw (InvalidMidiDataException) new InvalidMidiDataException(e.getMessage()).initCause(e);
+            }
+        }
+        setEvents(sequence, newEvents);
+    }
+
+    /**
+     * Sets the sequence to play to the Standard MIDI File read from the given stream, decoding it straight into an
+     * event store without building a {@link Sequence}, and moves to its start. Playback continues from the start of
+     * the new sequence if running. Afterwards, {@link #getSequence()} returns null.
+     *
+     * @param stream the stream to read the file from.
+     *
+     * @throws IOException if the stream cannot be read.
+     * @throws InvalidMidiDataException if the file is not a valid Standard MIDI File, or has no valid timing.
+     */
+    @Override
+    public void setSequence(InputStream stream) throws IOException, InvalidMidiDataException{
+        StandardMidiFile midiFile = new StandardMidiFile(ByteBuffer.wrap(stream.readAllBytes()));
+        setEvents(MidiEventStore.fromMidiFile(midiFile, null));
+    }
+
+    /**
+     * Sets the events to play, without a {@link Sequence}, and moves to their start. Playback continues from the
+     * start of the new events if running. Afterwards, {@link #getSequence()} returns null. The source of the previous
+     * events is closed.
+     *
+     * @param newEvents the events to play, or null for none.
+     *
+     * @throws InvalidMidiDataException if the events have no valid timing.
+     */
+    void setEvents(IMidiEventSource newEvents) throws InvalidMidiDataException{
+        setEvents(null, newEvents);
+    }
+
+    /**
+     * Sets the sequence and events to play, and moves to their start.
+     *
+     * @param newSequence the sequence the events were merged from, or null if there is none.
+     * @param newEvents the events to play, or null for none.
+     *
+     * @throws InvalidMidiDataException if the events have no valid timing.
+     */
+    private synchronized void setEvents(Sequence newSequence, IMidiEventSource newEvents)
+            throws InvalidMidiDataException{
+        if(newEvents != null && newEvents.getResolution() <= 0){
+            throw new InvalidMidiDataException("invalid resolution " + newEvents.getResolution());
+        }
+        long now = System.nanoTime();
+        if(running){
+            turnNotesOff(now);
+        }
+        if(events != null && events != newEvents){
+            events.close();
+        }
+        sequence = newSequence;
+        events = newEvents;
+        mutedTracks.clear();
+        soloTracks.clear();
+        positionTick = 0;
+        positionMpq = events == null ? TempoMap.DEFAULT_MPQ : events.getTempoMap().getMpq(0);
+        loopStartTick = 0;
+        loopEndTick = -1;
+        if(running){
+            if(events == null){
+                running = false;
+            }
+            else{
+                resetPlayheads(0, positionMpq, now);
+            }
+        }
+        signalChange();
+    }
+
+    /**
+     * Returns the sequence being played, or null if there is none or the events being played were not merged from a
+     * {@link Sequence}.
+     *
+     * @return the sequence being played, or null.
+     */
+    @Override
+    public synchronized Sequence getSequence(){
+        return sequence;
+    }
+
+    /**
+     * Starts playing the sequence from the current position, first sending the controller, program, and pitch bend
+     * values in effect there. Does nothing if there is no sequence or it is already playing.
+     *
+     * @throws IllegalStateException if this sequencer is closed.
+     */
+    @Override
+    public synchronized void start(){
+        checkOpen();
+        if(running || events == null){
+            return;
+        }
+        long now = System.nanoTime();
+        running = true;
+        resetPlayheads(positionTick, positionMpq, now);
+        chase(playhead.index, now);
+        signalChange();
+    }
+
+    /**
+     * Stops playing, keeping the current position, and turns off the notes left sounding.
+     *
+     * @throws IllegalStateException if this sequencer is closed.
+     */
+    @Override
+    public synchronized void stop(){
+        checkOpen();
+        if(!running){
+            return;
+        }
+        long now = System.nanoTime();
+        positionTick = Math.min(playhead.getTick(now), events.getTickLength());
+        positionMpq = playhead.mpq;
+        running = false;
+        turnNotesOff(now);
+        signalChange();
+    }
+
+    @Override
+    public synchronized boolean isRunning(){
+        return running;
+    }
+
+    /**
+     * Starts playback, since this sequencer does not record.
+     *
+     * @throws IllegalStateException if this sequencer is closed.
+     */
+    @Override
+    public void startRecording(){
+        start();
+    }
+
+    /**
+     * Does nothing, since this sequencer does not record.
+     */
+    @Override
+    public void stopRecording(){
+    }
+
+    @Override
+    public boolean isRecording(){
+        return false;
+    }
+
+    /**
+     * Does nothing, since this sequencer does not record.
+     *
+     * @param track the track.
+     * @param channel the channel.
+     */
+    @Override
+    public void recordEnable(Track track, int channel){
+    }
+
+    /**
+     * Does nothing, since this sequencer does not record.
+     *
+     * @param track the track.
+     */
+    @Override
+    public void recordDisable(Track track){
+    }
+
+    @Override
+    public float getTempoInBPM(){
+        return (float) (MICROS_PER_MINUTE / getTempoInMPQ());
+    }
+
+    @Override
+    public void setTempoInBPM(float bpm){
+        setTempoInMPQ((float) (MICROS_PER_MINUTE / Math.max(bpm, 1)));
+    }
+
+    @Override
+    public synchronized float getTempoInMPQ(){
+        return (float) (running ? playhead.mpq : positionMpq);
+    }
+
+    /**
+     * Sets the tempo from the current position until the next tempo change in the sequence.
+     *
+     * @param mpq the tempo in microseconds per quarter note.
+     */
+    @Override
+    public synchronized void setTempoInMPQ(float mpq){
+        mpq = Math.max(mpq, 1);
+        if(running){
+            playhead.setTempoNow(System.nanoTime(), mpq);
+            resyncLookAhead();
+            signalChange();
+        }
+        else{
+            positionMpq = mpq;
+        }
+    }
+
+    /**
+     * Scales the speed of playback by the given factor. Factors which are not positive are ignored.
+     *
+     * @param factor the factor to scale the speed of playback by.
+     */
+    @Override
+    public synchronized void setTempoFactor(float factor){
+        if(!(factor > 0)){
+            return;
+        }
+        if(running){
+            playhead.reanchor(System.nanoTime());
+        }
+        tempoFactor = factor;
+        if(running){
+            resyncLookAhead();
+        }
+        signalChange();
+    }
+
+    @Override
+    public synchronized float getTempoFactor(){
+        return tempoFactor;
+    }
+
+    @Override
+    public synchronized long getTickLength(){
+        return events == null ? 0 : events.getTickLength();
+    }
+
+    @Override
+    public synchronized long getMicrosecondLength(){
+        return events == null ? 0 : (long) events.getTempoMap().getMicros(events.getTickLength());
+    }
+
+    @Override
+    public synchronized long getTickPosition(){
+        if(running){
+            return Math.min(playhead.getTick(System.nanoTime()), events.getTickLength());
+        }
+        return positionTick;
+    }
+
+    /**
+     * Moves to the given tick, continuing playback from there if running.
+     *
+     * @param tick the tick to move to.
+     */
+    @Override
+    public synchronized void setTickPosition(long tick){
+        positionTick = Math.max(tick, 0);
+        if(events == null){
+            return;
+        }
+        positionMpq = events.getTempoMap().getMpq(positionTick);
+        if(running){
+            long now = System.nanoTime();
+            turnNotesOff(now);
+            resetPlayheads(positionTick, positionMpq, now);
+            chase(playhead.index, now);
+            signalChange();
+        }
+    }
+
+    @Override
+    public synchronized long getMicrosecondPosition(){
+        if(events == null){
+            return 0;
+        }
+        if(running){
+            return (long) playhead.getMicrosAt(System.nanoTime());
+        }
+        return (long) events.getTempoMap().getMicros(positionTick);
+    }
+
+    @Override
+    public synchronized void setMicrosecondPosition(long microseconds){
+        setTickPosition(events == null ? 0 : events.getTempoMap().getTick(microseconds));
+    }
+
+    @Override
+    public void setMasterSyncMode(SyncMode sync){
+        if(sync != SyncMode.INTERNAL_CLOCK){
+            throw new IllegalArgumentException("unsupported master sync mode: " + sync);
+        }
+    }
+
+    @Override
+    public SyncMode getMasterSyncMode(){
+        return SyncMode.INTERNAL_CLOCK;
+    }
+
+    @Override
+    public SyncMode[] getMasterSyncModes(){
+        return new SyncMode[]{SyncMode.INTERNAL_CLOCK};
+    }
+
+    @Override
+    public void setSlaveSyncMode(SyncMode sync){
+        if(sync != SyncMode.NO_SYNC){
+            throw new IllegalArgumentException("unsupported slave sync mode: " + sync);
+        }
+    }
+
+    @Override
+    public SyncMode getSlaveSyncMode(){
+        return SyncMode.NO_SYNC;
+    }
+
+    @Override
+    public SyncMode[] getSlaveSyncModes(){
+        return new SyncMode[]{SyncMode.NO_SYNC};
+    }
+
+    @Override
+    public synchronized void setTrackMute(int track, boolean mute){
+        if(isTrack(track)){
+            mutedTracks.set(track, mute);
+        }
+    }
+
+    @Override
+    public synchronized boolean getTrackMute(int track){
+        return isTrack(track) && mutedTracks.get(track);
+    }
+
+    @Override
+    public synchronized void setTrackSolo(int track, boolean solo){
+        if(isTrack(track)){
+            soloTracks.set(track, solo);
+        }
+    }
+
+    @Override
+    public synchronized boolean getTrackSolo(int track){
+        return isTrack(track) && soloTracks.get(track);
+    }
+
+    /**
+     * Returns whether the given index is a track of the current sequence.
+     *
+     * @param track the index of the track.
+     * @return true if the given index is a track of the current sequence, false otherwise.
+     */
+    private boolean isTrack(int track){
+        return events != null && track >= 0 && track < events.getTrackCount();
+    }
+
+    /**
+     * Returns whether the given track is silenced, either by being muted or by another track being soloed.
+     *
+     * @param track the index of the track.
+     * @return true if the given track is silenced, false otherwise.
+     */
+    private boolean isSilenced(int track){
+        return mutedTracks.get(track) || !soloTracks.isEmpty() && !soloTracks.get(track);
+    }
+
+    @Override
+    public boolean addMetaEventListener(MetaEventListener listener){
+        if(!metaEventListeners.contains(listener)){
+            metaEventListeners.add(listener);
+        }
+        return true;
+    }
+
+    @Override
+    public void removeMetaEventListener(MetaEventListener listener){
+        metaEventListeners.remove(listener);
+    }
+
+    /**
+     * Registers the given listener for the given controllers, or for every controller if null.
+     *
+     * @param listener the listener to register.
+     * @param controllers the controller numbers to register the listener for, or null for every controller.
+     * @return the controller numbers the listener is now registered for.
+     */
+    @Override
+    public synchronized int[] addControllerEventListener(ControllerEventListener listener, int[] controllers){
+        for(int controller : controllers == null ? makeAllControllers() : controllers){
+            if(controller >= 0 && controller < NUM_CONTROLLERS){
+                List<ControllerEventListener> listeners = controllerEventListeners.get(controller);
+                if(!listeners.contains(listener)){
+                    listeners.add(listener);
+                }
+            }
+        }
+        return getControllers(listener);
+    }
+
+    /**
+     * Unregisters the given listener from the given controllers, or from every controller if null.
+     *
+     * @param listener the listener to unregister.
+     * @param controllers the controller numbers to unregister the listener from, or null for every controller.
+     * @return the controller numbers the listener is still registered for.
+     */
+    @Override
+    public synchronized int[] removeControllerEventListener(ControllerEventListener listener, int[] controllers){
+        for(int controller : controllers == null ? makeAllControllers() : controllers){
+            if(controller >= 0 && controller < NUM_CONTROLLERS){
+                controllerEventListeners.get(controller).remove(listener);
+            }
+        }
+        return getControllers(listener);
+    }
+
+    /**
+     * Returns every controller number.
+     * @return every controller number.
+     */
+    private static int[] makeAllControllers(){
+        int[] controllers = new int[NUM_CONTROLLERS];
+        Arrays.setAll(controllers, controller -> controller);
+        return controllers;
+    }
+
+    /**
+     * Returns the controller numbers the given listener is registered for.
+     *
+     * @param listener the listener.
+     * @return the controller numbers the given listener is registered for.
+     */
+    private int[] getControllers(ControllerEventListener listener){
+        int[] controllers = new int[NUM_CONTROLLERS];
+        int count = 0;
+        for(int controller = 0; controller < NUM_CONTROLLERS; ++controller){
+            if(controllerEventListeners.get(controller).contains(listener)){
+                controllers[count++] = controller;
+            }
+        }
+        return Arrays.copyOf(controllers, count);
+    }
+
+    @Override
+    public synchronized void setLoopStartPoint(long tick){
+        if(tick < 0 || isPastEnd(tick) || loopEndTick != -1 && tick > loopEndTick){
+            throw new IllegalArgumentException("invalid loop start point: " + tick);
+        }
+        loopStartTick = tick;
+    }
+
+    @Override
+    public synchronized long getLoopStartPoint(){
+        return loopStartTick;
+    }
+
+    @Override
+    public synchronized void setLoopEndPoint(long tick){
+        if(tick < -1 || isPastEnd(tick) || tick != -1 && tick < loopStartTick){
+            throw new IllegalArgumentException("invalid loop end point: " + tick);
+        }
+        loopEndTick = tick;
+    }
+
+    @Override
+    public synchronized long getLoopEndPoint(){
+        return loopEndTick;
+    }
+
+    /**
+     * Returns whether the given tick is known to be past the end of the sequence. A streamed sequence may not yet
+     * know its length, in which case any tick may be within it.
+     *
+     * @param tick the tick.
+     * @return true if the given tick is past the end of the sequence, false otherwise.
+     */
+    private boolean isPastEnd(long tick){
+        return events == null ? tick > 0 : events.isTickLengthKnown() && tick > events.getTickLength();
+    }
+
+    @Override
+    public synchronized void setLoopCount(int count){
+        if(count < 0 && count != LOOP_CONTINUOUSLY){
+            throw new IllegalArgumentException("invalid loop count: " + count);
+        }
+        loopCount = count;
+        if(running){
+            playhead.loopsLeft = count;
+            resyncLookAhead();
+            signalChange();
+        }
+    }
+
+    @Override
+    public synchronized int getLoopCount(){
+        return loopCount;
+    }
+
+    /**
+     * Throws if this sequencer is closed.
+     *
+     * @throws IllegalStateException if this sequencer is closed.
+     */
+    private void checkOpen(){
+        if(!open){
+            throw new IllegalStateException("PrecisionSequencer is not open");
+        }
+    }
+
+    /**
+     * Wakes the dispatch thread to recompute its next deadline. Must be called while holding the lock on this
+     * sequencer.
+     */
+    private void signalChange(){
+        ++changeCount;
+        if(thread != null){
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Moves both playheads to the given tick, reached now, with the given tempo.
+     *
+     * @param tick the tick.
+     * @param mpq the tempo in microseconds per quarter note.
+     * @param nowNanos the value of {@link System#nanoTime()} now.
+     */
+    private void resetPlayheads(long tick, double mpq, long nowNanos){
+        playhead.reset(tick, mpq, nowNanos);
+        lookAheadPlayhead.reset(tick, mpq, nowNanos);
+    }
+
+    /**
+     * Turns off the notes left sounding by both playheads.
+     *
+     * @param nowNanos the value of {@link System#nanoTime()} now.
+     */
+    private void turnNotesOff(long nowNanos){
+        long timeStamp = toClockMicros(nowNanos);
+        playhead.turnNotesOff(timeStamp);
+        lookAheadPlayhead.turnNotesOff(timeStamp);
+    }
+
+    /**
+     * Brings the look-ahead playhead back in line with the playhead after the timing of playback has changed, without
+     * sending again what it has already sent.
+     */
+    private void resyncLookAhead(){
+        long stepsAhead = lookAheadPlayhead.steps - playhead.steps;
+        lookAheadPlayhead.follow(playhead);
+        lookAheadPlayhead.skip(stepsAhead);
+    }
+
+    /**
+     * Sends the last controller, program, and pitch bend values set on each channel before the given event to both
+     * playheads, so that playback from the middle of the sequence sounds as it would from the start.
+     *
+     * @param endIndex the index of the event playback starts from.
+     * @param nowNanos the value of {@link System#nanoTime()} now.
+     */
+    private void chase(int endIndex, long nowNanos){
+        if(endIndex == 0){
+            return;
+        }
+        long timeStamp = toClockMicros(nowNanos);
+        events.chase(endIndex, this::isSilenced, chaseState);
+        for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+            for(int controller = 0; controller < NUM_CONTROLLERS; ++controller){
+                int value = chaseState.getControllerValue(channel, controller);
+                if(value >= 0){
+                    sendToBoth(CONTROL_CHANGE | channel, controller, value, timeStamp);
+                }
+            }
+            if(chaseState.getProgram(channel) >= 0){
+                sendToBoth(PROGRAM_CHANGE | channel, chaseState.getProgram(channel), 0, timeStamp);
+            }
+            int pitchBend = chaseState.getPitchBend(channel);
+            if(pitchBend >= 0){
+                sendToBoth(PITCH_BEND_CHANGE | channel, pitchBend & 0xFF, pitchBend >>> 8, timeStamp);
+            }
+        }
+    }
+
+    /**
+     * Sends a short message to the transmitters of both playheads.
+     *
+     * @param status the status byte.
+     * @param data1 the first data byte.
+     * @param data2 the second data byte.
+     * @param timeStamp the time-stamp, on the clock of this sequencer.
+     */
+    private void sendToBoth(int status, int data1, int data2, long timeStamp){
+        playhead.send(status, data1, data2, timeStamp);
+        lookAheadPlayhead.send(status, data1, data2, timeStamp);
+    }
+
+    /**
+     * Makes a short message from bytes which have already been validated.
+     *
+     * @param status the status byte.
+     * @param data1 the first data byte.
+     * @param data2 the second data byte.
+     * @return the short message.
+     */
+    private static ShortMessage makeShortMessage(int status, int data1, int data2){
+        ShortMessage message = new ShortMessage();
+        setShortMessage(message, status, data1, data2);
+        return message;
+    }
+
+    /**
+     * Sets the given short message to bytes which have already been validated.
+     *
+     * @param message the short message to set.
+     * @param status the status byte.
+     * @param data1 the first data byte.
+     * @param data2 the second data byte.
+     */
+    private static void setShortMessage(ShortMessage message, int status, int data1, int data2){
+        try{
+            message.setMessage(status, data1, data2);
+        }
+        catch(InvalidMidiDataException e){
+            throw new IllegalStateException("invalid stored message", e);
+        }
+    }
+
+    /**
+     * Waits for each event to come due and dispatches it, until this sequencer is closed. Runs on the dispatch thread.
+     */
+    private void run(){
+        while(true){
+            long dueNanos;
+            int changes;
+            synchronized(this){
+                if(thread != Thread.currentThread()){
+                    return;
+                }
+                changes = changeCount;
+                dueNanos = Long.MAX_VALUE;
+                if(running){
+                    dueNanos = playhead.getNextNanos();
+                    if(!lookAheadTransmitters.isEmpty()){
+                        //the next batch is sent once the next event is due within half the window
+                        dueNanos = Math.min(dueNanos, lookAheadPlayhead.getNextNanos() - lookAheadNanos / 2);
+                    }
+                }
+            }
+            if(dueNanos == Long.MAX_VALUE){
+                LockSupport.park(this);
+                continue;
+            }
+            if(!waitUntil(dueNanos, changes)){
+                continue;
+            }
+            synchronized(this){
+                if(changes != changeCount){
+                    continue;
+                }
+                long now = System.nanoTime();
+                if(!lookAheadTransmitters.isEmpty()){
+                    while(running && lookAheadPlayhead.getNextNanos() <= now + lookAheadNanos){
+                        lookAheadPlayhead.dispatchNext();
+                    }
+                }
+                while(running && playhead.getNextNanos() <= now){
+                    playhead.dispatchNext();
+                }
+                if(events != null){
+                    int neededIndex = playhead.index;
+                    if(!lookAheadTransmitters.isEmpty()){
+                        neededIndex = Math.min(neededIndex, lookAheadPlayhead.index);
+                    }
+                    events.discardBefore(neededIndex);
+                }
+            }
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Blocks the dispatch thread until the given {@link System#nanoTime()} deadline, parking for most of the wait and
+     * spinning for the remainder, unless the timing of playback changes first.
+     *
+     * @param deadlineNanos the deadline.
+     * @param changes the change count when the deadline was computed.
+     * @return true if the deadline was reached, false if the timing of playback changed first.
+     */
+    private boolean waitUntil(long deadlineNanos, int changes){
+        long remainingNanos;
+        while((remainingNanos = deadlineNanos - System.nanoTime()) > SPIN_NANOS){
+            LockSupport.parkNanos(this, remainingNanos - SPIN_NANOS);
+            if(changes != changeCount){
+                return false;
+            }
+        }
+        while(deadlineNanos - System.nanoTime() > 0){
+            if(changes != changeCount){
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    /**
+     * Gives the meta and controller messages collected while dispatching to their listeners, outside the lock on this
+     * sequencer. Runs on the dispatch thread.
+     */
+    private void notifyListeners(){
+        for(int i = 0; i < pendingNotifications.size(); ++i){
+            MidiMessage message = pendingNotifications.get(i);
+            if(message instanceof MetaMessage metaMessage){
+                for(MetaEventListener listener : metaEventListeners){
+                    listener.meta(metaMessage);
+                }
+            }
+            else if(message instanceof ShortMessage shortMessage){
+                for(ControllerEventListener listener : controllerEventListeners.get(shortMessage.getData1())){
+                    listener.controlChange(shortMessage);
+                }
+            }
+        }
+        pendingNotifications.clear();
+    }
+
+    /**
+     * A {@code Playhead} walks through the event store as playback proceeds, sending to its own transmitters and
+     * tracking the tempo in effect, how sequence time maps to {@link System#nanoTime()}, the loops left, and the notes
+     * left sounding. The look-ahead playhead only sends; the other also ends playback and collects notifications for
+     * listeners. Only accessed while holding the lock on the sequencer.
+     */
+    private final class Playhead {
+        private final PlaybackTransmitterList transmitters;
+        private final boolean lookAhead;
+        private final long[] soundingNotes;
+        //reused for every short message sent to receivers which take objects
+        private final ShortMessage reusedMessage;
+
+        //the index of the next event
+        private int index;
+        //the tempo mpq has been in effect since segmentTick, which is segmentMicros into the sequence
+        private double segmentTick;
+        private double segmentMicros;
+        private double mpq;
+        //sequence time anchorMicros was reached at anchorNanos
+        private long anchorNanos;
+        private double anchorMicros;
+        private int loopsLeft;
+        private boolean finished;
+        //the number of things which have happened since the last reset
+        private long steps;
+        //the latest time-stamp sent, so that notes are turned off after everything already sent
+        private long latestTimeStamp;
+        //true while passing over things already sent
+        private boolean skipping;
+
+        /**
+         * Constructs a {@code Playhead} at the start of no sequence.
+         *
+         * @param transmitters the transmitters to send to.
+         * @param lookAhead true if this is the look-ahead playhead, false otherwise.
+         */
+        private Playhead(PlaybackTransmitterList transmitters, boolean lookAhead){
+            this.transmitters = transmitters;
+            this.lookAhead = lookAhead;
+            soundingNotes = new long[NUM_CHANNELS * NUM_NOTES / Long.SIZE];
+            reusedMessage = new ShortMessage();
+            latestTimeStamp = Long.MIN_VALUE;
+        }
+
+        /**
+         * Moves this playhead to the given tick, reached now, with the given tempo.
+         *
+         * @param tick the tick.
+         * @param mpq the tempo in microseconds per quarter note.
+         * @param nowNanos the value of {@link System#nanoTime()} now.
+         */
+        private void reset(long tick, double mpq, long nowNanos){
+            index = events.findIndex(tick);
+            segmentTick = tick;
+            segmentMicros = events.getTempoMap().getMicros(tick);
+            this.mpq = mpq;
+            anchorNanos = nowNanos;
+            anchorMicros = segmentMicros;
+            loopsLeft = loopCount;
+            finished = false;
+            steps = 0;
+        }
+
+        /**
+         * Moves this playhead to where the given playhead is, with the same timing.
+         *
+         * @param other the playhead to follow.
+         */
+        private void follow(Playhead other){
+            index = other.index;
+            segmentTick = other.segmentTick;
+            segmentMicros = other.segmentMicros;
+            mpq = other.mpq;
+            anchorNanos = other.anchorNanos;
+            anchorMicros = other.anchorMicros;
+            loopsLeft = other.loopsLeft;
+            finished = other.finished;
+            steps = other.steps;
+        }
+
+        /**
+         * Makes the given number of things happen without sending anything, since they have already been sent.
+         *
+         * @param count the number of things to pass over.
+         */
+        private void skip(long count){
+            skipping = true;
+            for(long i = 0; i < count && !finished; ++i){
+                dispatchNext();
+            }
+            skipping = false;
+        }
+
+        /**
+         * Returns the sequence time of the given tick, if reached without passing a tempo change.
+         *
+         * @param tick the tick.
+         * @return the sequence time of the given tick, in microseconds.
+         */
+        private double getTickMicros(double tick){
+            return segmentMicros + (tick - segmentTick) * events.getTempoMap().getMicrosPerTick(mpq);
+        }
+
+        /**
+         * Returns the sequence time reached at the given {@link System#nanoTime()} value.
+         *
+         * @param nanos the value of {@link System#nanoTime()}.
+         * @return the sequence time reached at the given time, in microseconds.
+         */
+        private double getMicrosAt(long nanos){
+            return anchorMicros + (nanos - anchorNanos) / NANOS_PER_MICRO * tempoFactor;
+        }
+
+        /**
+         * Returns the tick reached at the given {@link System#nanoTime()} value.
+         *
+         * @param nanos the value of {@link System#nanoTime()}.
+         * @return the tick reached at the given time.
+         */
+        private long getTick(long nanos){
+            double microsPerTick = events.getTempoMap().getMicrosPerTick(mpq);
+            return (long) Math.max(segmentTick + (getMicrosAt(nanos) - segmentMicros) / microsPerTick, 0);
+        }
+
+        /**
+         * Returns the {@link System#nanoTime()} value at which the given sequence time is reached.
+         *
+         * @param micros the sequence time, in microseconds.
+         * @return the value of {@link System#nanoTime()} at which the given sequence time is reached.
+         */
+        private long getNanos(double micros){
+            return anchorNanos + (long) ((micros - anchorMicros) * NANOS_PER_MICRO / tempoFactor);
+        }
+
+        /**
+         * Returns the tick at which playback jumps back to the loop start point, or {@link Long#MAX_VALUE} if no loops
+         * are left or the loop is empty. A loop to the end of a sequence whose length is not yet known cannot have
+         * been reached, since the length is known once the last event is.
+         *
+         * @return the tick at which playback jumps back to the loop start point.
+         */
+        private long getLoopEndTick(){
+            if(loopsLeft == 0 || loopEndTick == -1 && !events.isTickLengthKnown()){
+                return Long.MAX_VALUE;
+            }
+            long endTick = loopEndTick == -1 ? events.getTickLength() : loopEndTick;
+            if(endTick <= loopStartTick){
+                return Long.MAX_VALUE;
+            }
+            return endTick;
+        }
+
+        /**
+         * Returns the tick of the next thing to happen: the next event, the jump back to the loop start point, or
+         * the end of the sequence.
+         *
+         * @return the tick of the next thing to happen.
+         */
+        private long getNextTick(){
+            long nextTick = events.hasEvent(index) ? events.getTick(index) : events.getTickLength();
+            return Math.min(nextTick, getLoopEndTick());
+        }
+
+        /**
+         * Returns the {@link System#nanoTime()} value at which the next thing is due to happen.
+         * @return the value of {@link System#nanoTime()} at which the next thing is due to happen.
+         */
+        private long getNextNanos(){
+            return finished ? Long.MAX_VALUE : getNanos(getTickMicros(getNextTick()));
+        }
+
+        /**
+         * Sets the tempo from now until the next tempo change.
+         *
+         * @param nowNanos the value of {@link System#nanoTime()} now.
+         * @param mpq the tempo in microseconds per quarter note.
+         */
+        private void setTempoNow(long nowNanos, double mpq){
+            double micros = getMicrosAt(nowNanos);
+            segmentTick += (micros - segmentMicros) / events.getTempoMap().getMicrosPerTick(this.mpq);
+            segmentMicros = micros;
+            this.mpq = mpq;
+        }
+
+        /**
+         * Anchors the mapping from sequence time to {@link System#nanoTime()} at now, so that the tempo factor can be
+         * changed from now on.
+         *
+         * @param nowNanos the value of {@link System#nanoTime()} now.
+         */
+        private void reanchor(long nowNanos){
+            anchorMicros = getMicrosAt(nowNanos);
+            anchorNanos = nowNanos;
+        }
+
+        /**
+         * Makes the next thing happen, whether dispatching the next event, jumping back to the loop start point, or
+         * ending playback.
+         */
+        private void dispatchNext(){
+            long tick = getNextTick();
+            long dueNanos = getNanos(getTickMicros(tick));
+            long timeStamp = toClockMicros(dueNanos);
+            ++steps;
+            if(tick >= getLoopEndTick()){
+                jumpToLoopStart(dueNanos, timeStamp);
+            }
+            else if(events.hasEvent(index)){
+                dispatch(index++, timeStamp);
+            }
+            else if(lookAhead){
+                finished = true;
+            }
+            else{
+                finished = true;
+                positionTick = events.getTickLength();
+                positionMpq = mpq;
+                running = false;
+                PrecisionSequencer.this.turnNotesOff(dueNanos);
+                if(!metaEventListeners.isEmpty()){
+                    pendingNotifications.add(makeEndOfTrack());
+                }
+            }
+        }
+
+        /**
+         * Dispatches the given event.
+         *
+         * @param eventIndex the index of the event.
+         * @param timeStamp the time-stamp of the event, on the clock of the sequencer.
+         */
+        private void dispatch(int eventIndex, long timeStamp){
+            int message = events.getMessage(eventIndex);
+            if(MidiEventStore.isLongMessage(message)){
+                MidiMessage longMessage = events.getLongMessage(message);
+                if(longMessage instanceof MetaMessage metaMessage){
+                    int newMpq = MidiEventStore.getTempoMpq(metaMessage);
+                    if(newMpq > 0){
+                        long tick = events.getTick(eventIndex);
+                        segmentMicros = getTickMicros(tick);
+                        segmentTick = tick;
+                        mpq = newMpq;
+                    }
+                    if(!lookAhead && metaMessage.getType() != MidiEventStore.END_OF_TRACK_META_TYPE
+                            && !metaEventListeners.isEmpty()){
+                        pendingNotifications.add(metaMessage);
+                    }
+                }
+                else if(!isSilenced(events.getTrack(eventIndex))){
+                    send(longMessage, timeStamp);
+                }
+                return;
+            }
+            if(isSilenced(events.getTrack(eventIndex))){
+                return;
+            }
+            int status = MidiEventStore.getStatus(message);
+            int data1 = MidiEventStore.getData1(message);
+            int data2 = MidiEventStore.getData2(message);
+            int command = status & COMMAND_MASK;
+            if(command == NOTE_ON || command == NOTE_OFF){
+                int note = (status & CHANNEL_MASK) * NUM_NOTES + data1;
+                if(command == NOTE_ON && data2 > 0){
+                    soundingNotes[note >>> 6] |= 1L << note;
+                }
+                else{
+                    soundingNotes[note >>> 6] &= ~(1L << note);
+                }
+            }
+            send(status, data1, data2, timeStamp);
+            if(!lookAhead && command == CONTROL_CHANGE && !controllerEventListeners.get(data1).isEmpty()){
+                pendingNotifications.add(makeShortMessage(status, data1, data2));
+            }
+        }
+
+        /**
+         * Jumps back to the loop start point, at the time the loop end point was due.
+         *
+         * @param dueNanos the value of {@link System#nanoTime()} at which the loop end point was due.
+         * @param timeStamp the time-stamp at which the loop end point was due, on the clock of the sequencer.
+         */
+        private void jumpToLoopStart(long dueNanos, long timeStamp){
+            turnNotesOff(timeStamp);
+            int remainingLoops = loopsLeft == LOOP_CONTINUOUSLY ? LOOP_CONTINUOUSLY : loopsLeft - 1;
+            reset(loopStartTick, events.getTempoMap().getMpq(loopStartTick), dueNanos);
+            loopsLeft = remainingLoops;
+        }
+
+        /**
+         * Sends a note off for every note left sounding, and releases the sustain pedal on every channel, after
+         * everything already sent.
+         *
+         * @param timeStamp the time-stamp to send the messages with, on the clock of the sequencer.
+         */
+        private void turnNotesOff(long timeStamp){
+            if(latestTimeStamp >= timeStamp){
+                timeStamp = latestTimeStamp + 1;
+            }
+            for(int word = 0; word < soundingNotes.length; ++word){
+                while(soundingNotes[word] != 0){
+                    int note = word * Long.SIZE + Long.numberOfTrailingZeros(soundingNotes[word]);
+                    soundingNotes[word] &= soundingNotes[word] - 1;
+                    send(NOTE_OFF | note / NUM_NOTES, note % NUM_NOTES, 0, timeStamp);
+                }
+            }
+            for(int channel = 0; channel < NUM_CHANNELS; ++channel){
+                send(CONTROL_CHANGE | channel, SUSTAIN_SWITCH, 0, timeStamp);
+            }
+        }
+
+        /**
+         * Sends a short message to the receiver of every transmitter of this playhead, as primitives to receivers
+         * which are {@link IShortMessageObserver}s, and as the reused {@code ShortMessage} to the others.
+         *
+         * @param status the status byte.
+         * @param data1 the first data byte.
+         * @param data2 the second data byte.
+         * @param timeStamp the time-stamp, on the clock of the sequencer.
+         */
+        private void send(int status, int data1, int data2, long timeStamp){
+            if(skipping){
+                return;
+            }
+            latestTimeStamp = Math.max(latestTimeStamp, timeStamp);
+            boolean messageSet = false;
+            for(PlaybackTransmitter transmitter : transmitters.get()){
+                Receiver receiver = transmitter.receiver;
+                if(receiver instanceof IShortMessageObserver observer){
+                    observer.onShortMessage(status, data1, data2, timeStamp);
+                }
+                else if(receiver != null){
+                    if(!messageSet){
+                        setShortMessage(reusedMessage, status, data1, data2);
+                        messageSet = true;
+                    }
+                    receiver.send(reusedMessage, timeStamp);
+                }
+            }
+        }
+
+        /**
+         * Sends a message to the receiver of every transmitter of this playhead.
+         *
+         * @param message the message.
+         * @param timeStamp the time-stamp, on the clock of the sequencer.
+         */
+        private void send(MidiMessage message, long timeStamp){
+            if(skipping){
+                return;
+            }
+            latestTimeStamp = Math.max(latestTimeStamp, timeStamp);
+            for(PlaybackTransmitter transmitter : transmitters.get()){
+                Receiver receiver = transmitter.receiver;
+                if(receiver != null){
+                    receiver.send(message, timeStamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the end of track meta message given to meta event listeners when playback reaches the end.
+     * @return an end of track meta message.
+     */
+    private static MetaMessage makeEndOfTrack(){
+        try{
+            return new MetaMessage(MidiEventStore.END_OF_TRACK_META_TYPE, new byte[0], 0);
+        }
+        catch(InvalidMidiDataException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A {@code PlaybackTransmitter} passes the messages played by the sequencer to its receiver.
+     */
+    private static final class PlaybackTransmitter implements Transmitter {
+        private final PlaybackTransmitterList owner;
+        //replaced from other threads while the dispatch thread sends
+        private volatile Receiver receiver;
+
+        /**
+         * Constructs a {@code PlaybackTransmitter} which belongs to the given list of transmitters.
+         *
+         * @param owner the list of transmitters to which this one belongs.
+         */
+        private PlaybackTransmitter(PlaybackTransmitterList owner){
+            this.owner = owner;
+        }
+
+        @Override
+        public void setReceiver(Receiver receiver){
+            this.receiver = receiver;
+        }
+
+        @Override
+        public Receiver getReceiver(){
+            return receiver;
+        }
+
+        /**
+         * Disconnects this transmitter from the sequencer.
+         */
+        @Override
+        public void close(){
+            owner.remove(this);
+        }
+    }
+
+    /**
+     * A {@code PlaybackTransmitterList} holds the transmitters of a playhead in an array which is replaced whenever one
+     * is added or removed, so that sending to them neither allocates nor needs to lock.
+     */
+    private static final class PlaybackTransmitterList {
+        private volatile PlaybackTransmitter[] transmitters;
+
+        /**
+         * Constructs an empty {@code PlaybackTransmitterList}.
+         */
+        private PlaybackTransmitterList(){
+            transmitters = new PlaybackTransmitter[0];
+        }
+
+        /**
+         * Adds the given transmitter.
+         * @param transmitter the transmitter to add.
+         */
+        synchronized void add(PlaybackTransmitter transmitter){
+            PlaybackTransmitter[] newTransmitters = Arrays.copyOf(transmitters, transmitters.length + 1);
+            newTransmitters[transmitters.length] = transmitter;
+            transmitters = newTransmitters;
+        }
+
+        /**
+         * Removes the given transmitter, if it is in this list.
+         * @param transmitter the transmitter to remove.
+         */
+        synchronized void remove(PlaybackTransmitter transmitter){
+            PlaybackTransmitter[] oldTransmitters = transmitters;
+            for(int i = 0; i < oldTransmitters.length; ++i){
+                if(oldTransmitters[i] == transmitter){
+                    PlaybackTransmitter[] newTransmitters = new PlaybackTransmitter[oldTransmitters.length - 1];
+                    System.arraycopy(oldTransmitters, 0, newTransmitters, 0, i);
+                    System.arraycopy(oldTransmitters, i + 1, newTransmitters, i, newTransmitters.length - i);
+                    transmitters = newTransmitters;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns whether this list has no transmitters.
+         * @return true if this list has no transmitters, false otherwise.
+         */
+        boolean isEmpty(){
+            return transmitters.length == 0;
+        }
+
+        /**
+         * Returns the transmitters in this list, in an array which must not be modified.
+         * @return the transmitters in this list.
+         */
+        PlaybackTransmitter[] get(){
+            return transmitters;
+        }
+    }
+
+    /**
+     * The device info of every {@code PrecisionSequencer}.
+     */
+    private static final class PrecisionSequencerInfo extends Info {
+        private PrecisionSequencerInfo(){
+            super(
+                    "Precision Sequencer",
+                    "MidiPianist",
+                    "Sequencer which dispatches against nanoTime deadlines with real time-stamps",
+                    "1.0"
+            );
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package midi;
+
+import java.util.Arrays;
+
+/**
+ * A {@code ShortMessageSubject} implements {@link IShortMessageSubject}. Observers are held in an array which is
+ * replaced whenever an observer is attached or detached, so broadcasting neither allocates nor needs to lock.
+ */
+class ShortMessageSubject implements IShortMessageSubject {
+    private volatile IShortMessageObserver[] observers;
+
+    /**
+     * Constructs a new {@code ShortMessageSubject}.
+     */
+    public ShortMessageSubject(){
+        observers = new IShortMessageObserver[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param observer the observer to attach to this subject.
+     */
+    @Override
+    public synchronized void attach(IShortMessageObserver observer){
+        IShortMessageObserver[] newObservers = Arrays.copyOf(observers, observers.length + 1);
+        newObservers[observers.length] = observer;
+        observers = newObservers;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param observer the observer to remove from this subject.
+     */
+    @Override
+    public synchronized void detach(IShortMessageObserver observer){
+        IShortMessageObserver[] oldObservers = observers;
+        for(int i = 0; i < oldObservers.length; ++i){
+            if(oldObservers[i] == observer){
+                IShortMessageObserver[] newObservers = new IShortMessageObserver[oldObservers.length - 1];
+                System.arraycopy(oldObservers, 0, newObservers, 0, i);
+                System.arraycopy(oldObservers, i + 1, newObservers, i, oldObservers.length - i - 1);
+                observers = newObservers;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Broadcasts the given MIDI short message to all subscribed observers.
+     *
+     * @param status the status byte of the message.
+     * @param data1 the first data byte of the message.
+     * @param data2 the second data byte of the message.
+     * @param timeStamp the time-stamp of the message in microseconds, or -1 if there is none.
+     */
+    public void broadcast(int status, int data1, int data2, long timeStamp){
+        IShortMessageObserver[] observers = this.observers;
+        for(int i = 0; i < observers.length; ++i){
+            observers[i].onShortMessage(status, data1, data2, timeStamp);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package midi;
+
+import util.file.ByteBufferInputStream;
+import util.file.FileUtil;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Soundbank;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@code SoundbankCache} parses SF2 and DLS soundbank files once and keeps the parsed {@code Soundbank}s, so that
+ * later tracks and reopened synthesizers reuse them instead of reading the file again. Files are read through a
+ * memory mapping rather than a stream of small reads.
+ * <p>
+ * A {@code SoundbankCache} is safe for concurrent use; a file requested by several threads at once is parsed once.
+ */
+public class SoundbankCache {
+    //keyed by canonical file
+    private final Map<File, Soundbank> soundbanks;
+
+    /**
+     * Constructs an empty {@code SoundbankCache}.
+     */
+    public SoundbankCache(){
+        soundbanks = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the soundbank held in the given file, parsing it if it has not been parsed before.
+     *
+     * @param file the SF2 or DLS file.
+     * @return the soundbank held in the given file.
+     *
+     * @throws UncheckedIOException if the file cannot be read.
+     * @throws RuntimeException if the file is not a supported soundbank.
+     */
+    public Soundbank getSoundbank(File file){
+        return soundbanks.computeIfAbsent(canonicalize(file), SoundbankCache::parseSoundbank);
+    }
+
+    /**
+     * Parses the soundbank held in the given file through a memory mapping of the file.
+     *
+     * @param file the SF2 or DLS file.
+     * @return the soundbank held in the given file.
+     *
+     * @throws UncheckedIOException if the file cannot be read.
+     * @throws RuntimeException if the file is not a supported soundbank.
+     */
+    private static Soundbank parseSoundbank(File file){
+        try{
+            return MidiSystem.getSoundbank(new ByteBufferInputStream(FileUtil.mapFile(file)));
+        }
+        catch(InvalidMidiDataException imde){
+            throw new RuntimeException("Unsupported soundbank: " + file, imde);
+        }
+        catch(IOException ioe){
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Returns the canonical form of the given file, so that different paths to the same file share one soundbank.
+     *
+     * @param file the file.
+     * @return the canonical form of the given file.
+     */
+    private static File canonicalize(File file){
+        try{
+            return file.getCanonicalFile();
+        }
+        catch(IOException ioe){
+            throw new UncheckedIOException(ioe);
+        }
+    }
+}
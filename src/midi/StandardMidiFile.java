@@ -0,0 +1,134 @@
+package midi;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@code StandardMidiFile} reads the header of a Standard MIDI File held in a buffer, and finds where the data of
+ * each of its {@code MTrk} chunks lies from the chunk headers, without decoding any events. The events of each track
+ * are then decoded by a {@link MidiTrackCursor}.
+ * <p>
+ * Formats 0 and 1 are supported. Chunks of unknown type are skipped, and a final chunk cut short by the end of the
+ * file is read up to the end of the file.
+ */
+final class StandardMidiFile {
+    private static final int HEADER_CHUNK_TYPE = 0x4D546864; //MThd
+    private static final int TRACK_CHUNK_TYPE = 0x4D54726B; //MTrk
+    private static final int CHUNK_HEADER_LENGTH = 8;
+    private static final int MIN_HEADER_LENGTH = 6;
+    private static final int MAX_FORMAT = 1;
+    private static final int SMPTE_BIT = 0x8000;
+    private static final int SMPTE_30_DROP_FRAMES = 29;
+
+    private final ByteBuffer buffer;
+    private final float divisionType;
+    private final int resolution;
+    private final int[] trackStarts;
+    private final int[] trackEnds;
+
+    /**
+     * Constructs a {@code StandardMidiFile} from the given bytes, reading its header and chunk headers.
+     *
+     * @param buffer the bytes of the file, from its start to its limit.
+     *
+     * @throws InvalidMidiDataException if the bytes are not a Standard MIDI File of a supported format.
+     */
+    StandardMidiFile(ByteBuffer buffer) throws InvalidMidiDataException{
+        this.buffer = buffer;
+        int limit = buffer.limit();
+        if(limit < CHUNK_HEADER_LENGTH + MIN_HEADER_LENGTH || buffer.getInt(0) != HEADER_CHUNK_TYPE){
+            throw new InvalidMidiDataException("not a Standard MIDI File");
+        }
+        long headerLength = Integer.toUnsignedLong(buffer.getInt(4));
+        if(headerLength < MIN_HEADER_LENGTH){
+            throw new InvalidMidiDataException("invalid header length " + headerLength);
+        }
+        int format = Short.toUnsignedInt(buffer.getShort(CHUNK_HEADER_LENGTH));
+        if(format > MAX_FORMAT){
+            throw new InvalidMidiDataException("unsupported MIDI file format " + format);
+        }
+        int declaredTrackCount = Short.toUnsignedInt(buffer.getShort(CHUNK_HEADER_LENGTH + 2));
+        int division = Short.toUnsignedInt(buffer.getShort(CHUNK_HEADER_LENGTH + 4));
+        if((division & SMPTE_BIT) == 0){
+            divisionType = Sequence.PPQ;
+            resolution = division;
+        }
+        else{
+            //the upper byte is the negated frame rate
+            int frames = -(byte) (division >> 8);
+            divisionType = switch(frames){
+                case 24 -> Sequence.SMPTE_24;
+                case 25 -> Sequence.SMPTE_25;
+                case SMPTE_30_DROP_FRAMES -> Sequence.SMPTE_30DROP;
+                case 30 -> Sequence.SMPTE_30;
+                default -> throw new InvalidMidiDataException("invalid SMPTE frame rate " + frames);
+            };
+            resolution = division & 0xFF;
+        }
+
+        int[] starts = new int[declaredTrackCount];
+        int[] ends = new int[declaredTrackCount];
+        int trackCount = 0;
+        long position = CHUNK_HEADER_LENGTH + headerLength;
+        while(trackCount < declaredTrackCount && position + CHUNK_HEADER_LENGTH <= limit){
+            int type = buffer.getInt((int) position);
+            long length = Integer.toUnsignedLong(buffer.getInt((int) position + 4));
+            position += CHUNK_HEADER_LENGTH;
+            if(type == TRACK_CHUNK_TYPE){
+                starts[trackCount] = (int) position;
+                ends[trackCount++] = (int) Math.min(position + length, limit);
+            }
+            position += length;
+        }
+        trackStarts = Arrays.copyOf(starts, trackCount);
+        trackEnds = Arrays.copyOf(ends, trackCount);
+    }
+
+    /**
+     * Returns the timing division type of the file.
+     * @return the timing division type of the file, as defined by {@link Sequence}.
+     */
+    float getDivisionType(){
+        return divisionType;
+    }
+
+    /**
+     * Returns the timing resolution of the file.
+     * @return the timing resolution of the file, in ticks per quarter note or per frame.
+     */
+    int getResolution(){
+        return resolution;
+    }
+
+    /**
+     * Returns the number of tracks found in the file, which is less than declared in its header if the file is cut
+     * short.
+     *
+     * @return the number of tracks in the file.
+     */
+    int getTrackCount(){
+        return trackStarts.length;
+    }
+
+    /**
+     * Returns the number of bytes of data in the given track.
+     *
+     * @param track the index of the track.
+     * @return the number of bytes of data in the given track.
+     */
+    int getTrackLength(int track){
+        return trackEnds[track] - trackStarts[track];
+    }
+
+    /**
+     * Returns a new cursor before the first event of the given track.
+     *
+     * @param track the index of the track.
+     * @return a new cursor over the given track.
+     */
+    MidiTrackCursor openTrack(int track){
+        return new MidiTrackCursor(buffer, trackStarts[track], trackEnds[track]);
+    }
+}
@@ -0,0 +1,120 @@
+package midi;
+
+import javax.sound.midi.Sequence;
+import java.util.Arrays;
+
+/**
+ * A {@code TempoMap} converts between ticks and microseconds from the start of a sequence, given the tempo changes of
+ * the sequence.
+ * <p>
+ * Sequences timed in pulses per quarter note follow their tempo changes, starting at the default tempo of 120 beats
+ * per minute. Sequences timed in SMPTE frames play at a fixed number of ticks per second and ignore tempo changes.
+ */
+final class TempoMap {
+    static final int DEFAULT_MPQ = 500_000;
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+
+    private final float divisionType;
+    private final int resolution;
+
+    //tempo i is in effect from tick ticks[i], which is micros[i] microseconds in
+    private final long[] ticks;
+    private final int[] mpqs;
+    private final double[] micros;
+
+    /**
+     * Constructs a {@code TempoMap} from the tempo changes of a sequence, in tick order.
+     *
+     * @param divisionType the timing division type of the sequence.
+     * @param resolution the timing resolution of the sequence.
+     * @param changeTicks the tick of each tempo change; may be longer than the number of changes.
+     * @param changeMpqs the tempo of each tempo change in microseconds per quarter note.
+     * @param changeCount the number of tempo changes.
+     */
+    TempoMap(float divisionType, int resolution, long[] changeTicks, int[] changeMpqs, int changeCount){
+        this.divisionType = divisionType;
+        this.resolution = resolution;
+        long[] tempoTicks = new long[changeCount + 1];
+        int[] tempoMpqs = new int[changeCount + 1];
+        double[] tempoMicros = new double[changeCount + 1];
+        tempoMpqs[0] = DEFAULT_MPQ;
+        int count = 1;
+        for(int i = 0; i < changeCount; ++i){
+            int last = count - 1;
+            //a later change at the same tick replaces an earlier one
+            if(changeTicks[i] != tempoTicks[last]){
+                tempoMicros[count] = tempoMicros[last]
+                        + (changeTicks[i] - tempoTicks[last]) * getMicrosPerTick(tempoMpqs[last]);
+                tempoTicks[count] = changeTicks[i];
+                last = count++;
+            }
+            tempoMpqs[last] = changeMpqs[i];
+        }
+        ticks = Arrays.copyOf(tempoTicks, count);
+        mpqs = Arrays.copyOf(tempoMpqs, count);
+        micros = Arrays.copyOf(tempoMicros, count);
+    }
+
+    /**
+     * Returns the number of microseconds one tick lasts at the given tempo.
+     *
+     * @param mpq the tempo in microseconds per quarter note.
+     * @return the number of microseconds one tick lasts at the given tempo.
+     */
+    double getMicrosPerTick(double mpq){
+        if(divisionType == Sequence.PPQ){
+            return mpq / resolution;
+        }
+        return MICROS_PER_SECOND / (divisionType * resolution);
+    }
+
+    /**
+     * Returns the time of the given tick from the start of the sequence.
+     *
+     * @param tick the tick.
+     * @return the time of the given tick, in microseconds.
+     */
+    double getMicros(long tick){
+        int index = findTempoAtTick(tick);
+        return micros[index] + (tick - ticks[index]) * getMicrosPerTick(mpqs[index]);
+    }
+
+    /**
+     * Returns the tempo in effect at the given tick.
+     *
+     * @param tick the tick.
+     * @return the tempo in effect at the given tick, in microseconds per quarter note.
+     */
+    int getMpq(long tick){
+        return mpqs[findTempoAtTick(tick)];
+    }
+
+    /**
+     * Returns the tick reached the given time after the start of the sequence, rounded down.
+     *
+     * @param time the time in microseconds.
+     * @return the tick reached at the given time.
+     */
+    long getTick(double time){
+        int index = Arrays.binarySearch(micros, time);
+        if(index < 0){
+            index = -index - 2;
+        }
+        index = Math.max(index, 0);
+        return ticks[index] + (long) ((time - micros[index]) / getMicrosPerTick(mpqs[index]));
+    }
+
+    /**
+     * Returns the index of the tempo in effect at the given tick.
+     *
+     * @param tick the tick.
+     * @return the index of the tempo in effect at the given tick.
+     */
+    private int findTempoAtTick(long tick){
+        int index = Arrays.binarySearch(ticks, tick);
+        if(index < 0){
+            index = -index - 2;
+        }
+        return Math.max(index, 0);
+    }
+}
@@ -0,0 +1,94 @@
+package midi;
+
+import java.io.File;
+
+/**
+ * A {@code TrackLoadProgress} reports how far the loading of a dropped MIDI file has got.
+ */
+public class TrackLoadProgress {
+
+    /**
+     * The stages a track load passes through. Every load ends in {@code STARTED}, {@code FAILED}, or
+     * {@code CANCELLED}.
+     */
+    public enum Stage {
+        /** The file is being parsed; the fraction is the share of its bytes read so far. */
+        PARSING,
+        /** The file has been parsed and the instruments it uses are being loaded into the synth. */
+        PRELOADING,
+        /** The track has replaced the previous one in the sequencer and is playing. */
+        STARTED,
+        /** The file could not be read or is not a valid MIDI file; the previous track, if any, keeps playing. */
+        FAILED,
+        /** The load was superseded by another file being dropped, or by playback being stopped. */
+        CANCELLED
+    }
+
+    private final File file;
+    private final Stage stage;
+    private final double fraction;
+    private final String message;
+
+    /**
+     * Constructs a {@code TrackLoadProgress}.
+     *
+     * @param file the file being loaded.
+     * @param stage the stage reached.
+     * @param fraction how much of the file has been parsed, from 0 to 1.
+     * @param message the reason the load failed, or null.
+     */
+    TrackLoadProgress(File file, Stage stage, double fraction, String message){
+        this.file = file;
+        this.stage = stage;
+        this.fraction = fraction;
+        this.message = message;
+    }
+
+    /**
+     * Returns the file being loaded.
+     * @return the file being loaded.
+     */
+    public File getFile(){
+        return file;
+    }
+
+    /**
+     * Returns the stage reached.
+     * @return the stage reached.
+     */
+    public Stage getStage(){
+        return stage;
+    }
+
+    /**
+     * Returns how much of the file has been parsed, from 0 to 1.
+     * @return how much of the file has been parsed, from 0 to 1.
+     */
+    public double getFraction(){
+        return fraction;
+    }
+
+    /**
+     * Returns the reason the load failed, or null if it has not failed.
+     * @return the reason the load failed, or null if it has not failed.
+     */
+    public String getMessage(){
+        return message;
+    }
+
+    /**
+     * Returns a short description of this progress suitable for showing to the user.
+     * @return a short description of this progress suitable for showing to the user.
+     */
+    @Override
+    public String toString(){
+        String name = file.getName();
+        return switch(stage){
+            case PARSING -> "loading " + name + " " + Math.round(fraction * 100) + "%";
+            case PRELOADING -> "loading instruments for " + name;
+            case STARTED -> name;
+            case FAILED -> "could not load " + name + ": " + message;
+            case CANCELLED -> "cancelled " + name;
+        };
+    }
+}
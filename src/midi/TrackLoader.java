@@ -0,0 +1,376 @@
+package midi;
+
+import util.file.FileUtil;
+import util.observer.ISubject;
+import util.observer.Subject;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Sequencer;
+import javax.sound.midi.Soundbank;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A {@code TrackLoader} loads MIDI files on a worker thread and swaps them into the sequencer once they are ready, so
+ * that dropping a large file never blocks the thread which dropped it.
+ * <p>
+ * Each load parses the file, checks that it holds a playable sequence, loads the instruments it uses, and only then
+ * stops the previous track and starts the new one. A {@link PrecisionSequencer} is given the file decoded straight
+ * into a {@link MidiEventStore}, so that files whose {@link Sequence} would not fit in memory can still be played;
+ * the file is memory-mapped rather than read, and its tracks are decoded concurrently on a {@code ForkJoinPool}.
+ * Files too large to decode quickly are instead streamed through a {@link MidiEventStream}, which starts at once and
+ * only preloads the instruments selected near the start. Any other sequencer is given a {@code Sequence}.
+ * <p>
+ * Starting a new load, or stopping playback, cancels any load in flight; a cancelled load stops reading its file at
+ * the next read and never reaches the sequencer. Progress is broadcast on the worker thread.
+ */
+class TrackLoader {
+    private static final String THREAD_NAME = "Track Loader";
+    private static final int PERCENT = 100;
+    private static final long STREAMING_THRESHOLD_BYTES = 16L << 20;
+    //how many events at the start of a streamed file are scanned for instruments to preload, and kept for playback
+    private static final int STREAMING_PRELOAD_EVENTS = 1 << 16;
+
+    private final InterceptingMidiDeviceCoordinator midiDeviceCoordinator;
+    private final Supplier<Soundbank> soundbankSupplier;
+    private final ExecutorService executor;
+    private final ForkJoinPool decodePool;
+    private final Subject<TrackLoadProgress> progressBroadcaster;
+
+    //the number of the latest load requested; earlier loads are cancelled
+    private final AtomicLong latestLoad;
+
+    /**
+     * Constructs a {@code TrackLoader} which plays tracks on the sequencer of the given coordinator.
+     *
+     * @param midiDeviceCoordinator the coordinator holding the sequencer and synth.
+     * @param soundbankSupplier supplies the soundbank to load instruments from, or null for the synth's default.
+     */
+    TrackLoader(InterceptingMidiDeviceCoordinator midiDeviceCoordinator, Supplier<Soundbank> soundbankSupplier){
+        this.midiDeviceCoordinator = midiDeviceCoordinator;
+        this.soundbankSupplier = soundbankSupplier;
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        decodePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        progressBroadcaster = new Subject<>();
+        latestLoad = new AtomicLong();
+    }
+
+    /**
+     * Starts loading the given file, cancelling any load in flight. Returns immediately.
+     *
+     * @param file the MIDI file to load.
+     * @return a future which completes once the track is playing, or exceptionally if the load fails or is cancelled.
+     */
+    CompletableFuture<Void> load(File file){
+        long load = latestLoad.incrementAndGet();
+        return CompletableFuture.runAsync(() -> runLoad(file, load), executor);
+    }
+
+    /**
+     * Cancels any load in flight and stops playback.
+     */
+    void stop(){
+        synchronized(this){
+            latestLoad.incrementAndGet();
+            midiDeviceCoordinator.getSequencer().stop();
+        }
+    }
+
+    /**
+     * Returns the subject through which the progress of every load is broadcast, on the worker thread.
+     * @return the subject through which the progress of every load is broadcast.
+     */
+    ISubject<TrackLoadProgress> getProgressBroadcaster(){
+        return progressBroadcaster;
+    }
+
+    /**
+     * Cancels any load in flight and stops the worker threads.
+     */
+    void cleanUp(){
+        latestLoad.incrementAndGet();
+        executor.shutdownNow();
+        decodePool.shutdownNow();
+    }
+
+    /**
+     * Loads the given file and swaps it into the sequencer, unless cancelled. Runs on the worker thread.
+     *
+     * @param file the MIDI file to load.
+     * @param load the number of this load.
+     *
+     * @throws CancellationException if the load is cancelled.
+     * @throws RuntimeException if the file cannot be read or is not a valid MIDI file.
+     */
+    private void runLoad(File file, long load){
+        try{
+            checkLatest(load);
+            if(midiDeviceCoordinator.getSequencer() instanceof PrecisionSequencer){
+                boolean streaming = file.length() >= STREAMING_THRESHOLD_BYTES;
+                IMidiEventSource events = streaming ? openStream(file) : parseEvents(file, load);
+                boolean swappedIn = false;
+                try{
+                    validate(events.getTrackCount(), events.getResolution());
+
+                    checkLatest(load);
+                    broadcast(file, TrackLoadProgress.Stage.PRELOADING, 1, null);
+                    int preloadEvents = streaming ? STREAMING_PRELOAD_EVENTS : Integer.MAX_VALUE;
+                    midiDeviceCoordinator.preloadInstruments(events, preloadEvents, soundbankSupplier.get());
+
+                    swapIn(events, load);
+                    swappedIn = true;
+                }
+                finally{
+                    if(!swappedIn){
+                        events.close();
+                    }
+                }
+            }
+            else{
+                Sequence sequence = parse(file, load);
+                validate(sequence.getTracks().length, sequence.getResolution());
+
+                checkLatest(load);
+                broadcast(file, TrackLoadProgress.Stage.PRELOADING, 1, null);
+                midiDeviceCoordinator.preloadInstruments(sequence, soundbankSupplier.get());
+
+                swapIn(sequence, load);
+            }
+            broadcast(file, TrackLoadProgress.Stage.STARTED, 1, null);
+        }
+        catch(CancellationException e){
+            broadcast(file, TrackLoadProgress.Stage.CANCELLED, 0, null);
+            throw e;
+        }
+        catch(IOException | InvalidMidiDataException | RuntimeException e){
+            if(load != latestLoad.get()){
+                broadcast(file, TrackLoadProgress.Stage.CANCELLED, 0, null);
+                throw new CancellationException("superseded: " + file);
+            }
+            broadcast(file, TrackLoadProgress.Stage.FAILED, 0, e.getMessage() != null ? e.getMessage() : e.toString());
+            throw new RuntimeException("Unable to load track: " + file, e);
+        }
+    }
+
+    /**
+     * Parses the given file, broadcasting progress as it is read.
+     *
+     * @param file the MIDI file to parse.
+     * @param load the number of this load.
+     * @return the parsed sequence.
+     *
+     * @throws IOException if the file cannot be read, or the load is cancelled while reading.
+     * @throws InvalidMidiDataException if the file is not a valid MIDI file.
+     */
+    private Sequence parse(File file, long load) throws IOException, InvalidMidiDataException{
+        broadcast(file, TrackLoadProgress.Stage.PARSING, 0, null);
+        try(InputStream inputStream = new BufferedInputStream(new ProgressInputStream(file, load))){
+            return MidiSystem.getSequence(inputStream);
+        }
+    }
+
+    /**
+     * Memory-maps the given file and decodes it straight into an event store, broadcasting progress as it is decoded.
+     *
+     * @param file the MIDI file to decode.
+     * @param load the number of this load.
+     * @return the decoded events.
+     *
+     * @throws java.io.UncheckedIOException if the file cannot be mapped.
+     * @throws InvalidMidiDataException if the file is not a valid Standard MIDI File.
+     * @throws CancellationException if the load is cancelled while decoding.
+     */
+    private MidiEventStore parseEvents(File file, long load) throws InvalidMidiDataException{
+        broadcast(file, TrackLoadProgress.Stage.PARSING, 0, null);
+        StandardMidiFile midiFile = new StandardMidiFile(FileUtil.mapFile(file));
+        return MidiEventStore.fromMidiFile(midiFile, decodePool, fraction -> {
+            checkLatest(load);
+            broadcast(file, TrackLoadProgress.Stage.PARSING, fraction, null);
+        });
+    }
+
+    /**
+     * Memory-maps the given file and opens a stream over it, which decodes its events as they are played.
+     *
+     * @param file the MIDI file to stream.
+     * @return the stream over the file.
+     *
+     * @throws java.io.UncheckedIOException if the file cannot be mapped.
+     * @throws InvalidMidiDataException if the file is not a valid Standard MIDI File.
+     */
+    private IMidiEventSource openStream(File file) throws InvalidMidiDataException{
+        broadcast(file, TrackLoadProgress.Stage.PARSING, 0, null);
+        return new MidiEventStream(new StandardMidiFile(FileUtil.mapFile(file)), decodePool);
+    }
+
+    /**
+     * Checks that a sequence with the given number of tracks and resolution can be played.
+     *
+     * @param trackCount the number of tracks.
+     * @param resolution the timing resolution.
+     *
+     * @throws InvalidMidiDataException if the sequence has no tracks or no timing.
+     */
+    private static void validate(int trackCount, int resolution) throws InvalidMidiDataException{
+        if(trackCount == 0){
+            throw new InvalidMidiDataException("no tracks");
+        }
+        if(resolution <= 0){
+            throw new InvalidMidiDataException("invalid resolution " + resolution);
+        }
+    }
+
+    /**
+     * Stops the previous track and starts the given sequence, unless this load has been cancelled. Holds the lock on
+     * this loader, so that no other load or stop can come between the check and the swap.
+     *
+     * @param sequence the sequence to play.
+     * @param load the number of this load.
+     *
+     * @throws CancellationException if the load has been cancelled.
+     * @throws InvalidMidiDataException if the sequencer rejects the sequence.
+     */
+    private synchronized void swapIn(Sequence sequence, long load) throws InvalidMidiDataException{
+        checkLatest(load);
+        Sequencer sequencer = midiDeviceCoordinator.getSequencer();
+        sequencer.stop();
+        sequencer.setSequence(sequence);
+        sequencer.setTickPosition(0);
+        sequencer.start();
+    }
+
+    /**
+     * Stops the previous track and starts the given events on the {@link PrecisionSequencer}, unless this load has
+     * been cancelled, as {@link #swapIn(Sequence, long)} does for a sequence. The sequencer takes over the source of
+     * the events.
+     *
+     * @param events the events to play.
+     * @param load the number of this load.
+     *
+     * @throws CancellationException if the load has been cancelled.
+     * @throws InvalidMidiDataException if the sequencer rejects the events.
+     */
+    private synchronized void swapIn(IMidiEventSource events, long load) throws InvalidMidiDataException{
+        checkLatest(load);
+        PrecisionSequencer sequencer = (PrecisionSequencer) midiDeviceCoordinator.getSequencer();
+        sequencer.stop();
+        sequencer.setEvents(events);
+        sequencer.setTickPosition(0);
+        sequencer.start();
+    }
+
+    /**
+     * Throws if a later load has been requested since the given load.
+     *
+     * @param load the number of the load.
+     *
+     * @throws CancellationException if a later load has been requested.
+     */
+    private void checkLatest(long load){
+        if(load != latestLoad.get()){
+            throw new CancellationException("superseded");
+        }
+    }
+
+    /**
+     * Broadcasts the progress of a load.
+     *
+     * @param file the file being loaded.
+     * @param stage the stage reached.
+     * @param fraction how much of the file has been parsed.
+     * @param message the reason the load failed, or null.
+     */
+    private void broadcast(File file, TrackLoadProgress.Stage stage, double fraction, String message){
+        progressBroadcaster.broadcast(new TrackLoadProgress(file, stage, fraction, message));
+    }
+
+    /**
+     * A {@code ProgressInputStream} reads a file, broadcasting each whole percent read, and fails the next read once
+     * its load has been cancelled.
+     */
+    private class ProgressInputStream extends FilterInputStream {
+        private final File file;
+        private final long load;
+        private final long length;
+        private long bytesRead;
+        private long percentBroadcast;
+
+        /**
+         * Opens the given file for the given load.
+         *
+         * @param file the file to read.
+         * @param load the number of the load.
+         *
+         * @throws IOException if the file cannot be opened.
+         */
+        private ProgressInputStream(File file, long load) throws IOException{
+            super(new FileInputStream(file));
+            this.file = file;
+            this.load = load;
+            length = Math.max(1, file.length());
+        }
+
+        @Override
+        public int read() throws IOException{
+            checkNotCancelled();
+            int b = super.read();
+            if(b >= 0){
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int count) throws IOException{
+            checkNotCancelled();
+            int read = super.read(bytes, offset, count);
+            if(read > 0){
+                advance(read);
+            }
+            return read;
+        }
+
+        /**
+         * Counts the given number of bytes as read, broadcasting progress if another whole percent has been read.
+         *
+         * @param count the number of bytes read.
+         */
+        private void advance(int count){
+            bytesRead += count;
+            long percent = bytesRead * PERCENT / length;
+            if(percent > percentBroadcast){
+                percentBroadcast = percent;
+                broadcast(file, TrackLoadProgress.Stage.PARSING, (double) bytesRead / length, null);
+            }
+        }
+
+        /**
+         * Throws if the load has been cancelled.
+         *
+         * @throws InterruptedIOException if the load has been cancelled.
+         */
+        private void checkNotCancelled() throws InterruptedIOException{
+            if(load != latestLoad.get()){
+                throw new InterruptedIOException("track load cancelled");
+            }
+        }
+    }
+}
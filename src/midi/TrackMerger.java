@@ -0,0 +1,126 @@
+package midi;
+
+/**
+ * A {@code TrackMerger} repeatedly picks the track whose next event comes first, keeping the tracks in a binary
+ * min-heap ordered by the tick of their next event, then by track index, so that events at the same tick come out in
+ * track order. It knows nothing of the events themselves: the caller tells it the tick of the next event of each track
+ * as it moves through the track.
+ */
+final class TrackMerger {
+    private final long[] nextTicks;
+    private final int[] heap;
+    private int heapSize;
+
+    /**
+     * Constructs an empty {@code TrackMerger} for the given number of tracks.
+     *
+     * @param trackCount the number of tracks.
+     */
+    TrackMerger(int trackCount){
+        nextTicks = new long[trackCount];
+        heap = new int[trackCount];
+        heapSize = 0;
+    }
+
+    /**
+     * Adds a track which is not in this merger.
+     *
+     * @param track the index of the track.
+     * @param tick the tick of the next event of the track.
+     */
+    void add(int track, long tick){
+        nextTicks[track] = tick;
+        int index = heapSize++;
+        while(index > 0){
+            int parent = (index - 1) / 2;
+            if(!comesBefore(track, heap[parent])){
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = track;
+    }
+
+    /**
+     * Returns whether every track has been removed.
+     * @return true if no track is left, false otherwise.
+     */
+    boolean isEmpty(){
+        return heapSize == 0;
+    }
+
+    /**
+     * Returns the track whose next event comes first. Only called while tracks remain.
+     * @return the index of the track whose next event comes first.
+     */
+    int peek(){
+        return heap[0];
+    }
+
+    /**
+     * Returns the tick of the next event of the track whose next event comes first. Only called while tracks remain.
+     * @return the tick of the first next event.
+     */
+    long peekTick(){
+        return nextTicks[heap[0]];
+    }
+
+    /**
+     * Moves the track whose next event comes first on to its following event.
+     *
+     * @param tick the tick of the following event, no earlier than the tick of the event moved past.
+     */
+    void advance(long tick){
+        nextTicks[heap[0]] = tick;
+        siftDown(0);
+    }
+
+    /**
+     * Removes the track whose next event comes first, once it has no more events.
+     */
+    void remove(){
+        heap[0] = heap[--heapSize];
+        siftDown(0);
+    }
+
+    /**
+     * Moves the track at the given heap index down the heap until neither child comes before it.
+     *
+     * @param index the heap index.
+     */
+    private void siftDown(int index){
+        if(index >= heapSize){
+            return;
+        }
+        int track = heap[index];
+        while(true){
+            int child = 2 * index + 1;
+            if(child >= heapSize){
+                break;
+            }
+            if(child + 1 < heapSize && comesBefore(heap[child + 1], heap[child])){
+                ++child;
+            }
+            if(!comesBefore(heap[child], track)){
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = track;
+    }
+
+    /**
+     * Returns whether the next event of the first track comes before the next event of the second.
+     *
+     * @param track the first track.
+     * @param otherTrack the second track.
+     * @return true if the next event of the first track comes first, false otherwise.
+     */
+    private boolean comesBefore(int track, int otherTrack){
+        long tick = nextTicks[track];
+        long otherTick = nextTicks[otherTrack];
+        return tick < otherTick || tick == otherTick && track < otherTrack;
+    }
+}
@@ -2,20 +2,33 @@ package resource;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * A {@code HashMapResourceManager} implements {@link IResourceManager} by using a backing {@link HashMap}.
+ * A {@code HashMapResourceManager} implements {@link IResourceManager} by using a backing {@link HashMap} from string
+ * ids to handles, and a backing array of resources indexed by handle.
+ * <p>
+ * A {@code HashMapResourceManager} is safe for concurrent use. Resources are read without locking; assigning handles
+ * and loading resources lock the manager.
  *
  * @param <T> the data type stored by the resources.
  */
 class HashMapResourceManager<T> implements IResourceManager<T> {
-    private final Map<String, Resource<T>> resourceMap;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> handleMap;
+    //replaced by a larger copy when full; only written while holding the lock on this manager
+    private volatile AtomicReferenceArray<Resource<T>> resourceArray;
+    private volatile int handleCount;
 
     /**
      * Constructs an empty {@code HashMapResourceManager}.
      */
     public HashMapResourceManager(){
-        resourceMap = new HashMap<>();
+        handleMap = new ConcurrentHashMap<>();
+        resourceArray = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        handleCount = 0;
     }
 
     /**
@@ -25,7 +38,66 @@ class HashMapResourceManager<T> implements IResourceManager<T> {
      */
     @Override
     public Resource<T> getResource(String id) {
-        return resourceMap.get(id);
+        Integer handle = handleMap.get(id);
+        return handle == null ? null : getResource(handle);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param id the string id to resolve.
+     * @return the handle of the given string id.
+     */
+    @Override
+    public int getHandle(String id) {
+        Integer handle = handleMap.get(id);
+        if(handle != null){
+            return handle;
+        }
+        synchronized(this){
+            return handleMap.computeIfAbsent(id, newId -> assignHandle());
+        }
+    }
+
+    /**
+     * Assigns the next handle, growing the resource array if it is full. Must be called while holding the lock on
+     * this manager.
+     *
+     * @return the new handle.
+     */
+    private int assignHandle(){
+        int handle = handleCount;
+        AtomicReferenceArray<Resource<T>> resources = resourceArray;
+        if(handle == resources.length()){
+            AtomicReferenceArray<Resource<T>> grownResources = new AtomicReferenceArray<>(handle * 2);
+            for(int i = 0; i < handle; ++i){
+                grownResources.set(i, resources.get(i));
+            }
+            resourceArray = grownResources;
+        }
+        handleCount = handle + 1;
+        return handle;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @param handle the handle, as returned by {@link #getHandle}.
+     * @return the resource associated with the given handle, or null if no resource has been loaded for it yet.
+     */
+    @Override
+    public Resource<T> getResource(int handle) {
+        if(handle < 0 || handle >= handleCount){
+            throw new IndexOutOfBoundsException("no such handle: " + handle);
+        }
+        return resourceArray.get(handle);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return the number of handles assigned by this manager.
+     */
+    @Override
+    public int getHandleCount() {
+        return handleCount;
     }
 
     /**
@@ -33,17 +105,23 @@ class HashMapResourceManager<T> implements IResourceManager<T> {
      * @param resource the resource to add to this manager.
      */
     @Override
-    public void loadResource(Resource<T> resource) {
-        resourceMap.put(resource.getId(), resource);
+    public synchronized void loadResource(Resource<T> resource) {
+        //resolved first, since resolving may replace the array
+        int handle = getHandle(resource.getId());
+        resourceArray.set(handle, resource);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void cleanUp() {
-        for(Resource<T> resource : resourceMap.values()){
-            resource.cleanUpData();
+    public synchronized void cleanUp() {
+        AtomicReferenceArray<Resource<T>> resources = resourceArray;
+        for(int handle = 0; handle < handleCount; ++handle){
+            Resource<T> resource = resources.get(handle);
+            if(resource != null){
+                resource.cleanUpData();
+            }
         }
     }
 }
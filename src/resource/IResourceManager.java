@@ -2,6 +2,10 @@ package resource;
 
 /**
  * An {@code IResourceManager} stores resources and provides the ability to retrieve resources by string id.
+ * <p>
+ * Each string id can also be resolved once to an int handle, which stays the same for the lifetime of the manager,
+ * even if the resource is reloaded. Handles are numbered from 0 upwards, so retrieving a resource by handle is an
+ * array lookup.
  *
  * @param <T> the data type stored by the resources.
  */
@@ -14,6 +18,31 @@ public interface IResourceManager<T> {
      */
     Resource<T> getResource(String id);
 
+    /**
+     * Returns the handle of the given string id, assigning a new handle if the id has none yet. An id may be resolved
+     * before its resource is loaded.
+     *
+     * @param id the string id to resolve.
+     * @return the handle of the given string id.
+     */
+    int getHandle(String id);
+
+    /**
+     * Retrieves the resource associated with the given handle.
+     *
+     * @param handle the handle, as returned by {@link #getHandle}.
+     * @return the resource associated with the given handle, or null if no resource has been loaded for it yet.
+     *
+     * @throws IndexOutOfBoundsException if the handle was not returned by this manager.
+     */
+    Resource<T> getResource(int handle);
+
+    /**
+     * Returns the number of handles assigned by this manager, which are numbered from 0 to this number minus 1.
+     * @return the number of handles assigned by this manager.
+     */
+    int getHandleCount();
+
     /**
      * Adds the specified resource to this resource manager.
      *
@@ -3,6 +3,7 @@ package resource;
 import util.file.FileUtil;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 
 /**
  * An {@code IResourceType} represents a type of resource which can be loaded from a file.
@@ -11,6 +12,11 @@ import java.io.File;
  */
 public interface IResourceType<T> {
 
+    /**
+     * The memory budget of resource types whose resources are loaded eagerly and never evicted.
+     */
+    long NO_MEMORY_BUDGET = -1;
+
     /**
      * Returns an array of strings denoting the file types this {@code IResourceType} accepts.
      * @return an array of strings denoting the file types this {@code IResourceType} accepts.
@@ -44,6 +50,20 @@ public interface IResourceType<T> {
      */
     T makeDataFromFile(File file, ResourceLoader loader);
 
+    /**
+     * Loads and returns the data represented by the given bytes, which hold the contents of a file of this type, such
+     * as an entry of a {@link ResourceArchive}. Types which cannot be loaded from bytes alone throw.
+     *
+     * @param buffer the bytes to load the data from, from the position of the buffer to its limit.
+     * @param loader the {@link ResourceLoader} which may be used for certain resource types.
+     * @return the data loaded from the given bytes.
+     *
+     * @throws UnsupportedOperationException if this type cannot be loaded from bytes.
+     */
+    default T makeDataFromBuffer(ByteBuffer buffer, ResourceLoader loader){
+        throw new UnsupportedOperationException(this + " cannot be loaded from a buffer");
+    }
+
     /**
      * Creates a new {@code Resource<T>} with the given id, file, and data.
      *
@@ -56,6 +76,28 @@ public interface IResourceType<T> {
         return new Resource<>(id, file, data, this);
     }
 
+    /**
+     * Returns the number of bytes which the data of all loaded resources of this type may occupy, or
+     * {@link #NO_MEMORY_BUDGET}. Resources of types with a budget are loaded lazily, on first use, and the least
+     * recently used ones are evicted whenever the budget is exceeded.
+     *
+     * @return the memory budget of this resource type in bytes, or {@code NO_MEMORY_BUDGET}.
+     */
+    default long getMemoryBudget(){
+        return NO_MEMORY_BUDGET;
+    }
+
+    /**
+     * Returns an estimate of the number of bytes occupied by the given data object, which is counted against the
+     * memory budget of this resource type.
+     *
+     * @param data the data object to measure.
+     * @return an estimate of the number of bytes occupied by the given data object.
+     */
+    default long estimateSize(T data){
+        return 0;
+    }
+
     /**
      * Cleans up the given data object if necessary for this resource type.
      *
@@ -0,0 +1,200 @@
+package resource;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@code ImageAtlas} packs every image held by an image manager into a single image, so that drawing any of them
+ * draws from the same source surface. The region of each image within the atlas is looked up by its handle in the
+ * image manager, which is an array index.
+ * <p>
+ * The atlas is a snapshot; images loaded into the manager after it was built are not part of it.
+ */
+public class ImageAtlas {
+    //keeps filtered scaling from sampling neighbouring images
+    private static final int PADDING = 1;
+
+    private final BufferedImage image;
+
+    //the region of each image within the atlas; one entry per handle, with a width of 0 if the handle has no image
+    private final int[] regionX;
+    private final int[] regionY;
+    private final int[] regionWidth;
+    private final int[] regionHeight;
+
+    /**
+     * Constructs an {@code ImageAtlas} holding every image loaded into the given image manager. The atlas image is
+     * compatible with the default screen, or an {@code INT_ARGB} image if there is no screen.
+     *
+     * @param imageManager the image manager which holds the images to pack.
+     */
+    public ImageAtlas(IResourceManager<BufferedImage> imageManager){
+        int handleCount = imageManager.getHandleCount();
+        regionX = new int[handleCount];
+        regionY = new int[handleCount];
+        regionWidth = new int[handleCount];
+        regionHeight = new int[handleCount];
+
+        List<Integer> handles = new ArrayList<>();
+        long totalArea = 0;
+        int maxWidth = 1;
+        for(int handle = 0; handle < handleCount; ++handle){
+            Resource<BufferedImage> resource = imageManager.getResource(handle);
+            if(resource != null && resource.getData() != null){
+                BufferedImage data = resource.getData();
+                regionWidth[handle] = data.getWidth();
+                regionHeight[handle] = data.getHeight();
+                totalArea += (long) (data.getWidth() + PADDING) * (data.getHeight() + PADDING);
+                maxWidth = Math.max(maxWidth, data.getWidth() + PADDING);
+                handles.add(handle);
+            }
+        }
+        //tallest first, so each shelf wastes as little height as possible
+        handles.sort((a, b) -> Integer.compare(regionHeight[b], regionHeight[a]));
+
+        int atlasWidth = Math.max(maxWidth, (int) Math.ceil(Math.sqrt(totalArea)));
+        int atlasHeight = packShelves(handles, atlasWidth);
+
+        image = makeCompatibleImage(atlasWidth, Math.max(1, atlasHeight));
+        Graphics2D g2d = image.createGraphics();
+        for(int handle : handles){
+            g2d.drawImage(imageManager.getResource(handle).getData(), regionX[handle], regionY[handle], null);
+        }
+        g2d.dispose();
+    }
+
+    /**
+     * Places the images of the given handles left to right on shelves no wider than the given width, setting their
+     * regions.
+     *
+     * @param handles the handles of the images to place, tallest first.
+     * @param atlasWidth the width of the atlas.
+     *
+     * @return the height of the atlas.
+     */
+    private int packShelves(List<Integer> handles, int atlasWidth){
+        int x = 0;
+        int shelfY = 0;
+        int shelfHeight = 0;
+        for(int handle : handles){
+            if(x + regionWidth[handle] > atlasWidth){
+                x = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+            regionX[handle] = x;
+            regionY[handle] = shelfY;
+            x += regionWidth[handle] + PADDING;
+            shelfHeight = Math.max(shelfHeight, regionHeight[handle] + PADDING);
+        }
+        return shelfY + shelfHeight;
+    }
+
+    /**
+     * Creates a translucent image with the given dimensions in the format of the default screen.
+     *
+     * @param width the width of the image.
+     * @param height the height of the image.
+     *
+     * @return a translucent image with the given dimensions in the format of the default screen.
+     */
+    private static BufferedImage makeCompatibleImage(int width, int height){
+        if(GraphicsEnvironment.isHeadless()){
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice()
+                .getDefaultConfiguration()
+                .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Returns the atlas image holding every packed image.
+     * @return the atlas image holding every packed image.
+     */
+    public BufferedImage getImage(){
+        return image;
+    }
+
+    /**
+     * Returns true if the image of the given handle was packed into this atlas, false otherwise.
+     *
+     * @param handle the handle of the image.
+     * @return true if the image of the given handle was packed into this atlas, false otherwise.
+     */
+    public boolean contains(int handle){
+        return handle >= 0 && handle < regionWidth.length && regionWidth[handle] > 0;
+    }
+
+    /**
+     * Returns the x coordinate of the region of the image of the given handle.
+     *
+     * @param handle the handle of the image.
+     * @return the x coordinate of the region of the image of the given handle.
+     */
+    public int getX(int handle){
+        return regionX[handle];
+    }
+
+    /**
+     * Returns the y coordinate of the region of the image of the given handle.
+     *
+     * @param handle the handle of the image.
+     * @return the y coordinate of the region of the image of the given handle.
+     */
+    public int getY(int handle){
+        return regionY[handle];
+    }
+
+    /**
+     * Returns the width of the image of the given handle.
+     *
+     * @param handle the handle of the image.
+     * @return the width of the image of the given handle.
+     */
+    public int getWidth(int handle){
+        return regionWidth[handle];
+    }
+
+    /**
+     * Returns the height of the image of the given handle.
+     *
+     * @param handle the handle of the image.
+     * @return the height of the image of the given handle.
+     */
+    public int getHeight(int handle){
+        return regionHeight[handle];
+    }
+
+    /**
+     * Draws the image of the given handle with its top-left corner at the given position.
+     *
+     * @param g2d the {@code Graphics2D} to draw with.
+     * @param handle the handle of the image.
+     * @param x the x coordinate to draw at.
+     * @param y the y coordinate to draw at.
+     */
+    public void draw(Graphics2D g2d, int handle, int x, int y){
+        int sourceX = regionX[handle];
+        int sourceY = regionY[handle];
+        int width = regionWidth[handle];
+        int height = regionHeight[handle];
+        g2d.drawImage(
+                image,
+                x, y, x + width, y + height,
+                sourceX, sourceY, sourceX + width, sourceY + height,
+                null
+        );
+    }
+
+    /**
+     * Flushes the atlas image.
+     */
+    public void cleanUp(){
+        image.flush();
+    }
+}
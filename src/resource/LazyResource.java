@@ -0,0 +1,106 @@
+package resource;
+
+import java.io.File;
+import java.util.function.Supplier;
+
+/**
+ * A {@code LazyResource} is a {@link Resource} which only holds its file of origin until its data is first requested,
+ * at which point the data is loaded, either from the file or from an entry of a {@link ResourceArchive}. The data may
+ * later be evicted by the {@link ResourceCache} of its type, in which case it is loaded again the next time it is
+ * requested.
+ *
+ * @param <T> the data type.
+ */
+class LazyResource<T> extends Resource<T> {
+    private final Supplier<T> dataLoader;
+    private final ResourceCache cache;
+
+    private volatile T lazyData;
+    //only accessed while holding the lock on this resource
+    private long size;
+    private volatile long lastAccess;
+
+    /**
+     * Constructs a {@code LazyResource<T>} with the given id and file, which loads its data with the given function
+     * and is counted against the given cache.
+     *
+     * @param id the string id by which this resource will be known as.
+     * @param file the file from which this resource is to be created.
+     * @param type the {@link IResourceType} of the data.
+     * @param dataLoader the function which loads the data each time it is needed.
+     * @param cache the {@link ResourceCache} which may evict the data.
+     */
+    LazyResource(String id, File file, IResourceType<T> type, Supplier<T> dataLoader, ResourceCache cache){
+        super(id, file, null, type);
+        this.dataLoader = dataLoader;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the data held by this resource, loading it if it is not loaded.
+     * @return the data held by this resource.
+     */
+    @Override
+    public T getData() {
+        lastAccess = cache.tick();
+        T data = lazyData;
+        if(data != null){
+            return data;
+        }
+        long loadedSize;
+        synchronized(this){
+            data = lazyData;
+            if(data != null){
+                return data;
+            }
+            data = dataLoader.get();
+            size = type.estimateSize(data);
+            loadedSize = size;
+            lazyData = data;
+        }
+        //outside the lock, since the cache locks the resources it evicts
+        cache.onLoaded(this, loadedSize);
+        return data;
+    }
+
+    /**
+     * Returns true if the data of this resource is currently loaded, false otherwise.
+     * @return true if the data of this resource is currently loaded, false otherwise.
+     */
+    boolean isLoaded() {
+        return lazyData != null;
+    }
+
+    /**
+     * Returns the value of the cache clock when the data of this resource was last requested.
+     * @return the value of the cache clock when the data of this resource was last requested.
+     */
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Cleans up and drops the data held by this resource, if loaded.
+     *
+     * @return the number of bytes freed.
+     */
+    synchronized long evict() {
+        T data = lazyData;
+        if(data == null){
+            return 0;
+        }
+        lazyData = null;
+        type.cleanUpData(data);
+        long freed = size;
+        size = 0;
+        return freed;
+    }
+
+    /**
+     * Cleans up the data held by this resource if loaded.
+     */
+    @Override
+    void cleanUpData(){
+        cache.onEvicted(evict());
+    }
+}
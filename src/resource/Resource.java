@@ -52,6 +52,14 @@ public class Resource<T> {
         return data;
     }
 
+    /**
+     * Returns the {@link IResourceType} of the data held by this resource.
+     * @return the {@code IResourceType} of the data held by this resource.
+     */
+    public IResourceType<T> getType() {
+        return type;
+    }
+
     /**
      * Cleans up the data held by this resource if necessary.
      */
@@ -0,0 +1,133 @@
+package resource;
+
+import util.file.FileUtil;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@code ResourceArchive} is a single file holding many resources, which is memory-mapped as a whole so that reading
+ * any number of resources from it takes one open and one map.
+ * <p>
+ * The archive starts with a header, followed by the bytes of every entry. All numbers are big-endian.
+ * <pre>
+ * int    magic, "MPRA"
+ * int    version
+ * int    entry count
+ * for each entry:
+ *   short  id length, then the id in UTF-8
+ *   short  file extension length, then the file extension in UTF-8, which selects the resource type
+ *   int    offset of the entry's bytes from the start of the archive
+ *   int    length of the entry's bytes
+ * </pre>
+ * Archives are therefore limited to 2 GiB. See {@link ResourceArchivePacker} for building archives.
+ */
+public class ResourceArchive {
+    static final int MAGIC = 0x4D505241;
+    static final int VERSION = 1;
+
+    private final File file;
+    private final ByteBuffer buffer;
+
+    private final String[] ids;
+    private final String[] extensions;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    /**
+     * Constructs a {@code ResourceArchive} by memory-mapping the given file and reading its header.
+     *
+     * @param file the archive file.
+     *
+     * @throws UncheckedIOException if the file cannot be mapped.
+     * @throws RuntimeException if the file is not a valid archive.
+     */
+    public ResourceArchive(File file){
+        this.file = file;
+        buffer = FileUtil.mapFile(file);
+
+        if(buffer.remaining() < 3 * Integer.BYTES || buffer.getInt() != MAGIC){
+            throw new RuntimeException("not a resource archive: " + file);
+        }
+        int version = buffer.getInt();
+        if(version != VERSION){
+            throw new RuntimeException("unsupported resource archive version " + version + ": " + file);
+        }
+        int entryCount = buffer.getInt();
+        ids = new String[entryCount];
+        extensions = new String[entryCount];
+        offsets = new int[entryCount];
+        lengths = new int[entryCount];
+        for(int entry = 0; entry < entryCount; ++entry){
+            ids[entry] = readString(buffer);
+            extensions[entry] = readString(buffer);
+            offsets[entry] = buffer.getInt();
+            lengths[entry] = buffer.getInt();
+            if(offsets[entry] < 0 || lengths[entry] < 0 || (long) offsets[entry] + lengths[entry] > buffer.limit()){
+                throw new RuntimeException("entry " + ids[entry] + " lies outside resource archive: " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads a string written as a short length followed by UTF-8 bytes.
+     *
+     * @param buffer the buffer to read from.
+     * @return the string read.
+     */
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the archive file.
+     * @return the archive file.
+     */
+    public File getFile(){
+        return file;
+    }
+
+    /**
+     * Returns the number of entries in this archive.
+     * @return the number of entries in this archive.
+     */
+    public int getEntryCount(){
+        return ids.length;
+    }
+
+    /**
+     * Returns the string id of the specified entry.
+     *
+     * @param entry the index of the entry.
+     * @return the string id of the specified entry.
+     */
+    public String getId(int entry){
+        return ids[entry];
+    }
+
+    /**
+     * Returns the file extension of the specified entry, which selects its resource type.
+     *
+     * @param entry the index of the entry.
+     * @return the file extension of the specified entry.
+     */
+    public String getExtension(int entry){
+        return extensions[entry];
+    }
+
+    /**
+     * Returns a new read-only buffer over the bytes of the specified entry, positioned at its first byte. The bytes
+     * are read straight from the mapped archive. Each call returns an independent buffer, so entries may be read
+     * concurrently.
+     *
+     * @param entry the index of the entry.
+     * @return a new read-only buffer over the bytes of the specified entry.
+     */
+    public ByteBuffer getData(int entry){
+        return buffer.slice(offsets[entry], lengths[entry]).asReadOnlyBuffer();
+    }
+}
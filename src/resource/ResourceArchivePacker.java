@@ -0,0 +1,130 @@
+package resource;
+
+import util.file.DirectoryConsumer;
+import util.file.FileUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The class {@code ResourceArchivePacker} builds a {@link ResourceArchive} from every file in a directory tree. Each
+ * file becomes one entry, with the id it would have if loaded as a file, so loading the archive yields the same
+ * resources as loading the directory.
+ */
+public final class ResourceArchivePacker {
+
+    private ResourceArchivePacker() {}
+
+    /**
+     * Packs a directory into an archive.
+     *
+     * @param args the directory to pack, followed by the archive file to write.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("usage: ResourceArchivePacker <directory> <archive>");
+            System.exit(1);
+        }
+        int entryCount = pack(new File(args[0]), new File(args[1]));
+        System.out.println("packed " + entryCount + " entries into " + args[1]);
+    }
+
+    /**
+     * Writes an archive holding every file with an extension in the given directory tree.
+     *
+     * @param directory the directory to pack.
+     * @param archive the archive file to write.
+     * @return the number of entries packed.
+     *
+     * @throws UncheckedIOException if a file cannot be read or the archive cannot be written.
+     * @throws RuntimeException if two files would have the same id, or the archive would exceed 2 GiB.
+     */
+    public static int pack(File directory, File archive) {
+        List<File> files = new ArrayList<>();
+        collectFiles(directory, files);
+
+        List<byte[]> ids = new ArrayList<>();
+        List<byte[]> extensions = new ArrayList<>();
+        Set<String> seenIds = new HashSet<>();
+        long headerSize = 3 * Integer.BYTES;
+        for (File file : files) {
+            String id = FileUtil.getFileName(file);
+            if (!seenIds.add(id)) {
+                throw new RuntimeException("Duplicate resource id " + id + " at " + file);
+            }
+            ids.add(id.getBytes(StandardCharsets.UTF_8));
+            extensions.add(FileUtil.getFileExtension(file).getBytes(StandardCharsets.UTF_8));
+            headerSize += Short.BYTES + ids.get(ids.size() - 1).length
+                    + Short.BYTES + extensions.get(extensions.size() - 1).length
+                    + 2 * Integer.BYTES;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                FileUtil.makeOutputStream(archive)
+        ))) {
+            out.writeInt(ResourceArchive.MAGIC);
+            out.writeInt(ResourceArchive.VERSION);
+            out.writeInt(files.size());
+            long offset = headerSize;
+            for (int entry = 0; entry < files.size(); ++entry) {
+                long length = files.get(entry).length();
+                if (offset + length > Integer.MAX_VALUE) {
+                    throw new RuntimeException("Resource archive would exceed 2 GiB: " + archive);
+                }
+                writeBytes(out, ids.get(entry));
+                writeBytes(out, extensions.get(entry));
+                out.writeInt((int) offset);
+                out.writeInt((int) length);
+                offset += length;
+            }
+            for (File file : files) {
+                Files.copy(file.toPath(), out);
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        return files.size();
+    }
+
+    /**
+     * Adds every file with an extension in the given directory tree to the given list.
+     *
+     * @param directory the directory to search.
+     * @param files the list to add to.
+     */
+    private static void collectFiles(File directory, List<File> files) {
+        new DirectoryConsumer(file -> {
+            if (file.isDirectory()) {
+                collectFiles(file, files);
+            } else if (FileUtil.getFileExtension(file) != null) {
+                files.add(file);
+            }
+        }).accept(directory);
+    }
+
+    /**
+     * Writes the given bytes preceded by their length as a short.
+     *
+     * @param out the stream to write to.
+     * @param bytes the bytes to write.
+     *
+     * @throws IOException if the bytes cannot be written.
+     * @throws RuntimeException if there are more bytes than fit in a short.
+     */
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes.length > 0xFFFF) {
+            throw new RuntimeException("String too long for resource archive: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
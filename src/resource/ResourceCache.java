@@ -0,0 +1,103 @@
+package resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code ResourceCache} keeps the data of the {@link LazyResource}s of one resource type within a byte budget.
+ * Whenever a resource is loaded and the loaded resources exceed the budget, the least recently used resources are
+ * evicted until they fit again.
+ * <p>
+ * Recency is tracked with a counter which every access to a resource's data advances, so accessing loaded data only
+ * costs a volatile write; finding the least recently used resource scans the loaded resources, which only happens
+ * when loading.
+ */
+class ResourceCache {
+    private final long budget;
+    private final AtomicLong clock;
+    private final AtomicLong usedBytes;
+    private final AtomicLong evictions;
+
+    //only accessed while holding the lock on this cache
+    private final List<LazyResource<?>> loadedResources;
+
+    /**
+     * Constructs an empty {@code ResourceCache} with the given budget.
+     *
+     * @param budget the number of bytes the loaded resources may occupy.
+     */
+    ResourceCache(long budget){
+        this.budget = budget;
+        clock = new AtomicLong();
+        usedBytes = new AtomicLong();
+        evictions = new AtomicLong();
+        loadedResources = new ArrayList<>();
+    }
+
+    /**
+     * Advances and returns the cache clock.
+     * @return the new value of the cache clock.
+     */
+    long tick(){
+        return clock.incrementAndGet();
+    }
+
+    /**
+     * Counts the given resource, which has just been loaded, against the budget, and evicts the least recently used
+     * other resources until the budget is met or nothing else can be evicted.
+     *
+     * @param resource the resource which has just been loaded.
+     * @param size the number of bytes occupied by the data of the resource.
+     */
+    synchronized void onLoaded(LazyResource<?> resource, long size){
+        usedBytes.addAndGet(size);
+        if(!resource.isLoaded()){
+            //cleaned up since it was loaded, and its size already subtracted
+            return;
+        }
+        loadedResources.add(resource);
+        while(usedBytes.get() > budget){
+            LazyResource<?> leastRecentlyUsed = null;
+            for(LazyResource<?> loadedResource : loadedResources){
+                if(loadedResource != resource
+                        && (leastRecentlyUsed == null
+                        || loadedResource.getLastAccess() < leastRecentlyUsed.getLastAccess())){
+                    leastRecentlyUsed = loadedResource;
+                }
+            }
+            if(leastRecentlyUsed == null){
+                break;
+            }
+            loadedResources.remove(leastRecentlyUsed);
+            usedBytes.addAndGet(-leastRecentlyUsed.evict());
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops counting the data freed by a resource which was cleaned up outside this cache.
+     *
+     * @param freedBytes the number of bytes freed.
+     */
+    synchronized void onEvicted(long freedBytes){
+        usedBytes.addAndGet(-freedBytes);
+        loadedResources.removeIf(loadedResource -> !loadedResource.isLoaded());
+    }
+
+    /**
+     * Returns the number of bytes occupied by the loaded resources.
+     * @return the number of bytes occupied by the loaded resources.
+     */
+    long getUsedBytes(){
+        return usedBytes.get();
+    }
+
+    /**
+     * Returns the number of resources evicted to meet the budget.
+     * @return the number of resources evicted to meet the budget.
+     */
+    long getEvictions(){
+        return evictions.get();
+    }
+}
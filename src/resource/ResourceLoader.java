@@ -3,26 +3,65 @@ package resource;
 import util.file.FileUtil;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * A {@code ResourceLoader} loads file resources into a {@link ResourceManagerMap}.
+ * <p>
+ * Files may be loaded synchronously with {@link #loadFile(File)}, or asynchronously on an executor with
+ * {@link #loadFileAsync(File)}, which returns a future per file. Asynchronous loads of the same file share one
+ * future, so a file requested while a directory containing it is loading is only decoded once.
+ * <p>
+ * A {@link ResourceArchive} may be loaded in place of a directory with {@link #loadArchive(File)} or
+ * {@link #loadArchiveAsync(File)}, which read every entry from a single memory-mapped file.
+ * <p>
+ * Files which have changed may be reloaded with {@link #reloadFileAsync(File)}, which swaps the new resource in only
+ * once it has loaded.
  */
 public class ResourceLoader {
     private final FileResourceTypeChooser fileResourceTypeChooser;
     private final ResourceManagerMap resourceManagerMap;
+    private final Executor executor;
+
+    //the latest load of each file, keyed by canonical file
+    private final Map<File, CompletableFuture<Resource<?>>> loads;
 
     /**
      * Constructs a {@code ResourceLoader} capable of loading the given resource types into the given
-     * {@link ResourceManagerMap}.
+     * {@link ResourceManagerMap}. Asynchronous loads run on the calling thread.
      *
      * @param resourceTypeArray an array of the resource types this {@code ResourceLoader} is capable of loading.
      * @param resourceManagerMap the {@code ResourceManagerMap} into which resources will be loaded.
      */
     public ResourceLoader(IResourceType<?>[] resourceTypeArray, ResourceManagerMap resourceManagerMap){
+        this(resourceTypeArray, resourceManagerMap, Runnable::run);
+    }
+
+    /**
+     * Constructs a {@code ResourceLoader} capable of loading the given resource types into the given
+     * {@link ResourceManagerMap}, which runs asynchronous loads on the given executor.
+     *
+     * @param resourceTypeArray an array of the resource types this {@code ResourceLoader} is capable of loading.
+     * @param resourceManagerMap the {@code ResourceManagerMap} into which resources will be loaded.
+     * @param executor the executor on which asynchronous loads run.
+     */
+    public ResourceLoader(
+            IResourceType<?>[] resourceTypeArray,
+            ResourceManagerMap resourceManagerMap,
+            Executor executor
+    ){
         fileResourceTypeChooser = new FileResourceTypeChooser(resourceTypeArray);
         this.resourceManagerMap = resourceManagerMap;
+        this.executor = executor;
+        loads = new ConcurrentHashMap<>();
     }
 
     /**
@@ -38,12 +77,83 @@ public class ResourceLoader {
     }
 
     /**
-     * Loads the resource held in the given {@code File}.
+     * Loads the resource held in the given {@code File}, even if it has been loaded before.
      *
      * @param file the {@code File} to load.
      * @return the {@link Resource} object holding the data loaded from the specified file.
      */
     public Resource<?> loadFile(File file){
+        Resource<?> resource = loadFileNow(file);
+        loads.put(canonicalize(file), CompletableFuture.completedFuture(resource));
+        return resource;
+    }
+
+    /**
+     * Starts loading the resource held in the given {@code File} on the executor of this {@code ResourceLoader},
+     * unless it is already loading or has already been loaded, in which case the existing load is returned.
+     *
+     * @param file the {@code File} to load.
+     * @return a future which completes with the {@link Resource} object holding the data loaded from the specified
+     * file, or with null if the file is not a resource, and which completes exceptionally if loading fails.
+     */
+    public CompletableFuture<Resource<?>> loadFileAsync(File file){
+        //the future is created inside computeIfAbsent but started outside it, since a synchronous executor would
+        //otherwise load nested files while the map is being updated
+        CompletableFuture<Resource<?>> newLoad = new CompletableFuture<>();
+        CompletableFuture<Resource<?>> load = loads.computeIfAbsent(canonicalize(file), key -> newLoad);
+        if(load == newLoad){
+            try{
+                executor.execute(() -> {
+                    try{
+                        newLoad.complete(loadFileNow(file));
+                    }
+                    catch(RuntimeException | Error e){
+                        newLoad.completeExceptionally(e);
+                    }
+                });
+            }
+            catch(RuntimeException e){
+                newLoad.completeExceptionally(e);
+            }
+        }
+        return load;
+    }
+
+    /**
+     * Starts reloading the resource held in the given {@code File} on the executor of this {@code ResourceLoader},
+     * even if it has been loaded before. The new resource is fully loaded before it replaces the previous resource
+     * with the same id in its resource manager, so code reading the manager sees either the previous resource or the
+     * complete new one. The data of the previous resource is then cleaned up.
+     *
+     * @param file the {@code File} to reload.
+     * @return a future which completes with the new {@link Resource}, or with null if the file is not a resource,
+     * and which completes exceptionally, leaving the previous resource in place, if loading fails.
+     */
+    public CompletableFuture<Resource<?>> reloadFileAsync(File file){
+        CompletableFuture<Resource<?>> reload = new CompletableFuture<>();
+        try{
+            executor.execute(() -> {
+                try{
+                    reload.complete(reloadFileNow(file));
+                }
+                catch(RuntimeException | Error e){
+                    reload.completeExceptionally(e);
+                }
+            });
+        }
+        catch(RuntimeException e){
+            reload.completeExceptionally(e);
+        }
+        return reload;
+    }
+
+    /**
+     * Loads the resource held in the given {@code File} on the calling thread.
+     *
+     * @param file the {@code File} to load.
+     * @return the {@link Resource} object holding the data loaded from the specified file.
+     */
+    private Resource<?> loadFileNow(File file){
         String fileExtension = FileUtil.getFileExtension(file);
         if(fileResourceTypeChooser.hasMatchingFileExtension(fileExtension)) {
             IResourceType<?> type = fileResourceTypeChooser.getResourceTypeFromFileExtension(fileExtension);
@@ -52,6 +162,38 @@ public class ResourceLoader {
         return null;
     }
 
+    /**
+     * Reloads the resource held in the given {@code File} on the calling thread.
+     *
+     * @param file the {@code File} to reload.
+     * @return the new {@link Resource}, or null if the file is not a resource.
+     */
+    private Resource<?> reloadFileNow(File file){
+        String fileExtension = FileUtil.getFileExtension(file);
+        if(fileResourceTypeChooser.hasMatchingFileExtension(fileExtension)) {
+            IResourceType<?> type = fileResourceTypeChooser.getResourceTypeFromFileExtension(fileExtension);
+            Resource<?> resource = replaceResourceFromFile(type, file);
+            loads.put(canonicalize(file), CompletableFuture.completedFuture(resource));
+            return resource;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the canonical form of the given file, so that different paths to the same file are loaded once.
+     *
+     * @param file the file.
+     * @return the canonical form of the given file.
+     */
+    private static File canonicalize(File file){
+        try{
+            return file.getCanonicalFile();
+        }
+        catch(IOException ioe){
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
     /**
      * Creates a new {@link Resource} according to the given {@code File} and type and puts that {@code Resource} into
      * the {@link ResourceManagerMap} associated with this {@code ResourceLoader}.
@@ -62,8 +204,7 @@ public class ResourceLoader {
      * @return the {@link Resource} object holding the data loaded from the specified file.
      */
     private <T> Resource<T> addResourceFromFile(IResourceType<T> type, File file){
-        Resource<T> resource;
-        resource = type.makeResourceFromFile(file, this);
+        Resource<T> resource = makeResourceFromFile(type, file);
         if(resource == null){
             return null;
         }
@@ -71,6 +212,157 @@ public class ResourceLoader {
         return resource;
     }
 
+    /**
+     * Creates a new {@link Resource} according to the given {@code File} and type, with its data loaded, and swaps it
+     * into the {@link ResourceManagerMap} associated with this {@code ResourceLoader} in place of the resource with
+     * the same id, whose data is then cleaned up.
+     *
+     * @param type the resource type represented inside the given {@code File}.
+     * @param file file the {@code File} to load.
+     * @param <T> the data type.
+     * @return the {@link Resource} object holding the data loaded from the specified file.
+     */
+    private <T> Resource<T> replaceResourceFromFile(IResourceType<T> type, File file){
+        Resource<T> resource = makeResourceFromFile(type, file);
+        if(resource == null){
+            return null;
+        }
+        //loaded here rather than on first use, so that a file which fails to load never replaces a working resource
+        resource.getData();
+        IResourceManager<T> resourceManager = resourceManagerMap.get(type);
+        Resource<T> previousResource = resourceManager.getResource(resource.getId());
+        resourceManager.loadResource(resource);
+        if(previousResource != null){
+            previousResource.cleanUpData();
+        }
+        return resource;
+    }
+
+    /**
+     * Creates a new {@link Resource} according to the given {@code File} and type. If the type has a memory budget,
+     * the data is not loaded until it is first requested; see {@link LazyResource}.
+     *
+     * @param type the resource type represented inside the given {@code File}.
+     * @param file file the {@code File} to load.
+     * @param <T> the data type.
+     * @return the {@link Resource} object holding the data loaded from the specified file.
+     */
+    private <T> Resource<T> makeResourceFromFile(IResourceType<T> type, File file){
+        ResourceCache cache = resourceManagerMap.getCache(type);
+        if(cache != null){
+            return new LazyResource<>(
+                    FileUtil.getFileName(file),
+                    file,
+                    type,
+                    () -> type.makeDataFromFile(file, this),
+                    cache
+            );
+        }
+        return type.makeResourceFromFile(file, this);
+    }
+
+    /**
+     * Loads every entry of the given {@link ResourceArchive} file whose file extension belongs to a resource type,
+     * on the calling thread.
+     *
+     * @param file the archive file to load.
+     * @return the {@link Resource} objects loaded from the archive.
+     *
+     * @throws UncheckedIOException if the archive cannot be mapped.
+     * @throws RuntimeException if the file is not a valid archive.
+     */
+    public List<Resource<?>> loadArchive(File file){
+        ResourceArchive archive = new ResourceArchive(file);
+        List<Resource<?>> resources = new ArrayList<>();
+        for(int entry = 0; entry < archive.getEntryCount(); ++entry){
+            Resource<?> resource = loadArchiveEntry(archive, entry);
+            if(resource != null){
+                resources.add(resource);
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Starts loading every entry of the given {@link ResourceArchive} file whose file extension belongs to a resource
+     * type, decoding the entries concurrently on the executor of this {@code ResourceLoader}.
+     *
+     * @param file the archive file to load.
+     * @return a future which completes with the {@link Resource} objects loaded from the archive, and which completes
+     * exceptionally if the archive is invalid or any entry fails to load.
+     */
+    public CompletableFuture<List<Resource<?>>> loadArchiveAsync(File file){
+        return CompletableFuture.supplyAsync(() -> new ResourceArchive(file), executor).thenCompose(archive -> {
+            List<CompletableFuture<Resource<?>>> entryLoads = new ArrayList<>();
+            for(int entry = 0; entry < archive.getEntryCount(); ++entry){
+                int index = entry;
+                entryLoads.add(CompletableFuture.supplyAsync(() -> loadArchiveEntry(archive, index), executor));
+            }
+            return CompletableFuture.allOf(entryLoads.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+                List<Resource<?>> resources = new ArrayList<>();
+                for(CompletableFuture<Resource<?>> entryLoad : entryLoads){
+                    Resource<?> resource = entryLoad.join();
+                    if(resource != null){
+                        resources.add(resource);
+                    }
+                }
+                return resources;
+            });
+        });
+    }
+
+    /**
+     * Loads the specified entry of the given archive on the calling thread.
+     *
+     * @param archive the archive.
+     * @param entry the index of the entry to load.
+     * @return the {@link Resource} object holding the data loaded from the specified entry, or null if its file
+     * extension does not belong to a resource type.
+     */
+    private Resource<?> loadArchiveEntry(ResourceArchive archive, int entry){
+        String fileExtension = archive.getExtension(entry);
+        if(fileResourceTypeChooser.hasMatchingFileExtension(fileExtension)){
+            IResourceType<?> type = fileResourceTypeChooser.getResourceTypeFromFileExtension(fileExtension);
+            return addResourceFromArchive(type, archive, entry);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new {@link Resource} from the specified entry of the given archive and puts that {@code Resource}
+     * into the {@link ResourceManagerMap} associated with this {@code ResourceLoader}. The file of origin of the
+     * resource is the archive file. If the type has a memory budget, the data is not decoded until it is first
+     * requested, and is decoded again from the mapped archive if it is evicted and requested again.
+     *
+     * @param type the resource type represented by the entry.
+     * @param archive the archive.
+     * @param entry the index of the entry.
+     * @param <T> the data type.
+     * @return the {@link Resource} object holding the data loaded from the specified entry.
+     */
+    private <T> Resource<T> addResourceFromArchive(IResourceType<T> type, ResourceArchive archive, int entry){
+        Resource<T> resource;
+        ResourceCache cache = resourceManagerMap.getCache(type);
+        if(cache != null){
+            resource = new LazyResource<>(
+                    archive.getId(entry),
+                    archive.getFile(),
+                    type,
+                    () -> type.makeDataFromBuffer(archive.getData(entry), this),
+                    cache
+            );
+        }
+        else{
+            T data = type.makeDataFromBuffer(archive.getData(entry), this);
+            if(data == null){
+                return null;
+            }
+            resource = type.constructResource(archive.getId(entry), archive.getFile(), data);
+        }
+        resourceManagerMap.get(type).loadResource(resource);
+        return resource;
+    }
+
     /**
      * A {@code FileResourceTypeChooser} is capable of determining which resource type is represented by a given
      * file extension.
@@ -10,6 +10,7 @@ import java.util.Map;
  */
 class ResourceManagerMap {
     private final Map<IResourceType<?>, IResourceManager<?>> innerResourceManagerMap;
+    private final Map<IResourceType<?>, ResourceCache> resourceCacheMap;
 
     /**
      * Constructs a {@code ResourceManagerMap} with a resource manager for each given resource type.
@@ -21,13 +22,15 @@ class ResourceManagerMap {
      */
     public ResourceManagerMap(IResourceType<?>[] resourceTypeArray) {
         innerResourceManagerMap = new HashMap<>();
+        resourceCacheMap = new HashMap<>();
         for (IResourceType<?> type : resourceTypeArray) {
             addNewType(type);
         }
     }
 
     /**
-     * Adds a new resource manager for the given resource type to this {@code ResourceManagerMap}.
+     * Adds a new resource manager for the given resource type to this {@code ResourceManagerMap}, as well as a
+     * {@link ResourceCache} if the type has a memory budget.
      *
      * @param type the resource type for which it is required to add a new resource manager.
      * @param <T> the data type.
@@ -39,6 +42,9 @@ class ResourceManagerMap {
             throw new RuntimeException("Already contains type " + type);
         }
         innerResourceManagerMap.put(type, new HashMapResourceManager<T>());
+        if(type.getMemoryBudget() != IResourceType.NO_MEMORY_BUDGET){
+            resourceCacheMap.put(type, new ResourceCache(type.getMemoryBudget()));
+        }
     }
 
     /**
@@ -53,6 +59,39 @@ class ResourceManagerMap {
         return (IResourceManager<T>) innerResourceManagerMap.get(type);
     }
 
+    /**
+     * Retrieves the {@link ResourceCache} which keeps the resources of the given type within its memory budget.
+     *
+     * @param type the resource type.
+     * @return the {@code ResourceCache} of the given type, or null if the type has no memory budget.
+     */
+    ResourceCache getCache(IResourceType<?> type) {
+        return resourceCacheMap.get(type);
+    }
+
+    /**
+     * Returns a summary of the memory used by, and the evictions from, each resource type with a memory budget.
+     * @return a summary of the memory used by, and the evictions from, each resource type with a memory budget.
+     */
+    String getCacheStatistics() {
+        StringBuilder statistics = new StringBuilder();
+        for(Map.Entry<IResourceType<?>, ResourceCache> entry : resourceCacheMap.entrySet()){
+            if(!statistics.isEmpty()){
+                statistics.append(", ");
+            }
+            ResourceCache cache = entry.getValue();
+            statistics.append(entry.getKey())
+                    .append(": ")
+                    .append(cache.getUsedBytes())
+                    .append(" of ")
+                    .append(entry.getKey().getMemoryBudget())
+                    .append(" bytes, ")
+                    .append(cache.getEvictions())
+                    .append(" evictions");
+        }
+        return statistics.toString();
+    }
+
     /**
      * Cleans up all the resources held by each resource manager contained in this {@code ResourceManagerMap}.
      */
@@ -1,6 +1,11 @@
 package resource;
 
+import util.observer.ISubject;
+
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A {@code ResourceSystem} provides the interface for loading and accessing file resources.
@@ -8,15 +13,35 @@ import java.io.File;
 public class ResourceSystem {
     private final ResourceManagerMap resourceManagerMap;
     private final ResourceLoader resourceLoader;
+    private final ForkJoinPool loadPool;
+    //created when a directory is first watched
+    private ResourceWatcher resourceWatcher;
 
     /**
-     * Constructs a {@code ResourceSystem} capable of interacting with the given set of resource types.
+     * Constructs a {@code ResourceSystem} capable of interacting with the given set of resource types, which loads
+     * files on the calling thread.
      *
      * @param resourceTypeArray an array representing the set of resource types this {@code ResourceSystem} can handle.
      */
     public ResourceSystem(IResourceType<?>[] resourceTypeArray){
         resourceManagerMap = new ResourceManagerMap(resourceTypeArray);
         resourceLoader = new ResourceLoader(resourceTypeArray, resourceManagerMap);
+        loadPool = null;
+    }
+
+    /**
+     * Constructs a {@code ResourceSystem} capable of interacting with the given set of resource types, which loads
+     * files asynchronously on a {@code ForkJoinPool} with the given parallelism.
+     *
+     * @param resourceTypeArray an array representing the set of resource types this {@code ResourceSystem} can handle.
+     * @param loadParallelism the number of threads to load files with.
+     *
+     * @throws IllegalArgumentException if the load parallelism is not positive.
+     */
+    public ResourceSystem(IResourceType<?>[] resourceTypeArray, int loadParallelism){
+        resourceManagerMap = new ResourceManagerMap(resourceTypeArray);
+        loadPool = new ForkJoinPool(loadParallelism);
+        resourceLoader = new ResourceLoader(resourceTypeArray, resourceManagerMap, loadPool);
     }
 
     /**
@@ -37,6 +62,89 @@ public class ResourceSystem {
         resourceLoader.loadFile(file);
     }
 
+    /**
+     * Starts loading the resource held in the file represented by the given string, unless it is already loading or
+     * has already been loaded. Directories load their files concurrently.
+     *
+     * @param fileName the string name of the file to load.
+     * @return a future which completes with the loaded resource, or exceptionally if loading fails.
+     *
+     * @see ResourceLoader#loadFileAsync(File)
+     */
+    public CompletableFuture<Resource<?>> loadFileAsync(String fileName){
+        return loadFileAsync(new File(fileName));
+    }
+
+    /**
+     * Starts loading the resource held in the given {@code File}, unless it is already loading or has already been
+     * loaded. Directories load their files concurrently.
+     *
+     * @param file the {@code File} to load.
+     * @return a future which completes with the loaded resource, or exceptionally if loading fails.
+     *
+     * @see ResourceLoader#loadFileAsync(File)
+     */
+    public CompletableFuture<Resource<?>> loadFileAsync(File file){
+        return resourceLoader.loadFileAsync(file);
+    }
+
+    /**
+     * Loads every resource held in the given {@link ResourceArchive} file.
+     *
+     * @param file the archive file to load.
+     */
+    public void loadArchive(File file){
+        resourceLoader.loadArchive(file);
+    }
+
+    /**
+     * Starts loading every resource held in the given {@link ResourceArchive} file. Entries are decoded concurrently.
+     *
+     * @param file the archive file to load.
+     * @return a future which completes with the loaded resources, or exceptionally if loading fails.
+     *
+     * @see ResourceLoader#loadArchiveAsync(File)
+     */
+    public CompletableFuture<List<Resource<?>>> loadArchiveAsync(File file){
+        return resourceLoader.loadArchiveAsync(file);
+    }
+
+    /**
+     * Starts watching the given directory, and every directory within it, for changed files, which are reloaded in the
+     * background and swapped into their resource managers once loaded. Changes made in quick succession are reloaded
+     * together.
+     *
+     * @param directory the directory to watch.
+     *
+     * @throws java.io.UncheckedIOException if the directory cannot be watched.
+     *
+     * @see ResourceLoader#reloadFileAsync(File)
+     */
+    public void watchDirectory(File directory){
+        getResourceWatcher().watch(directory);
+    }
+
+    /**
+     * Returns the subject through which resources reloaded from watched directories are broadcast. Observers are
+     * called on the watcher thread, after the new resource has replaced the previous one.
+     *
+     * @return the subject through which reloaded resources are broadcast.
+     */
+    public ISubject<Resource<?>> getReloadBroadcaster(){
+        return getResourceWatcher().getReloadBroadcaster();
+    }
+
+    /**
+     * Returns the {@link ResourceWatcher} of this {@code ResourceSystem}, creating it if necessary.
+     * @return the {@code ResourceWatcher} of this {@code ResourceSystem}.
+     */
+    private synchronized ResourceWatcher getResourceWatcher(){
+        if(resourceWatcher == null){
+            resourceWatcher = new ResourceWatcher(resourceLoader);
+        }
+        return resourceWatcher;
+    }
+
     /**
      * Retrieves the resource manager associated with the given type.
      *
@@ -48,10 +156,26 @@ public class ResourceSystem {
         return resourceManagerMap.get(type);
     }
 
+    /**
+     * Returns a summary of the memory used by, and the evictions from, each resource type with a memory budget.
+     * @return a summary of the memory used by, and the evictions from, each resource type with a memory budget.
+     */
+    public String getCacheStatistics(){
+        return resourceManagerMap.getCacheStatistics();
+    }
+
     /**
      * Cleans up all the resources held by this {@code ResourceSystem}.
      */
     public void cleanUp(){
+        synchronized(this){
+            if(resourceWatcher != null){
+                resourceWatcher.cleanUp();
+            }
+        }
+        if(loadPool != null){
+            loadPool.shutdownNow();
+        }
         resourceManagerMap.cleanUp();
     }
 }
\ No newline at end of file
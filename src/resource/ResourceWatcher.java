@@ -0,0 +1,216 @@
+package resource;
+
+import util.observer.ISubject;
+import util.observer.Subject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A {@code ResourceWatcher} watches directories of resource files and reloads the files which change, so edits show
+ * up without restarting the program.
+ * <p>
+ * Changes are debounced: files are only reloaded once no further change has been seen for
+ * {@value #DEBOUNCE_MILLIS} milliseconds, so a file written in several steps is reloaded once, after the last step.
+ * Each reload is decoded in the background by {@link ResourceLoader#reloadFileAsync(File)} and swapped into its
+ * resource manager only once complete. Files which fail to load, such as files which are still being written, keep
+ * their previous resource.
+ * <p>
+ * Every resource reloaded is broadcast on the watcher thread.
+ */
+class ResourceWatcher {
+    private static final String THREAD_NAME = "Resource Watcher";
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final ResourceLoader loader;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories;
+    private final Subject<Resource<?>> reloadBroadcaster;
+    private final Thread thread;
+
+    /**
+     * Constructs a {@code ResourceWatcher} which reloads files with the given loader. No directories are watched until
+     * {@link #watch(File)} is called.
+     *
+     * @param loader the loader with which to reload files.
+     *
+     * @throws UncheckedIOException if the file system cannot be watched.
+     */
+    ResourceWatcher(ResourceLoader loader){
+        this.loader = loader;
+        try{
+            watchService = FileSystems.getDefault().newWatchService();
+        }
+        catch(IOException ioe){
+            throw new UncheckedIOException(ioe);
+        }
+        watchedDirectories = new ConcurrentHashMap<>();
+        reloadBroadcaster = new Subject<>();
+        thread = new Thread(this::run, THREAD_NAME);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching the given directory and every directory within it, starting the watcher thread if it is not
+     * running.
+     *
+     * @param directory the directory to watch.
+     *
+     * @throws UncheckedIOException if the directory cannot be watched.
+     */
+    synchronized void watch(File directory){
+        registerTree(directory.toPath());
+        if(!thread.isAlive()){
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the subject through which reloaded resources are broadcast, on the watcher thread.
+     * @return the subject through which reloaded resources are broadcast.
+     */
+    ISubject<Resource<?>> getReloadBroadcaster(){
+        return reloadBroadcaster;
+    }
+
+    /**
+     * Stops watching and ends the watcher thread.
+     */
+    void cleanUp(){
+        thread.interrupt();
+        try{
+            watchService.close();
+        }
+        catch(IOException ioe){
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Registers the given directory and every directory within it with the watch service.
+     *
+     * @param directory the root of the directories to register.
+     *
+     * @throws UncheckedIOException if a directory cannot be registered.
+     */
+    private void registerTree(Path directory){
+        try(Stream<Path> paths = Files.walk(directory)){
+            for(Path path : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator){
+                WatchKey key = path.register(
+                        watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY
+                );
+                watchedDirectories.put(key, path);
+            }
+        }
+        catch(IOException ioe){
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Collects changed files until the debounce period passes without a change, then reloads them, until interrupted
+     * or cleaned up. Runs on the watcher thread.
+     */
+    private void run(){
+        Set<Path> changedFiles = new LinkedHashSet<>();
+        try{
+            while(!Thread.currentThread().isInterrupted()){
+                WatchKey key = changedFiles.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                if(key == null){
+                    reload(changedFiles);
+                    changedFiles.clear();
+                    continue;
+                }
+                Path directory = watchedDirectories.get(key);
+                for(WatchEvent<?> event : key.pollEvents()){
+                    if(directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW){
+                        continue;
+                    }
+                    Path path = directory.resolve((Path) event.context());
+                    if(Files.isDirectory(path)){
+                        //a new directory may already hold files by the time it is registered
+                        if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE){
+                            registerTree(path);
+                            addFilesWithin(path, changedFiles);
+                        }
+                    }
+                    else{
+                        changedFiles.add(path);
+                    }
+                }
+                if(!key.reset()){
+                    watchedDirectories.remove(key);
+                }
+            }
+        }
+        catch(InterruptedException | ClosedWatchServiceException e){
+            //cleaned up
+        }
+    }
+
+    /**
+     * Adds every regular file within the given directory tree to the given set.
+     *
+     * @param directory the root of the directory tree.
+     * @param files the set to add to.
+     */
+    private static void addFilesWithin(Path directory, Set<Path> files){
+        try(Stream<Path> paths = Files.walk(directory)){
+            paths.filter(Files::isRegularFile).forEach(files::add);
+        }
+        catch(IOException ioe){
+            System.err.println("Could not list " + directory + ": " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Reloads the given files concurrently, waits for every reload to finish, and broadcasts the resources which
+     * were reloaded. Files which no longer exist or fail to load are skipped.
+     *
+     * @param files the files to reload.
+     */
+    private void reload(Set<Path> files){
+        List<Path> reloadedFiles = new ArrayList<>();
+        List<CompletableFuture<Resource<?>>> reloads = new ArrayList<>();
+        for(Path path : files){
+            if(Files.isRegularFile(path)){
+                reloadedFiles.add(path);
+                reloads.add(loader.reloadFileAsync(path.toFile()));
+            }
+        }
+        for(int i = 0; i < reloads.size(); ++i){
+            try{
+                Resource<?> resource = reloads.get(i).join();
+                if(resource != null){
+                    reloadBroadcaster.broadcast(resource);
+                }
+            }
+            catch(CompletionException e){
+                System.err.println("Could not reload " + reloadedFiles.get(i) + ": " + e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package util.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A {@code TripleBuffer} hands buffers from exactly one producer thread to exactly one consumer thread without locks.
+ * <p>
+ * Of the three buffers, the producer owns the back buffer, the consumer owns the front buffer, and the remaining one is
+ * held in the middle. Publishing exchanges the back buffer with the middle one, and acquiring exchanges the front
+ * buffer with the middle one if it holds a newer frame, so neither thread ever waits for the other. A frame which is
+ * published again before the consumer acquires it is skipped.
+ *
+ * @param <T> the buffer type.
+ */
+public class TripleBuffer<T> {
+
+    private static final int NUM_BUFFERS = 3;
+    private static final int INDEX_MASK = 0b011;
+    //set in the middle index when the middle buffer holds a frame the consumer has not acquired yet
+    private static final int FRESH_BIT = 0b100;
+
+    private final Object[] buffers;
+    private final AtomicInteger middle;
+
+    //only accessed by the producer
+    private int backIndex;
+    //only accessed by the consumer
+    private int frontIndex;
+
+    private final AtomicLong framesPublished;
+    private final AtomicLong framesPresented;
+    private final AtomicLong framesSkipped;
+
+    /**
+     * Constructs a {@code TripleBuffer} holding three buffers created by the given supplier.
+     *
+     * @param bufferSupplier the supplier used to create each buffer.
+     */
+    public TripleBuffer(Supplier<T> bufferSupplier){
+        buffers = new Object[NUM_BUFFERS];
+        for(int i = 0; i < NUM_BUFFERS; ++i){
+            buffers[i] = bufferSupplier.get();
+        }
+        backIndex = 0;
+        middle = new AtomicInteger(1);
+        frontIndex = 2;
+        framesPublished = new AtomicLong();
+        framesPresented = new AtomicLong();
+        framesSkipped = new AtomicLong();
+    }
+
+    /**
+     * Returns the buffer the producer may write the next frame into. Must only be called from the producer thread.
+     * @return the buffer the producer may write the next frame into.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBackBuffer(){
+        return (T) buffers[backIndex];
+    }
+
+    /**
+     * Replaces the back buffer with the given buffer, for example when frames change size. The other buffers are
+     * replaced in turn as the producer keeps publishing. Must only be called from the producer thread.
+     *
+     * @param buffer the new back buffer.
+     */
+    public void replaceBackBuffer(T buffer){
+        buffers[backIndex] = buffer;
+    }
+
+    /**
+     * Publishes the back buffer as the newest frame and gives the producer a new back buffer. Must only be called from
+     * the producer thread.
+     */
+    public void publish(){
+        int previousMiddle = middle.getAndSet(backIndex | FRESH_BIT);
+        backIndex = previousMiddle & INDEX_MASK;
+        framesPublished.incrementAndGet();
+        if((previousMiddle & FRESH_BIT) != 0){
+            framesSkipped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the newest published frame, or the previously returned frame if nothing has been published since. Must
+     * only be called from the consumer thread.
+     *
+     * @return the newest published frame.
+     */
+    @SuppressWarnings("unchecked")
+    public T acquireFront(){
+        if((middle.get() & FRESH_BIT) != 0){
+            int previousMiddle = middle.getAndSet(frontIndex);
+            frontIndex = previousMiddle & INDEX_MASK;
+            framesPresented.incrementAndGet();
+        }
+        return (T) buffers[frontIndex];
+    }
+
+    /**
+     * Returns the number of frames published by the producer.
+     * @return the number of frames published by the producer.
+     */
+    public long getFramesPublished(){
+        return framesPublished.get();
+    }
+
+    /**
+     * Returns the number of frames acquired by the consumer.
+     * @return the number of frames acquired by the consumer.
+     */
+    public long getFramesPresented(){
+        return framesPresented.get();
+    }
+
+    /**
+     * Returns the number of frames which were replaced by a newer frame before the consumer acquired them.
+     * @return the number of frames which were replaced by a newer frame before the consumer acquired them.
+     */
+    public long getFramesSkipped(){
+        return framesSkipped.get();
+    }
+}
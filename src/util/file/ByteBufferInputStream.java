@@ -0,0 +1,73 @@
+package util.file;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@code ByteBufferInputStream} is an {@code InputStream} which reads the remaining bytes of a {@code ByteBuffer},
+ * such as a slice of a memory-mapped file, without copying them first. Marks never expire.
+ */
+public class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+    private int markedPosition;
+
+    /**
+     * Constructs a {@code ByteBufferInputStream} which reads the given buffer from its position to its limit. The
+     * position of the buffer is advanced as the stream is read.
+     *
+     * @param buffer the buffer to read.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+        markedPosition = buffer.position();
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Returns true; any position may be returned to, however far the stream has been read since.
+     * @return true.
+     */
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        markedPosition = buffer.position();
+    }
+
+    @Override
+    public void reset() {
+        buffer.position(markedPosition);
+    }
+}
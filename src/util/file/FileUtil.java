@@ -10,6 +10,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Properties;
 import java.util.Scanner;
 
@@ -43,7 +46,8 @@ public final class FileUtil {
         String filePathWithoutExtension;
         if (lastIndexOfPeriod > 0) {
             String extension = filePath.substring(lastIndexOfPeriod);
-            if (extension.contains("\\")) { //if the extension has a backslash, it means there is no extension
+            //if the extension has a separator, it means there is no extension
+            if (extension.contains("\\") || extension.contains("/")) {
                 filePathWithoutExtension = filePath;
             } else {
                 filePathWithoutExtension = filePath.substring(0, lastIndexOfPeriod);
@@ -51,9 +55,9 @@ public final class FileUtil {
         } else {
             filePathWithoutExtension = filePath;
         }
-        int lastIndexOfBackSlash = filePath.lastIndexOf('\\');
-        if (lastIndexOfBackSlash > 0) {
-            return filePathWithoutExtension.substring(lastIndexOfBackSlash + 1);
+        int lastIndexOfSeparator = Math.max(filePath.lastIndexOf('\\'), filePath.lastIndexOf('/'));
+        if (lastIndexOfSeparator > 0) {
+            return filePathWithoutExtension.substring(lastIndexOfSeparator + 1);
         } else {
             return filePathWithoutExtension;
         }
@@ -147,6 +151,43 @@ public final class FileUtil {
         }
     }
 
+    /**
+     * Memory-maps the whole of the given file for reading. The file is closed once mapped; the mapping stays valid
+     * until the returned buffer is garbage collected.
+     *
+     * @param file the file to map.
+     *
+     * @return a read-only buffer over the contents of the file.
+     *
+     * @throws UncheckedIOException if the file cannot be mapped.
+     */
+    public static MappedByteBuffer mapFile(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    /**
+     * Parses the contents of the given stream as an image and returns a {@code BufferedImage}.
+     *
+     * @param inputStream the stream to read.
+     *
+     * @return a {@code BufferedImage} as read by {@link ImageIO}.
+     *
+     * @throws UncheckedIOException if the image cannot be read.
+     */
+    public static BufferedImage parseImage(InputStream inputStream) {
+        try {
+            return ImageIO.read(inputStream);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
     /**
      * Parses a given file as a properties file and returns a {@code Properties}.
      *
@@ -0,0 +1,96 @@
+package util.image;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+/**
+ * The class {@code ImageUtil} provides several utility functions for preparing images for drawing.
+ */
+public final class ImageUtil {
+
+    private ImageUtil() {}
+
+    /**
+     * Returns an image with the same contents as the given image in the format which draws fastest onto the default
+     * screen, or in {@code INT_RGB} or {@code INT_ARGB} format if there is no screen. Images without any translucent
+     * pixels are converted to an opaque format. The given image is returned as is if it is already in that format.
+     *
+     * @param image the image to convert.
+     * @return an image with the same contents in a format compatible with the default screen.
+     */
+    public static BufferedImage toCompatibleImage(BufferedImage image) {
+        boolean opaque = isOpaque(image);
+        BufferedImage compatibleImage;
+        if (GraphicsEnvironment.isHeadless()) {
+            int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+            if (image.getType() == type) {
+                return image;
+            }
+            compatibleImage = new BufferedImage(image.getWidth(), image.getHeight(), type);
+        } else {
+            GraphicsConfiguration graphicsConfiguration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice()
+                    .getDefaultConfiguration();
+            int transparency = opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT;
+            if (image.getColorModel().equals(graphicsConfiguration.getColorModel(transparency))) {
+                return image;
+            }
+            compatibleImage = graphicsConfiguration.createCompatibleImage(
+                    image.getWidth(),
+                    image.getHeight(),
+                    transparency
+            );
+        }
+        Graphics2D g2d = compatibleImage.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return compatibleImage;
+    }
+
+    /**
+     * Returns true if every pixel of the given image is fully opaque, false otherwise.
+     *
+     * @param image the image to check.
+     * @return true if every pixel of the given image is fully opaque, false otherwise.
+     */
+    public static boolean isOpaque(BufferedImage image) {
+        if (image.getTransparency() == Transparency.OPAQUE) {
+            return true;
+        }
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); ++y) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int argb : row) {
+                if ((argb >>> 24) != 0xFF) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the average time in nanoseconds taken to draw the given image onto the given target.
+     *
+     * @param image the image to draw.
+     * @param target the image to draw onto.
+     * @param iterations the number of times to draw the image.
+     * @return the average time in nanoseconds taken to draw the given image onto the given target.
+     */
+    public static long timeBlitNanos(BufferedImage image, BufferedImage target, int iterations) {
+        Graphics2D g2d = target.createGraphics();
+        //the first draws set up the loops used for this pair of formats
+        g2d.drawImage(image, 0, 0, null);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            g2d.drawImage(image, 0, 0, null);
+        }
+        long elapsed = System.nanoTime() - start;
+        g2d.dispose();
+        return elapsed / iterations;
+    }
+}
@@ -38,6 +38,14 @@ public class Subject<T> implements ISubject<T> {
         observers.remove(observer);
     }
 
+    /**
+     * Returns true if at least one observer is subscribed to this subject, false otherwise.
+     * @return true if at least one observer is subscribed to this subject, false otherwise.
+     */
+    public boolean hasObservers(){
+        return !observers.isEmpty();
+    }
+
     /**
      * Broadcasts the given data to all subscribed observers.
      *
@@ -0,0 +1,260 @@
+package window;
+
+import util.observer.IObserver;
+import util.observer.ISubject;
+import util.observer.Subject;
+
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@code AcceleratedCanvas} is a {@code Canvas} which implements {@link IGraphicalDisplay} with active rendering.
+ * Whenever the image observer receives a new image, the receiving thread uploads it into a {@code VolatileImage} and
+ * immediately shows it through a flipping {@code BufferStrategy}, without going through the event dispatch thread.
+ * <p>
+ * Only the regions received through the damage observer are uploaded, unless the contents of the
+ * {@code VolatileImage} were lost, in which case the whole image is uploaded again. The {@code VolatileImage} is
+ * recreated whenever received images change size.
+ * <p>
+ * Paint messages from the operating system are ignored, so that they never compete with the sending thread for the
+ * screen. A full image is requested instead whenever the canvas starts showing, and whenever AWT asks it to paint.
+ */
+public class AcceleratedCanvas extends Canvas implements IGraphicalDisplay {
+    private static final long serialVersionUID = 1L;
+    private static final int NUM_BUFFERS = 3;
+
+    private final IObserver<BufferedImage> imageReceiver;
+    private final IObserver<Rectangle> damageReceiver;
+    private final Subject<Void> redrawRequestBroadcaster;
+    private final Subject<Dimension> resizeBroadcaster;
+
+    //only accessed by the sending thread
+    private final Rectangle pendingDamage;
+    private BufferStrategy bufferStrategy;
+    private VolatileImage frameCache;
+
+    private final AtomicLong framesRendered;
+    private final AtomicLong framesPresented;
+    private final AtomicLong framesSkipped;
+
+    /**
+     * Constructs an {@code AcceleratedCanvas} with the given dimensions. {@link #createBuffers()} must be called
+     * once the canvas is displayable before any image can be shown.
+     *
+     * @param width width of the created {@code AcceleratedCanvas}.
+     * @param height height of the created {@code AcceleratedCanvas}.
+     */
+    public AcceleratedCanvas(int width, int height){
+        setBackground(Color.BLACK);
+        setIgnoreRepaint(true);
+        setPreferredSize(new Dimension(width, height));
+        pendingDamage = new Rectangle();
+        framesRendered = new AtomicLong();
+        framesPresented = new AtomicLong();
+        framesSkipped = new AtomicLong();
+        imageReceiver = this::present;
+        damageReceiver = makeDamageReceiver();
+        redrawRequestBroadcaster = new Subject<>();
+        resizeBroadcaster = DevicePixels.makeResizeBroadcaster(this);
+        addHierarchyListener(event -> {
+            if((event.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()){
+                redrawRequestBroadcaster.broadcast(null);
+            }
+        });
+    }
+
+    /**
+     * Creates the buffer strategy of this canvas.
+     *
+     * @throws IllegalStateException if this canvas is not displayable.
+     */
+    void createBuffers(){
+        createBufferStrategy(NUM_BUFFERS);
+        bufferStrategy = getBufferStrategy();
+    }
+
+    /**
+     * Creates the damage receiver, which is a {@code Rectangle} observer which limits the upload of the next image
+     * received to the received regions.
+     *
+     * @return the damage receiver.
+     */
+    private IObserver<Rectangle> makeDamageReceiver(){
+        return region -> {
+            if(pendingDamage.isEmpty()){
+                pendingDamage.setBounds(region);
+            }
+            else{
+                pendingDamage.add(region);
+            }
+        };
+    }
+
+    /**
+     * Uploads the given image and shows it, retrying until the buffer strategy reports that the contents were shown
+     * without being lost.
+     *
+     * @param image the image to show.
+     */
+    private void present(BufferedImage image){
+        framesRendered.incrementAndGet();
+        if(bufferStrategy == null || !isDisplayable()){
+            framesSkipped.incrementAndGet();
+            pendingDamage.setBounds(0, 0, 0, 0);
+            return;
+        }
+        uploadFrame(image);
+        do{
+            do{
+                Graphics g = bufferStrategy.getDrawGraphics();
+                g.drawImage(frameCache, 0, 0, getWidth(), getHeight(), null);
+                g.dispose();
+            } while(bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while(bufferStrategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+        framesPresented.incrementAndGet();
+    }
+
+    /**
+     * Copies the given image into the frame cache, recreating or restoring the cache if required. Only the pending
+     * damage is copied if the cache still holds the previous image.
+     *
+     * @param image the image to upload.
+     */
+    private void uploadFrame(BufferedImage image){
+        GraphicsConfiguration graphicsConfiguration = getGraphicsConfiguration();
+        int imageWidth = image.getWidth();
+        int imageHeight = image.getHeight();
+        boolean uploadAll = pendingDamage.isEmpty();
+        if(frameCache == null || frameCache.getWidth() != imageWidth || frameCache.getHeight() != imageHeight){
+            if(frameCache != null){
+                frameCache.flush();
+            }
+            frameCache = graphicsConfiguration.createCompatibleVolatileImage(imageWidth, imageHeight);
+            uploadAll = true;
+        }
+        do{
+            switch(frameCache.validate(graphicsConfiguration)){
+                case VolatileImage.IMAGE_INCOMPATIBLE -> {
+                    frameCache.flush();
+                    frameCache = graphicsConfiguration.createCompatibleVolatileImage(imageWidth, imageHeight);
+                    uploadAll = true;
+                }
+                case VolatileImage.IMAGE_RESTORED -> uploadAll = true;
+            }
+            Graphics2D g2d = frameCache.createGraphics();
+            if(uploadAll){
+                g2d.drawImage(image, 0, 0, null);
+            }
+            else{
+                int x2 = pendingDamage.x + pendingDamage.width;
+                int y2 = pendingDamage.y + pendingDamage.height;
+                g2d.drawImage(
+                        image,
+                        pendingDamage.x, pendingDamage.y, x2, y2,
+                        pendingDamage.x, pendingDamage.y, x2, y2,
+                        null
+                );
+            }
+            g2d.dispose();
+            //anything uploaded into lost contents is gone, so the whole image must be uploaded again
+            uploadAll = true;
+        } while(frameCache.contentsLost());
+        pendingDamage.setBounds(0, 0, 0, 0);
+    }
+
+    /**
+     * Requests a new image instead of painting, since only the sending thread may draw with the buffer strategy.
+     *
+     * @param g unused.
+     */
+    @Override
+    public void paint(Graphics g){
+        redrawRequestBroadcaster.broadcast(null);
+    }
+
+    /**
+     * Requests a new image instead of clearing and painting.
+     *
+     * @param g unused.
+     */
+    @Override
+    public void update(Graphics g){
+        paint(g);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the image receiver.
+     */
+    @Override
+    public IObserver<BufferedImage> getImageReceiver(){
+        return imageReceiver;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the damage receiver.
+     */
+    @Override
+    public IObserver<Rectangle> getDamageReceiver(){
+        return damageReceiver;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the subject through which redraw requests are broadcast.
+     */
+    @Override
+    public ISubject<Void> getRedrawRequestBroadcaster(){
+        return redrawRequestBroadcaster;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the subject through which resizes are broadcast.
+     */
+    @Override
+    public ISubject<Dimension> getResizeBroadcaster(){
+        return resizeBroadcaster;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of images received.
+     */
+    @Override
+    public long getFramesRendered(){
+        return framesRendered.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of received images which have been shown.
+     */
+    @Override
+    public long getFramesPresented(){
+        return framesPresented.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of received images which could not be shown because the canvas was not displayable.
+     */
+    @Override
+    public long getFramesSkipped(){
+        return framesSkipped.get();
+    }
+}
@@ -3,9 +3,9 @@ package window;
 import util.observer.ISubject;
 import util.observer.Subject;
 
-import javax.swing.JComponent;
 import javax.swing.JFrame;
 import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
@@ -24,10 +24,10 @@ import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
- * A {@code NonResizableFrame} is a {@code JFrame} which cannot be resized. It also provides a window close subject and
- * a file drop subject.
+ * An {@code ApplicationFrame} is a {@code JFrame} holding a single content component, which may or may not be
+ * resizable. It also provides a window close subject and a file drop subject.
  */
-public class NonResizableFrame extends JFrame {
+public class ApplicationFrame extends JFrame {
 
     private final Subject<Void> windowCloseBroadcaster;
     private final Subject<List<File>> fileDropBroadcaster;
@@ -35,17 +35,31 @@ public class NonResizableFrame extends JFrame {
     private final int windowedWidth;
     private final int windowedHeight;
     private final String title;
-    private final JComponent content;
+    private final Component content;
+    private final boolean resizable;
 
     /**
-     * Constructs a {@code NonResizableFrame} with the given dimensions, title, and content.
+     * Constructs a non-resizable {@code ApplicationFrame} with the given dimensions, title, and content.
      *
      * @param width the preferred width of the frame.
      * @param height the preferred height of the frame.
      * @param title the title of the frame to display to the user.
-     * @param content the {@code JComponent} content to display within the frame.
+     * @param content the {@code Component} content to display within the frame.
      */
-    public NonResizableFrame(int width, int height, String title, JComponent content){
+    public ApplicationFrame(int width, int height, String title, Component content){
+        this(width, height, title, content, false);
+    }
+
+    /**
+     * Constructs an {@code ApplicationFrame} with the given dimensions, title, and content.
+     *
+     * @param width the preferred width of the frame.
+     * @param height the preferred height of the frame.
+     * @param title the title of the frame to display to the user.
+     * @param content the {@code Component} content to display within the frame.
+     * @param resizable true if the user may resize the frame, in which case the content is resized with it.
+     */
+    public ApplicationFrame(int width, int height, String title, Component content, boolean resizable){
         windowCloseBroadcaster = makeWindowCloseBroadcaster();
         fileDropBroadcaster = makeFileDropBroadcaster();
 
@@ -53,6 +67,7 @@ public class NonResizableFrame extends JFrame {
         windowedHeight = height;
         this.title = title;
         this.content = content;
+        this.resizable = resizable;
 
         init();
     }
@@ -62,7 +77,7 @@ public class NonResizableFrame extends JFrame {
      */
     private void init(){
         setTitle(title);
-        setResizable(false);
+        setResizable(resizable);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout());
         add(content, BorderLayout.CENTER);
@@ -1,18 +1,33 @@
 package window;
 
+import util.concurrent.TripleBuffer;
 import util.observer.IObserver;
+import util.observer.ISubject;
+import util.observer.Subject;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 /**
  * A {@code BufferedImagePanel} is a {@code JPanel} which implements {@link IGraphicalDisplay}. Whenever the set image
  * observer receives a new image, a {@code BufferedImagePanel} will try to repaint itself with the new image displayed.
+ * <p>
+ * Received images are copied into a {@link TripleBuffer}, so the thread sending images never waits for painting and
+ * painting never shows a partially drawn image. Received images may change size, for example after a resize is
+ * broadcast; an image the size of the panel in device pixels is painted without scaling.
  */
 public class BufferedImagePanel extends JPanel implements IGraphicalDisplay {
     private final IObserver<BufferedImage> imageReceiver;
-    private BufferedImage image;
+    private final IObserver<Rectangle> damageReceiver;
+    private final Subject<Void> redrawRequestBroadcaster;
+    private final Subject<Dimension> resizeBroadcaster;
+
+    private final TripleBuffer<BufferedImage> frames;
+
+    //the union of all regions damaged since the last received image; only accessed by the sending thread
+    private final Rectangle pendingDamage;
 
     /**
      * Constructs a {@code BufferedImagePanel} with the given dimensions.
@@ -22,8 +37,12 @@ public class BufferedImagePanel extends JPanel implements IGraphicalDisplay {
      */
     public BufferedImagePanel(int width, int height){
         setBackground(Color.BLACK);
-        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        frames = new TripleBuffer<>(() -> new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        pendingDamage = new Rectangle();
         imageReceiver = makeImageReceiver();
+        damageReceiver = makeDamageReceiver();
+        redrawRequestBroadcaster = new Subject<>();
+        resizeBroadcaster = DevicePixels.makeResizeBroadcaster(this);
     }
 
     /**
@@ -34,18 +53,83 @@ public class BufferedImagePanel extends JPanel implements IGraphicalDisplay {
      */
     private IObserver<BufferedImage> makeImageReceiver() {
         return data -> {
-            setImage(data);
-            repaint();
+            BufferedImage backBuffer = frames.getBackBuffer();
+            if(backBuffer.getWidth() != data.getWidth() || backBuffer.getHeight() != data.getHeight()){
+                backBuffer.flush();
+                backBuffer = new BufferedImage(data.getWidth(), data.getHeight(), BufferedImage.TYPE_INT_RGB);
+                frames.replaceBackBuffer(backBuffer);
+            }
+            copyImage(data, backBuffer);
+            frames.publish();
+            if(pendingDamage.isEmpty()){
+                repaint();
+            }
+            else{
+                repaintImageRegion(pendingDamage, data.getWidth(), data.getHeight());
+                pendingDamage.setBounds(0, 0, 0, 0);
+            }
+        };
+    }
+
+    /**
+     * Creates the damage receiver, which is a {@code Rectangle} observer which limits the repaint caused by the next
+     * image received to the received regions.
+     *
+     * @return the damage receiver.
+     */
+    private IObserver<Rectangle> makeDamageReceiver() {
+        return region -> {
+            if(pendingDamage.isEmpty()){
+                pendingDamage.setBounds(region);
+            }
+            else{
+                pendingDamage.add(region);
+            }
         };
     }
 
     /**
-     * Sets the stored image. Does not cause a repaint attempt.
+     * Copies the given source image into the given destination image, copying the backing arrays directly when both
+     * images have the same layout.
      *
-     * @param image the new image to store.
+     * @param source the image to copy.
+     * @param dest the image to copy into.
      */
-    private void setImage(BufferedImage image){
-        this.image = image;
+    private static void copyImage(BufferedImage source, BufferedImage dest){
+        if(source.getType() == dest.getType()
+                && source.getWidth() == dest.getWidth()
+                && source.getHeight() == dest.getHeight()
+                && source.getRaster().getDataBuffer() instanceof DataBufferInt sourceBuffer
+                && dest.getRaster().getDataBuffer() instanceof DataBufferInt destBuffer){
+            int[] sourceData = sourceBuffer.getData();
+            System.arraycopy(sourceData, 0, destBuffer.getData(), 0, sourceData.length);
+        }
+        else{
+            Graphics2D g2d = dest.createGraphics();
+            g2d.drawImage(source, 0, 0, dest.getWidth(), dest.getHeight(), null);
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Repaints the part of this panel showing the given region of the displayed image, which is stretched to fill
+     * the panel.
+     *
+     * @param region the region of the displayed image to repaint.
+     * @param imageWidth the width of the displayed image.
+     * @param imageHeight the height of the displayed image.
+     */
+    private void repaintImageRegion(Rectangle region, int imageWidth, int imageHeight){
+        double scaleX = (double) getWidth() / imageWidth;
+        double scaleY = (double) getHeight() / imageHeight;
+        int x = (int) Math.floor(region.x * scaleX);
+        int y = (int) Math.floor(region.y * scaleY);
+        repaint(
+                x,
+                y,
+                (int) Math.ceil((region.x + region.width) * scaleX) - x,
+                (int) Math.ceil((region.y + region.height) * scaleY) - y
+        );
     }
 
     /**
@@ -59,6 +143,67 @@ public class BufferedImagePanel extends JPanel implements IGraphicalDisplay {
         return imageReceiver;
     }
 
+    /**
+     * Returns the damage receiver, which is a {@code Rectangle} observer which limits the repaint caused by the next
+     * image received to the received regions.
+     *
+     * @return the damage receiver.
+     */
+    @Override
+    public IObserver<Rectangle> getDamageReceiver() {
+        return damageReceiver;
+    }
+
+    /**
+     * {@inheritDoc} A {@code BufferedImagePanel} keeps the last received image, so it never requests a redraw.
+     *
+     * @return the subject through which redraw requests are broadcast.
+     */
+    @Override
+    public ISubject<Void> getRedrawRequestBroadcaster() {
+        return redrawRequestBroadcaster;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the subject through which resizes are broadcast.
+     */
+    @Override
+    public ISubject<Dimension> getResizeBroadcaster() {
+        return resizeBroadcaster;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of images received.
+     */
+    @Override
+    public long getFramesRendered() {
+        return frames.getFramesPublished();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of received images which have been painted.
+     */
+    @Override
+    public long getFramesPresented() {
+        return frames.getFramesPresented();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the number of received images which were replaced before they could be painted.
+     */
+    @Override
+    public long getFramesSkipped() {
+        return frames.getFramesSkipped();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -69,6 +214,6 @@ public class BufferedImagePanel extends JPanel implements IGraphicalDisplay {
     @Override
     public void paintComponent(Graphics g){
         super.paintComponent(g);
-        g.drawImage(image, 0, 0, getWidth(), getHeight(), this);
+        g.drawImage(frames.acquireFront(), 0, 0, getWidth(), getHeight(), this);
     }
 }
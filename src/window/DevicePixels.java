@@ -0,0 +1,59 @@
+package window;
+
+import util.observer.Subject;
+
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.GraphicsConfiguration;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.geom.AffineTransform;
+
+/**
+ * {@code DevicePixels} measures components in device pixels rather than in the user space units Swing lays them out
+ * in, which differ on screens with display scaling.
+ */
+final class DevicePixels {
+
+    private DevicePixels(){}
+
+    /**
+     * Returns the size of the given component in device pixels.
+     *
+     * @param component the component to measure.
+     * @return the size of the given component in device pixels.
+     */
+    static Dimension getSize(Component component){
+        GraphicsConfiguration graphicsConfiguration = component.getGraphicsConfiguration();
+        if(graphicsConfiguration == null){
+            return component.getSize();
+        }
+        AffineTransform transform = graphicsConfiguration.getDefaultTransform();
+        return new Dimension(
+                (int) Math.round(component.getWidth() * transform.getScaleX()),
+                (int) Math.round(component.getHeight() * transform.getScaleY())
+        );
+    }
+
+    /**
+     * Creates a subject which broadcasts the size of the given component in device pixels whenever the component is
+     * resized or moved to a screen with a different display scale.
+     *
+     * @param component the component to observe.
+     * @return the subject which broadcasts the size of the given component in device pixels.
+     */
+    static Subject<Dimension> makeResizeBroadcaster(Component component){
+        Subject<Dimension> resizeBroadcaster = new Subject<>();
+        component.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                resizeBroadcaster.broadcast(getSize(component));
+            }
+        });
+        component.addPropertyChangeListener(
+                "graphicsConfiguration",
+                event -> resizeBroadcaster.broadcast(getSize(component))
+        );
+        return resizeBroadcaster;
+    }
+}
@@ -1,11 +1,18 @@
 package window;
 
 import util.observer.IObserver;
+import util.observer.ISubject;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
- * An {@code IGraphicalDisplay} offers an observer which can receive {@code BufferedImage} messages.
+ * An {@code IGraphicalDisplay} offers an observer which can receive {@code BufferedImage} messages, and an observer
+ * which can receive the regions of the next image which differ from the last received image.
+ * <p>
+ * Received images are only valid for the duration of the call which delivers them, and must be copied or displayed
+ * before that call returns.
  */
 public interface IGraphicalDisplay {
 
@@ -14,4 +21,47 @@ public interface IGraphicalDisplay {
      * @return the observer used for receiving {@code BufferedImage} messages.
      */
     IObserver<BufferedImage> getImageReceiver();
+
+    /**
+     * Returns the observer used for receiving {@code Rectangle} messages, each of which marks a region in which the
+     * next received image differs from the last received image. If no regions are received before an image, the
+     * whole image is assumed to have changed. Received rectangles must not be kept.
+     *
+     * @return the observer used for receiving {@code Rectangle} messages.
+     */
+    IObserver<Rectangle> getDamageReceiver();
+
+    /**
+     * Returns the subject through which this display requests that the next image be drawn in full, for example
+     * after its contents were lost.
+     *
+     * @return the subject through which this display requests that the next image be drawn in full.
+     */
+    ISubject<Void> getRedrawRequestBroadcaster();
+
+    /**
+     * Returns the subject through which this display broadcasts its size in device pixels whenever it changes. Images
+     * of the broadcast size are shown without scaling; images of any other size are stretched to fit.
+     *
+     * @return the subject through which this display broadcasts its size in device pixels.
+     */
+    ISubject<Dimension> getResizeBroadcaster();
+
+    /**
+     * Returns the number of images this display has received.
+     * @return the number of images this display has received.
+     */
+    long getFramesRendered();
+
+    /**
+     * Returns the number of received images this display has shown.
+     * @return the number of received images this display has shown.
+     */
+    long getFramesPresented();
+
+    /**
+     * Returns the number of received images which this display never showed because a newer image arrived first.
+     * @return the number of received images which this display never showed because a newer image arrived first.
+     */
+    long getFramesSkipped();
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package window;
+
+/**
+ * A {@code PresentationMode} determines which {@link IGraphicalDisplay} a {@link WindowController} uses to show
+ * received images.
+ *
+ * @see #PANEL
+ * @see #ACCELERATED
+ */
+public enum PresentationMode {
+    /**
+     * Images are painted by Swing on the event dispatch thread through a {@link BufferedImagePanel}.
+     */
+    PANEL,
+    /**
+     * Images are shown by the sending thread through the buffer strategy of an {@link AcceleratedCanvas}. Falls back
+     * to {@link #PANEL} if a buffer strategy cannot be created.
+     */
+    ACCELERATED
+}
@@ -3,7 +3,11 @@ package window;
 import util.observer.IObserver;
 import util.observer.ISubject;
 
-import javax.swing.*;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.List;
@@ -13,10 +17,13 @@ import java.util.List;
  */
 public class WindowController {
     private final IGraphicalDisplay graphicalDisplay;
-    private final NonResizableFrame frame;
+    private final ApplicationFrame frame;
+    private final String title;
+    private final IObserver<String> statusReceiver;
 
     /**
-     * Constructs a {@code WindowController} with the given dimensions and title.
+     * Constructs a {@code WindowController} with the given dimensions and title which presents images through a
+     * {@link BufferedImagePanel}.
      *
      * @param width the preferred width of the frame.
      * @param height the preferred height of the frame.
@@ -27,13 +34,78 @@ public class WindowController {
             int height,
             String title
     ){
-        graphicalDisplay = new BufferedImagePanel(width, height);
-        frame = new NonResizableFrame(width, height, title, (JComponent)graphicalDisplay);
+        this(width, height, title, PresentationMode.PANEL);
     }
 
     /**
-     * Returns the image receiver, which is a {@code BufferedImage} observer which causes the panel to repaint
-     * itself with any new image received.
+     * Constructs a {@code WindowController} with the given dimensions, title, and presentation mode. If the
+     * accelerated presentation mode is requested but unavailable, a {@link BufferedImagePanel} is used instead.
+     *
+     * @param width the preferred width of the frame.
+     * @param height the preferred height of the frame.
+     * @param title the title of the frame to display to the user.
+     * @param presentationMode how images are to be shown.
+     */
+    public WindowController(
+            int width,
+            int height,
+            String title,
+            PresentationMode presentationMode
+    ){
+        this(width, height, title, presentationMode, false);
+    }
+
+    /**
+     * Constructs a {@code WindowController} with the given dimensions, title, and presentation mode, which may be
+     * resizable. If the accelerated presentation mode is requested but unavailable, a {@link BufferedImagePanel} is
+     * used instead.
+     *
+     * @param width the preferred width of the frame.
+     * @param height the preferred height of the frame.
+     * @param title the title of the frame to display to the user.
+     * @param presentationMode how images are to be shown.
+     * @param resizable true if the user may resize the window; see {@link #getResizeBroadcaster()}.
+     */
+    public WindowController(
+            int width,
+            int height,
+            String title,
+            PresentationMode presentationMode,
+            boolean resizable
+    ){
+        ApplicationFrame acceleratedFrame = null;
+        AcceleratedCanvas acceleratedCanvas = null;
+        if(presentationMode == PresentationMode.ACCELERATED && !GraphicsEnvironment.isHeadless()){
+            try{
+                acceleratedCanvas = new AcceleratedCanvas(width, height);
+                acceleratedFrame = new ApplicationFrame(width, height, title, acceleratedCanvas, resizable);
+                acceleratedCanvas.createBuffers();
+            }
+            catch(RuntimeException e){
+                System.err.println("Accelerated presentation unavailable, falling back to panel: " + e.getMessage());
+                if(acceleratedFrame != null){
+                    acceleratedFrame.dispose();
+                }
+                acceleratedFrame = null;
+            }
+        }
+        if(acceleratedFrame != null){
+            graphicalDisplay = acceleratedCanvas;
+            frame = acceleratedFrame;
+        }
+        else {
+            graphicalDisplay = new BufferedImagePanel(width, height);
+            frame = new ApplicationFrame(width, height, title, (Component)graphicalDisplay, resizable);
+        }
+        this.title = title;
+        statusReceiver = (status) -> SwingUtilities.invokeLater(() -> frame.setTitle(
+                status == null || status.isEmpty() ? this.title : this.title + " - " + status
+        ));
+    }
+
+    /**
+     * Returns the image receiver, which is a {@code BufferedImage} observer which causes the window to display any
+     * new image received.
      *
      * @return the image receiver.
      */
@@ -41,6 +113,52 @@ public class WindowController {
         return graphicalDisplay.getImageReceiver();
     }
 
+    /**
+     * Returns the damage receiver, which is a {@code Rectangle} observer which limits the update caused by the next
+     * image received to the received regions.
+     *
+     * @return the damage receiver.
+     */
+    public IObserver<Rectangle> getDamageReceiver(){
+        return graphicalDisplay.getDamageReceiver();
+    }
+
+    /**
+     * Returns the subject through which the window requests that the next image be drawn in full.
+     * @return the subject through which the window requests that the next image be drawn in full.
+     */
+    public ISubject<Void> getRedrawRequestBroadcaster(){
+        return graphicalDisplay.getRedrawRequestBroadcaster();
+    }
+
+    /**
+     * Returns the subject through which the window broadcasts the size of its drawing area in device pixels whenever
+     * it changes. Images of that size are shown pixel for pixel.
+     *
+     * @return the subject through which the window broadcasts the size of its drawing area.
+     */
+    public ISubject<Dimension> getResizeBroadcaster(){
+        return graphicalDisplay.getResizeBroadcaster();
+    }
+
+    /**
+     * Returns the current size of the drawing area of the window in device pixels.
+     * @return the current size of the drawing area of the window in device pixels.
+     */
+    public Dimension getDrawingAreaSize(){
+        return DevicePixels.getSize((Component) graphicalDisplay);
+    }
+
+    /**
+     * Returns a summary of how many frames were rendered, presented, and skipped by the window.
+     * @return a summary of how many frames were rendered, presented, and skipped by the window.
+     */
+    public String getFrameStatistics(){
+        return "frames rendered: " + graphicalDisplay.getFramesRendered()
+                + ", presented: " + graphicalDisplay.getFramesPresented()
+                + ", skipped: " + graphicalDisplay.getFramesSkipped();
+    }
+
     /**
      * Returns the window close subject attached to this window.
      * @return the window close subject attached to this window.
@@ -49,6 +167,16 @@ public class WindowController {
         return frame.getWindowCloseBroadcaster();
     }
 
+    /**
+     * Returns the status receiver, which shows each received status after the title of the window, or just the title
+     * if the status is null or empty. May be called from any thread.
+     *
+     * @return the status receiver.
+     */
+    public IObserver<String> getStatusReceiver(){
+        return statusReceiver;
+    }
+
     /**
      * Returns the file drop subject attached to this window.
      * @return the file drop subject attached to this window.
@@ -56,4 +184,4 @@ public class WindowController {
     public ISubject<List<File>> getFileDropBroadcaster(){
         return frame.getFileDropBroadcaster();
     }
-}
\ No newline at end of file
+}